@@ -1,10 +1,11 @@
 package controller;
 
+import helper.cache.ReferenceDataCache;
 import helper.dbaccess.dao.DBAppointment;
-import helper.dbaccess.dao.DBContact;
-import helper.dbaccess.dao.DBCustomer;
-import helper.dbaccess.dao.DBUser;
 import helper.locale.LocaleHelper;
+import helper.scheduling.FreeSlotFinder;
+import helper.search.CustomerSearchIndex;
+import helper.scheduling.TimeSlot;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
@@ -14,14 +15,16 @@ import javafx.scene.layout.Region;
 import javafx.stage.Stage;
 import model.Appointment;
 import model.Contact;
-import model.Customer;
 import model.User;
 
 import java.net.URL;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.ResourceBundle;
 import java.util.stream.Collectors;
 
@@ -64,6 +67,20 @@ public class AppointmentFormController implements Initializable {
     private AppointmentOperation currentAppointmentOperation = AppointmentOperation.CREATE;
 
     private final ObservableList<Appointment> conflictingAppointments = FXCollections.observableArrayList();
+    private final ObservableList<TimeSlot> suggestedTimeSlots = FXCollections.observableArrayList();
+
+    /**
+     * The number of free slots suggested when the appointment times conflict.
+     */
+    private static final int suggestedTimeSlotsLimit = 3;
+    /**
+     * How far ahead of the conflicting starting time free slots are searched for.
+     */
+    private static final Duration suggestedTimeSlotsSearchWindow = Duration.ofDays(7);
+    /**
+     * The maximum number of customers offered while typing in the customer field.
+     */
+    private static final int customerSearchLimit = 20;
 
     private final ObservableMap<String, Integer> contactsNameToIdMap = FXCollections.observableHashMap();
     private final ObservableMap<String, Integer> customersNameToIdMap = FXCollections.observableHashMap();
@@ -76,7 +93,7 @@ public class AppointmentFormController implements Initializable {
     public TextField locationTextField;
     public TextField typeTextField;
     public ChoiceBox<String> contactNameChoiceBox;
-    public ChoiceBox<String> customerNameChoiceBox;
+    public ComboBox<String> customerNameComboBox;
     public ChoiceBox<String> userUsernameChoiceBox;
     public DatePicker appointmentDateDatePicker;
     public TextField startsAtTimeTextField;
@@ -84,31 +101,93 @@ public class AppointmentFormController implements Initializable {
 
     /**
      * Initializes the AppointmentFormController.
+     * The form is loaded once and reused, so the fields are filled in by reset instead.
      * @param url the URL
      * @param resourceBundle the ResourceBundle
+     * @see #reset()
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
+        customerNameComboBox.getEditor().textProperty().addListener((observable, oldText, newText) -> onCustomerSearchTextChanged(newText));
+    }
+
+    /**
+     * Invoked by the MainController every time before the form is shown, and clears the fields and the state left by
+     * the previous use. The contacts and users to choose from come from the shared cache, without querying the database.
+     * @see ReferenceDataCache
+     */
+    public void reset() {
+        appointment = null;
+        currentAppointmentOperation = AppointmentOperation.CREATE;
+        conflictingAppointments.clear();
+        suggestedTimeSlots.clear();
+
         contactsNameToIdMap.clear();
         customersNameToIdMap.clear();
         usersUsernameToIdMap.clear();
-        contactNameChoiceBox.getItems().clear();
-        customerNameChoiceBox.getItems().clear();
-        userUsernameChoiceBox.getItems().clear();
-        for (Contact contact : DBContact.getAllContacts()) {
+        contactNameChoiceBox.setValue(null);
+        customerNameComboBox.setValue(null);
+        customerNameComboBox.getEditor().clear();
+        customerNameComboBox.getItems().clear();
+        userUsernameChoiceBox.setValue(null);
+        List<String> contactNames = new ArrayList<>();
+        for (Contact contact : ReferenceDataCache.getContacts()) {
             contactsNameToIdMap.put(contact.getName(), contact.getId());
-            contactNameChoiceBox.getItems().add(contact.getName());
+            contactNames.add(contact.getName());
         }
-        for (Customer customer : DBCustomer.getAllCustomers()) {
-            customersNameToIdMap.put(customer.getName(), customer.getId());
-            customerNameChoiceBox.getItems().add(customer.getName());
-        }
-        for (User user : DBUser.getAllUsers()) {
+        contactNameChoiceBox.getItems().setAll(contactNames);
+        List<String> usernames = new ArrayList<>();
+        for (User user : ReferenceDataCache.getUsers()) {
             usersUsernameToIdMap.put(user.getUsername(), user.getId());
-            userUsernameChoiceBox.getItems().add(user.getUsername());
+            usernames.add(user.getUsername());
+        }
+        userUsernameChoiceBox.getItems().setAll(usernames);
+
+        idTextField.clear();
+        titleTextField.clear();
+        descriptionTextField.clear();
+        locationTextField.clear();
+        typeTextField.clear();
+        appointmentDateDatePicker.setValue(null);
+        startsAtTimeTextField.clear();
+        endsAtTimeTextField.clear();
+    }
+
+    /**
+     * Invoked whenever the text of the customer field changes, and offers the customers that match it, unless it is
+     * one of the customers offered already.
+     * @param text the text of the customer field.
+     * @see CustomerSearchIndex#search(String, int)
+     */
+    private void onCustomerSearchTextChanged(String text) {
+        if (text == null || customersNameToIdMap.containsKey(text)) {
+            return;
+        }
+        customersNameToIdMap.clear();
+        List<String> labels = new ArrayList<>();
+        for (CustomerSearchIndex.Match match : CustomerSearchIndex.search(text, customerSearchLimit)) {
+            String label = getCustomerLabel(match.getName(), match.getCustomerId());
+            customersNameToIdMap.put(label, match.getCustomerId());
+            labels.add(label);
+        }
+        customerNameComboBox.getItems().setAll(labels);
+        if (labels.isEmpty()) {
+            customerNameComboBox.hide();
+        } else if (customerNameComboBox.isFocused() || customerNameComboBox.getEditor().isFocused()) {
+            customerNameComboBox.show();
         }
     }
 
+    /**
+     * Gets the text that a customer is shown as in the customer field, which includes the id since names may repeat.
+     * @param name the name of the customer.
+     * @param customerId the id of the customer.
+     * @return the text.
+     */
+    private static String getCustomerLabel(String name, int customerId) {
+        return String.format("%s (%d)", name, customerId);
+    }
+
     /**
      * Invoked by the MainController when the "Add" button is clicked, and sets the fields &amp; labels accordingly.
      */
@@ -135,7 +214,9 @@ public class AppointmentFormController implements Initializable {
         endsAtTimeTextField.setText(LocalTime.ofInstant(existingAppointment.getEndsAt(), LocaleHelper.getZoneId()).format(DateTimeFormatter.ISO_LOCAL_TIME));
         try {
             contactNameChoiceBox.setValue(appointment.getContactName());
-            customerNameChoiceBox.setValue(appointment.getCustomerName());
+            String customerLabel = getCustomerLabel(appointment.getCustomerName(), appointment.getCustomerId());
+            customersNameToIdMap.put(customerLabel, appointment.getCustomerId());
+            customerNameComboBox.setValue(customerLabel);
             userUsernameChoiceBox.setValue(appointment.getUserUsername());
         } catch (Appointment.ContactNotFoundException | Appointment.CustomerNotFoundException | Appointment.UserNotFoundException e) {
             e.printStackTrace();
@@ -225,28 +306,48 @@ public class AppointmentFormController implements Initializable {
         } catch (OutsideOfOfficeHoursException e) {
             e.printStackTrace();
             showErrorAlert("Appointment Time Outside Office Hours!",
-                    "The appointment time occurs outside of office hours. Office hours are from 08:00 AM-10:00 PM EST every day.");
+                    "The appointment time occurs outside of office hours. Office hours are from 08:00 AM-10:00 PM EST every day, except on holidays and at locations with their own office hours.");
         } catch (ConflictingAppointmentTimeException e) {
             e.printStackTrace();
-            String conflictingAppointmentsString = conflictingAppointments.stream().map(Appointment::toPrettyString).collect(Collectors.joining(",\n"));
-            showErrorAlert("Appointment Times Conflict!",
-                    "One or more appointments conflict with the specified appointment times. The appointments are:\n" +
-                            conflictingAppointmentsString + ".");
+            showConflictAlert();
+        } catch (DBAppointment.BookingConflictException e) {
+            // another booking of the contact or customer was saved after checkFields
+            e.printStackTrace();
+            conflictingAppointments.setAll(e.getConflictingAppointments());
+            suggestTimeSlots(appointment.getStartsAt(), appointment.getEndsAt());
+            showConflictAlert();
         }
     }
 
+    /**
+     * Shows the conflicting appointments and the suggested time slots in an error alert.
+     * @see #conflictingAppointments
+     * @see #suggestedTimeSlots
+     */
+    private void showConflictAlert() {
+        String conflictingAppointmentsString = conflictingAppointments.stream().map(Appointment::toPrettyString).collect(Collectors.joining(",\n"));
+        String suggestedTimeSlotsString = suggestedTimeSlots.isEmpty()
+                ? ""
+                : "\n\nThe next available times for the contact and customer are:\n" +
+                        suggestedTimeSlots.stream().map(TimeSlot::toPrettyString).collect(Collectors.joining(",\n")) + ".";
+        showErrorAlert("Appointment Times Conflict!",
+                "One or more appointments conflict with the specified appointment times. The appointments are:\n" +
+                        conflictingAppointmentsString + "." + suggestedTimeSlotsString);
+    }
+
     /**
      * Applies the fields to a new appointment model and saves to the database.
      * <br>
      * The lambda allows us to use 1 line of code to assign the returned Optional&lt;Appointment&gt; if it is present.
      * This saves 2 lines of code.
+     * @throws DBAppointment.BookingConflictException if another appointment of the contact or customer was booked meanwhile.
      * @see #applyFieldsToAppointment()
-     * @see DBAppointment
+     * @see DBAppointment#bookAppointment(Appointment)
      */
-    private void createAppointment() {
+    private void createAppointment() throws DBAppointment.BookingConflictException {
         appointment = new Appointment();
         applyFieldsToAppointment();
-        Optional<Appointment> foundAppointment = DBAppointment.createAppointment(appointment);
+        Optional<Appointment> foundAppointment = DBAppointment.bookAppointment(appointment);
         foundAppointment.ifPresent(value -> appointment = value);
     }
 
@@ -255,12 +356,13 @@ public class AppointmentFormController implements Initializable {
      * <br>
      * The lambda allows us to use 1 line of code to assign the returned Optional&lt;Appointment&gt; if it is present.
      * This saves 2 lines of code.
+     * @throws DBAppointment.BookingConflictException if another appointment of the contact or customer was booked meanwhile.
      * @see #appointment
-     * @see DBAppointment
+     * @see DBAppointment#rebookAppointment(Appointment)
      */
-    private void updateAppointment() {
+    private void updateAppointment() throws DBAppointment.BookingConflictException {
         applyFieldsToAppointment();
-        DBAppointment.updateAppointment(appointment);
+        DBAppointment.rebookAppointment(appointment);
         Optional<Appointment> foundAppointment = DBAppointment.getAppointmentFromId(appointment.getId());
         foundAppointment.ifPresent(value -> appointment = value);
     }
@@ -275,7 +377,7 @@ public class AppointmentFormController implements Initializable {
         String location = locationTextField.getText();
         String type = typeTextField.getText();
         String contactName = contactNameChoiceBox.getValue();
-        String customerName = customerNameChoiceBox.getValue();
+        String customerName = customerNameComboBox.getEditor().getText();
         String userUsername = userUsernameChoiceBox.getValue();
         LocalDate appointmentDate = appointmentDateDatePicker.getValue();
         String rawStartsAtTime = startsAtTimeTextField.getText();
@@ -306,17 +408,20 @@ public class AppointmentFormController implements Initializable {
      * <li>no fields are blank;</li>
      * <li>the time values are formatted correctly;</li>
      * <li>the starting time is before the ending time;</li>
-     * <li>the appointment times do not conflict with another appointment; or</li>
+     * <li>the appointment times do not conflict with another appointment of the same contact or customer; or</li>
      * <li>the appointment is within office hours.</li>
      * </ul>
      * <br>
+     * Occurrences of recurring appointment series are not conflicts, since they cannot be seen or managed from the
+     * application yet.
+     * <br>
      * The lambda in this method removes the current appointment from the list of conflicting appointments.
      * This is necessary if an appointment is being edited, as an appointment has the possibility of having
      * its new times conflict with its old times.
      * @throws FieldBlankException if any fields are blank.
      * @throws DateTimeParseException if either of the time values are formatted incorrectly.
      * @throws EndTimeIsBeforeStartTimeException if the starting time is not before the ending time.
-     * @throws ConflictingAppointmentTimeException if the appointment times conflict with another appointment.
+     * @throws ConflictingAppointmentTimeException if the appointment times conflict with another appointment of the same contact or customer.
      * @throws OutsideOfOfficeHoursException if the appointment goes outside of office hours.
      */
     private void checkFields() throws FieldBlankException, DateTimeParseException, EndTimeIsBeforeStartTimeException, ConflictingAppointmentTimeException, OutsideOfOfficeHoursException {
@@ -325,33 +430,52 @@ public class AppointmentFormController implements Initializable {
         String rawLocation = locationTextField.getText();
         String rawType = typeTextField.getText();
         String rawContactName = contactNameChoiceBox.getValue();
-        String rawCustomerName = customerNameChoiceBox.getValue();
+        String rawCustomerName = customerNameComboBox.getEditor().getText();
         String rawUserUsername = userUsernameChoiceBox.getValue();
         LocalDate appointmentDate = appointmentDateDatePicker.getValue();
         String rawStartsAtTime = startsAtTimeTextField.getText();
         String rawEndsAtTime = endsAtTimeTextField.getText();
-        if (rawContactName == null || rawCustomerName == null || rawUserUsername == null || appointmentDate == null || rawTitle.isBlank() || rawDescription.isBlank() || rawLocation.isBlank() || rawType.isBlank() || rawContactName.isBlank() || rawCustomerName.isBlank() || rawStartsAtTime.isBlank() || rawUserUsername.isBlank() || rawEndsAtTime.isBlank()) {
+        if (rawContactName == null || rawCustomerName == null || !customersNameToIdMap.containsKey(rawCustomerName) || rawUserUsername == null || appointmentDate == null || rawTitle.isBlank() || rawDescription.isBlank() || rawLocation.isBlank() || rawType.isBlank() || rawContactName.isBlank() || rawCustomerName.isBlank() || rawStartsAtTime.isBlank() || rawUserUsername.isBlank() || rawEndsAtTime.isBlank()) {
             throw new FieldBlankException();
         }
 
         LocalTime startsAtLocalTime = LocalTime.parse(rawStartsAtTime);
         LocalTime endsAtLocalTime = LocalTime.parse(rawEndsAtTime);
-        OffsetTime startsAtOffsetTime = startsAtLocalTime.atOffset(LocaleHelper.getZoneId().getRules().getOffset(Instant.now()));
-        OffsetTime endsAtOffsetTime = endsAtLocalTime.atOffset(LocaleHelper.getZoneId().getRules().getOffset(Instant.now()));
-        if (!startsAtOffsetTime.isBefore(endsAtOffsetTime)) {
+        Instant startsAtInstant = appointmentDate.atTime(startsAtLocalTime).atZone(LocaleHelper.getZoneId()).toInstant();
+        Instant endsAtInstant = appointmentDate.atTime(endsAtLocalTime).atZone(LocaleHelper.getZoneId()).toInstant();
+        if (!startsAtInstant.isBefore(endsAtInstant)) {
             throw new EndTimeIsBeforeStartTimeException();
         }
-        if (Appointment.isOutsideOfficeHours(startsAtOffsetTime) || Appointment.isOutsideOfficeHours(endsAtOffsetTime)) {
+        if (!Appointment.isWithinOfficeHours(startsAtInstant, endsAtInstant, rawLocation)) {
             throw new OutsideOfOfficeHoursException();
         }
-        Instant startsAtInstant = appointmentDate.atTime(startsAtOffsetTime).toInstant();
-        Instant endsAtInstant = appointmentDate.atTime(endsAtOffsetTime).toInstant();
-        conflictingAppointments.setAll(DBAppointment.getAllAppointmentsOverlappingWithTimeRange(startsAtInstant, endsAtInstant));
+        conflictingAppointments.setAll(DBAppointment.getAllAppointmentsForContactIdOrCustomerIdOverlappingWithTimeRange(contactsNameToIdMap.get(rawContactName), customersNameToIdMap.get(rawCustomerName), startsAtInstant, endsAtInstant));
         if (appointment != null) {
             conflictingAppointments.removeIf(appt -> appt.getId() == appointment.getId());
         }
         if (!conflictingAppointments.isEmpty()) {
+            suggestTimeSlots(startsAtInstant, endsAtInstant);
             throw new ConflictingAppointmentTimeException();
         }
     }
+
+    /**
+     * Finds the next free slots of the selected contact and customer with the same duration as the given appointment
+     * times, starting from the given starting time, and puts them in suggestedTimeSlots.
+     * @param startsAt the starting time of the conflicting appointment times.
+     * @param endsAt the ending time of the conflicting appointment times.
+     * @see FreeSlotFinder
+     */
+    private void suggestTimeSlots(Instant startsAt, Instant endsAt) {
+        Integer contactId = contactsNameToIdMap.get(contactNameChoiceBox.getValue());
+        Integer customerId = customersNameToIdMap.get(customerNameComboBox.getEditor().getText());
+        OptionalInt ignoredAppointmentId = appointment == null ? OptionalInt.empty() : OptionalInt.of(appointment.getId());
+        Instant searchEnd = startsAt.plus(suggestedTimeSlotsSearchWindow);
+        suggestedTimeSlots.setAll(FreeSlotFinder.loadBusySchedule(
+                contactId == null ? OptionalInt.empty() : OptionalInt.of(contactId),
+                customerId == null ? OptionalInt.empty() : OptionalInt.of(customerId),
+                startsAt,
+                searchEnd,
+                ignoredAppointmentId).findFreeSlots(Duration.between(startsAt, endsAt), startsAt, searchEnd, suggestedTimeSlotsLimit, locationTextField.getText()));
+    }
 }
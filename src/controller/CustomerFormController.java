@@ -1,8 +1,7 @@
 package controller;
 
-import helper.dbaccess.dao.DBCountry;
+import helper.cache.GeographyIndex;
 import helper.dbaccess.dao.DBCustomer;
-import helper.dbaccess.dao.DBDivision;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableMap;
 import javafx.fxml.Initializable;
@@ -14,6 +13,8 @@ import model.Customer;
 import model.Division;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
@@ -54,17 +55,41 @@ public class CustomerFormController implements Initializable {
 
     /**
      * Initializes the CustomerFormController.
+     * The form is loaded once and reused, so the fields are filled in by reset instead.
      * @param url the URL
      * @param resourceBundle the ResourceBundle
+     * @see #reset()
      */
     @Override
-    public void initialize(URL url, ResourceBundle resourceBundle) {
+    public void initialize(URL url, ResourceBundle resourceBundle) {}
+
+    /**
+     * Invoked by the MainController every time before the form is shown, and clears the fields and the state left by
+     * the previous use. The countries to choose from come from the geography index, without querying the database.
+     * Clearing the country also clears and disables the divisionNameChoiceBox.
+     * @see GeographyIndex
+     * @see #onCountrySelected()
+     */
+    public void reset() {
+        customer = null;
+        currentCustomerOperation = CustomerOperation.CREATE;
+
         countriesNameToIdMap.clear();
-        countryNameChoiceBox.getItems().clear();
-        for (Country country : DBCountry.getAllCountries()) {
+        countryNameChoiceBox.setValue(null);
+        divisionNameChoiceBox.setValue(null);
+        List<String> countryNames = new ArrayList<>();
+        for (Country country : GeographyIndex.get().getCountries()) {
             countriesNameToIdMap.put(country.getName(), country.getId());
-            countryNameChoiceBox.getItems().add(country.getName());
+            countryNames.add(country.getName());
         }
+        countryNameChoiceBox.getItems().setAll(countryNames);
+        onCountrySelected();
+
+        idTextField.clear();
+        nameTextField.clear();
+        addressTextField.clear();
+        postalCodeTextField.clear();
+        phoneNumberTextField.clear();
     }
 
     /**
@@ -133,7 +158,9 @@ public class CustomerFormController implements Initializable {
 
     /**
      * Invoked when a country (U.K., Candaa, or U.S.) is selected from the countryNameChoiceBox.
-     * It re-enables the divisionNameChoiceBox and populates it with the divisions for the selected country.
+     * It re-enables the divisionNameChoiceBox and populates it with the divisions for the selected country, from the
+     * geography index.
+     * @see GeographyIndex#getDivisionsOfCountry(int)
      */
     public void onCountrySelected() {
         String selectedCountryName = countryNameChoiceBox.getSelectionModel().getSelectedItem();
@@ -146,7 +173,7 @@ public class CustomerFormController implements Initializable {
             divisionNameChoiceBox.setDisable(true);
         } else {
             divisionNameChoiceBox.setDisable(false);
-            for (Division division : DBDivision.getDivisionsWithCountryId(selectedCountryId)) {
+            for (Division division : GeographyIndex.get().getDivisionsOfCountry(selectedCountryId)) {
                 divisionsNameToIdMap.put(division.getName(), division.getId());
                 divisionNameChoiceBox.getItems().add(division.getName());
             }
@@ -3,6 +3,7 @@ package controller;
 import helper.dbaccess.dao.DBUser;
 import helper.locale.LocaleHelper;
 import helper.loginactivity.LoginActivityLogger;
+import helper.reminder.ReminderService;
 import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
 import javafx.scene.Parent;
@@ -70,6 +71,7 @@ public class LoginController implements Initializable {
         mainStage.setScene(scene);
         mainStage.show();
         controller.showAppointmentsWithinNext15Mins();
+        ReminderService.start(loggedInUser.getId(), controller::showAppointmentReminder);
         currentStage.close();
     }
 
@@ -1,8 +1,21 @@
 package controller;
 
+import helper.cache.AppointmentWindowCache;
+import helper.cache.ContactScheduleCache;
+import helper.cache.ReferenceDataCache;
+import helper.calendar.CalendarCanvas;
 import helper.dbaccess.dao.DBAppointment;
-import helper.dbaccess.dao.DBContact;
 import helper.dbaccess.dao.DBCustomer;
+import helper.export.CsvExporter;
+import helper.locale.LocaleHelper;
+import helper.refresh.RefreshScheduler;
+import helper.reminder.ReminderService;
+import helper.search.AppointmentSearch;
+import helper.search.CustomerSearchIndex;
+import helper.tableview.CellValues;
+import helper.tableview.HighlightingCell;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -12,17 +25,25 @@ import javafx.fxml.Initializable;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.Region;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import model.Appointment;
 import model.Contact;
 import model.Customer;
 import model.User;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
@@ -40,6 +61,73 @@ public class MainController implements Initializable {
     public User loggedInUser;
 
     private final ObservableMap<String, Integer> contactsNameToIdMap = FXCollections.observableHashMap();
+
+    /**
+     * The controller of the customer modal, which is loaded once and reused, or null if not opened yet.
+     */
+    private CustomerFormController customerFormController;
+    /**
+     * The controller of the appointment modal, which is loaded once and reused, or null if not opened yet.
+     */
+    private AppointmentFormController appointmentFormController;
+
+    /**
+     * The maximum number of appointments in a page of search results.
+     */
+    private static final int appointmentsSearchPageSize = 100;
+    /**
+     * How long typing in the search field has to pause before the search runs.
+     */
+    private static final Duration appointmentsSearchDelay = Duration.millis(300);
+    /**
+     * The end of the time range searched when all appointments are shown.
+     */
+    private static final Instant appointmentsSearchEndOfTime = Instant.parse("9999-01-01T00:00:00Z");
+    /**
+     * The terms of the current search, which the highlighting cells read.
+     */
+    private List<String> appointmentsSearchTerms = List.of();
+    /**
+     * The index of the shown page of search results.
+     */
+    private int appointmentsSearchPageIndex = 0;
+    /**
+     * The timer that runs the search once typing pauses.
+     */
+    private final PauseTransition appointmentsSearchPause = new PauseTransition(appointmentsSearchDelay);
+
+    /**
+     * How long changes are folded into the same refresh of a view.
+     */
+    private static final Duration refreshCoalescingWindow = Duration.millis(150);
+    /**
+     * The scheduler that refreshes the views in the background, once per burst of changes.
+     */
+    private final RefreshScheduler refreshScheduler = new RefreshScheduler(refreshCoalescingWindow);
+    /**
+     * The appointments table view, refreshed through the refreshScheduler.
+     */
+    private final RefreshScheduler.View appointmentsView = refreshScheduler.addView(this::prepareAppointmentsTableView);
+    /**
+     * The reports, refreshed through the refreshScheduler.
+     */
+    private final RefreshScheduler.View reportsView = refreshScheduler.addView(this::prepareReports);
+    /**
+     * The calendar, reloaded through the refreshScheduler.
+     */
+    private final RefreshScheduler.View calendarView = refreshScheduler.addView(this::prepareCalendar);
+
+    /**
+     * An export that writes one or more CSV files.
+     */
+    @FunctionalInterface
+    private interface Export {
+        /**
+         * Runs the export.
+         * @throws IOException if a file could not be written or the data could not be read.
+         */
+        void run() throws IOException;
+    }
     
     public TableView<Customer> customersTableView;
     public TableColumn<Customer, Integer> customerIdTableColumn;
@@ -66,6 +154,20 @@ public class MainController implements Initializable {
     public RadioButton appointmentsWeeklyRadioButton;
     public RadioButton appointmentsMonthlyRadioButton;
 
+    public TextField appointmentsSearchTextField;
+    public Button appointmentsSearchPreviousButton;
+    public Button appointmentsSearchNextButton;
+    public Label appointmentsSearchResultsLabel;
+
+    public ToggleGroup calendarModeToggleGroup;
+    public RadioButton calendarDayRadioButton;
+    public RadioButton calendarWeekRadioButton;
+    public RadioButton calendarMonthRadioButton;
+    public CalendarCanvas calendarCanvas;
+
+    public DatePicker reportsFromDatePicker;
+    public DatePicker reportsToDatePicker;
+
     public TableView<List<StringProperty>> countByMonthAndTypeTableView;
     public TableColumn<List<StringProperty>, String> countByMonthAndTypeMonthTableColumn;
     public TableColumn<List<StringProperty>, String> countByMonthAndTypeTypeTableColumn;
@@ -137,28 +239,41 @@ public class MainController implements Initializable {
     public void initialize(URL url, ResourceBundle resourceBundle) {
         contactsNameToIdMap.clear();
         contactNameChoiceBox.getItems().clear();
-        for (Contact contact : DBContact.getAllContacts()) {
+        List<Contact> contacts = ReferenceDataCache.getContacts();
+        for (Contact contact : contacts) {
             contactsNameToIdMap.put(contact.getName(), contact.getId());
             contactNameChoiceBox.getItems().add(contact.getName());
         }
-
-        customerIdTableColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
-        customerNameTableColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
-        customerAddressTableColumn.setCellValueFactory(new PropertyValueFactory<>("address"));
-        customerPostalCodeTableColumn.setCellValueFactory(new PropertyValueFactory<>("postalCode"));
-        customerPhoneNumberTableColumn.setCellValueFactory(new PropertyValueFactory<>("phoneNumber"));
-        customerDivisionNameTableColumn.setCellValueFactory(new PropertyValueFactory<>("divisionName"));
-
-        appointmentIdTableColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
-        appointmentTitleTableColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
-        appointmentDescriptionTableColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
-        appointmentLocationTableColumn.setCellValueFactory(new PropertyValueFactory<>("location"));
-        appointmentContactNameTableColumn.setCellValueFactory(new PropertyValueFactory<>("contactName"));
-        appointmentTypeTableColumn.setCellValueFactory(new PropertyValueFactory<>("type"));
-        appointmentStartsAtTableColumn.setCellValueFactory(new PropertyValueFactory<>("formattedStartsAt"));
-        appointmentEndsAtTableColumn.setCellValueFactory(new PropertyValueFactory<>("formattedEndsAt"));
-        customerIdColumn.setCellValueFactory(new PropertyValueFactory<>("customerId"));
-        userIdColumn.setCellValueFactory(new PropertyValueFactory<>("userId"));
+        calendarCanvas.setContacts(contacts);
+        calendarCanvas.setLoader(DBAppointment::getAllAppointmentsOverlappingWithTimeRange);
+        CustomerSearchIndex.preload();
+        appointmentsSearchPause.setOnFinished(event -> {
+            appointmentsSearchPageIndex = 0;
+            appointmentsView.refreshNow();
+        });
+        appointmentsSearchTextField.textProperty().addListener((observable, oldText, newText) -> appointmentsSearchPause.playFromStart());
+
+        customerIdTableColumn.setCellValueFactory(CellValues.of(Customer::getId));
+        customerNameTableColumn.setCellValueFactory(CellValues.of(Customer::getName));
+        customerAddressTableColumn.setCellValueFactory(CellValues.of(Customer::getAddress));
+        customerPostalCodeTableColumn.setCellValueFactory(CellValues.of(Customer::getPostalCode));
+        customerPhoneNumberTableColumn.setCellValueFactory(CellValues.of(Customer::getPhoneNumber));
+        customerDivisionNameTableColumn.setCellValueFactory(CellValues.of(Customer::getDivisionName));
+
+        appointmentIdTableColumn.setCellValueFactory(CellValues.of(Appointment::getId));
+        appointmentTitleTableColumn.setCellValueFactory(CellValues.of(Appointment::getTitle));
+        appointmentDescriptionTableColumn.setCellValueFactory(CellValues.of(Appointment::getDescription));
+        appointmentLocationTableColumn.setCellValueFactory(CellValues.of(Appointment::getLocation));
+        appointmentContactNameTableColumn.setCellValueFactory(CellValues.of(Appointment::getContactName));
+        appointmentTypeTableColumn.setCellValueFactory(CellValues.of(Appointment::getType));
+        appointmentTitleTableColumn.setCellFactory(HighlightingCell.forTableColumn(() -> appointmentsSearchTerms));
+        appointmentDescriptionTableColumn.setCellFactory(HighlightingCell.forTableColumn(() -> appointmentsSearchTerms));
+        appointmentLocationTableColumn.setCellFactory(HighlightingCell.forTableColumn(() -> appointmentsSearchTerms));
+        appointmentTypeTableColumn.setCellFactory(HighlightingCell.forTableColumn(() -> appointmentsSearchTerms));
+        appointmentStartsAtTableColumn.setCellValueFactory(CellValues.of(Appointment::getFormattedStartsAt));
+        appointmentEndsAtTableColumn.setCellValueFactory(CellValues.of(Appointment::getFormattedEndsAt));
+        customerIdColumn.setCellValueFactory(CellValues.of(Appointment::getCustomerId));
+        userIdColumn.setCellValueFactory(CellValues.of(Appointment::getUserId));
 
         countByMonthAndTypeMonthTableColumn.setCellValueFactory(data -> data.getValue().get(0)); // Lambda 1
         countByMonthAndTypeTypeTableColumn.setCellValueFactory(data -> data.getValue().get(1)); // Lambda 2
@@ -168,77 +283,219 @@ public class MainController implements Initializable {
         countByWeekdayAndTypeTypeTableColumn.setCellValueFactory(data -> data.getValue().get(1)); // Lambda 5
         countByWeekdayAndTypeCountTableColumn.setCellValueFactory(data -> data.getValue().get(2)); // Lambda 6
 
-        contactAppointmentIdTableColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
-        contactAppointmentTitleTableColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
-        contactAppointmentDescriptionTableColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
-        contactAppointmentLocationTableColumn.setCellValueFactory(new PropertyValueFactory<>("location"));
-        contactAppointmentTypeTableColumn.setCellValueFactory(new PropertyValueFactory<>("type"));
-        contactAppointmentStartsAtTableColumn.setCellValueFactory(new PropertyValueFactory<>("formattedStartsAt"));
-        contactAppointmentEndsAtTableColumn.setCellValueFactory(new PropertyValueFactory<>("formattedEndsAt"));
-        contactCustomerIdColumn.setCellValueFactory(new PropertyValueFactory<>("customerId"));
-        contactUserIdColumn.setCellValueFactory(new PropertyValueFactory<>("userId"));
+        contactAppointmentIdTableColumn.setCellValueFactory(CellValues.of(Appointment::getId));
+        contactAppointmentTitleTableColumn.setCellValueFactory(CellValues.of(Appointment::getTitle));
+        contactAppointmentDescriptionTableColumn.setCellValueFactory(CellValues.of(Appointment::getDescription));
+        contactAppointmentLocationTableColumn.setCellValueFactory(CellValues.of(Appointment::getLocation));
+        contactAppointmentTypeTableColumn.setCellValueFactory(CellValues.of(Appointment::getType));
+        contactAppointmentStartsAtTableColumn.setCellValueFactory(CellValues.of(Appointment::getFormattedStartsAt));
+        contactAppointmentEndsAtTableColumn.setCellValueFactory(CellValues.of(Appointment::getFormattedEndsAt));
+        contactCustomerIdColumn.setCellValueFactory(CellValues.of(Appointment::getCustomerId));
+        contactUserIdColumn.setCellValueFactory(CellValues.of(Appointment::getUserId));
+
+        reportsFromDatePicker.setValue(LocalDate.ofInstant(DBAppointment.getDefaultReportWindowStart(), LocaleHelper.getZoneId()));
+        reportsToDatePicker.setValue(LocalDate.ofInstant(DBAppointment.getDefaultReportWindowEnd(), LocaleHelper.getZoneId()).minusDays(1));
 
         populateCustomersTableView();
-        populateAppointmentsTableView();
-        populateReports();
+        appointmentsView.refreshNow();
+        reportsView.refreshNow();
     }
 
     /**
      * Populates the table view for the Customer model with all customers.
-     * Pulls from DB.
+     * Pulls from DB, and resolves the divisions up front so that rendering the rows does not.
+     * @see Customer#resolveDivisions(java.util.Collection)
      */
     private void populateCustomersTableView() {
-        customersTableView.setItems(DBCustomer.getAllCustomers());
+        ObservableList<Customer> customers = DBCustomer.getAllCustomers();
+        Customer.resolveDivisions(customers);
+        customersTableView.setItems(customers);
     }
 
     /**
-     * Populates the table view for the Appointment model with all appointments.
-     * Pulls from DB.
+     * Prepares the query that populates the table view for the Appointment model with all appointments in the selected
+     * timeframe, or with a page of the appointments that match the search field, if it has any terms.
+     * Pulls from the timeframe cache, which prefetches the next wider timeframe so that toggling to it is instant,
+     * and resolves the contacts up front so that rendering the rows does not.
+     * @return the query, or null if no timeframe is selected.
+     * @see AppointmentWindowCache
+     * @see Appointment#resolveContacts(java.util.Collection)
+     * @see RefreshScheduler
      */
-    private void populateAppointmentsTableView() {
+    private RefreshScheduler.Query prepareAppointmentsTableView() {
+        String searchQuery = appointmentsSearchTextField.getText();
+        List<String> searchTerms = AppointmentSearch.getTerms(searchQuery);
+        if (!searchTerms.isEmpty()) {
+            return prepareAppointmentsSearch(searchQuery, searchTerms);
+        }
+
+        AppointmentWindowCache.Window window;
         if (appointmentsMonthlyRadioButton.isSelected()) {
-            appointmentsTableView.setItems(DBAppointment.getAllAppointmentsStartingWithinNextMonth());
+            window = AppointmentWindowCache.Window.MONTH;
         } else if (appointmentsWeeklyRadioButton.isSelected()) {
-            appointmentsTableView.setItems(DBAppointment.getAllAppointmentsStartingWithinNextWeek());
+            window = AppointmentWindowCache.Window.WEEK;
         } else if (appointmentsAllRadioButton.isSelected()) {
-            appointmentsTableView.setItems(DBAppointment.getAllAppointments());
+            window = AppointmentWindowCache.Window.ALL;
+        } else {
+            return null;
         }
+        return () -> {
+            ObservableList<Appointment> appointments = AppointmentWindowCache.getAppointments(window);
+            Appointment.resolveContacts(appointments);
+            AppointmentWindowCache.prefetch(window.getWider());
+            return () -> {
+                appointmentsSearchTerms = searchTerms;
+                appointmentsSearchPreviousButton.setDisable(true);
+                appointmentsSearchNextButton.setDisable(true);
+                appointmentsSearchResultsLabel.setText("");
+                appointmentsTableView.setItems(appointments);
+            };
+        };
     }
 
     /**
-     * Populates data output for each of the 3 individual reports.
+     * Prepares the query that populates the table view for the Appointment model with the shown page of the
+     * appointments that start within the selected timeframe and match the search field, and shows where the page is
+     * among the results. If the shown page is past the last one, e.g. after deletions, the last one is shown instead.
+     * @param searchQuery the text of the search field.
+     * @param searchTerms the terms of the search field, of which there is at least one.
+     * @return the query.
+     * @see AppointmentSearch#search(String, Instant, Instant, int, int)
      */
-    private void populateReports() {
-        populateMonthAndTypeReport();
-        populateWeekdayAndTypeReport();
-        populateContactsSchedulesReport();
+    private RefreshScheduler.Query prepareAppointmentsSearch(String searchQuery, List<String> searchTerms) {
+        Instant now = Instant.now();
+        Instant from = now;
+        Instant to;
+        if (appointmentsMonthlyRadioButton.isSelected()) {
+            to = now.atOffset(ZoneOffset.UTC).plusMonths(1).toInstant();
+        } else if (appointmentsWeeklyRadioButton.isSelected()) {
+            to = now.atOffset(ZoneOffset.UTC).plusWeeks(1).toInstant();
+        } else {
+            from = Instant.EPOCH;
+            to = appointmentsSearchEndOfTime;
+        }
+        Instant searchFrom = from;
+        int pageIndex = appointmentsSearchPageIndex;
+        return () -> {
+            AppointmentSearch.Page page = AppointmentSearch.search(searchQuery, searchFrom, to, pageIndex, appointmentsSearchPageSize);
+            if (page.getPageIndex() >= page.getPageCount()) {
+                page = AppointmentSearch.search(searchQuery, searchFrom, to, page.getPageCount() - 1, appointmentsSearchPageSize);
+            }
+            Appointment.resolveContacts(page.getAppointments());
+            AppointmentSearch.Page shownPage = page;
+            return () -> {
+                appointmentsSearchTerms = searchTerms;
+                appointmentsSearchPageIndex = shownPage.getPageIndex();
+                appointmentsTableView.setItems(FXCollections.observableArrayList(shownPage.getAppointments()));
+                appointmentsSearchPreviousButton.setDisable(shownPage.getPageIndex() == 0);
+                appointmentsSearchNextButton.setDisable(shownPage.getPageIndex() + 1 >= shownPage.getPageCount());
+                appointmentsSearchResultsLabel.setText(String.format("%d found, page %d of %d",
+                        shownPage.getTotalCount(), shownPage.getPageIndex() + 1, shownPage.getPageCount()));
+            };
+        };
+    }
+
+    /**
+     * Prepares the query that reloads the calendar. The calendar loads its appointments in the background by itself,
+     * so the query pulls nothing and only hands the reload back to the JavaFX application thread.
+     * @return the query.
+     * @see CalendarCanvas#reload()
+     */
+    private RefreshScheduler.Query prepareCalendar() {
+        return () -> calendarCanvas::reload;
+    }
+
+    /**
+     * Prepares the query that populates data output for each of the 3 individual reports within the selected time range.
+     * The schedule of the selected contact is only shown if that contact is still selected once it has been pulled.
+     * @return the query.
+     * @see RefreshScheduler
+     * @see #populateContactsSchedulesReport()
+     */
+    private RefreshScheduler.Query prepareReports() {
+        Instant from = getReportsFrom();
+        Instant to = getReportsTo();
+        String contactName = contactNameChoiceBox.getValue();
+        Integer contactId = contactName == null ? null : contactsNameToIdMap.get(contactName);
+        return () -> {
+            ObservableList<List<StringProperty>> countByMonthAndType = DBAppointment.getAppointmentsCountByMonthAndType(from, to);
+            ObservableList<List<StringProperty>> countByWeekdayAndType = DBAppointment.getAppointmentsCountByWeekdayAndType(from, to);
+            ObservableList<Appointment> contactAppointments = contactId == null ? null : ContactScheduleCache.getSchedule(contactId, from, to);
+            return () -> {
+                countByMonthAndTypeTableView.setItems(countByMonthAndType);
+                countByWeekdayAndTypeTableView.setItems(countByWeekdayAndType);
+                if (contactAppointments != null && contactName.equals(contactNameChoiceBox.getValue())) {
+                    contactAppointmentsTableView.setItems(contactAppointments);
+                    ContactScheduleCache.prefetch(getAdjacentContactIds(contactName), from, to);
+                }
+            };
+        };
     }
 
     /**
-     * Populates the report for month and type count.
+     * Gets the starting time of the time range selected for the reports, falling back to the default report window.
+     * @return the starting time (inclusive) of the report time range.
+     * @see DBAppointment#getDefaultReportWindowStart()
      */
-    private void populateMonthAndTypeReport() {
-        countByMonthAndTypeTableView.setItems(DBAppointment.getAppointmentsCountByMonthAndType());
+    private Instant getReportsFrom() {
+        LocalDate fromDate = reportsFromDatePicker.getValue();
+        if (fromDate == null) {
+            return DBAppointment.getDefaultReportWindowStart();
+        }
+        return fromDate.atStartOfDay(LocaleHelper.getZoneId()).toInstant();
     }
 
     /**
-     * Populates the report for weekday and type count.
+     * Gets the ending time of the time range selected for the reports, falling back to the default report window.
+     * The selected "To" date is inclusive, so the time range ends at the start of the following day.
+     * @return the ending time (exclusive) of the report time range.
+     * @see DBAppointment#getDefaultReportWindowEnd()
      */
-    private void populateWeekdayAndTypeReport() {
-        countByWeekdayAndTypeTableView.setItems(DBAppointment.getAppointmentsCountByWeekdayAndType());
+    private Instant getReportsTo() {
+        LocalDate toDate = reportsToDatePicker.getValue();
+        if (toDate == null) {
+            return DBAppointment.getDefaultReportWindowEnd();
+        }
+        return toDate.plusDays(1).atStartOfDay(LocaleHelper.getZoneId()).toInstant();
     }
 
     /**
-     * Populates the report for each contact's schedule.
+     * Populates the report for each contact's schedule within the selected time range.
      * If a contact has yet to be selected, then it populates nothing.
+     * The schedules of the contacts just before and after the selected one in the contactNameChoiceBox are prefetched,
+     * so that moving to them is instant.
+     * @see ContactScheduleCache
      */
     private void populateContactsSchedulesReport() {
         if (contactNameChoiceBox.getValue() != null) {
             Integer contactId = contactsNameToIdMap.get(contactNameChoiceBox.getValue());
             if (contactId != null) {
-                contactAppointmentsTableView.setItems(DBAppointment.getAllAppointmentsForContactId(contactId));
+                Instant from = getReportsFrom();
+                Instant to = getReportsTo();
+                contactAppointmentsTableView.setItems(ContactScheduleCache.getSchedule(contactId, from, to));
+                ContactScheduleCache.prefetch(getAdjacentContactIds(contactNameChoiceBox.getValue()), from, to);
+            }
+        }
+    }
+
+    /**
+     * Gets the ids of the contacts just before and after the given contact in the contactNameChoiceBox.
+     * @param contactName the name of the contact.
+     * @return the ids of the adjacent contacts (0, 1, or 2 of them).
+     */
+    private List<Integer> getAdjacentContactIds(String contactName) {
+        List<String> contactNames = contactNameChoiceBox.getItems();
+        int index = contactNames.indexOf(contactName);
+        List<Integer> adjacentContactIds = new ArrayList<>(2);
+        for (int adjacentIndex : new int[] { index - 1, index + 1 }) {
+            if (index >= 0 && adjacentIndex >= 0 && adjacentIndex < contactNames.size()) {
+                Integer adjacentContactId = contactsNameToIdMap.get(contactNames.get(adjacentIndex));
+                if (adjacentContactId != null) {
+                    adjacentContactIds.add(adjacentContactId);
+                }
             }
         }
+        return adjacentContactIds;
     }
 
     /**
@@ -258,49 +515,91 @@ public class MainController implements Initializable {
     }
 
     /**
-     * When a user clicks the "Add" or "Modify" buttons in the customers tab, it opens a new modal window.
-     * @return The controller for the newly-created Stage/Scene combo.
+     * When a user clicks the "Add" or "Modify" buttons in the customers tab, it opens the modal window.
+     * The view is loaded the first time only, and the same Stage/Scene combo is reset and shown again afterwards.
+     * @return The controller for the Stage/Scene combo.
      * @throws IOException If the view file cannot be found.
+     * @see CustomerFormController#reset()
      */
     private CustomerFormController openCustomerModal() throws IOException {
-        Stage stage = new Stage();
-        FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/" + CustomerFormController.viewFilename));
-        Parent root = loader.load();
-        CustomerFormController controller = loader.getController();
-
-        Scene scene = new Scene(root);
-        stage.setTitle(CustomerFormController.desiredStageTitle);
-        stage.setScene(scene);
-        stage.initModality(Modality.APPLICATION_MODAL);
-        stage.show();
-
-        controller.currentStage = stage;
-        controller.parentController = this;
+        if (customerFormController == null) {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/" + CustomerFormController.viewFilename));
+            Parent root = loader.load();
+            customerFormController = loader.getController();
+
+            Stage stage = new Stage();
+            stage.setTitle(CustomerFormController.desiredStageTitle);
+            stage.setScene(new Scene(root));
+            stage.initModality(Modality.APPLICATION_MODAL);
+
+            customerFormController.currentStage = stage;
+            customerFormController.parentController = this;
+        }
 
-        return controller;
+        customerFormController.reset();
+        customerFormController.currentStage.show();
+        return customerFormController;
     }
 
     /**
-     * When a user clicks the "Add" or "Modify" buttons in the appointments tab, it opens a new modal window.
-     * @return The controller for the newly-created Stage/Scene combo.
+     * When a user clicks the "Add" or "Modify" buttons in the appointments tab, it opens the modal window.
+     * The view is loaded the first time only, and the same Stage/Scene combo is reset and shown again afterwards.
+     * @return The controller for the Stage/Scene combo.
      * @throws IOException If the view file cannot be found.
+     * @see AppointmentFormController#reset()
      */
     private AppointmentFormController openAppointmentModal() throws IOException {
-        Stage stage = new Stage();
-        FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/" + AppointmentFormController.viewFilename));
-        Parent root = loader.load();
-        AppointmentFormController controller = loader.getController();
+        if (appointmentFormController == null) {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/" + AppointmentFormController.viewFilename));
+            Parent root = loader.load();
+            appointmentFormController = loader.getController();
+
+            Stage stage = new Stage();
+            stage.setTitle(AppointmentFormController.desiredStageTitle);
+            stage.setScene(new Scene(root));
+            stage.initModality(Modality.APPLICATION_MODAL);
+
+            appointmentFormController.currentStage = stage;
+            appointmentFormController.parentController = this;
+        }
 
-        Scene scene = new Scene(root);
-        stage.setTitle(AppointmentFormController.desiredStageTitle);
-        stage.setScene(scene);
-        stage.initModality(Modality.APPLICATION_MODAL);
-        stage.show();
+        appointmentFormController.reset();
+        appointmentFormController.currentStage.show();
+        return appointmentFormController;
+    }
 
-        controller.currentStage = stage;
-        controller.parentController = this;
+    /**
+     * Asks the user where to save a CSV file.
+     * @param initialFileName the suggested file name.
+     * @return the chosen path, or empty if the user cancelled.
+     */
+    private Optional<Path> chooseCsvFile(String initialFileName) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Export CSV");
+        fileChooser.setInitialFileName(initialFileName);
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        File file = fileChooser.showSaveDialog(currentStage);
+        return file == null ? Optional.empty() : Optional.of(file.toPath());
+    }
 
-        return controller;
+    /**
+     * Runs an export on a background thread, so that large exports do not freeze the UI,
+     * then shows an info alert if it succeeded or an error alert if it failed.
+     * @param description what is exported, e.g. "The customers".
+     * @param export the export.
+     */
+    private void runExport(String description, Export export) {
+        Thread thread = new Thread(() -> {
+            try {
+                export.run();
+                Platform.runLater(() -> showInfoAlert("Export Complete", description + " were exported."));
+            } catch (IOException e) {
+                e.printStackTrace();
+                Platform.runLater(() -> showErrorAlert("Export Failed", description + " could not be exported: " + e.getMessage()));
+            }
+        }, "csv-export");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     /**
@@ -371,6 +670,17 @@ public class MainController implements Initializable {
         showInfoAlert("Upcoming Appointments", upcomingAppointmentsText);
     }
 
+    /**
+     * Called by the ReminderService when an appointment of the logged-in user starts soon, and shows it in an info alert.
+     * May be called from any thread.
+     * @param appointment the appointment that starts soon.
+     * @see ReminderService#reminderLead
+     */
+    public void showAppointmentReminder(Appointment appointment) {
+        Platform.runLater(() -> showInfoAlert("Upcoming Appointment",
+                String.format("You have an upcoming appointment:%n%s.", appointment.toPrettyString())));
+    }
+
     /**
      * Called by the CustomerController when a customer has been created. Adds the customer to the customersTableView.
      * @param newCustomer the customer that was just created.
@@ -390,24 +700,28 @@ public class MainController implements Initializable {
      */
     public void updateCustomer(Customer customer) {
         customersTableView.getItems().replaceAll(cust -> cust.getId() == customer.getId() ? customer : cust); // TODO: document this lambda
-        populateReports();
+        reportsView.markDirty();
     }
 
     /**
-     * Called by the AppointmentController when an appointment has been created. Refreshes the appointmentsTableView and all reports.
+     * Called by the AppointmentController when an appointment has been created. Marks the appointmentsTableView, the calendar, and all reports
+     * for a refresh, so that several changes in a row are only reloaded once.
      */
     public void addAppointment() {
-        populateAppointmentsTableView();
-        populateReports();
+        appointmentsView.markDirty();
+        calendarView.markDirty();
+        reportsView.markDirty();
     }
 
 
     /**
-     * Called by the AppointmentController when an appointment has been updated. Refreshes the appointmentsTableView and all reports.
+     * Called by the AppointmentController when an appointment has been updated. Marks the appointmentsTableView, the calendar, and all reports
+     * for a refresh, so that several changes in a row are only reloaded once.
      */
     public void updateAppointment() {
-        populateAppointmentsTableView();
-        populateReports();
+        appointmentsView.markDirty();
+        calendarView.markDirty();
+        reportsView.markDirty();
     }
 
     /**
@@ -453,8 +767,9 @@ public class MainController implements Initializable {
             if (shouldDeleteCustomer) {
                 if (DBCustomer.deleteCustomerFromId(customer.getId())) {
                     customersTableView.getItems().remove(customer);
-                    populateAppointmentsTableView();
-                    populateReports();
+                    appointmentsView.markDirty();
+                    calendarView.markDirty();
+                    reportsView.markDirty();
                 } else {
                     showErrorAlert("Delete Failed!", "The customer could not be deleted!");
                 }
@@ -499,7 +814,8 @@ public class MainController implements Initializable {
             if (shouldDeleteAppointment) {
                 if (DBAppointment.deleteAppointmentFromId(appointment.getId())) {
                     appointmentsTableView.getItems().remove(appointment);
-                    populateReports();
+                    calendarView.markDirty();
+                    reportsView.markDirty();
                 } else {
                     showErrorAlert("Delete Failed!", "The appointment could not be deleted!");
                 }
@@ -511,7 +827,60 @@ public class MainController implements Initializable {
      * Invoked when one of the "Monthly"/"Weekly"/"All" buttons are clicked in the appointments tab, and repopulates the appointmentsTableView.
      */
     public void onAppointmentsTimeframeToggle() {
-        populateAppointmentsTableView();
+        appointmentsSearchPageIndex = 0;
+        appointmentsView.refreshNow();
+    }
+
+    /**
+     * Invoked when the "&lt;" button is clicked next to the search field in the appointments tab, and shows the
+     * previous page of search results.
+     */
+    public void onAppointmentsSearchPrevious() {
+        appointmentsSearchPageIndex = Math.max(0, appointmentsSearchPageIndex - 1);
+        appointmentsView.refreshNow();
+    }
+
+    /**
+     * Invoked when the "&gt;" button is clicked next to the search field in the appointments tab, and shows the
+     * next page of search results.
+     */
+    public void onAppointmentsSearchNext() {
+        ++appointmentsSearchPageIndex;
+        appointmentsView.refreshNow();
+    }
+
+    /**
+     * Invoked when one of the "Day"/"Week"/"Month" buttons are clicked in the calendar tab, and changes the range of the calendar.
+     */
+    public void onCalendarModeToggle() {
+        if (calendarDayRadioButton.isSelected()) {
+            calendarCanvas.setMode(CalendarCanvas.Mode.DAY);
+        } else if (calendarMonthRadioButton.isSelected()) {
+            calendarCanvas.setMode(CalendarCanvas.Mode.MONTH);
+        } else {
+            calendarCanvas.setMode(CalendarCanvas.Mode.WEEK);
+        }
+    }
+
+    /**
+     * Invoked when the "&lt;" button is clicked in the calendar tab, and shows the previous day, week, or month.
+     */
+    public void onCalendarPrevious() {
+        calendarCanvas.showPrevious();
+    }
+
+    /**
+     * Invoked when the "Today" button is clicked in the calendar tab, and shows the current day, week, or month.
+     */
+    public void onCalendarToday() {
+        calendarCanvas.showToday();
+    }
+
+    /**
+     * Invoked when the "&gt;" button is clicked in the calendar tab, and shows the next day, week, or month.
+     */
+    public void onCalendarNext() {
+        calendarCanvas.showNext();
     }
 
     /**
@@ -520,4 +889,66 @@ public class MainController implements Initializable {
     public void onContactNameSelected() {
         populateContactsSchedulesReport();
     }
+
+    /**
+     * Invoked when either of the "From"/"To" date pickers are changed in the reports tab, and repopulates all reports.
+     */
+    public void onReportsTimeRangeSelected() {
+        reportsView.refreshNow();
+    }
+
+    /**
+     * Invoked when the "Export CSV" button is clicked in the customers tab, and exports all customers to a CSV file.
+     */
+    public void onCustomersExport() {
+        chooseCsvFile("customers.csv").ifPresent(path -> runExport("The customers", () -> CsvExporter.exportCustomers(path)));
+    }
+
+    /**
+     * Invoked when the "Export CSV" button is clicked in the appointments tab, and exports the appointments within the
+     * selected timeframe to a CSV file.
+     */
+    public void onAppointmentsExport() {
+        Optional<Path> path = chooseCsvFile("appointments.csv");
+        if (path.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        if (appointmentsMonthlyRadioButton.isSelected()) {
+            Instant in1Month = now.atOffset(ZoneOffset.UTC).plusMonths(1).toInstant();
+            runExport("The appointments", () -> CsvExporter.exportAppointments(path.get(), now, in1Month));
+        } else if (appointmentsWeeklyRadioButton.isSelected()) {
+            Instant in1Week = now.atOffset(ZoneOffset.UTC).plusWeeks(1).toInstant();
+            runExport("The appointments", () -> CsvExporter.exportAppointments(path.get(), now, in1Week));
+        } else {
+            runExport("The appointments", () -> CsvExporter.exportAllAppointments(path.get()));
+        }
+    }
+
+    /**
+     * Invoked when the "Export CSV" button is clicked in the reports tab, and exports the reports within the selected
+     * time range to CSV files in a chosen directory: the count by month and type, the count by weekday and type, and
+     * the schedule of the selected contact, if any.
+     */
+    public void onReportsExport() {
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Export Reports");
+        File directory = directoryChooser.showDialog(currentStage);
+        if (directory == null) {
+            return;
+        }
+        Path directoryPath = directory.toPath();
+        Instant from = getReportsFrom();
+        Instant to = getReportsTo();
+        List<List<StringProperty>> countByMonthAndType = new ArrayList<>(countByMonthAndTypeTableView.getItems());
+        List<List<StringProperty>> countByWeekdayAndType = new ArrayList<>(countByWeekdayAndTypeTableView.getItems());
+        Integer contactId = contactNameChoiceBox.getValue() == null ? null : contactsNameToIdMap.get(contactNameChoiceBox.getValue());
+        runExport("The reports", () -> {
+            CsvExporter.exportReport(directoryPath.resolve("count-by-month-and-type.csv"), new String[] { "Month", "Type", "Count" }, countByMonthAndType);
+            CsvExporter.exportReport(directoryPath.resolve("count-by-weekday-and-type.csv"), new String[] { "Weekday", "Type", "Count" }, countByWeekdayAndType);
+            if (contactId != null) {
+                CsvExporter.exportContactSchedule(directoryPath.resolve("contact-" + contactId + "-schedule.csv"), contactId, from, to);
+            }
+        });
+    }
 }
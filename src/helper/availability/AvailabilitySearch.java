@@ -0,0 +1,255 @@
+package helper.availability;
+
+import helper.scheduling.TimeSlot;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It answers questions like "any contact free for 60 minutes tomorrow afternoon" by computing the free slots of every
+ * contact in parallel on a fork/join pool, from a snapshot of the in-memory availability bitmaps rather than the database,
+ * and merging them into a single ranked list: earliest start first, then lowest contact id.
+ * <br>
+ * The time range is searched one day at a time, in order, and the search stops after the first day that brings the
+ * number of candidates to the requested count, since no later day can rank before them.
+ * @see ContactAvailability
+ */
+public abstract class AvailabilitySearch {
+    /**
+     * The number of contacts below which a task computes the free slots itself rather than splitting further.
+     */
+    private static final int contactsPerTask = 8;
+    /**
+     * The length of each part of the time range that is searched before checking whether enough candidates were found.
+     */
+    private static final Duration searchStep = Duration.ofDays(1);
+    /**
+     * The order of the candidates: earliest start first, then lowest contact id.
+     */
+    private static final Comparator<Candidate> ranking = Comparator
+            .comparing((Candidate candidate) -> candidate.getTimeSlot().getStartsAt())
+            .thenComparingInt(Candidate::getContactId);
+
+    /**
+     * The pool the per-contact computations run on.
+     */
+    private static final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * A free slot of a single contact.
+     */
+    public static class Candidate {
+        /**
+         * The contact id.
+         */
+        private final int contactId;
+        /**
+         * The free slot.
+         */
+        private final TimeSlot timeSlot;
+
+        /**
+         * The constructor.
+         * @param contactId the contact id.
+         * @param timeSlot the free slot.
+         */
+        public Candidate(int contactId, TimeSlot timeSlot) {
+            this.contactId = contactId;
+            this.timeSlot = timeSlot;
+        }
+
+        /**
+         * Gets the contact id.
+         * @return the contact id.
+         */
+        public int getContactId() {
+            return contactId;
+        }
+
+        /**
+         * Gets the free slot.
+         * @return the free slot.
+         */
+        public TimeSlot getTimeSlot() {
+            return timeSlot;
+        }
+
+        /**
+         * Gets a string representation of the candidate.
+         * @return the string representation.
+         */
+        @Override
+        public String toString() {
+            return String.format("<Candidate : contactId=[%d] timeSlot=%s>", contactId, timeSlot);
+        }
+    }
+
+    /**
+     * Finds the contacts that are free for a given duration within a time range and within office hours.
+     * @param duration the duration of the slot.
+     * @param from the earliest starting time of a slot (inclusive).
+     * @param to the latest ending time of a slot (inclusive).
+     * @param limit the maximum number of candidates.
+     * @param slotsPerContact the maximum number of candidates of a single contact, e.g. 1 for only the next free slot of each contact.
+     * @return the ranked candidates, at most limit of them.
+     */
+    public static List<Candidate> findFreeContacts(Duration duration, Instant from, Instant to, int limit, int slotsPerContact) {
+        List<Candidate> candidates = new ArrayList<>();
+        if (limit <= 0 || slotsPerContact <= 0 || !from.isBefore(to)) {
+            return candidates;
+        }
+        ContactAvailability.Snapshot snapshot = ContactAvailability.takeSnapshot(from, to);
+        List<Integer> contactIds = snapshot.getContactIds();
+        Map<Integer, Integer> indexByContactId = new HashMap<>();
+        for (int index = 0; index < contactIds.size(); ++index) {
+            indexByContactId.put(contactIds.get(index), index);
+        }
+        int[] remainingSlotsByContact = new int[contactIds.size()];
+        Arrays.fill(remainingSlotsByContact, slotsPerContact);
+
+        for (Instant stepFrom = from; stepFrom.isBefore(to) && candidates.size() < limit; stepFrom = stepFrom.plus(searchStep)) {
+            // a slot may start near the end of a step and end in the next one
+            Instant stepStartsBefore = stepFrom.plus(searchStep);
+            Instant stepTo = stepStartsBefore.plus(duration).isBefore(to) ? stepStartsBefore.plus(duration) : to;
+            List<Candidate> stepCandidates = pool.invoke(new SearchTask(snapshot, contactIds, remainingSlotsByContact,
+                    0, contactIds.size(), duration, stepFrom, stepStartsBefore, stepTo, limit));
+            stepCandidates.sort(ranking);
+            for (Candidate candidate : stepCandidates) {
+                if (candidates.size() == limit) {
+                    break;
+                }
+                candidates.add(candidate);
+                --remainingSlotsByContact[indexByContactId.get(candidate.getContactId())];
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Finds the next free slot of every contact that has one, ranked, e.g. to offer a dispatcher the earliest options.
+     * @param duration the duration of the slot.
+     * @param from the earliest starting time of a slot (inclusive).
+     * @param to the latest ending time of a slot (inclusive).
+     * @param limit the maximum number of contacts.
+     * @return the ranked candidates, at most one per contact and limit of them.
+     * @see #findFreeContacts(Duration, Instant, Instant, int, int)
+     */
+    public static List<Candidate> findFreeContacts(Duration duration, Instant from, Instant to, int limit) {
+        return findFreeContacts(duration, from, to, limit, 1);
+    }
+
+    /**
+     * The task that computes the free slots of a range of contacts within one step of the search, splitting the range
+     * in two until it is small enough.
+     */
+    private static class SearchTask extends RecursiveTask<List<Candidate>> {
+        /**
+         * The snapshot of the bitmaps.
+         */
+        private final ContactAvailability.Snapshot snapshot;
+        /**
+         * The ids of all contacts.
+         */
+        private final List<Integer> contactIds;
+        /**
+         * The number of candidates each contact can still have, by index in contactIds. Only read by the task.
+         */
+        private final int[] remainingSlotsByContact;
+        /**
+         * The first index in contactIds (inclusive).
+         */
+        private final int fromIndex;
+        /**
+         * The last index in contactIds (exclusive).
+         */
+        private final int toIndex;
+        /**
+         * The duration of the slot.
+         */
+        private final Duration duration;
+        /**
+         * The earliest starting time of a slot (inclusive).
+         */
+        private final Instant from;
+        /**
+         * The time that a slot must start before.
+         */
+        private final Instant startsBefore;
+        /**
+         * The latest ending time of a slot (inclusive).
+         */
+        private final Instant to;
+        /**
+         * The maximum number of candidates of the whole search, which also bounds the candidates of a single contact.
+         */
+        private final int limit;
+
+        /**
+         * The constructor.
+         * @param snapshot the snapshot of the bitmaps.
+         * @param contactIds the ids of all contacts.
+         * @param remainingSlotsByContact the number of candidates each contact can still have, by index in contactIds.
+         * @param fromIndex the first index in contactIds (inclusive).
+         * @param toIndex the last index in contactIds (exclusive).
+         * @param duration the duration of the slot.
+         * @param from the earliest starting time of a slot (inclusive).
+         * @param startsBefore the time that a slot must start before.
+         * @param to the latest ending time of a slot (inclusive).
+         * @param limit the maximum number of candidates of the whole search.
+         */
+        private SearchTask(ContactAvailability.Snapshot snapshot, List<Integer> contactIds, int[] remainingSlotsByContact,
+                           int fromIndex, int toIndex, Duration duration, Instant from, Instant startsBefore, Instant to, int limit) {
+            this.snapshot = snapshot;
+            this.contactIds = contactIds;
+            this.remainingSlotsByContact = remainingSlotsByContact;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.duration = duration;
+            this.from = from;
+            this.startsBefore = startsBefore;
+            this.to = to;
+            this.limit = limit;
+        }
+
+        /**
+         * Computes the free slots of the contacts, or splits the contacts in two and merges the results.
+         * @return the candidates, unordered.
+         */
+        @Override
+        protected List<Candidate> compute() {
+            if (toIndex - fromIndex > contactsPerTask) {
+                int middleIndex = (fromIndex + toIndex) >>> 1;
+                SearchTask left = new SearchTask(snapshot, contactIds, remainingSlotsByContact, fromIndex, middleIndex, duration, from, startsBefore, to, limit);
+                SearchTask right = new SearchTask(snapshot, contactIds, remainingSlotsByContact, middleIndex, toIndex, duration, from, startsBefore, to, limit);
+                left.fork();
+                List<Candidate> candidates = right.compute();
+                candidates.addAll(left.join());
+                return candidates;
+            }
+
+            List<Candidate> candidates = new ArrayList<>();
+            for (int index = fromIndex; index < toIndex; ++index) {
+                int maxSlots = Math.min(remainingSlotsByContact[index], limit);
+                if (maxSlots <= 0) {
+                    continue;
+                }
+                int contactId = contactIds.get(index);
+                for (TimeSlot timeSlot : snapshot.findFreeSlots(contactId, duration, from, to, maxSlots)) {
+                    if (timeSlot.getStartsAt().isBefore(startsBefore)) {
+                        candidates.add(new Candidate(contactId, timeSlot));
+                    }
+                }
+            }
+            return candidates;
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package helper.availability;
+
+import helper.dbaccess.dao.DBAppointment;
+import helper.dbaccess.dao.DBContact;
+import helper.officehours.OfficeHours;
+import helper.scheduling.TimeSlot;
+import model.Appointment;
+import model.Contact;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It keeps every contact's calendar as per-day bitmaps of fixed-size slots (15 minutes by default), where a set bit
+ * means the contact has an appointment during at least part of that slot, so that availability questions are answered
+ * with bit operations instead of database queries:
+ * <ul>
+ * <li>whether a contact is free during a time range;</li>
+ * <li>which contacts are free during a time range; and</li>
+ * <li>the next free slots shared by several contacts, found by OR-ing their bitmaps day by day and scanning for runs of free slots.</li>
+ * </ul>
+ * Days are UTC days. The bitmaps are loaded for a range of days around the requested times, widened on demand,
+ * and kept up to date when appointments are created, updated, or deleted.
+ * @see DBAppointment.ChangeListener
+ */
+public abstract class ContactAvailability {
+    /**
+     * The default size of a slot, in minutes.
+     */
+    public static final int defaultSlotMinutes = 15;
+    /**
+     * The number of extra days loaded before and after the requested days, so that nearby questions need no loading.
+     */
+    private static final long loadPaddingDays = 31;
+    /**
+     * The number of seconds in a day.
+     */
+    private static final long secondsPerDay = 24 * 60 * 60;
+
+    /**
+     * The size of a slot, in minutes.
+     */
+    private static int slotMinutes = defaultSlotMinutes;
+    /**
+     * The busy slots bitmap of every day with at least one appointment, by epoch day, by contact id.
+     */
+    private static final Map<Integer, Map<Long, long[]>> busySlotsByContactId = new HashMap<>();
+    /**
+     * The ids of all contacts, or null if not loaded yet.
+     */
+    private static List<Integer> allContactIds = null;
+    /**
+     * Whether any days are loaded.
+     */
+    private static boolean isLoaded = false;
+    /**
+     * The first loaded epoch day (inclusive).
+     */
+    private static long loadedFromDay;
+    /**
+     * The last loaded epoch day (exclusive).
+     */
+    private static long loadedToDay;
+
+    static {
+        DBAppointment.addChangeListener(ContactAvailability::onAppointmentChanged);
+    }
+
+    /**
+     * Sets the size of a slot and discards the bitmaps.
+     * @param minutes the size of a slot in minutes, which must divide a day evenly.
+     */
+    public synchronized static void setSlotMinutes(int minutes) {
+        if (minutes <= 0 || (24 * 60) % minutes != 0) {
+            throw new IllegalArgumentException("The slot size must divide a day evenly.");
+        }
+        slotMinutes = minutes;
+        invalidateAll();
+    }
+
+    /**
+     * Gets the size of a slot.
+     * @return the size of a slot in minutes.
+     */
+    public synchronized static int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    /**
+     * Discards every bitmap, so that they are loaded again on the next question.
+     */
+    public synchronized static void invalidateAll() {
+        busySlotsByContactId.clear();
+        allContactIds = null;
+        isLoaded = false;
+    }
+
+    /**
+     * Whether a contact has no appointment during any slot that a time range touches.
+     * @param contactId the contact id.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return whether the contact is free.
+     */
+    public synchronized static boolean isFree(int contactId, Instant from, Instant to) {
+        ensureLoaded(from, to);
+        return !isAnySlotBusy(busySlotsByContactId.get(contactId), firstSlotOf(from), endSlotOf(to));
+    }
+
+    /**
+     * Finds every contact that has no appointment during any slot that a time range touches.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the ids of the free contacts.
+     */
+    public synchronized static List<Integer> getFreeContactIds(Instant from, Instant to) {
+        ensureLoaded(from, to);
+        long firstSlot = firstSlotOf(from);
+        long endSlot = endSlotOf(to);
+        List<Integer> freeContactIds = new ArrayList<>();
+        for (int contactId : allContactIds) {
+            if (!isAnySlotBusy(busySlotsByContactId.get(contactId), firstSlot, endSlot)) {
+                freeContactIds.add(contactId);
+            }
+        }
+        return freeContactIds;
+    }
+
+    /**
+     * Finds the next free slots shared by several contacts within office hours, e.g. for a meeting with all of them.
+     * A free slot starts on a slot boundary, covers whole slots that are free for every contact, lies within a single
+     * default office hours window, and does not overlap with the previous free slot.
+     * @param contactIds the contact ids.
+     * @param duration the duration of each slot.
+     * @param from the earliest starting time of a slot (inclusive).
+     * @param to the latest ending time of a slot (inclusive).
+     * @param limit the maximum number of slots.
+     * @return the free slots, in order, at most limit of them.
+     */
+    public synchronized static List<TimeSlot> findCommonFreeSlots(Collection<Integer> contactIds, Duration duration, Instant from, Instant to, int limit) {
+        if (limit <= 0 || !from.isBefore(to)) {
+            return new ArrayList<>();
+        }
+        ensureLoaded(from, to);
+
+        List<Map<Long, long[]>> busySlotsOfContacts = new ArrayList<>(contactIds.size());
+        for (int contactId : contactIds) {
+            Map<Long, long[]> busySlots = busySlotsByContactId.get(contactId);
+            if (busySlots != null) {
+                busySlotsOfContacts.add(busySlots);
+            }
+        }
+        return scanFreeSlots(busySlotsOfContacts, slotMinutes, duration, from, to, limit);
+    }
+
+    /**
+     * Takes a copy of the bitmaps of every contact for the days of a time range, which can then be read by any number
+     * of threads at once without holding the lock of this class.
+     * @param from the starting time of the time range.
+     * @param to the ending time of the time range.
+     * @return the snapshot.
+     */
+    public synchronized static Snapshot takeSnapshot(Instant from, Instant to) {
+        ensureLoaded(from, to);
+        long fromDay = Math.floorDiv(from.getEpochSecond(), secondsPerDay);
+        long toDay = Math.floorDiv(to.getEpochSecond(), secondsPerDay) + 1;
+        Map<Integer, Map<Long, long[]>> busySlotsCopy = new HashMap<>();
+        for (int contactId : allContactIds) {
+            Map<Long, long[]> busySlots = busySlotsByContactId.get(contactId);
+            Map<Long, long[]> busySlotsOfContactCopy = new HashMap<>();
+            if (busySlots != null) {
+                for (long day = fromDay; day < toDay; ++day) {
+                    long[] words = busySlots.get(day);
+                    if (words != null) {
+                        busySlotsOfContactCopy.put(day, words.clone());
+                    }
+                }
+            }
+            busySlotsCopy.put(contactId, busySlotsOfContactCopy);
+        }
+        return new Snapshot(slotMinutes, new ArrayList<>(allContactIds), busySlotsCopy, from, to);
+    }
+
+    /**
+     * A read-only copy of the bitmaps of every contact over a time range.
+     * @see #takeSnapshot(Instant, Instant)
+     */
+    public static class Snapshot {
+        /**
+         * The size of a slot, in minutes.
+         */
+        private final int slotMinutes;
+        /**
+         * The ids of all contacts.
+         */
+        private final List<Integer> contactIds;
+        /**
+         * The busy slots bitmap of every day with at least one appointment, by epoch day, by contact id.
+         */
+        private final Map<Integer, Map<Long, long[]>> busySlotsByContactId;
+        /**
+         * The starting time of the time range that the snapshot covers.
+         */
+        private final Instant from;
+        /**
+         * The ending time of the time range that the snapshot covers.
+         */
+        private final Instant to;
+
+        /**
+         * The constructor.
+         * @param slotMinutes the size of a slot, in minutes.
+         * @param contactIds the ids of all contacts.
+         * @param busySlotsByContactId the copied bitmaps.
+         * @param from the starting time of the time range that the snapshot covers.
+         * @param to the ending time of the time range that the snapshot covers.
+         */
+        private Snapshot(int slotMinutes, List<Integer> contactIds, Map<Integer, Map<Long, long[]>> busySlotsByContactId, Instant from, Instant to) {
+            this.slotMinutes = slotMinutes;
+            this.contactIds = contactIds;
+            this.busySlotsByContactId = busySlotsByContactId;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Gets the ids of all contacts.
+         * @return the contact ids.
+         */
+        public List<Integer> getContactIds() {
+            return contactIds;
+        }
+
+        /**
+         * Finds the next free slots of a contact within office hours, clipped to the time range of the snapshot.
+         * @param contactId the contact id.
+         * @param duration the duration of each slot.
+         * @param from the earliest starting time of a slot (inclusive).
+         * @param to the latest ending time of a slot (inclusive).
+         * @param limit the maximum number of slots.
+         * @return the free slots, in order, at most limit of them.
+         * @see ContactAvailability#findCommonFreeSlots(Collection, Duration, Instant, Instant, int)
+         */
+        public List<TimeSlot> findFreeSlots(int contactId, Duration duration, Instant from, Instant to, int limit) {
+            Instant clippedFrom = from.isBefore(this.from) ? this.from : from;
+            Instant clippedTo = to.isAfter(this.to) ? this.to : to;
+            if (limit <= 0 || !clippedFrom.isBefore(clippedTo)) {
+                return new ArrayList<>();
+            }
+            Map<Long, long[]> busySlots = busySlotsByContactId.get(contactId);
+            return scanFreeSlots(busySlots == null ? List.of() : List.of(busySlots), slotMinutes, duration, clippedFrom, clippedTo, limit);
+        }
+    }
+
+    /**
+     * Scans the combined bitmaps of several contacts for free slots within the default office hours.
+     * @param busySlotsOfContacts the bitmaps of each contact, by epoch day.
+     * @param slotMinutes the size of a slot the bitmaps were built with, in minutes.
+     * @param duration the duration of each slot.
+     * @param from the earliest starting time of a slot (inclusive).
+     * @param to the latest ending time of a slot (inclusive).
+     * @param limit the maximum number of slots.
+     * @return the free slots, in order, at most limit of them.
+     */
+    private static List<TimeSlot> scanFreeSlots(List<Map<Long, long[]>> busySlotsOfContacts, int slotMinutes, Duration duration, Instant from, Instant to, int limit) {
+        List<TimeSlot> freeSlots = new ArrayList<>();
+        long slotSeconds = slotMinutes * 60L;
+        long slotsPerDay = 24 * 60 / slotMinutes;
+        long requiredSlots = Math.max(1, (duration.getSeconds() + slotSeconds - 1) / slotSeconds);
+
+        long combinedDay = Long.MIN_VALUE;
+        long[] combinedBusySlots = new long[(int) ((slotsPerDay + 63) / 64)];
+        for (TimeSlot window : OfficeHours.getWindowsOverlapping(null, from, to)) {
+            long freeRun = 0;
+            long slot = Math.floorDiv(window.getStartsAt().getEpochSecond() + slotSeconds - 1, slotSeconds);
+            for (long endSlot = Math.floorDiv(window.getEndsAt().getEpochSecond(), slotSeconds); slot < endSlot; ++slot) {
+                long day = Math.floorDiv(slot, slotsPerDay);
+                if (day != combinedDay) {
+                    combineDay(busySlotsOfContacts, day, combinedBusySlots);
+                    combinedDay = day;
+                }
+                int bit = (int) Math.floorMod(slot, slotsPerDay);
+                if ((combinedBusySlots[bit >>> 6] & (1L << bit)) != 0) {
+                    freeRun = 0;
+                    continue;
+                }
+                if (++freeRun == requiredSlots) {
+                    Instant startsAt = Instant.ofEpochSecond((slot - requiredSlots + 1) * slotSeconds);
+                    freeSlots.add(new TimeSlot(startsAt, startsAt.plus(duration)));
+                    if (freeSlots.size() == limit) {
+                        return freeSlots;
+                    }
+                    freeRun = 0;
+                }
+            }
+        }
+        return freeSlots;
+    }
+
+    /**
+     * ORs together the busy slots bitmaps of several contacts on a single day.
+     * @param busySlotsOfContacts the bitmaps of each contact, by epoch day.
+     * @param day the epoch day.
+     * @param combinedBusySlots the array the combined bitmap is written to.
+     */
+    private static void combineDay(List<Map<Long, long[]>> busySlotsOfContacts, long day, long[] combinedBusySlots) {
+        Arrays.fill(combinedBusySlots, 0);
+        for (Map<Long, long[]> busySlots : busySlotsOfContacts) {
+            long[] words = busySlots.get(day);
+            if (words != null) {
+                for (int i = 0; i < words.length; ++i) {
+                    combinedBusySlots[i] |= words[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the bitmaps of every contact for the days of a time range, plus some padding, if they are not loaded yet.
+     * @param from the starting time of the time range.
+     * @param to the ending time of the time range.
+     */
+    private static void ensureLoaded(Instant from, Instant to) {
+        if (allContactIds == null) {
+            allContactIds = new ArrayList<>();
+            for (Contact contact : DBContact.getAllContacts()) {
+                allContactIds.add(contact.getId());
+            }
+        }
+
+        long fromDay = Math.floorDiv(from.getEpochSecond(), secondsPerDay);
+        long toDay = Math.floorDiv(to.getEpochSecond(), secondsPerDay) + 1;
+        if (isLoaded && fromDay >= loadedFromDay && toDay <= loadedToDay) {
+            return;
+        }
+
+        long newFromDay = fromDay - loadPaddingDays;
+        long newToDay = toDay + loadPaddingDays;
+        if (!isLoaded) {
+            loadDays(newFromDay, newToDay);
+        } else {
+            newFromDay = Math.min(newFromDay, loadedFromDay);
+            newToDay = Math.max(newToDay, loadedToDay);
+            if (newFromDay < loadedFromDay) {
+                loadDays(newFromDay, loadedFromDay);
+            }
+            if (newToDay > loadedToDay) {
+                loadDays(loadedToDay, newToDay);
+            }
+        }
+        loadedFromDay = newFromDay;
+        loadedToDay = newToDay;
+        isLoaded = true;
+    }
+
+    /**
+     * Marks the slots of every appointment overlapping with a range of days, within those days only.
+     * @param fromDay the first epoch day (inclusive).
+     * @param toDay the last epoch day (exclusive).
+     */
+    private static void loadDays(long fromDay, long toDay) {
+        Instant from = Instant.ofEpochSecond(fromDay * secondsPerDay);
+        Instant to = Instant.ofEpochSecond(toDay * secondsPerDay);
+        for (Appointment appointment : DBAppointment.getAllAppointmentsOverlappingWithTimeRange(from, to)) {
+            markBusy(appointment, fromDay, toDay);
+        }
+    }
+
+    /**
+     * Sets the bits of every slot that an appointment touches, within a range of days.
+     * @param appointment the appointment.
+     * @param fromDay the first epoch day to change (inclusive).
+     * @param toDay the last epoch day to change (exclusive).
+     */
+    private static void markBusy(Appointment appointment, long fromDay, long toDay) {
+        long firstSlot = Math.max(firstSlotOf(appointment.getStartsAt()), fromDay * slotsPerDay());
+        long endSlot = Math.min(endSlotOf(appointment.getEndsAt()), toDay * slotsPerDay());
+        Map<Long, long[]> busySlots = busySlotsByContactId.computeIfAbsent(appointment.getContactId(), contactId -> new HashMap<>());
+        for (long slot = firstSlot; slot < endSlot; ++slot) {
+            long[] words = busySlots.computeIfAbsent(Math.floorDiv(slot, slotsPerDay()), day -> new long[wordsPerDay()]);
+            int bit = Math.floorMod(slot, slotsPerDay());
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Whether any slot in a range is busy in a contact's bitmaps.
+     * @param busySlots the bitmaps of the contact by epoch day, or null if it has none.
+     * @param firstSlot the first slot (inclusive).
+     * @param endSlot the last slot (exclusive).
+     * @return whether any slot is busy.
+     */
+    private static boolean isAnySlotBusy(Map<Long, long[]> busySlots, long firstSlot, long endSlot) {
+        if (busySlots == null) {
+            return false;
+        }
+        for (long slot = firstSlot; slot < endSlot; ++slot) {
+            long[] words = busySlots.get(Math.floorDiv(slot, slotsPerDay()));
+            if (words == null) {
+                // skip to the first slot of the next day
+                slot = (Math.floorDiv(slot, slotsPerDay()) + 1) * slotsPerDay() - 1;
+                continue;
+            }
+            int bit = Math.floorMod(slot, slotsPerDay());
+            if ((words[bit >>> 6] & (1L << bit)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the index of the slot that contains a time.
+     * @param time the time.
+     * @return the slot index, counted from the epoch.
+     */
+    private static long firstSlotOf(Instant time) {
+        return Math.floorDiv(time.getEpochSecond(), slotMinutes * 60L);
+    }
+
+    /**
+     * Gets the index of the first slot that starts at or after a time.
+     * @param time the time.
+     * @return the slot index, counted from the epoch.
+     */
+    private static long endSlotOf(Instant time) {
+        long slotSeconds = slotMinutes * 60L;
+        return Math.floorDiv(time.getEpochSecond() + slotSeconds - 1, slotSeconds);
+    }
+
+    /**
+     * Gets the number of slots in a day.
+     * @return the number of slots.
+     */
+    private static int slotsPerDay() {
+        return 24 * 60 / slotMinutes;
+    }
+
+    /**
+     * Gets the number of longs in the bitmap of a day.
+     * @return the number of longs.
+     */
+    private static int wordsPerDay() {
+        return (slotsPerDay() + 63) / 64;
+    }
+
+    /**
+     * Invoked when an appointment is changed, and updates the bitmaps of the loaded days.
+     * A created or moved-in appointment only sets bits. The days an updated or deleted appointment was on are rebuilt
+     * from the database for its contact, since another appointment may share the slots it leaves.
+     * @param before the appointment before the change, or null.
+     * @param after the appointment after the change, or null.
+     * @see DBAppointment.ChangeListener
+     */
+    private synchronized static void onAppointmentChanged(Appointment before, Appointment after) {
+        if (before == null && after == null) {
+            invalidateAll();
+            return;
+        }
+        if (!isLoaded) {
+            return;
+        }
+        if (before != null) {
+            long fromDay = Math.max(Math.floorDiv(before.getStartsAt().getEpochSecond(), secondsPerDay), loadedFromDay);
+            long toDay = Math.min(Math.floorDiv(before.getEndsAt().getEpochSecond() - 1, secondsPerDay) + 1, loadedToDay);
+            if (fromDay < toDay) {
+                Map<Long, long[]> busySlots = busySlotsByContactId.get(before.getContactId());
+                if (busySlots != null) {
+                    for (long day = fromDay; day < toDay; ++day) {
+                        busySlots.remove(day);
+                    }
+                }
+                for (Appointment appointment : DBAppointment.getAllAppointmentsForContactIdOrCustomerIdOverlappingWithTimeRange(before.getContactId(), 0,
+                        Instant.ofEpochSecond(fromDay * secondsPerDay), Instant.ofEpochSecond(toDay * secondsPerDay))) {
+                    if (appointment.getContactId() == before.getContactId()) {
+                        markBusy(appointment, fromDay, toDay);
+                    }
+                }
+            }
+        }
+        if (after != null) {
+            markBusy(after, loadedFromDay, loadedToDay);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package helper.cache;
+
+import helper.dbaccess.dao.DBAppointment;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import model.Appointment;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It caches the appointments of the timeframes of the appointments tab, so that toggling between them does not query
+ * the database every time.
+ * <br>
+ * The week is within the month, and both are within all appointments, so a timeframe is sliced out of any cached one
+ * that covers it. The appointments of a cached timeframe are sorted by starting time, and the slice is found by binary
+ * search. A timeframe starts now, so it moves along with time; every timeframe is loaded a little past its end, so
+ * that it keeps covering itself for a while.
+ * <br>
+ * Every cached timeframe is discarded whenever an appointment is created, updated, or deleted from this application,
+ * and is not used any more once it is older than {@link #maxAge}, so that changes made from other clients show up too.
+ * @see DBAppointment#getAllAppointmentsStartingWithinTimeRange(Instant, Instant)
+ */
+public abstract class AppointmentWindowCache {
+    /**
+     * A timeframe of the appointments tab.
+     */
+    public enum Window {
+        /**
+         * The appointments that start within the next week.
+         */
+        WEEK,
+        /**
+         * The appointments that start within the next month.
+         */
+        MONTH,
+        /**
+         * All appointments.
+         */
+        ALL;
+
+        /**
+         * Gets the next wider timeframe, which is the one to prefetch.
+         * @return the next wider timeframe, or null if this is the widest.
+         */
+        public Window getWider() {
+            return this == ALL ? null : values()[ordinal() + 1];
+        }
+
+        /**
+         * Gets the starting time of the timeframe.
+         * @param now the current time.
+         * @return the starting time (inclusive).
+         */
+        private Instant getFrom(Instant now) {
+            return this == ALL ? Instant.MIN : now;
+        }
+
+        /**
+         * Gets the ending time of the timeframe.
+         * @param now the current time.
+         * @return the ending time (exclusive).
+         */
+        private Instant getTo(Instant now) {
+            switch (this) {
+                case WEEK:
+                    return now.atOffset(ZoneOffset.UTC).plusWeeks(1).toInstant();
+                case MONTH:
+                    return now.atOffset(ZoneOffset.UTC).plusMonths(1).toInstant();
+                default:
+                    return Instant.MAX;
+            }
+        }
+    }
+
+    /**
+     * The cached appointments of a time range.
+     */
+    private static class Slice {
+        /**
+         * The starting time of the time range (inclusive).
+         */
+        private final Instant from;
+        /**
+         * The ending time of the time range (exclusive).
+         */
+        private final Instant to;
+        /**
+         * When the slice was loaded, in System.nanoTime units.
+         */
+        private final long loadedAtNanos;
+        /**
+         * The appointments that start within the time range, sorted by starting time.
+         */
+        private final Appointment[] appointments;
+        /**
+         * The starting times of the appointments, in the same order.
+         */
+        private final Instant[] startsAt;
+
+        /**
+         * The constructor.
+         * @param from the starting time of the time range (inclusive).
+         * @param to the ending time of the time range (exclusive).
+         * @param appointments the appointments that start within the time range, in any order.
+         * @param loadedAtNanos when the slice was loaded, in System.nanoTime units.
+         */
+        private Slice(Instant from, Instant to, List<Appointment> appointments, long loadedAtNanos) {
+            this.from = from;
+            this.to = to;
+            this.loadedAtNanos = loadedAtNanos;
+            this.appointments = appointments.toArray(new Appointment[0]);
+            Arrays.sort(this.appointments, Comparator.comparing(Appointment::getStartsAt));
+            this.startsAt = new Instant[this.appointments.length];
+            for (int i = 0; i < startsAt.length; ++i) {
+                startsAt[i] = this.appointments[i].getStartsAt();
+            }
+        }
+
+        /**
+         * Whether this slice holds every appointment of a time range, and is recent enough to be used.
+         * @param from the starting time of the time range (inclusive).
+         * @param to the ending time of the time range (exclusive).
+         * @param nowNanos the current time, in System.nanoTime units.
+         * @return whether the time range is within the time range of this slice, and the slice is not older than maxAge.
+         */
+        private boolean covers(Instant from, Instant to, long nowNanos) {
+            return !this.from.isAfter(from) && !this.to.isBefore(to) && nowNanos - loadedAtNanos <= maxAge.toNanos();
+        }
+
+        /**
+         * Gets the appointments that start within a time range that this slice covers.
+         * @param from the starting time of the time range (inclusive).
+         * @param to the ending time of the time range (exclusive).
+         * @return a new list with the appointments, sorted by starting time.
+         */
+        private ObservableList<Appointment> slice(Instant from, Instant to) {
+            int start = firstIndexAtLeast(startsAt, from);
+            int end = firstIndexAtLeast(startsAt, to);
+            return FXCollections.observableArrayList(Arrays.asList(appointments).subList(start, Math.max(start, end)));
+        }
+    }
+
+    /**
+     * How far past the end of its timeframe a week or a month is loaded, so that it keeps covering itself as time goes by.
+     */
+    private static final Duration loadMargin = Duration.ofDays(1);
+    /**
+     * How long a cached timeframe is used for, which bounds how long changes made from other clients go unseen.
+     */
+    private static final Duration maxAge = Duration.ofSeconds(60);
+
+    /**
+     * The cached slices, at most one per timeframe.
+     */
+    private static final Slice[] slices = new Slice[Window.values().length];
+    /**
+     * The number of times the slices have been invalidated, used to discard slices that were loaded before an
+     * invalidation.
+     */
+    private static long version = 0;
+
+    /**
+     * The executor that prefetches timeframes in the background.
+     */
+    private static final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "appointment-window-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        DBAppointment.addChangeListener(AppointmentWindowCache::onAppointmentChanged);
+    }
+
+    /**
+     * Gets the appointments of a timeframe, sliced out of a cached timeframe that covers it if possible, else from
+     * the database.
+     * @param window the timeframe.
+     * @return a new list with the appointments, sorted by starting time.
+     */
+    public static ObservableList<Appointment> getAppointments(Window window) {
+        Instant now = Instant.now();
+        Instant from = window.getFrom(now);
+        Instant to = window.getTo(now);
+        Slice slice = findCovering(from, to);
+        if (slice == null) {
+            slice = load(window, now);
+        }
+        return slice.slice(from, to);
+    }
+
+    /**
+     * Loads a timeframe in the background, unless a cached timeframe already covers it.
+     * @param window the timeframe, or null to do nothing.
+     */
+    public static void prefetch(Window window) {
+        if (window == null) {
+            return;
+        }
+        prefetchExecutor.execute(() -> {
+            Instant now = Instant.now();
+            if (findCovering(window.getFrom(now), window.getTo(now)) == null) {
+                load(window, now);
+            }
+        });
+    }
+
+    /**
+     * Discards every cached timeframe.
+     */
+    public synchronized static void invalidateAll() {
+        Arrays.fill(slices, null);
+        ++version;
+    }
+
+    /**
+     * Finds a cached slice that covers a time range, preferring the narrowest.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the slice, or null if there is none.
+     */
+    private synchronized static Slice findCovering(Instant from, Instant to) {
+        long nowNanos = System.nanoTime();
+        for (Slice slice : slices) {
+            if (slice != null && slice.covers(from, to, nowNanos)) {
+                return slice;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Loads a timeframe from the database and caches it, unless the cache was invalidated while it was being loaded.
+     * @param window the timeframe.
+     * @param now the current time.
+     * @return the loaded slice.
+     */
+    private static Slice load(Window window, Instant now) {
+        long versionBeforeLoad;
+        synchronized (AppointmentWindowCache.class) {
+            versionBeforeLoad = version;
+        }
+
+        // the age counts from before the query, so that the slice holds no change older than its age
+        long loadedAtNanos = System.nanoTime();
+        Slice slice;
+        if (window == Window.ALL) {
+            slice = new Slice(window.getFrom(now), window.getTo(now), DBAppointment.getAllAppointments(), loadedAtNanos);
+        } else {
+            Instant to = window.getTo(now).plus(loadMargin);
+            slice = new Slice(now, to, DBAppointment.getAllAppointmentsStartingWithinTimeRange(now, to), loadedAtNanos);
+        }
+
+        synchronized (AppointmentWindowCache.class) {
+            if (version == versionBeforeLoad) {
+                slices[window.ordinal()] = slice;
+            }
+        }
+        return slice;
+    }
+
+    /**
+     * Finds the first index of a sorted array whose value is at least a given value.
+     * @param values the values, in ascending order.
+     * @param value the value.
+     * @return the index, or the length of the array if there is none.
+     */
+    private static int firstIndexAtLeast(Instant[] values, Instant value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle].isBefore(value)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Invoked when an appointment is changed, and discards every cached timeframe.
+     * @param before the appointment before the change, or null.
+     * @param after the appointment after the change, or null.
+     * @see DBAppointment.ChangeListener
+     */
+    private static void onAppointmentChanged(Appointment before, Appointment after) {
+        invalidateAll();
+    }
+}
@@ -0,0 +1,203 @@
+package helper.cache;
+
+import helper.dbaccess.dao.DBAppointment;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import model.Appointment;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It caches the schedule (appointments within a time range) of the most recently viewed contacts, so that switching
+ * between contacts in the contact schedules report does not query the database every time.
+ * <br>
+ * The cache holds at most maxCachedContacts contacts and evicts the least recently used one when full.
+ * A contact's schedule is discarded whenever one of its appointments is created, updated, or deleted.
+ * @see DBAppointment#getAllAppointmentsForContactId(int, Instant, Instant)
+ */
+public abstract class ContactScheduleCache {
+    /**
+     * The cached schedule of a single contact.
+     */
+    private static class Schedule {
+        /**
+         * The starting time of the time range (inclusive).
+         */
+        private final Instant from;
+        /**
+         * The ending time of the time range (exclusive).
+         */
+        private final Instant to;
+        /**
+         * The appointments of the contact within the time range.
+         */
+        private final List<Appointment> appointments;
+
+        /**
+         * The constructor.
+         * @param from the starting time of the time range (inclusive).
+         * @param to the ending time of the time range (exclusive).
+         * @param appointments the appointments of the contact within the time range.
+         */
+        private Schedule(Instant from, Instant to, List<Appointment> appointments) {
+            this.from = from;
+            this.to = to;
+            this.appointments = Collections.unmodifiableList(appointments);
+        }
+
+        /**
+         * Whether this schedule was loaded for the given time range.
+         * @param from the starting time of the time range (inclusive).
+         * @param to the ending time of the time range (exclusive).
+         * @return whether the time ranges are equal.
+         */
+        private boolean isFor(Instant from, Instant to) {
+            return this.from.equals(from) && this.to.equals(to);
+        }
+    }
+
+    /**
+     * The maximum number of contacts whose schedule is cached.
+     */
+    private static final int maxCachedContacts = 16;
+
+    /**
+     * The cached schedules by contact id, in least-recently-used order.
+     */
+    private static final LinkedHashMap<Integer, Schedule> schedules = new LinkedHashMap<>(maxCachedContacts, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Schedule> eldest) {
+            return size() > maxCachedContacts;
+        }
+    };
+    /**
+     * The number of times each contact's schedule has been invalidated, used to discard prefetched schedules that were
+     * loaded before an invalidation.
+     */
+    private static final Map<Integer, Long> versions = new HashMap<>();
+    /**
+     * The number of times all schedules have been invalidated at once.
+     */
+    private static long globalVersion = 0;
+
+    /**
+     * The executor that prefetches schedules in the background.
+     */
+    private static final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "contact-schedule-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        DBAppointment.addChangeListener(ContactScheduleCache::onAppointmentChanged);
+    }
+
+    /**
+     * Gets the schedule of a contact within a time range, from the cache if possible, else from the database.
+     * @param contactId the contact id.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return a new list with the appointments.
+     */
+    public static ObservableList<Appointment> getSchedule(int contactId, Instant from, Instant to) {
+        Schedule schedule;
+        synchronized (ContactScheduleCache.class) {
+            schedule = schedules.get(contactId);
+        }
+        if (schedule == null || !schedule.isFor(from, to)) {
+            schedule = load(contactId, from, to);
+        }
+        return FXCollections.observableArrayList(schedule.appointments);
+    }
+
+    /**
+     * Loads the schedules of the given contacts within a time range in the background, skipping those already cached.
+     * @param contactIds the contact ids.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     */
+    public static void prefetch(List<Integer> contactIds, Instant from, Instant to) {
+        for (int contactId : contactIds) {
+            prefetchExecutor.execute(() -> {
+                Schedule schedule;
+                synchronized (ContactScheduleCache.class) {
+                    schedule = schedules.get(contactId);
+                }
+                if (schedule == null || !schedule.isFor(from, to)) {
+                    load(contactId, from, to);
+                }
+            });
+        }
+    }
+
+    /**
+     * Discards every cached schedule.
+     */
+    public synchronized static void invalidateAll() {
+        schedules.clear();
+        ++globalVersion;
+    }
+
+    /**
+     * Discards the cached schedule of a contact.
+     * @param contactId the contact id.
+     */
+    public synchronized static void invalidate(int contactId) {
+        schedules.remove(contactId);
+        versions.merge(contactId, 1L, Long::sum);
+    }
+
+    /**
+     * Loads the schedule of a contact from the database and caches it, unless the contact's schedule was invalidated
+     * while it was being loaded.
+     * @param contactId the contact id.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the loaded schedule.
+     */
+    private static Schedule load(int contactId, Instant from, Instant to) {
+        long versionBeforeLoad;
+        long globalVersionBeforeLoad;
+        synchronized (ContactScheduleCache.class) {
+            versionBeforeLoad = versions.getOrDefault(contactId, 0L);
+            globalVersionBeforeLoad = globalVersion;
+        }
+
+        Schedule schedule = new Schedule(from, to, DBAppointment.getAllAppointmentsForContactId(contactId, from, to));
+
+        synchronized (ContactScheduleCache.class) {
+            if (versions.getOrDefault(contactId, 0L) == versionBeforeLoad && globalVersion == globalVersionBeforeLoad) {
+                schedules.put(contactId, schedule);
+            }
+        }
+        return schedule;
+    }
+
+    /**
+     * Invoked when an appointment is changed, and discards the schedules of the contacts it belonged to before and after.
+     * @param before the appointment before the change, or null.
+     * @param after the appointment after the change, or null.
+     * @see DBAppointment.ChangeListener
+     */
+    private static void onAppointmentChanged(Appointment before, Appointment after) {
+        if (before == null && after == null) {
+            invalidateAll();
+            return;
+        }
+        if (before != null) {
+            invalidate(before.getContactId());
+        }
+        if (after != null) {
+            invalidate(after.getContactId());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package helper.cache;
+
+import helper.dbaccess.dao.DBDivision;
+import model.Country;
+import model.Division;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * An immutable index of every country and first-level division, loaded in a single query, so that the customer form
+ * and the customers table look them up without querying the database.
+ * <br>
+ * The countries and the divisions are each kept in arrays sorted by id, next to an array of the ids that is searched
+ * with a binary search, so lookups by id need no boxing. The divisions of every country are kept next to the country.
+ * <br>
+ * The current index is loaded on first use, or in the background at start-up, and replaced as a whole by refresh.
+ * @see DBDivision#getAllDivisionsWithCountries()
+ */
+public class GeographyIndex {
+    /**
+     * The current index, or null if not loaded yet.
+     */
+    private static GeographyIndex current;
+
+    /**
+     * The ids of the countries, in ascending order.
+     */
+    private final int[] countryIds;
+    /**
+     * The countries, in the same order.
+     */
+    private final Country[] countries;
+    /**
+     * The divisions of every country, in the same order.
+     */
+    private final List<List<Division>> divisionsByCountry;
+    /**
+     * The ids of the divisions, in ascending order.
+     */
+    private final int[] divisionIds;
+    /**
+     * The divisions, in the same order, each with its country set.
+     */
+    private final Division[] divisions;
+
+    /**
+     * The constructor, which sorts the divisions and their countries into the index.
+     * @param divisions the divisions, each with its country set.
+     */
+    private GeographyIndex(List<Division> divisions) {
+        this.divisions = divisions.toArray(new Division[0]);
+        Arrays.sort(this.divisions, (a, b) -> Integer.compare(a.getId(), b.getId()));
+        this.divisionIds = new int[this.divisions.length];
+        for (int i = 0; i < divisionIds.length; ++i) {
+            divisionIds[i] = this.divisions[i].getId();
+        }
+
+        int[] sortedCountryIds = new int[this.divisions.length];
+        for (int i = 0; i < sortedCountryIds.length; ++i) {
+            sortedCountryIds[i] = this.divisions[i].getCountryId();
+        }
+        Arrays.sort(sortedCountryIds);
+        int countryCount = 0;
+        for (int i = 0; i < sortedCountryIds.length; ++i) {
+            if (i == 0 || sortedCountryIds[i] != sortedCountryIds[i - 1]) {
+                sortedCountryIds[countryCount++] = sortedCountryIds[i];
+            }
+        }
+        this.countryIds = Arrays.copyOf(sortedCountryIds, countryCount);
+        this.countries = new Country[countryCount];
+        List<List<Division>> divisionsByCountry = new ArrayList<>();
+        for (int i = 0; i < countryCount; ++i) {
+            divisionsByCountry.add(new ArrayList<>());
+        }
+        for (Division division : this.divisions) {
+            int countryIndex = Arrays.binarySearch(countryIds, division.getCountryId());
+            try {
+                countries[countryIndex] = division.getCountry();
+            } catch (Division.CountryNotFoundException e) {
+                // not reached, since every division comes with its country
+                e.printStackTrace();
+            }
+            divisionsByCountry.get(countryIndex).add(division);
+        }
+        for (int i = 0; i < countryCount; ++i) {
+            divisionsByCountry.set(i, Collections.unmodifiableList(divisionsByCountry.get(i)));
+        }
+        this.divisionsByCountry = Collections.unmodifiableList(divisionsByCountry);
+    }
+
+    /**
+     * Gets the current index, loading it first if it has not been loaded yet.
+     * If loading fails, an empty index is returned, and loading is tried again on the next use.
+     * @return the index.
+     */
+    public synchronized static GeographyIndex get() {
+        if (current != null) {
+            return current;
+        }
+        Optional<List<Division>> divisions = DBDivision.getAllDivisionsWithCountries();
+        if (divisions.isEmpty()) {
+            return new GeographyIndex(new ArrayList<>());
+        }
+        current = new GeographyIndex(divisions.get());
+        return current;
+    }
+
+    /**
+     * Loads the index in the background, so that the first use does not have to wait for it.
+     */
+    public static void preload() {
+        Thread thread = new Thread(GeographyIndex::get, "geography-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Loads the index again on demand, e.g. after the countries or divisions have been changed in the database, and
+     * swaps it for the current one as a whole; callers that already got the previous index keep using it unchanged.
+     * The previous index stays in use if loading fails.
+     * @return whether the index was loaded.
+     */
+    public synchronized static boolean refresh() {
+        Optional<List<Division>> divisions = DBDivision.getAllDivisionsWithCountries();
+        divisions.ifPresent(value -> current = new GeographyIndex(value));
+        return divisions.isPresent();
+    }
+
+    /**
+     * Gets every country that has divisions.
+     * @return an unmodifiable list with the countries, in order of id.
+     */
+    public List<Country> getCountries() {
+        return Collections.unmodifiableList(Arrays.asList(countries));
+    }
+
+    /**
+     * Gets a country given its id.
+     * @param countryId the country id.
+     * @return the country, or empty if it is not in the index.
+     */
+    public Optional<Country> getCountry(int countryId) {
+        int index = Arrays.binarySearch(countryIds, countryId);
+        return index < 0 ? Optional.empty() : Optional.of(countries[index]);
+    }
+
+    /**
+     * Gets the divisions of a country given its id.
+     * @param countryId the country id.
+     * @return an unmodifiable list with the divisions, in order of id, which is empty if the country is not in the index.
+     */
+    public List<Division> getDivisionsOfCountry(int countryId) {
+        int index = Arrays.binarySearch(countryIds, countryId);
+        return index < 0 ? Collections.emptyList() : divisionsByCountry.get(index);
+    }
+
+    /**
+     * Gets a division given its id.
+     * @param divisionId the division id.
+     * @return the division, with its country set, or empty if it is not in the index.
+     */
+    public Optional<Division> getDivision(int divisionId) {
+        int index = Arrays.binarySearch(divisionIds, divisionId);
+        return index < 0 ? Optional.empty() : Optional.of(divisions[index]);
+    }
+}
@@ -0,0 +1,51 @@
+package helper.cache;
+
+import helper.dbaccess.dao.DBContact;
+import helper.dbaccess.dao.DBUser;
+import model.Contact;
+import model.User;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It caches the contacts and users that the forms offer to choose from, so that opening a form does not query the
+ * database every time. The application never changes them, so they are loaded once, on first use, and kept for as
+ * long as the application runs.
+ * @see DBContact#getAllContacts()
+ * @see DBUser#getAllUsers()
+ * @see GeographyIndex
+ */
+public abstract class ReferenceDataCache {
+    /**
+     * The cached contacts, or null if not loaded yet.
+     */
+    private static List<Contact> contacts;
+    /**
+     * The cached users, or null if not loaded yet.
+     */
+    private static List<User> users;
+
+    /**
+     * Gets every contact, from the cache if possible, else from the database.
+     * @return an unmodifiable list with the contacts.
+     */
+    public synchronized static List<Contact> getContacts() {
+        if (contacts == null) {
+            contacts = Collections.unmodifiableList(DBContact.getAllContacts());
+        }
+        return contacts;
+    }
+
+    /**
+     * Gets every user, from the cache if possible, else from the database.
+     * @return an unmodifiable list with the users.
+     */
+    public synchronized static List<User> getUsers() {
+        if (users == null) {
+            users = Collections.unmodifiableList(DBUser.getAllUsers());
+        }
+        return users;
+    }
+}
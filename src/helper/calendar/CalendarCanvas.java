@@ -0,0 +1,611 @@
+package helper.calendar;
+
+import helper.locale.LocaleHelper;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import model.Appointment;
+import model.Contact;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.time.temporal.WeekFields;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+
+/**
+ * A calendar that shows the appointments of every contact in its own lane along a time axis, for a day, a week, or
+ * a month, drawn on a single Canvas instead of with a Node per appointment.
+ * <br>
+ * Only the lanes and the appointments within the viewport are drawn, found through a CalendarIndex, and appointments
+ * that would be drawn over pixels that are already filled in their lane are skipped, so the work per frame is bounded
+ * by the size of the viewport rather than by the number of appointments. Changes of the viewport only mark it dirty,
+ * and it is redrawn at most once per frame. Dragging pans through time and lanes, scrolling moves through the lanes,
+ * and scrolling with Ctrl held zooms around the mouse.
+ * <br>
+ * The appointments around the viewport are loaded in the background, and loaded again once the viewport leaves them.
+ * @see CalendarIndex
+ */
+public class CalendarCanvas extends Region {
+    /**
+     * The range of time that the calendar shows at once.
+     */
+    public enum Mode {
+        DAY, WEEK, MONTH
+    }
+
+    /**
+     * The height of the header with the time axis, in pixels.
+     */
+    private static final double headerHeight = 24;
+    /**
+     * The width of the column with the contact names, in pixels.
+     */
+    private static final double laneLabelWidth = 120;
+    /**
+     * The height of a lane, in pixels.
+     */
+    private static final double laneHeight = 28;
+    /**
+     * The minimum distance between ticks of the time axis, in pixels.
+     */
+    private static final double minTickSpacing = 70;
+    /**
+     * The approximate width of a character of the labels, in pixels, used to shorten titles without measuring them.
+     */
+    private static final double approximateCharWidth = 6.5;
+    /**
+     * The shortest time range the calendar can be zoomed in to.
+     */
+    private static final Duration minSpan = Duration.ofHours(1);
+    /**
+     * The longest time range the calendar can be zoomed out to.
+     */
+    private static final Duration maxSpan = Duration.ofDays(366);
+    /**
+     * The possible steps between ticks of the time axis, in ascending order.
+     */
+    private static final Duration[] tickSteps = {
+            Duration.ofMinutes(15), Duration.ofMinutes(30), Duration.ofHours(1), Duration.ofHours(2), Duration.ofHours(3),
+            Duration.ofHours(6), Duration.ofHours(12), Duration.ofDays(1), Duration.ofDays(2), Duration.ofDays(7), Duration.ofDays(14)
+    };
+    /**
+     * The colors of the appointments, picked by type.
+     */
+    private static final Color[] appointmentColors = {
+            Color.web("#4e79a7"), Color.web("#f28e2b"), Color.web("#59a14f"), Color.web("#b07aa1"),
+            Color.web("#76b7b2"), Color.web("#edc948"), Color.web("#e15759"), Color.web("#9c755f")
+    };
+    /**
+     * The font of the labels.
+     */
+    private static final Font labelFont = Font.font(11);
+
+    /**
+     * The executor that loads the appointments, shared by every calendar.
+     */
+    private static final ExecutorService loadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "calendar-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The canvas everything is drawn on, which always fills the region.
+     */
+    private final Canvas canvas = new Canvas();
+    /**
+     * Redraws the canvas on the next frame if it is dirty.
+     */
+    private final AnimationTimer redrawTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if (isDirty) {
+                isDirty = false;
+                draw();
+            }
+        }
+    };
+    /**
+     * The formatter of the ticks of the time axis within a day.
+     */
+    private final DateTimeFormatter timeFormatter = DateTimeFormatter.ofLocalizedTime(FormatStyle.SHORT).withLocale(LocaleHelper.getLocale());
+    /**
+     * The formatter of the ticks of the time axis at the start of a day.
+     */
+    private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofLocalizedDate(FormatStyle.SHORT).withLocale(LocaleHelper.getLocale());
+
+    /**
+     * The contact id of every lane, in order.
+     */
+    private List<Integer> laneContactIds = new ArrayList<>();
+    /**
+     * The contact name of every lane, in order.
+     */
+    private List<String> laneNames = new ArrayList<>();
+    /**
+     * Loads the appointments that overlap with a time range, on a background thread.
+     */
+    private BiFunction<Instant, Instant, List<Appointment>> loader;
+    /**
+     * The loaded appointments.
+     */
+    private CalendarIndex index = CalendarIndex.empty;
+    /**
+     * The starting time of the loaded time range, in epoch milliseconds.
+     */
+    private long loadedFrom = 0;
+    /**
+     * The ending time of the loaded time range, in epoch milliseconds, or the same as loadedFrom if nothing is loaded.
+     */
+    private long loadedTo = 0;
+    /**
+     * The number of the latest load, so that the results of older ones are dropped.
+     */
+    private long loadGeneration = 0;
+    /**
+     * Whether a load that covers the viewport is in progress.
+     */
+    private boolean isLoading = false;
+
+    /**
+     * The current mode.
+     */
+    private Mode mode = Mode.WEEK;
+    /**
+     * The starting time of the viewport, in epoch milliseconds.
+     */
+    private double viewFrom;
+    /**
+     * The length of the viewport, in milliseconds.
+     */
+    private double viewSpan;
+    /**
+     * How far the lanes are scrolled down, in pixels.
+     */
+    private double scrollY = 0;
+    /**
+     * Whether the canvas needs to be redrawn.
+     */
+    private boolean isDirty = true;
+
+    /**
+     * The x coordinate of the mouse when the drag started.
+     */
+    private double dragStartX;
+    /**
+     * The y coordinate of the mouse when the drag started.
+     */
+    private double dragStartY;
+    /**
+     * The starting time of the viewport when the drag started.
+     */
+    private double dragStartViewFrom;
+    /**
+     * The scroll position when the drag started.
+     */
+    private double dragStartScrollY;
+
+    /**
+     * The constructor, which shows the current week.
+     */
+    public CalendarCanvas() {
+        getChildren().add(canvas);
+        setMinSize(laneLabelWidth + 100, headerHeight + laneHeight);
+        setPrefSize(800, 400);
+        showToday();
+
+        canvas.setOnMousePressed(this::onMousePressed);
+        canvas.setOnMouseDragged(this::onMouseDragged);
+        canvas.setOnScroll(this::onScroll);
+        sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (newScene == null) {
+                redrawTimer.stop();
+            } else {
+                redrawTimer.start();
+            }
+        });
+    }
+
+    /**
+     * Sets the lanes, one per contact, and loads the appointments again.
+     * @param contacts the contacts, in the order of their lanes.
+     */
+    public void setContacts(List<Contact> contacts) {
+        List<Integer> contactIds = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (Contact contact : contacts) {
+            contactIds.add(contact.getId());
+            names.add(contact.getName());
+        }
+        laneContactIds = contactIds;
+        laneNames = names;
+        index = CalendarIndex.empty;
+        reload();
+    }
+
+    /**
+     * Sets how the appointments are loaded, and loads them.
+     * @param loader loads the appointments that overlap with a time range; invoked on a background thread.
+     */
+    public void setLoader(BiFunction<Instant, Instant, List<Appointment>> loader) {
+        this.loader = loader;
+        reload();
+    }
+
+    /**
+     * Loads the appointments again, e.g. after they have been changed, dropping any load in progress.
+     * The current ones stay visible meanwhile.
+     */
+    public void reload() {
+        loadedTo = loadedFrom;
+        ++loadGeneration;
+        isLoading = false;
+        ensureLoaded();
+    }
+
+    /**
+     * Gets the current mode.
+     * @return the mode.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets the mode, and shows the day, week, or month that contains the middle of the viewport.
+     * @param mode the mode.
+     */
+    public void setMode(Mode mode) {
+        this.mode = mode;
+        showPeriodContaining(Instant.ofEpochMilli((long) (viewFrom + viewSpan / 2)));
+    }
+
+    /**
+     * Shows the day, week, or month that contains the current time.
+     */
+    public void showToday() {
+        showPeriodContaining(Instant.now());
+    }
+
+    /**
+     * Shows the day, week, or month before the one that contains the start of the viewport.
+     */
+    public void showPrevious() {
+        showPeriodContaining(periodStart(Instant.ofEpochMilli((long) viewFrom)).minus(1, ChronoUnit.MILLIS));
+    }
+
+    /**
+     * Shows the day, week, or month after the one that contains the start of the viewport.
+     */
+    public void showNext() {
+        showPeriodContaining(periodEnd(periodStart(Instant.ofEpochMilli((long) viewFrom))));
+    }
+
+    /**
+     * Sets the viewport to the day, week, or month of the current mode that contains an instant.
+     * @param instant the instant.
+     */
+    private void showPeriodContaining(Instant instant) {
+        Instant start = periodStart(instant);
+        viewFrom = start.toEpochMilli();
+        viewSpan = periodEnd(start).toEpochMilli() - viewFrom;
+        onViewportChanged();
+    }
+
+    /**
+     * Gets the start of the day, week, or month of the current mode that contains an instant, in the current zone.
+     * @param instant the instant.
+     * @return the start of the period.
+     */
+    private Instant periodStart(Instant instant) {
+        ZoneId zoneId = LocaleHelper.getZoneId();
+        LocalDate date = LocalDate.ofInstant(instant, zoneId);
+        switch (mode) {
+            case WEEK:
+                date = date.with(TemporalAdjusters.previousOrSame(WeekFields.of(LocaleHelper.getLocale()).getFirstDayOfWeek()));
+                break;
+            case MONTH:
+                date = date.withDayOfMonth(1);
+                break;
+            default:
+                break;
+        }
+        return date.atStartOfDay(zoneId).toInstant();
+    }
+
+    /**
+     * Gets the end of the day, week, or month of the current mode that starts at a given instant, in the current zone.
+     * @param start the start of the period.
+     * @return the end of the period.
+     */
+    private Instant periodEnd(Instant start) {
+        ZonedDateTime startDateTime = start.atZone(LocaleHelper.getZoneId());
+        switch (mode) {
+            case WEEK:
+                return startDateTime.plusWeeks(1).toInstant();
+            case MONTH:
+                return startDateTime.plusMonths(1).toInstant();
+            default:
+                return startDateTime.plusDays(1).toInstant();
+        }
+    }
+
+    /**
+     * Marks the canvas dirty and loads the appointments around the viewport if they are not loaded.
+     */
+    private void onViewportChanged() {
+        isDirty = true;
+        ensureLoaded();
+    }
+
+    /**
+     * Loads the appointments of the viewport and one viewport length on either side in the background, unless the
+     * viewport is already loaded or being loaded.
+     */
+    private void ensureLoaded() {
+        long from = (long) viewFrom;
+        long to = (long) (viewFrom + viewSpan);
+        if (loader == null || (from >= loadedFrom && to <= loadedTo) || isLoading) {
+            return;
+        }
+        long loadFrom = from - (long) viewSpan;
+        long loadTo = to + (long) viewSpan;
+        long generation = ++loadGeneration;
+        List<Integer> contactIds = laneContactIds;
+        BiFunction<Instant, Instant, List<Appointment>> currentLoader = loader;
+        isLoading = true;
+        loadExecutor.execute(() -> {
+            CalendarIndex loadedIndex = null;
+            try {
+                loadedIndex = new CalendarIndex(contactIds, currentLoader.apply(Instant.ofEpochMilli(loadFrom), Instant.ofEpochMilli(loadTo)));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            CalendarIndex result = loadedIndex;
+            Platform.runLater(() -> {
+                if (generation != loadGeneration) {
+                    return;
+                }
+                isLoading = false;
+                if (result != null) {
+                    index = result;
+                    loadedFrom = loadFrom;
+                    loadedTo = loadTo;
+                    isDirty = true;
+                    ensureLoaded();
+                }
+            });
+        });
+    }
+
+    /**
+     * Invoked when the mouse is pressed, and starts a drag.
+     * @param event the event.
+     */
+    private void onMousePressed(MouseEvent event) {
+        dragStartX = event.getX();
+        dragStartY = event.getY();
+        dragStartViewFrom = viewFrom;
+        dragStartScrollY = scrollY;
+    }
+
+    /**
+     * Invoked when the mouse is dragged, and pans through time and lanes.
+     * @param event the event.
+     */
+    private void onMouseDragged(MouseEvent event) {
+        viewFrom = dragStartViewFrom - (event.getX() - dragStartX) * getMillisPerPixel();
+        scrollY = clampScrollY(dragStartScrollY - (event.getY() - dragStartY));
+        onViewportChanged();
+    }
+
+    /**
+     * Invoked when the mouse wheel is scrolled, and zooms around the mouse if Ctrl is held, or else scrolls the lanes.
+     * @param event the event.
+     */
+    private void onScroll(ScrollEvent event) {
+        if (event.isControlDown()) {
+            double mouseTime = viewFrom + Math.max(0, event.getX() - laneLabelWidth) * getMillisPerPixel();
+            double newSpan = Math.max(minSpan.toMillis(), Math.min(maxSpan.toMillis(), viewSpan * Math.exp(-event.getDeltaY() / 200)));
+            viewFrom = mouseTime - (mouseTime - viewFrom) * newSpan / viewSpan;
+            viewSpan = newSpan;
+        } else {
+            scrollY = clampScrollY(scrollY - event.getDeltaY());
+            viewFrom -= event.getDeltaX() * getMillisPerPixel();
+        }
+        onViewportChanged();
+        event.consume();
+    }
+
+    /**
+     * Keeps a scroll position within the lanes.
+     * @param y the scroll position.
+     * @return the scroll position, clamped.
+     */
+    private double clampScrollY(double y) {
+        double maxScrollY = Math.max(0, laneContactIds.size() * laneHeight - (canvas.getHeight() - headerHeight));
+        return Math.max(0, Math.min(maxScrollY, y));
+    }
+
+    /**
+     * Gets the width of the time axis, in pixels.
+     * @return the width.
+     */
+    private double getTimelineWidth() {
+        return Math.max(1, canvas.getWidth() - laneLabelWidth);
+    }
+
+    /**
+     * Gets how much time a pixel of the time axis stands for.
+     * @return the milliseconds per pixel.
+     */
+    private double getMillisPerPixel() {
+        return viewSpan / getTimelineWidth();
+    }
+
+    /**
+     * Resizes the canvas to fill the region.
+     */
+    @Override
+    protected void layoutChildren() {
+        if (canvas.getWidth() != getWidth() || canvas.getHeight() != getHeight()) {
+            canvas.setWidth(getWidth());
+            canvas.setHeight(getHeight());
+            scrollY = clampScrollY(scrollY);
+            isDirty = true;
+        }
+    }
+
+    /**
+     * Draws the lanes, the appointments, and the time axis that are within the viewport.
+     */
+    private void draw() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        double millisPerPixel = getMillisPerPixel();
+        long from = (long) viewFrom;
+        long to = (long) Math.ceil(viewFrom + viewSpan);
+
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, width, height);
+        gc.setFont(labelFont);
+        gc.setTextBaseline(VPos.CENTER);
+        gc.setTextAlign(TextAlignment.LEFT);
+
+        int firstLane = (int) (scrollY / laneHeight);
+        int endLane = Math.min(laneNames.size(), (int) Math.ceil((scrollY + height - headerHeight) / laneHeight));
+        boolean isIndexed = index.getLaneCount() == laneNames.size();
+        for (int lane = firstLane; lane < endLane; ++lane) {
+            double y = headerHeight + lane * laneHeight - scrollY;
+            gc.setFill(lane % 2 == 0 ? Color.web("#f7f7f7") : Color.WHITE);
+            gc.fillRect(0, y, width, laneHeight);
+
+            if (isIndexed) {
+                drawLane(gc, lane, y, from, to, millisPerPixel);
+            }
+
+            gc.setFill(Color.web("#eeeeee"));
+            gc.fillRect(0, y, laneLabelWidth, laneHeight);
+            gc.setFill(Color.BLACK);
+            gc.fillText(shorten(laneNames.get(lane), laneLabelWidth - 8), 4, y + laneHeight / 2);
+        }
+
+        drawTimeAxis(gc, width, height, millisPerPixel);
+
+        double nowX = laneLabelWidth + (System.currentTimeMillis() - viewFrom) / millisPerPixel;
+        if (nowX >= laneLabelWidth && nowX <= width) {
+            gc.setStroke(Color.RED);
+            gc.strokeLine(nowX, headerHeight, nowX, height);
+        }
+        if (isLoading) {
+            gc.setFill(Color.GRAY);
+            gc.setTextAlign(TextAlignment.RIGHT);
+            gc.fillText("Loading...", width - 4, headerHeight + 10);
+        }
+    }
+
+    /**
+     * Draws the appointments of a lane that are within the viewport. An appointment that falls entirely on pixels
+     * that are already filled is skipped, so a lane draws at most one rectangle per pixel column.
+     * @param gc the graphics context.
+     * @param lane the index of the lane.
+     * @param y the top of the lane, in pixels.
+     * @param from the start of the viewport, in epoch milliseconds.
+     * @param to the end of the viewport, in epoch milliseconds.
+     * @param millisPerPixel how much time a pixel stands for.
+     */
+    private void drawLane(GraphicsContext gc, int lane, double y, long from, long to, double millisPerPixel) {
+        double[] filledUntilX = { laneLabelWidth };
+        index.forEachVisible(lane, from, to, (appointment, startsAt, endsAt) -> {
+            double endX = laneLabelWidth + (endsAt - viewFrom) / millisPerPixel;
+            if (endX <= filledUntilX[0]) {
+                return;
+            }
+            double x1 = Math.max(filledUntilX[0], laneLabelWidth + (startsAt - viewFrom) / millisPerPixel);
+            double x2 = Math.max(x1 + 1, endX);
+            String type = appointment.getType();
+            gc.setFill(appointmentColors[Math.floorMod(type == null ? 0 : type.hashCode(), appointmentColors.length)]);
+            gc.fillRect(x1, y + 3, x2 - x1, laneHeight - 6);
+            if (x2 - x1 > 24 && appointment.getTitle() != null) {
+                gc.setFill(Color.WHITE);
+                gc.fillText(shorten(appointment.getTitle(), x2 - x1 - 6), x1 + 3, y + laneHeight / 2);
+            }
+            filledUntilX[0] = Math.floor(x2) + 1;
+        });
+    }
+
+    /**
+     * Draws the header with the ticks of the time axis and the grid lines below them.
+     * @param gc the graphics context.
+     * @param width the width of the canvas.
+     * @param height the height of the canvas.
+     * @param millisPerPixel how much time a pixel stands for.
+     */
+    private void drawTimeAxis(GraphicsContext gc, double width, double height, double millisPerPixel) {
+        gc.setFill(Color.web("#dddddd"));
+        gc.fillRect(0, 0, width, headerHeight);
+        gc.setStroke(Color.web("#00000022"));
+        gc.setTextAlign(TextAlignment.LEFT);
+
+        Duration step = tickSteps[tickSteps.length - 1];
+        for (Duration candidate : tickSteps) {
+            if (candidate.toMillis() / millisPerPixel >= minTickSpacing) {
+                step = candidate;
+                break;
+            }
+        }
+        boolean isDayStep = step.toDays() > 0;
+
+        ZoneId zoneId = LocaleHelper.getZoneId();
+        ZonedDateTime tick = Instant.ofEpochMilli((long) viewFrom).atZone(zoneId).truncatedTo(isDayStep ? ChronoUnit.DAYS : ChronoUnit.HOURS);
+        double viewTo = viewFrom + viewSpan;
+        while (tick.toInstant().toEpochMilli() < viewTo) {
+            double x = laneLabelWidth + (tick.toInstant().toEpochMilli() - viewFrom) / millisPerPixel;
+            if (x >= laneLabelWidth) {
+                gc.strokeLine(x, 0, x, height);
+                boolean isStartOfDay = tick.toLocalTime().equals(LocalTime.MIDNIGHT);
+                gc.setFill(Color.BLACK);
+                gc.fillText(isStartOfDay ? dateFormatter.format(tick) : timeFormatter.format(tick), x + 3, headerHeight / 2);
+            }
+            tick = isDayStep ? tick.plusDays(step.toDays()) : tick.plus(step);
+        }
+
+        gc.setFill(Color.web("#dddddd"));
+        gc.fillRect(0, 0, laneLabelWidth, headerHeight);
+    }
+
+    /**
+     * Shortens a label to about a width, without measuring the text.
+     * @param label the label.
+     * @param maxWidth the width, in pixels.
+     * @return the label, or its start followed by an ellipsis.
+     */
+    private static String shorten(String label, double maxWidth) {
+        int maxLength = (int) (maxWidth / approximateCharWidth);
+        if (label.length() <= maxLength) {
+            return label;
+        }
+        return maxLength <= 3 ? "" : label.substring(0, maxLength - 3) + "...";
+    }
+}
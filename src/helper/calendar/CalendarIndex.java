@@ -0,0 +1,163 @@
+package helper.calendar;
+
+import model.Appointment;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable index of appointments by lane, where every lane holds the appointments of one contact, for finding the
+ * appointments that are visible within a time range without going through the others.
+ * <br>
+ * The appointments of a lane are sorted by starting time, next to a running maximum of their ending times. The first
+ * visible appointment is found by a binary search on the running maximum, which never decreases, and the last one by a
+ * binary search on the starting times, so a lookup costs a logarithm of the lane size plus the appointments in between.
+ */
+public class CalendarIndex {
+    /**
+     * The appointments of a single lane.
+     */
+    private static class Lane {
+        /**
+         * The appointments, sorted by starting time.
+         */
+        private final Appointment[] appointments;
+        /**
+         * The starting times, in epoch milliseconds.
+         */
+        private final long[] startsAt;
+        /**
+         * The ending times, in epoch milliseconds.
+         */
+        private final long[] endsAt;
+        /**
+         * The maximum ending time of the appointments up to and including each index, in epoch milliseconds.
+         */
+        private final long[] maxEndsAt;
+
+        /**
+         * The constructor.
+         * @param appointments the appointments, in any order.
+         */
+        private Lane(List<Appointment> appointments) {
+            appointments.sort(Comparator.comparing(Appointment::getStartsAt));
+            int size = appointments.size();
+            this.appointments = appointments.toArray(new Appointment[0]);
+            this.startsAt = new long[size];
+            this.endsAt = new long[size];
+            this.maxEndsAt = new long[size];
+            long maxEndAt = Long.MIN_VALUE;
+            for (int i = 0; i < size; ++i) {
+                startsAt[i] = this.appointments[i].getStartsAt().toEpochMilli();
+                endsAt[i] = this.appointments[i].getEndsAt().toEpochMilli();
+                maxEndAt = Math.max(maxEndAt, endsAt[i]);
+                maxEndsAt[i] = maxEndAt;
+            }
+        }
+    }
+
+    /**
+     * A visitor of the appointments that are visible within a time range.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * Visits a visible appointment.
+         * @param appointment the appointment.
+         * @param startsAt the starting time, in epoch milliseconds.
+         * @param endsAt the ending time, in epoch milliseconds.
+         */
+        void visit(Appointment appointment, long startsAt, long endsAt);
+    }
+
+    /**
+     * An index without any appointments.
+     */
+    public static final CalendarIndex empty = new CalendarIndex(new ArrayList<>(), new ArrayList<>());
+
+    /**
+     * The lanes, in order.
+     */
+    private final Lane[] lanes;
+
+    /**
+     * The constructor, which sorts the appointments into lanes.
+     * Appointments of a contact that has no lane are left out.
+     * @param laneContactIds the contact id of every lane, in order.
+     * @param appointments the appointments.
+     */
+    public CalendarIndex(List<Integer> laneContactIds, List<Appointment> appointments) {
+        Map<Integer, List<Appointment>> appointmentsByContactId = new HashMap<>();
+        for (int contactId : laneContactIds) {
+            appointmentsByContactId.put(contactId, new ArrayList<>());
+        }
+        for (Appointment appointment : appointments) {
+            List<Appointment> laneAppointments = appointmentsByContactId.get(appointment.getContactId());
+            if (laneAppointments != null) {
+                laneAppointments.add(appointment);
+            }
+        }
+        this.lanes = new Lane[laneContactIds.size()];
+        for (int i = 0; i < lanes.length; ++i) {
+            lanes[i] = new Lane(appointmentsByContactId.get(laneContactIds.get(i)));
+        }
+    }
+
+    /**
+     * Gets the number of lanes.
+     * @return the number of lanes.
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Visits the appointments of a lane that overlap with a time range, in order of starting time.
+     * @param laneIndex the index of the lane.
+     * @param from the starting time of the time range, in epoch milliseconds (inclusive).
+     * @param to the ending time of the time range, in epoch milliseconds (exclusive).
+     * @param visitor the visitor.
+     */
+    public void forEachVisible(int laneIndex, long from, long to, Visitor visitor) {
+        Lane lane = lanes[laneIndex];
+        int end = firstIndexAtLeast(lane.startsAt, to);
+        for (int i = firstIndexAbove(lane.maxEndsAt, from); i < end; ++i) {
+            if (lane.endsAt[i] > from) {
+                visitor.visit(lane.appointments[i], lane.startsAt[i], lane.endsAt[i]);
+            }
+        }
+    }
+
+    /**
+     * Finds the first index of a sorted array whose value is at least a given value.
+     * @param values the values, in ascending order.
+     * @param value the value.
+     * @return the index, or the length of the array if there is none.
+     */
+    private static int firstIndexAtLeast(long[] values, long value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first index of a sorted array whose value is above a given value.
+     * @param values the values, in ascending order.
+     * @param value the value.
+     * @return the index, or the length of the array if there is none.
+     */
+    private static int firstIndexAbove(long[] values, long value) {
+        return value == Long.MAX_VALUE ? values.length : firstIndexAtLeast(values, value + 1);
+    }
+}
@@ -0,0 +1,93 @@
+package helper.dbaccess;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An abstract class that consists of only static members and is not meant to be instantiated.
+ * It serializes bookings within this application per contact and per customer with a fixed number of striped locks,
+ * so that bookings of the same contact or customer wait for each other while unrelated bookings proceed in parallel.
+ * <br>
+ * A resource always maps to the same stripe, and the stripes of a booking are always locked in ascending order,
+ * so two bookings can never deadlock. Two unrelated resources may share a stripe, which only costs some waiting.
+ * Other clients are kept out by the reserved slots and the row locks taken in the database.
+ * @see helper.dbaccess.dao.DBAppointment#bookAppointment(model.Appointment)
+ */
+public abstract class BookingLocks {
+    /**
+     * The number of stripes.
+     */
+    private static final int stripeCount = 64;
+    /**
+     * The stripes.
+     */
+    private static final ReentrantLock[] stripes = new ReentrantLock[stripeCount];
+
+    static {
+        for (int i = 0; i < stripeCount; ++i) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * The locks held for a booking, released when closed.
+     */
+    public static class Held implements AutoCloseable {
+        /**
+         * The indices of the locked stripes, in ascending order.
+         */
+        private final int[] stripeIndices;
+
+        /**
+         * The constructor.
+         * @param stripeIndices the indices of the locked stripes, in ascending order.
+         */
+        private Held(int[] stripeIndices) {
+            this.stripeIndices = stripeIndices;
+        }
+
+        /**
+         * Releases the locks, in the reverse order they were taken.
+         */
+        @Override
+        public void close() {
+            for (int i = stripeIndices.length - 1; i >= 0; --i) {
+                stripes[stripeIndices[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * Locks the stripes of the given contacts and customers, waiting as long as needed.
+     * @param contactIds the contact ids.
+     * @param customerIds the customer ids.
+     * @return the held locks, to be closed once the booking is done.
+     */
+    public static Held acquire(Collection<Integer> contactIds, Collection<Integer> customerIds) {
+        int[] stripeIndices = new int[contactIds.size() + customerIds.size()];
+        int count = 0;
+        for (int contactId : contactIds) {
+            stripeIndices[count++] = stripeOf(contactId, 0);
+        }
+        for (int customerId : customerIds) {
+            stripeIndices[count++] = stripeOf(customerId, 1);
+        }
+        stripeIndices = Arrays.stream(stripeIndices).sorted().distinct().toArray();
+        for (int stripeIndex : stripeIndices) {
+            stripes[stripeIndex].lock();
+        }
+        return new Held(stripeIndices);
+    }
+
+    /**
+     * Gets the stripe of a resource.
+     * @param id the id of the resource.
+     * @param kind 0 for a contact, 1 for a customer, so that a contact and a customer with the same id are spread apart.
+     * @return the stripe index.
+     */
+    private static int stripeOf(int id, int kind) {
+        int hash = id * 0x9E3779B1 + kind * 0x85EBCA6B;
+        return Math.floorMod(hash ^ (hash >>> 16), stripeCount);
+    }
+}
@@ -9,6 +9,7 @@ import java.sql.SQLException;
  * This class is used to interface with the MYSQL database for this application.
  * It can open and close a connection, as well as return the connection for the other helper.dbaccess classes.
  * @see helper.dbaccess.dao.DBAppointment
+ * @see helper.dbaccess.dao.DBAppointmentDailyRollup
  * @see helper.dbaccess.dao.DBContact
  * @see helper.dbaccess.dao.DBCountry
  * @see helper.dbaccess.dao.DBCustomer
@@ -103,4 +104,21 @@ public abstract class DBConnection {
         }
         return connection;
     }
+
+    /**
+     * Opens a new connection that is separate from the shared connection, for use by background work that needs its own
+     * transactions (and so must not change the auto-commit state of the shared connection).
+     * The caller is responsible for closing it.
+     * @return a newly-opened Connection to the MYSQL database.
+     * @throws SQLException if the connection could not be opened.
+     * @see #getConnection()
+     */
+    public static Connection openDedicatedConnection() throws SQLException {
+        try {
+            Class.forName(driver); // Locate Driver
+        } catch (ClassNotFoundException e) {
+            throw new SQLException(e);
+        }
+        return DriverManager.getConnection(jdbcUrl, userName, password);
+    }
 }
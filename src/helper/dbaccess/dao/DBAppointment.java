@@ -1,31 +1,106 @@
 package helper.dbaccess.dao;
 
+import helper.dbaccess.BookingLocks;
 import helper.dbaccess.DBConnection;
+import helper.locale.LocaleHelper;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import model.Appointment;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * The DAO object/class that is used to perform all database operations pertaining to the Appointment model.
  * @see Appointment
  */
 public abstract class DBAppointment {
+    /**
+     * A listener that is notified after an appointment has been created, updated, or deleted through this class.
+     * @see #addChangeListener(ChangeListener)
+     */
+    @FunctionalInterface
+    public interface ChangeListener {
+        /**
+         * Invoked after an appointment has been changed.
+         * When both appointments are null, an unknown set of appointments has changed (e.g. appointments that were
+         * deleted along with their customer), and anything derived from appointments should be discarded.
+         * @param before the appointment before the change, or null if it was created.
+         * @param after the appointment after the change, or null if it was deleted.
+         */
+        void onAppointmentChanged(Appointment before, Appointment after);
+    }
+
+    /**
+     * Sets the parameters of a prepared statement.
+     */
+    @FunctionalInterface
+    private interface StatementParameters {
+        /**
+         * Sets the parameters.
+         * @param ps the prepared statement.
+         * @throws SQLException if setting a parameter fails.
+         */
+        void set(PreparedStatement ps) throws SQLException;
+    }
+
+    /**
+     * The exception that is raised when a booking conflicts with appointments of the same contact or customer.
+     * @see #bookAppointment(Appointment)
+     * @see #rebookAppointment(Appointment)
+     */
+    public static class BookingConflictException extends Exception {
+        /**
+         * The conflicting appointments, series occurrences having an id of 0.
+         */
+        private final List<Appointment> conflictingAppointments;
+
+        /**
+         * The constructor.
+         * @param conflictingAppointments the conflicting appointments.
+         */
+        public BookingConflictException(List<Appointment> conflictingAppointments) {
+            this.conflictingAppointments = conflictingAppointments;
+        }
+
+        /**
+         * Gets the conflicting appointments.
+         * @return the conflicting appointments, series occurrences having an id of 0.
+         */
+        public List<Appointment> getConflictingAppointments() {
+            return conflictingAppointments;
+        }
+    }
+
     /**
      * The maximum number of times an operation can be retried before giving up.
      */
     private static final int maxRetries = 3;
+    /**
+     * The maximum number of inserts sent to the database in a single JDBC batch by createAppointments.
+     */
+    private static final int createBatchSize = 500;
+
+    /**
+     * The listeners that are notified when an appointment is changed.
+     */
+    private static final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
 
     /**
      * The name of the schema in the database.
@@ -115,6 +190,15 @@ public abstract class DBAppointment {
             appointmentTableName,
             appointmentStartsAtColumnName,
             appointmentStartsAtColumnName);
+    /**
+     * The SQL template for streaming all appointments that start within a half-open time range.
+     */
+    private static final String streamAppointmentsStartingWithinTimeRangeSQL = String.format("SELECT * FROM %s.%s WHERE %s >= ? AND %s < ? ORDER BY %s ASC;",
+            schemaName,
+            appointmentTableName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName);
     /**
      * The SQL template for grabbing all appointments within a time range and related to a user.
      */
@@ -190,29 +274,157 @@ public abstract class DBAppointment {
             schemaName,
             appointmentTableName,
             appointmentIdColumnName);
+    /**
+     * The SQL template for grabbing all appointments related to a contact that start within a time range.
+     */
+    private static final String selectAppointmentsForContactIdWithinTimeRangeSQL = String.format("SELECT * FROM %s.%s WHERE %s = ? AND %s >= ? AND %s < ? ORDER BY %s ASC;",
+            schemaName,
+            appointmentTableName,
+            contactIdColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName);
+    /**
+     * The SQL template for grabbing all appointments of a contact or of a customer that overlap with a given time range.
+     */
+    private static final String selectAppointmentsForContactIdOrCustomerIdOverlappingWithTimeRangeSQL = String.format("SELECT * FROM %s.%s WHERE (%s = ? OR %s = ?) AND %s < ? AND %s > ? ORDER BY %s ASC;",
+            schemaName,
+            appointmentTableName,
+            contactIdColumnName,
+            customerIdColumnName,
+            appointmentStartsAtColumnName,
+            appointmentEndsAtColumnName,
+            appointmentStartsAtColumnName);
+    /**
+     * The SQL template for locking the row of a customer until the end of the transaction, which serializes the bookings
+     * of the customer across all clients.
+     */
+    private static final String lockCustomerRowSQL = String.format("SELECT %s FROM %s.%s WHERE %s = ? FOR UPDATE;",
+            DBCustomer.customerIdColumnName,
+            schemaName,
+            DBCustomer.customerTableName,
+            DBCustomer.customerIdColumnName);
     /**
      * The SQL template for generating the count by month and type report.
+     * Months are grouped together with their year so that the same month of different years is not merged, and
+     * the time range is applied directly to the starting time column so that the index on it can be used.
      */
-    private static final String getAppointmentsCountByMonthAndTypeSQL = String.format("SELECT MONTHNAME(%s) AS month, %s, COUNT(%s) AS count FROM %s.%s GROUP BY MONTHNAME(%s), %s;",
+    private static final String getAppointmentsCountByMonthAndTypeSQL = String.format("SELECT YEAR(%s) AS year, MONTH(%s) AS monthNumber, MONTHNAME(%s) AS month, %s, COUNT(%s) AS count FROM %s.%s WHERE %s >= ? AND %s < ? GROUP BY YEAR(%s), MONTH(%s), MONTHNAME(%s), %s ORDER BY year ASC, monthNumber ASC, %s ASC;",
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
             appointmentStartsAtColumnName,
             appointmentTypeColumnName,
             userIdColumnName,
             schemaName,
             appointmentTableName,
             appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentTypeColumnName,
             appointmentTypeColumnName);
     /**
      * The SQL template for generating the count by weekday and type report.
+     * The time range is applied directly to the starting time column so that the index on it can be used.
      */
-    private static final String getAppointmentsCountByWeekdayAndTypeSQL = String.format("SELECT DAYNAME(%s) AS weekday, %s, COUNT(%s) AS count FROM %s.%s GROUP BY DAYNAME(%s), %s;",
+    private static final String getAppointmentsCountByWeekdayAndTypeSQL = String.format("SELECT DAYOFWEEK(%s) AS weekdayNumber, DAYNAME(%s) AS weekday, %s, COUNT(%s) AS count FROM %s.%s WHERE %s >= ? AND %s < ? GROUP BY DAYOFWEEK(%s), DAYNAME(%s), %s ORDER BY weekdayNumber ASC, %s ASC;",
+            appointmentStartsAtColumnName,
             appointmentStartsAtColumnName,
             appointmentTypeColumnName,
             userIdColumnName,
             schemaName,
             appointmentTableName,
             appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentTypeColumnName,
             appointmentTypeColumnName);
 
+    /**
+     * The SQL template for generating the count by month and type report from the rollup table for the covered days,
+     * combined with the appointments table for the uncovered parts at either end of the time range.
+     * @see DBAppointmentDailyRollup
+     */
+    private static final String getAppointmentsCountByMonthAndTypeWithRollupSQL = String.format("SELECT year, monthNumber, month, %s, SUM(count) AS count FROM (" +
+                    "SELECT YEAR(%s) AS year, MONTH(%s) AS monthNumber, MONTHNAME(%s) AS month, %s, SUM(%s) AS count FROM %s.%s WHERE %s >= ? AND %s < ? GROUP BY YEAR(%s), MONTH(%s), MONTHNAME(%s), %s" +
+                    " UNION ALL " +
+                    "SELECT YEAR(%s) AS year, MONTH(%s) AS monthNumber, MONTHNAME(%s) AS month, %s, COUNT(%s) AS count FROM %s.%s WHERE %s >= ? AND %s < ? OR %s >= ? AND %s < ? GROUP BY YEAR(%s), MONTH(%s), MONTHNAME(%s), %s" +
+                    ") AS combined GROUP BY year, monthNumber, month, %s ORDER BY year ASC, monthNumber ASC, %s ASC;",
+            appointmentTypeColumnName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            appointmentTypeColumnName,
+            DBAppointmentDailyRollup.rollupCountColumnName,
+            schemaName,
+            DBAppointmentDailyRollup.rollupTableName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            appointmentTypeColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentTypeColumnName,
+            userIdColumnName,
+            schemaName,
+            appointmentTableName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentTypeColumnName,
+            appointmentTypeColumnName,
+            appointmentTypeColumnName);
+    /**
+     * The SQL template for generating the count by weekday and type report from the rollup table for the covered days,
+     * combined with the appointments table for the uncovered parts at either end of the time range.
+     * @see DBAppointmentDailyRollup
+     */
+    private static final String getAppointmentsCountByWeekdayAndTypeWithRollupSQL = String.format("SELECT weekdayNumber, weekday, %s, SUM(count) AS count FROM (" +
+                    "SELECT DAYOFWEEK(%s) AS weekdayNumber, DAYNAME(%s) AS weekday, %s, SUM(%s) AS count FROM %s.%s WHERE %s >= ? AND %s < ? GROUP BY DAYOFWEEK(%s), DAYNAME(%s), %s" +
+                    " UNION ALL " +
+                    "SELECT DAYOFWEEK(%s) AS weekdayNumber, DAYNAME(%s) AS weekday, %s, COUNT(%s) AS count FROM %s.%s WHERE %s >= ? AND %s < ? OR %s >= ? AND %s < ? GROUP BY DAYOFWEEK(%s), DAYNAME(%s), %s" +
+                    ") AS combined GROUP BY weekdayNumber, weekday, %s ORDER BY weekdayNumber ASC, %s ASC;",
+            appointmentTypeColumnName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            appointmentTypeColumnName,
+            DBAppointmentDailyRollup.rollupCountColumnName,
+            schemaName,
+            DBAppointmentDailyRollup.rollupTableName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            DBAppointmentDailyRollup.rollupDayColumnName,
+            appointmentTypeColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentTypeColumnName,
+            userIdColumnName,
+            schemaName,
+            appointmentTableName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentStartsAtColumnName,
+            appointmentTypeColumnName,
+            appointmentTypeColumnName,
+            appointmentTypeColumnName);
+
+    /**
+     * The number of months covered by the reports when no time range is given.
+     */
+    public static final int defaultReportWindowMonths = 12;
 
     /**
      * Grabs all appointments from the database.
@@ -278,6 +490,42 @@ public abstract class DBAppointment {
         return appointmentsForContactId;
     }
 
+    /**
+     * Given a contact id and a time range, grabs all associated appointments that start within that time range.
+     * @param contactId the contact id.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the appointments.
+     */
+    public static ObservableList<Appointment> getAllAppointmentsForContactId(int contactId, Instant from, Instant to) {
+        ObservableList<Appointment> appointmentsForContactId = FXCollections.observableArrayList();
+
+        for (int count = 0; count < maxRetries; ++count) {
+            try {
+                PreparedStatement ps = DBConnection.getConnection().prepareStatement(selectAppointmentsForContactIdWithinTimeRangeSQL);
+                ps.setInt(1, contactId);
+                ps.setTimestamp(2, Timestamp.from(from));
+                ps.setTimestamp(3, Timestamp.from(to));
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    appointmentsForContactId.add(buildAppointment(rs));
+                }
+
+                count = maxRetries;
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } catch (DBConnection.ConnectionNotOpen e) {
+                e.printStackTrace();
+                if (DBConnection.openConnection()) {
+                    continue;
+                }
+                count = maxRetries;
+            }
+        }
+
+        return appointmentsForContactId;
+    }
+
     /**
      * Given a time range, grabs all appointments that start within that time range.
      * @param from the starting time of the time range.
@@ -313,6 +561,77 @@ public abstract class DBAppointment {
         return appointmentsStartingWithinTimeRange;
     }
 
+    /**
+     * Given a time range, streams every appointment that starts within that time range to the consumer, one row at a time,
+     * without keeping them in memory.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @param consumer the consumer that is given each appointment, in order of starting time.
+     * @return true if every appointment was streamed, false if there was an issue.
+     * @see #streamAppointments(String, StatementParameters, Consumer)
+     */
+    public static boolean streamAppointmentsStartingWithinTimeRange(Instant from, Instant to, Consumer<Appointment> consumer) {
+        return streamAppointments(streamAppointmentsStartingWithinTimeRangeSQL, ps -> {
+            ps.setTimestamp(1, Timestamp.from(from));
+            ps.setTimestamp(2, Timestamp.from(to));
+        }, consumer);
+    }
+
+    /**
+     * Streams every appointment to the consumer, one row at a time, without keeping them in memory.
+     * @param consumer the consumer that is given each appointment, in order of starting time.
+     * @return true if every appointment was streamed, false if there was an issue.
+     * @see #streamAppointments(String, StatementParameters, Consumer)
+     */
+    public static boolean streamAllAppointments(Consumer<Appointment> consumer) {
+        return streamAppointments(selectAllAppointmentsSQL, ps -> {}, consumer);
+    }
+
+    /**
+     * Given a contact id and a time range, streams every associated appointment that starts within that time range to
+     * the consumer, one row at a time, without keeping them in memory.
+     * @param contactId the contact id.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @param consumer the consumer that is given each appointment, in order of starting time.
+     * @return true if every appointment was streamed, false if there was an issue.
+     * @see #streamAppointments(String, StatementParameters, Consumer)
+     */
+    public static boolean streamAppointmentsForContactId(int contactId, Instant from, Instant to, Consumer<Appointment> consumer) {
+        return streamAppointments(selectAppointmentsForContactIdWithinTimeRangeSQL, ps -> {
+            ps.setInt(1, contactId);
+            ps.setTimestamp(2, Timestamp.from(from));
+            ps.setTimestamp(3, Timestamp.from(to));
+        }, consumer);
+    }
+
+    /**
+     * Streams every appointment selected by a query to the consumer, one row at a time, without keeping them in memory.
+     * The rows are read on a dedicated connection, since a streaming result set blocks its connection until it has been
+     * read fully.
+     * @param sql the SQL template of the query.
+     * @param parameters sets the parameters of the query.
+     * @param consumer the consumer that is given each appointment.
+     * @return true if every appointment was streamed, false if there was an issue.
+     * @see DBConnection#openDedicatedConnection()
+     */
+    private static boolean streamAppointments(String sql, StatementParameters parameters, Consumer<Appointment> consumer) {
+        try (Connection connection = DBConnection.openDedicatedConnection();
+             PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE); // tells the MYSQL driver to stream rows rather than read them all at once
+            parameters.set(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(buildAppointment(rs));
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
     /**
      * Given a time range and user id, grabs all appointments associated with that user that start within that time range.
      * @param from the starting time of the time range.
@@ -390,6 +709,45 @@ public abstract class DBAppointment {
         return appointmentsOverlappingWithTimeRange;
     }
 
+    /**
+     * Given a contact id and a customer id, grabs all appointments of either that overlap with the given time range.
+     * An id that matches no row, e.g. 0, can be given to only grab the appointments of the other.
+     * @param contactId the contact id.
+     * @param customerId the customer id.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the appointments, in order of starting time.
+     */
+    public static ObservableList<Appointment> getAllAppointmentsForContactIdOrCustomerIdOverlappingWithTimeRange(int contactId, int customerId, Instant from, Instant to) {
+        ObservableList<Appointment> appointmentsOverlappingWithTimeRange = FXCollections.observableArrayList();
+
+        for (int count = 0; count < maxRetries; ++count) {
+            try {
+                PreparedStatement ps = DBConnection.getConnection().prepareStatement(selectAppointmentsForContactIdOrCustomerIdOverlappingWithTimeRangeSQL);
+                ps.setInt(1, contactId);
+                ps.setInt(2, customerId);
+                ps.setTimestamp(3, Timestamp.from(to));
+                ps.setTimestamp(4, Timestamp.from(from));
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    appointmentsOverlappingWithTimeRange.add(buildAppointment(rs));
+                }
+
+                count = maxRetries;
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } catch (DBConnection.ConnectionNotOpen e) {
+                e.printStackTrace();
+                if (DBConnection.openConnection()) {
+                    continue;
+                }
+                count = maxRetries;
+            }
+        }
+
+        return appointmentsOverlappingWithTimeRange;
+    }
+
     /**
      * Grabs all appointments that start within the next 1 month.
      * @return the appointments.
@@ -422,18 +780,55 @@ public abstract class DBAppointment {
     }
 
     /**
-     * Grabs the month, type, and count of appointments grouped by month &amp; type for a report.
+     * Gets the starting time of the default report window, which is the first day of the month
+     * {@link #defaultReportWindowMonths} - 1 months ago, so that the window covers whole months.
+     * The months are those of the user's time zone, in which the report dates are shown and picked.
+     * @return the starting time of the default report window.
+     * @see #getDefaultReportWindowEnd()
+     */
+    public static Instant getDefaultReportWindowStart() {
+        ZoneId zoneId = LocaleHelper.getZoneId();
+        return YearMonth.now(zoneId).minusMonths(defaultReportWindowMonths - 1).atDay(1).atStartOfDay(zoneId).toInstant();
+    }
+
+    /**
+     * Gets the ending time of the default report window, which is the start of next month in the user's time zone.
+     * @return the ending time of the default report window.
+     * @see #getDefaultReportWindowStart()
+     */
+    public static Instant getDefaultReportWindowEnd() {
+        ZoneId zoneId = LocaleHelper.getZoneId();
+        return YearMonth.now(zoneId).plusMonths(1).atDay(1).atStartOfDay(zoneId).toInstant();
+    }
+
+    /**
+     * Grabs the month, type, and count of appointments grouped by month &amp; type for a report,
+     * using the default report window.
      * @return the report data.
+     * @see #getAppointmentsCountByMonthAndType(Instant, Instant)
      */
     public static ObservableList<List<StringProperty>> getAppointmentsCountByMonthAndType() {
+        return getAppointmentsCountByMonthAndType(getDefaultReportWindowStart(), getDefaultReportWindowEnd());
+    }
+
+    /**
+     * Grabs the month, type, and count of appointments that start within a time range, grouped by year, month &amp; type for a report.
+     * The month is reported along with its year, e.g. "January 2021".
+     * The whole days of the time range that are covered by the rollup table are read from it rather than from the appointments.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the report data.
+     */
+    public static ObservableList<List<StringProperty>> getAppointmentsCountByMonthAndType(Instant from, Instant to) {
         ObservableList<List<StringProperty>> result = FXCollections.observableArrayList();
+        Optional<DBAppointmentDailyRollup.CoveredDays> coveredDays = DBAppointmentDailyRollup.getCoveredDays(from, to);
         for (int count = 0; count < maxRetries; ++count) {
             try {
-                PreparedStatement ps = DBConnection.getConnection().prepareStatement(getAppointmentsCountByMonthAndTypeSQL);
+                PreparedStatement ps = prepareReportStatement(getAppointmentsCountByMonthAndTypeSQL, getAppointmentsCountByMonthAndTypeWithRollupSQL, from, to, coveredDays);
                 ResultSet rs = ps.executeQuery();
                 while (rs.next()) {
                     List<StringProperty> entry = new ArrayList<>(3);
-                    entry.add(new SimpleStringProperty(rs.getString("month")));
+                    entry.add(new SimpleStringProperty(rs.getString("month") + " " + rs.getInt("year")));
                     entry.add(new SimpleStringProperty(rs.getString(appointmentTypeColumnName)));
                     entry.add(new SimpleStringProperty(String.valueOf(rs.getInt("count"))));
                     result.add(entry);
@@ -453,14 +848,28 @@ public abstract class DBAppointment {
     }
 
     /**
-     * Grabs the weekday, type, and count of appointments grouped by month &amp; type for a report.
+     * Grabs the weekday, type, and count of appointments grouped by weekday &amp; type for a report,
+     * using the default report window.
      * @return the report data.
+     * @see #getAppointmentsCountByWeekdayAndType(Instant, Instant)
      */
     public static ObservableList<List<StringProperty>> getAppointmentsCountByWeekdayAndType() {
+        return getAppointmentsCountByWeekdayAndType(getDefaultReportWindowStart(), getDefaultReportWindowEnd());
+    }
+
+    /**
+     * Grabs the weekday, type, and count of appointments that start within a time range, grouped by weekday &amp; type for a report.
+     * The whole days of the time range that are covered by the rollup table are read from it rather than from the appointments.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the report data.
+     */
+    public static ObservableList<List<StringProperty>> getAppointmentsCountByWeekdayAndType(Instant from, Instant to) {
         ObservableList<List<StringProperty>> result = FXCollections.observableArrayList();
+        Optional<DBAppointmentDailyRollup.CoveredDays> coveredDays = DBAppointmentDailyRollup.getCoveredDays(from, to);
         for (int count = 0; count < maxRetries; ++count) {
             try {
-                PreparedStatement ps = DBConnection.getConnection().prepareStatement(getAppointmentsCountByWeekdayAndTypeSQL);
+                PreparedStatement ps = prepareReportStatement(getAppointmentsCountByWeekdayAndTypeSQL, getAppointmentsCountByWeekdayAndTypeWithRollupSQL, from, to, coveredDays);
                 ResultSet rs = ps.executeQuery();
                 while (rs.next()) {
                     List<StringProperty> entry = new ArrayList<>(3);
@@ -483,28 +892,59 @@ public abstract class DBAppointment {
         return result;
     }
 
+    /**
+     * Prepares the statement for one of the count reports. If some whole days of the time range are covered by the rollup
+     * table, the statement reads those days from the rollup table and only the parts of the time range before and after
+     * them from the appointments table. Otherwise, the statement reads the whole time range from the appointments table.
+     * @param liveSQL the SQL template that reads only from the appointments table.
+     * @param rollupSQL the SQL template that combines the rollup table with the appointments table.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @param coveredDays the whole days of the time range that are covered by the rollup table, if any.
+     * @return the prepared statement, with all parameters set.
+     * @throws SQLException if preparing the statement fails.
+     * @throws DBConnection.ConnectionNotOpen if the connection is not open.
+     * @see DBAppointmentDailyRollup#getCoveredDays(Instant, Instant)
+     */
+    private static PreparedStatement prepareReportStatement(String liveSQL, String rollupSQL, Instant from, Instant to, Optional<DBAppointmentDailyRollup.CoveredDays> coveredDays) throws SQLException, DBConnection.ConnectionNotOpen {
+        PreparedStatement ps;
+        if (coveredDays.isPresent()) {
+            LocalDate coveredFrom = coveredDays.get().getFrom();
+            LocalDate coveredTo = coveredDays.get().getTo();
+            ps = DBConnection.getConnection().prepareStatement(rollupSQL);
+            ps.setObject(1, coveredFrom);
+            ps.setObject(2, coveredTo);
+            ps.setTimestamp(3, Timestamp.from(from));
+            ps.setObject(4, coveredFrom);
+            ps.setObject(5, coveredTo);
+            ps.setTimestamp(6, Timestamp.from(to));
+        } else {
+            ps = DBConnection.getConnection().prepareStatement(liveSQL);
+            ps.setTimestamp(1, Timestamp.from(from));
+            ps.setTimestamp(2, Timestamp.from(to));
+        }
+        return ps;
+    }
+
     /**
      * Updates an appointment record in the database given an appointment model.
+     * The previous day of the appointment is marked dirty in the rollup table, since Last_Update only shows the new day.
      * @param appointment the appointment with the fields populated.
      * @return true if the appointment was updated, false if there was an issue.
      */
     public static boolean updateAppointment(Appointment appointment) {
+        Optional<Appointment> existingAppointment = getAppointmentFromId(appointment.getId());
+        existingAppointment.ifPresent(appt -> DBAppointmentDailyRollup.markDayDirty(appt.getStartsAt()));
         for (int count = 0; count < maxRetries; ++count) {
             try {
                 PreparedStatement ps = DBConnection.getConnection().prepareStatement(updateAppointmentSQL);
-                ps.setInt(1, appointment.getContactId());
-                ps.setInt(2, appointment.getCustomerId());
-                ps.setInt(3, appointment.getUserId());
-                ps.setString(4, appointment.getTitle());
-                ps.setString(5, appointment.getDescription());
-                ps.setString(6, appointment.getLocation());
-                ps.setString(7, appointment.getType());
-                ps.setTimestamp(8, Timestamp.from(appointment.getStartsAt()));
-                ps.setTimestamp(9, Timestamp.from(appointment.getEndsAt()));
-                ps.setTimestamp(10, Timestamp.from(appointment.getUpdatedAt()));
-                ps.setString(11, appointment.getUpdatedBy());
-                ps.setInt(12, appointment.getId());
-                return ps.execute();
+                setUpdateParameters(ps, appointment);
+                boolean wasUpdated = ps.executeUpdate() == 1;
+                if (wasUpdated) {
+                    syncSlots(appointment, true);
+                    notifyChangeListeners(existingAppointment.orElse(null), appointment);
+                }
+                return wasUpdated;
             } catch (SQLException e) {
                 e.printStackTrace();
             } catch (DBConnection.ConnectionNotOpen e) {
@@ -528,19 +968,14 @@ public abstract class DBAppointment {
         for (int count = 0; count < maxRetries; ++count) {
             try {
                 PreparedStatement ps = DBConnection.getConnection().prepareStatement(createAppointmentSQL, PreparedStatement.RETURN_GENERATED_KEYS);
-                ps.setInt(1, appointment.getContactId());
-                ps.setInt(2, appointment.getCustomerId());
-                ps.setInt(3, appointment.getUserId());
-                ps.setString(4, appointment.getTitle());
-                ps.setString(5, appointment.getDescription());
-                ps.setString(6, appointment.getLocation());
-                ps.setString(7, appointment.getType());
-                ps.setTimestamp(8, Timestamp.from(appointment.getStartsAt()));
-                ps.setTimestamp(9, Timestamp.from(appointment.getEndsAt()));
+                setCreateParameters(ps, appointment);
                 if (ps.executeUpdate() == 1) {
                     ResultSet rs = ps.getGeneratedKeys();
                     if (rs.next()) {
-                        return getAppointmentFromId(rs.getInt(1));
+                        Optional<Appointment> createdAppointment = getAppointmentFromId(rs.getInt(1));
+                        createdAppointment.ifPresent(appt -> syncSlots(appt, false));
+                        createdAppointment.ifPresent(appt -> notifyChangeListeners(null, appt));
+                        return createdAppointment;
                     }
                 }
                 count = maxRetries;
@@ -557,18 +992,340 @@ public abstract class DBAppointment {
         return Optional.empty();
     }
 
+    /**
+     * Creates many appointment records in the database at once, e.g. for a plan made by the auto-scheduler.
+     * All inserts are sent in JDBC batches on a dedicated connection within a single transaction, along with the
+     * reserved slots of every appointment, so either every appointment is created or none is, e.g. when one of them
+     * would double-book a contact. The generated ids are set on the given appointments, and the listeners are
+     * notified of each created appointment after the commit.
+     * @param appointments the appointments with the fields populated.
+     * @return true if every appointment was created, false if there was an issue and none was created.
+     * @see DBAppointmentSlots
+     */
+    public static boolean createAppointments(List<Appointment> appointments) {
+        if (appointments.isEmpty()) {
+            return true;
+        }
+        try (Connection connection = DBConnection.openDedicatedConnection()) {
+            DBAppointmentSlots.createTableIfNotExists(connection);
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(createAppointmentSQL, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                int[] ids = new int[appointments.size()];
+                for (int batchStart = 0; batchStart < appointments.size(); batchStart += createBatchSize) {
+                    int batchEnd = Math.min(batchStart + createBatchSize, appointments.size());
+                    for (Appointment appointment : appointments.subList(batchStart, batchEnd)) {
+                        setCreateParameters(ps, appointment);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    ResultSet rs = ps.getGeneratedKeys();
+                    for (int index = batchStart; index < batchEnd; ++index) {
+                        if (!rs.next()) {
+                            connection.rollback();
+                            return false;
+                        }
+                        ids[index] = rs.getInt(1);
+                    }
+                }
+                for (int index = 0; index < ids.length; ++index) {
+                    appointments.get(index).setId(ids[index]);
+                }
+                try {
+                    DBAppointmentSlots.reserveSlots(connection, appointments);
+                } catch (SQLException e) {
+                    if (!isConstraintViolation(e)) {
+                        throw e;
+                    }
+                    e.printStackTrace();
+                    connection.rollback();
+                    appointments.forEach(appointment -> appointment.setId(0));
+                    return false;
+                }
+                connection.commit();
+
+                for (Appointment appointment : appointments) {
+                    notifyChangeListeners(null, appointment);
+                }
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Creates an appointment record in the database, unless it conflicts with an appointment of the same contact or
+     * customer, as one atomic operation.
+     * <br>
+     * The check and the insert run while holding the in-process locks of the contact and customer, and within
+     * a transaction that reserves the contact's slots and locks the customer's row in the database, so concurrent
+     * bookings of the same contact or customer, from this or any other client, cannot both pass the check. Bookings of other contacts and customers are not blocked.
+     * @param appointment the appointment with the fields populated.
+     * @return the created appointment, or empty if there was an issue.
+     * @throws BookingConflictException if the appointment conflicts with another appointment of the contact or customer.
+     * @see BookingLocks
+     */
+    public static Optional<Appointment> bookAppointment(Appointment appointment) throws BookingConflictException {
+        BookingLocks.Held held = BookingLocks.acquire(List.of(appointment.getContactId()), List.of(appointment.getCustomerId()));
+        try {
+            int id = book(appointment, null);
+            if (id == 0) {
+                return Optional.empty();
+            }
+            Optional<Appointment> createdAppointment = getAppointmentFromId(id);
+            createdAppointment.ifPresent(appt -> notifyChangeListeners(null, appt));
+            return createdAppointment;
+        } finally {
+            held.close();
+        }
+    }
+
+    /**
+     * Updates an appointment record in the database, unless its new times conflict with an appointment of its contact
+     * or customer, as one atomic operation.
+     * Both the previous and the new contact and customer are locked.
+     * @param appointment the appointment with the fields populated.
+     * @return true if the appointment was updated, false if there was an issue.
+     * @throws BookingConflictException if the appointment conflicts with another appointment of the contact or customer.
+     * @see #bookAppointment(Appointment)
+     */
+    public static boolean rebookAppointment(Appointment appointment) throws BookingConflictException {
+        Optional<Appointment> existingAppointment = getAppointmentFromId(appointment.getId());
+        if (existingAppointment.isEmpty()) {
+            return false;
+        }
+        List<Integer> contactIds = List.of(appointment.getContactId(), existingAppointment.get().getContactId());
+        List<Integer> customerIds = List.of(appointment.getCustomerId(), existingAppointment.get().getCustomerId());
+        BookingLocks.Held held = BookingLocks.acquire(contactIds, customerIds);
+        try {
+            DBAppointmentDailyRollup.markDayDirty(existingAppointment.get().getStartsAt());
+            if (book(appointment, existingAppointment.get()) == 0) {
+                return false;
+            }
+            notifyChangeListeners(existingAppointment.get(), appointment);
+            return true;
+        } finally {
+            held.close();
+        }
+    }
+
+    /**
+     * Checks for conflicts and writes an appointment within a single transaction on a dedicated connection.
+     * <br>
+     * The contact is guarded by reserving the slots of the appointment in the same transaction, so a double-booking
+     * fails on the unique key of the slots table without an overlap query beforehand; the overlap query only runs
+     * afterwards to report the conflicting appointments. The customer has no slots table, so its rows are locked in
+     * ascending id order and its appointments are checked before writing.
+     * <br>
+     * Occurrences of recurring appointment series are not checked, since they cannot be seen or managed from the
+     * application yet.
+     * @param appointment the appointment with the fields populated.
+     * @param existingAppointment the appointment before the update, or null to create the appointment.
+     * @return the id of the appointment, or 0 if there was an issue.
+     * @throws BookingConflictException if the appointment conflicts with another appointment of the contact or customer.
+     * @see DBAppointmentSlots
+     */
+    private static int book(Appointment appointment, Appointment existingAppointment) throws BookingConflictException {
+        try (Connection connection = DBConnection.openDedicatedConnection()) {
+            DBAppointmentSlots.createTableIfNotExists(connection);
+            connection.setAutoCommit(false);
+            try {
+                lockRows(connection, lockCustomerRowSQL, appointment.getCustomerId(), existingAppointment == null ? appointment.getCustomerId() : existingAppointment.getCustomerId());
+
+                List<Appointment> conflictingAppointments = selectConflictingAppointments(connection, 0, appointment.getCustomerId(),
+                        appointment.getStartsAt(), appointment.getEndsAt(), existingAppointment);
+                if (!conflictingAppointments.isEmpty()) {
+                    connection.rollback();
+                    throw new BookingConflictException(conflictingAppointments);
+                }
+
+                int id = 0;
+                if (existingAppointment == null) {
+                    try (PreparedStatement ps = connection.prepareStatement(createAppointmentSQL, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                        setCreateParameters(ps, appointment);
+                        ps.executeUpdate();
+                        ResultSet rs = ps.getGeneratedKeys();
+                        id = rs.next() ? rs.getInt(1) : 0;
+                    }
+                } else {
+                    try (PreparedStatement ps = connection.prepareStatement(updateAppointmentSQL)) {
+                        setUpdateParameters(ps, appointment);
+                        id = ps.executeUpdate() == 1 ? appointment.getId() : 0;
+                    }
+                    DBAppointmentSlots.releaseSlots(connection, appointment.getId());
+                }
+                if (id == 0) {
+                    connection.rollback();
+                    return 0;
+                }
+
+                Appointment bookedAppointment = new Appointment();
+                bookedAppointment.setId(id);
+                bookedAppointment.setContactId(appointment.getContactId());
+                bookedAppointment.setStartsAt(appointment.getStartsAt());
+                bookedAppointment.setEndsAt(appointment.getEndsAt());
+                try {
+                    DBAppointmentSlots.reserveSlots(connection, List.of(bookedAppointment));
+                } catch (SQLException e) {
+                    if (!isConstraintViolation(e)) {
+                        throw e;
+                    }
+                    connection.rollback();
+                    // the slots that are taken may be only partially used by the other appointment
+                    throw new BookingConflictException(selectConflictingAppointments(connection, appointment.getContactId(), 0,
+                            DBAppointmentSlots.getFirstSlotStart(appointment.getStartsAt()),
+                            DBAppointmentSlots.getLastSlotEnd(appointment.getEndsAt()), existingAppointment));
+                }
+                connection.commit();
+                return id;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Grabs the appointments of a contact or of a customer that overlap with a time range, on a given connection.
+     * @param connection the connection.
+     * @param contactId the contact id, or 0 for none.
+     * @param customerId the customer id, or 0 for none.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @param ignoredAppointment the appointment to leave out, e.g. the one being updated, or null.
+     * @return the appointments.
+     * @throws SQLException if the query fails.
+     */
+    private static List<Appointment> selectConflictingAppointments(Connection connection, int contactId, int customerId, Instant from, Instant to, Appointment ignoredAppointment) throws SQLException {
+        List<Appointment> conflictingAppointments = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(selectAppointmentsForContactIdOrCustomerIdOverlappingWithTimeRangeSQL)) {
+            ps.setInt(1, contactId);
+            ps.setInt(2, customerId);
+            ps.setTimestamp(3, Timestamp.from(to));
+            ps.setTimestamp(4, Timestamp.from(from));
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                Appointment conflictingAppointment = buildAppointment(rs);
+                if (ignoredAppointment == null || conflictingAppointment.getId() != ignoredAppointment.getId()) {
+                    conflictingAppointments.add(conflictingAppointment);
+                }
+            }
+        }
+        return conflictingAppointments;
+    }
+
+    /**
+     * Reserves the free slots of an appointment that was written without a transaction, so that the slots table keeps
+     * up with the plain create and update methods. A failure is only logged, since the appointment is already written.
+     * @param appointment the appointment, with its id.
+     * @param releaseFirst whether to release the previous slots of the appointment first.
+     * @see DBAppointmentSlots#reserveFreeSlots(Connection, Appointment)
+     */
+    private static void syncSlots(Appointment appointment, boolean releaseFirst) {
+        try {
+            Connection connection = DBConnection.getConnection();
+            DBAppointmentSlots.createTableIfNotExists(connection);
+            if (releaseFirst) {
+                DBAppointmentSlots.releaseSlots(connection, appointment.getId());
+            }
+            DBAppointmentSlots.reserveFreeSlots(connection, appointment);
+        } catch (SQLException | DBConnection.ConnectionNotOpen e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Whether an exception means that a constraint was violated, e.g. a slot that is already reserved.
+     * A failed batch wraps the violation, and the SQL state of every integrity constraint violation starts with 23.
+     * @param e the exception.
+     * @return whether a constraint was violated.
+     */
+    private static boolean isConstraintViolation(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLIntegrityConstraintViolationException
+                    || cause instanceof SQLException && ((SQLException) cause).getSQLState() != null && ((SQLException) cause).getSQLState().startsWith("23")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Locks the rows of up to two resources in ascending id order.
+     * @param connection the connection of the transaction.
+     * @param lockRowSQL the SQL template that locks the row of one resource.
+     * @param id the id of the first resource.
+     * @param otherId the id of the second resource, which may be the same.
+     * @throws SQLException if locking fails.
+     */
+    private static void lockRows(Connection connection, String lockRowSQL, int id, int otherId) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(lockRowSQL)) {
+            ps.setInt(1, Math.min(id, otherId));
+            ps.executeQuery();
+            if (id != otherId) {
+                ps.setInt(1, Math.max(id, otherId));
+                ps.executeQuery();
+            }
+        }
+    }
+
+    /**
+     * Sets the parameters of createAppointmentSQL.
+     * @param ps the prepared statement.
+     * @param appointment the appointment with the fields populated.
+     * @throws SQLException if setting a parameter fails.
+     */
+    private static void setCreateParameters(PreparedStatement ps, Appointment appointment) throws SQLException {
+        ps.setInt(1, appointment.getContactId());
+        ps.setInt(2, appointment.getCustomerId());
+        ps.setInt(3, appointment.getUserId());
+        ps.setString(4, appointment.getTitle());
+        ps.setString(5, appointment.getDescription());
+        ps.setString(6, appointment.getLocation());
+        ps.setString(7, appointment.getType());
+        ps.setTimestamp(8, Timestamp.from(appointment.getStartsAt()));
+        ps.setTimestamp(9, Timestamp.from(appointment.getEndsAt()));
+    }
+
+    /**
+     * Sets the parameters of updateAppointmentSQL.
+     * @param ps the prepared statement.
+     * @param appointment the appointment with the fields populated.
+     * @throws SQLException if setting a parameter fails.
+     */
+    private static void setUpdateParameters(PreparedStatement ps, Appointment appointment) throws SQLException {
+        setCreateParameters(ps, appointment);
+        ps.setTimestamp(10, Timestamp.from(appointment.getUpdatedAt()));
+        ps.setString(11, appointment.getUpdatedBy());
+        ps.setInt(12, appointment.getId());
+    }
+
     /**
      * Deletes an appointment record from the database given an appointment id.
+     * The day of the appointment is marked dirty in the rollup table, since a deleted row has no Last_Update.
      * @param appointmentId the appointment id.
      * @return true if the appointment was deleted, false if there was an issue.
      */
     public static boolean deleteAppointmentFromId(int appointmentId) {
+        Optional<Appointment> existingAppointment = getAppointmentFromId(appointmentId);
+        existingAppointment.ifPresent(appt -> DBAppointmentDailyRollup.markDayDirty(appt.getStartsAt()));
         for (int count = 0; count < maxRetries; ++count) {
             try {
                 PreparedStatement ps = DBConnection.getConnection().prepareStatement(deleteAppointmentSQL);
                 ps.setInt(1, appointmentId);
 
-                return ps.executeUpdate() == 1;
+                boolean wasDeleted = ps.executeUpdate() == 1;
+                if (wasDeleted) {
+                    notifyChangeListeners(existingAppointment.orElse(null), null);
+                }
+                return wasDeleted;
             } catch (SQLException e) {
                 e.printStackTrace();
             } catch (DBConnection.ConnectionNotOpen e) {
@@ -612,13 +1369,50 @@ public abstract class DBAppointment {
         return Optional.empty();
     }
 
+    /**
+     * Registers a listener that is notified after every appointment change made through this class.
+     * @param listener the listener.
+     * @see ChangeListener
+     */
+    public static void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener that was registered with addChangeListener.
+     * @param listener the listener.
+     * @see #addChangeListener(ChangeListener)
+     */
+    public static void removeChangeListener(ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Notifies all registered listeners of an appointment change. A listener that throws does not prevent the others
+     * from being notified.
+     * Also used by the other DAOs when they change appointments indirectly, with both appointments null.
+     * @param before the appointment before the change, or null if it was created or unknown.
+     * @param after the appointment after the change, or null if it was deleted or unknown.
+     * @see ChangeListener#onAppointmentChanged(Appointment, Appointment)
+     */
+    static void notifyChangeListeners(Appointment before, Appointment after) {
+        for (ChangeListener listener : changeListeners) {
+            try {
+                listener.onAppointmentChanged(before, after);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     /**
      * Given a result set that is in the middle of being used, build an appointment with the current row.
+     * Also used by the other DAOs that select appointment rows.
      * @param rs the ResultSet.
      * @return the new Appointment model object.
      * @throws SQLException if extracting fields fails.
      */
-    private static Appointment buildAppointment(ResultSet rs) throws SQLException {
+    static Appointment buildAppointment(ResultSet rs) throws SQLException {
         int appointmentId = rs.getInt(appointmentIdColumnName);
         int contactId = rs.getInt(contactIdColumnName);
         int customerId = rs.getInt(customerIdColumnName);
@@ -0,0 +1,450 @@
+package helper.dbaccess.dao;
+
+import helper.dbaccess.DBConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * The DAO object/class that is used to maintain and read the appointment_daily_rollup summary table.
+ * The summary table holds, for every day, contact, user, and type, the number of appointments starting that day and their
+ * total duration in minutes, so that reports over long time ranges do not need to scan every appointment.
+ * <br>
+ * The table is kept up to date by {@link #refreshTouchedDays()}, which only recomputes the days that were touched since
+ * the last refresh: days of appointments whose Last_Update is after the last refresh, plus days that were explicitly
+ * marked dirty (the previous day of an updated or deleted appointment, which Last_Update cannot show).
+ * @see helper.rollup.DailyRollupScheduler
+ * @see DBAppointment
+ */
+public abstract class DBAppointmentDailyRollup {
+    /**
+     * Represents the whole days within a requested time range that can be read from the rollup table.
+     * The days are from {@link #getFrom()} (inclusive) to {@link #getTo()} (exclusive).
+     */
+    public static class CoveredDays {
+        /**
+         * The first covered day (inclusive).
+         */
+        private final LocalDate from;
+        /**
+         * The day after the last covered day (exclusive).
+         */
+        private final LocalDate to;
+
+        /**
+         * The constructor.
+         * @param from the first covered day (inclusive).
+         * @param to the day after the last covered day (exclusive).
+         */
+        public CoveredDays(LocalDate from, LocalDate to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Gets the first covered day (inclusive).
+         * @return the first covered day.
+         */
+        public LocalDate getFrom() {
+            return from;
+        }
+
+        /**
+         * Gets the day after the last covered day (exclusive).
+         * @return the day after the last covered day.
+         */
+        public LocalDate getTo() {
+            return to;
+        }
+    }
+
+    /**
+     * The maximum number of times an operation can be retried before giving up.
+     */
+    private static final int maxRetries = 3;
+
+    /**
+     * The name of the schema in the database.
+     */
+    public static final String schemaName = DBAppointment.schemaName;
+    /**
+     * The name of the rollup table in the database.
+     */
+    public static final String rollupTableName = "appointment_daily_rollup";
+    /**
+     * The name of the table in the database that holds days which must be recomputed on the next refresh.
+     */
+    public static final String dirtyDaysTableName = "appointment_daily_rollup_dirty_days";
+    /**
+     * The name of the single-row table in the database that holds the state of the last refresh.
+     */
+    public static final String stateTableName = "appointment_daily_rollup_state";
+    /**
+     * The name of the day column in the database.
+     */
+    public static final String rollupDayColumnName = "Day";
+    /**
+     * The name of the appointment count column in the database.
+     */
+    public static final String rollupCountColumnName = "Appointment_Count";
+    /**
+     * The name of the total minutes column in the database.
+     */
+    public static final String rollupTotalMinutesColumnName = "Total_Minutes";
+    /**
+     * The name of the state id column in the database.
+     */
+    public static final String stateIdColumnName = "State_ID";
+    /**
+     * The name of the column in the database that holds the time the last successful refresh started.
+     */
+    public static final String stateLastRefreshedAtColumnName = "Last_Refreshed_At";
+    /**
+     * The name of the column in the database that holds the first day that is not covered by the rollup table.
+     */
+    public static final String stateCoveredUntilColumnName = "Covered_Until";
+
+    /**
+     * The SQL template for creating the rollup table.
+     */
+    private static final String createRollupTableSQL = String.format("CREATE TABLE IF NOT EXISTS %s.%s (%s DATE NOT NULL, %s INT NOT NULL, %s INT NOT NULL, %s VARCHAR(50) NOT NULL, %s INT NOT NULL, %s BIGINT NOT NULL, PRIMARY KEY (%s, %s, %s, %s));",
+            schemaName,
+            rollupTableName,
+            rollupDayColumnName,
+            DBAppointment.contactIdColumnName,
+            DBAppointment.userIdColumnName,
+            DBAppointment.appointmentTypeColumnName,
+            rollupCountColumnName,
+            rollupTotalMinutesColumnName,
+            rollupDayColumnName,
+            DBAppointment.contactIdColumnName,
+            DBAppointment.userIdColumnName,
+            DBAppointment.appointmentTypeColumnName);
+    /**
+     * The SQL template for creating the dirty days table.
+     */
+    private static final String createDirtyDaysTableSQL = String.format("CREATE TABLE IF NOT EXISTS %s.%s (%s DATE NOT NULL PRIMARY KEY);",
+            schemaName,
+            dirtyDaysTableName,
+            rollupDayColumnName);
+    /**
+     * The SQL template for creating the state table.
+     */
+    private static final String createStateTableSQL = String.format("CREATE TABLE IF NOT EXISTS %s.%s (%s INT NOT NULL PRIMARY KEY, %s DATETIME NULL, %s DATE NULL);",
+            schemaName,
+            stateTableName,
+            stateIdColumnName,
+            stateLastRefreshedAtColumnName,
+            stateCoveredUntilColumnName);
+    /**
+     * The SQL template for creating the single state row if it does not exist yet.
+     */
+    private static final String createStateRowSQL = String.format("INSERT IGNORE INTO %s.%s (%s) VALUES (1);",
+            schemaName,
+            stateTableName,
+            stateIdColumnName);
+    /**
+     * The SQL template for reading the state row, locking it so that two refreshes can not run at the same time.
+     */
+    private static final String selectStateForUpdateSQL = String.format("SELECT NOW() AS now, %s FROM %s.%s WHERE %s = 1 FOR UPDATE;",
+            stateLastRefreshedAtColumnName,
+            schemaName,
+            stateTableName,
+            stateIdColumnName);
+    /**
+     * The SQL template for updating the state row after a successful refresh.
+     */
+    private static final String updateStateSQL = String.format("UPDATE %s.%s SET %s = ?, %s = DATE(?) WHERE %s = 1;",
+            schemaName,
+            stateTableName,
+            stateLastRefreshedAtColumnName,
+            stateCoveredUntilColumnName,
+            stateIdColumnName);
+    /**
+     * The SQL template for marking the day of a given time as dirty.
+     */
+    private static final String markDayDirtySQL = String.format("INSERT IGNORE INTO %s.%s (%s) VALUES (DATE(?));",
+            schemaName,
+            dirtyDaysTableName,
+            rollupDayColumnName);
+    /**
+     * The SQL template for marking the days of all appointments of a given customer as dirty.
+     */
+    private static final String markCustomerDaysDirtySQL = String.format("INSERT IGNORE INTO %s.%s (%s) SELECT DISTINCT DATE(%s) FROM %s.%s WHERE %s = ?;",
+            schemaName,
+            dirtyDaysTableName,
+            rollupDayColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            schemaName,
+            DBAppointment.appointmentTableName,
+            DBAppointment.customerIdColumnName);
+    /**
+     * The SQL template for marking the days of all appointments updated since a given time as dirty.
+     * Meant to be used with an index on Last_Update.
+     */
+    private static final String markTouchedDaysDirtySQL = String.format("INSERT IGNORE INTO %s.%s (%s) SELECT DISTINCT DATE(%s) FROM %s.%s WHERE %s >= ?;",
+            schemaName,
+            dirtyDaysTableName,
+            rollupDayColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            schemaName,
+            DBAppointment.appointmentTableName,
+            DBAppointment.appointmentUpdatedAtColumnName);
+    /**
+     * The SQL template for marking the days of all appointments as dirty, used for the very first refresh.
+     */
+    private static final String markAllDaysDirtySQL = String.format("INSERT IGNORE INTO %s.%s (%s) SELECT DISTINCT DATE(%s) FROM %s.%s;",
+            schemaName,
+            dirtyDaysTableName,
+            rollupDayColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            schemaName,
+            DBAppointment.appointmentTableName);
+    /**
+     * The SQL template for deleting the rollup rows of all dirty days.
+     */
+    private static final String deleteDirtyRollupRowsSQL = String.format("DELETE r FROM %s.%s r INNER JOIN %s.%s d ON r.%s = d.%s;",
+            schemaName,
+            rollupTableName,
+            schemaName,
+            dirtyDaysTableName,
+            rollupDayColumnName,
+            rollupDayColumnName);
+    /**
+     * The SQL template for recomputing the rollup rows of all dirty days.
+     * Each dirty day is joined as a range on the starting time column so that the index on it can be used.
+     */
+    private static final String insertDirtyRollupRowsSQL = String.format("INSERT INTO %s.%s (%s, %s, %s, %s, %s, %s) SELECT d.%s, a.%s, a.%s, a.%s, COUNT(*), SUM(TIMESTAMPDIFF(MINUTE, a.%s, a.%s)) FROM %s.%s d INNER JOIN %s.%s a ON a.%s >= d.%s AND a.%s < d.%s + INTERVAL 1 DAY GROUP BY d.%s, a.%s, a.%s, a.%s;",
+            schemaName,
+            rollupTableName,
+            rollupDayColumnName,
+            DBAppointment.contactIdColumnName,
+            DBAppointment.userIdColumnName,
+            DBAppointment.appointmentTypeColumnName,
+            rollupCountColumnName,
+            rollupTotalMinutesColumnName,
+            rollupDayColumnName,
+            DBAppointment.contactIdColumnName,
+            DBAppointment.userIdColumnName,
+            DBAppointment.appointmentTypeColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.appointmentEndsAtColumnName,
+            schemaName,
+            dirtyDaysTableName,
+            schemaName,
+            DBAppointment.appointmentTableName,
+            DBAppointment.appointmentStartsAtColumnName,
+            rollupDayColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            rollupDayColumnName,
+            rollupDayColumnName,
+            DBAppointment.contactIdColumnName,
+            DBAppointment.userIdColumnName,
+            DBAppointment.appointmentTypeColumnName);
+    /**
+     * The SQL template for clearing the dirty days once they have been recomputed.
+     */
+    private static final String clearDirtyDaysSQL = String.format("DELETE FROM %s.%s;",
+            schemaName,
+            dirtyDaysTableName);
+    /**
+     * The SQL template for finding the whole days of a time range that are covered by the rollup table.
+     * The first whole day is the day of the starting time, or the day after if the starting time is not at midnight.
+     * The last whole day is the day before the ending time, capped to the days covered by the last refresh, and to the
+     * days before the first day that changed since then: the first dirty day, and the first day of an appointment
+     * updated since then.
+     */
+    private static final String selectCoveredDaysSQL = String.format("SELECT IF(TIME(?) = '00:00:00', DATE(?), DATE(?) + INTERVAL 1 DAY) AS coveredFrom, LEAST(DATE(?), s.%s, COALESCE((SELECT MIN(d.%s) FROM %s.%s d), s.%s), COALESCE((SELECT MIN(DATE(a.%s)) FROM %s.%s a WHERE a.%s >= s.%s), s.%s)) AS coveredTo FROM %s.%s s WHERE s.%s = 1 AND s.%s IS NOT NULL;",
+            stateCoveredUntilColumnName,
+            rollupDayColumnName,
+            schemaName,
+            dirtyDaysTableName,
+            stateCoveredUntilColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            schemaName,
+            DBAppointment.appointmentTableName,
+            DBAppointment.appointmentUpdatedAtColumnName,
+            stateLastRefreshedAtColumnName,
+            stateCoveredUntilColumnName,
+            schemaName,
+            stateTableName,
+            stateIdColumnName,
+            stateCoveredUntilColumnName);
+
+    /**
+     * Creates the rollup, dirty days, and state tables if they do not exist yet.
+     * @param connection the connection to use.
+     * @throws SQLException if the tables could not be created.
+     */
+    private static void createTablesIfNotExist(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(createRollupTableSQL);
+            statement.execute(createDirtyDaysTableSQL);
+            statement.execute(createStateTableSQL);
+            statement.execute(createStateRowSQL);
+        }
+    }
+
+    /**
+     * Recomputes the rollup rows of every day touched since the last refresh, in a single transaction on a dedicated
+     * connection. The very first refresh computes every day.
+     * Days before the day the refresh started are then considered covered by the rollup table.
+     * @return true if the refresh succeeded, false if there was an issue.
+     * @see DBConnection#openDedicatedConnection()
+     */
+    public static boolean refreshTouchedDays() {
+        try (Connection connection = DBConnection.openDedicatedConnection()) {
+            createTablesIfNotExist(connection);
+            connection.setAutoCommit(false);
+            try {
+                Timestamp refreshStartedAt;
+                Timestamp lastRefreshedAt;
+                try (PreparedStatement ps = connection.prepareStatement(selectStateForUpdateSQL)) {
+                    ResultSet rs = ps.executeQuery();
+                    if (!rs.next()) {
+                        connection.rollback();
+                        return false;
+                    }
+                    refreshStartedAt = rs.getTimestamp("now");
+                    lastRefreshedAt = rs.getTimestamp(stateLastRefreshedAtColumnName);
+                }
+
+                if (lastRefreshedAt == null) {
+                    try (PreparedStatement ps = connection.prepareStatement(markAllDaysDirtySQL)) {
+                        ps.executeUpdate();
+                    }
+                } else {
+                    try (PreparedStatement ps = connection.prepareStatement(markTouchedDaysDirtySQL)) {
+                        ps.setTimestamp(1, lastRefreshedAt);
+                        ps.executeUpdate();
+                    }
+                }
+
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate(deleteDirtyRollupRowsSQL);
+                    statement.executeUpdate(insertDirtyRollupRowsSQL);
+                    statement.executeUpdate(clearDirtyDaysSQL);
+                }
+
+                try (PreparedStatement ps = connection.prepareStatement(updateStateSQL)) {
+                    ps.setTimestamp(1, refreshStartedAt);
+                    ps.setTimestamp(2, refreshStartedAt);
+                    ps.executeUpdate();
+                }
+
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Marks the day of the given time as dirty so that it is recomputed on the next refresh.
+     * Used for the previous day of an appointment that was updated or deleted.
+     * @param startsAt the starting time of the appointment.
+     * @return true if the day was marked, false if there was an issue.
+     */
+    public static boolean markDayDirty(Instant startsAt) {
+        for (int count = 0; count < maxRetries; ++count) {
+            try {
+                PreparedStatement ps = DBConnection.getConnection().prepareStatement(markDayDirtySQL);
+                ps.setTimestamp(1, Timestamp.from(startsAt));
+                ps.executeUpdate();
+                return true;
+            } catch (SQLException e) {
+                // the table does not exist before the first refresh, which recomputes every day anyway
+                e.printStackTrace();
+                count = maxRetries;
+            } catch (DBConnection.ConnectionNotOpen e) {
+                e.printStackTrace();
+                if (DBConnection.openConnection()) {
+                    continue;
+                }
+                count = maxRetries;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks the days of all appointments of the given customer as dirty so that they are recomputed on the next refresh.
+     * Used before the customer is deleted, since its appointments are deleted along with it.
+     * @param customerId the customer id.
+     * @return true if the days were marked, false if there was an issue.
+     */
+    public static boolean markCustomerDaysDirty(int customerId) {
+        for (int count = 0; count < maxRetries; ++count) {
+            try {
+                PreparedStatement ps = DBConnection.getConnection().prepareStatement(markCustomerDaysDirtySQL);
+                ps.setInt(1, customerId);
+                ps.executeUpdate();
+                return true;
+            } catch (SQLException e) {
+                // the table does not exist before the first refresh, which recomputes every day anyway
+                e.printStackTrace();
+                count = maxRetries;
+            } catch (DBConnection.ConnectionNotOpen e) {
+                e.printStackTrace();
+                if (DBConnection.openConnection()) {
+                    continue;
+                }
+                count = maxRetries;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Given a time range, finds the whole days within it that can be read from the rollup table.
+     * The days that changed since the last refresh are not covered, so that they are read live until they are recomputed.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the covered days, or empty if the rollup table has not been refreshed yet or covers no whole day of the range.
+     */
+    public static Optional<CoveredDays> getCoveredDays(Instant from, Instant to) {
+        Timestamp fromTimestamp = Timestamp.from(from);
+        Timestamp toTimestamp = Timestamp.from(to);
+        for (int count = 0; count < maxRetries; ++count) {
+            try {
+                PreparedStatement ps = DBConnection.getConnection().prepareStatement(selectCoveredDaysSQL);
+                ps.setTimestamp(1, fromTimestamp);
+                ps.setTimestamp(2, fromTimestamp);
+                ps.setTimestamp(3, fromTimestamp);
+                ps.setTimestamp(4, toTimestamp);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) {
+                    LocalDate coveredFrom = rs.getObject("coveredFrom", LocalDate.class);
+                    LocalDate coveredTo = rs.getObject("coveredTo", LocalDate.class);
+                    if (coveredFrom != null && coveredTo != null && coveredFrom.isBefore(coveredTo)) {
+                        return Optional.of(new CoveredDays(coveredFrom, coveredTo));
+                    }
+                }
+                count = maxRetries;
+            } catch (SQLException e) {
+                // the table does not exist before the first refresh, so nothing is covered
+                e.printStackTrace();
+                count = maxRetries;
+            } catch (DBConnection.ConnectionNotOpen e) {
+                e.printStackTrace();
+                if (DBConnection.openConnection()) {
+                    continue;
+                }
+                count = maxRetries;
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,285 @@
+package helper.dbaccess.dao;
+
+import helper.dbaccess.DBConnection;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import model.Appointment;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * The DAO object/class that is used to search appointments by the text of their title, description, location, and type,
+ * through a FULLTEXT index on those columns, which is created the first time it is needed.
+ * <br>
+ * Every term is matched as the start of a word. Terms shorter than the minimum word length of the FULLTEXT index are
+ * not in the index, so they are matched with LIKE instead, among the rows that the longer terms already narrowed down to.
+ * If the index can not be created, e.g. for lack of privileges, searches are left to the in-process index.
+ * @see helper.search.AppointmentSearch
+ */
+public abstract class DBAppointmentSearch {
+    /**
+     * The maximum number of times an operation can be retried before giving up.
+     */
+    private static final int maxRetries = 3;
+    /**
+     * The length of the shortest words in the FULLTEXT index, which is the default of InnoDB.
+     */
+    private static final int minIndexedTermLength = 3;
+
+    /**
+     * The name of the schema in the database.
+     */
+    public static final String schemaName = DBAppointment.schemaName;
+    /**
+     * The name of the FULLTEXT index in the database.
+     */
+    public static final String fullTextIndexName = "appointments_text";
+
+    /**
+     * Whether the FULLTEXT index exists, or null if not known yet.
+     */
+    private static volatile Boolean isFullTextAvailable = null;
+
+    /**
+     * The searched columns, separated by commas.
+     */
+    private static final String textColumnsSQL = String.format("%s, %s, %s, %s",
+            DBAppointment.appointmentTitleColumnName,
+            DBAppointment.appointmentDescriptionColumnName,
+            DBAppointment.appointmentLocationColumnName,
+            DBAppointment.appointmentTypeColumnName);
+    /**
+     * The SQL template for checking whether the FULLTEXT index exists.
+     */
+    private static final String indexExistsSQL = "SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = ? AND table_name = ? AND index_name = ?;";
+    /**
+     * The SQL template for creating the FULLTEXT index.
+     */
+    private static final String createFullTextIndexSQL = String.format("ALTER TABLE %s.%s ADD FULLTEXT INDEX %s (%s);",
+            schemaName,
+            DBAppointment.appointmentTableName,
+            fullTextIndexName,
+            textColumnsSQL);
+    /**
+     * The SQL fragment that scores a row against the terms that are in the index.
+     */
+    private static final String matchSQL = String.format("MATCH(%s) AGAINST(? IN BOOLEAN MODE)", textColumnsSQL);
+    /**
+     * The SQL fragment that matches a term that is not in the index as the start of a word.
+     */
+    private static final String likeSQL = String.format("CONCAT(' ', CONCAT_WS(' ', %s)) LIKE ?", textColumnsSQL);
+    /**
+     * The SQL template for a page of the matching appointments, given the score and the extra conditions.
+     */
+    private static final String searchSQL = String.format("SELECT *, %%s AS score FROM %s.%s WHERE %s >= ? AND %s < ?%%s ORDER BY score DESC, %s ASC LIMIT ? OFFSET ?;",
+            schemaName,
+            DBAppointment.appointmentTableName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.appointmentStartsAtColumnName);
+    /**
+     * The SQL template for counting the matching appointments, given the extra conditions.
+     */
+    private static final String countSQL = String.format("SELECT COUNT(*) FROM %s.%s WHERE %s >= ? AND %s < ?%%s;",
+            schemaName,
+            DBAppointment.appointmentTableName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.appointmentStartsAtColumnName);
+
+    /**
+     * The conditions that a search adds to its query, with their parameters.
+     */
+    private static class Conditions {
+        /**
+         * The boolean-mode query of the terms that are in the index, or null if there are none.
+         */
+        private final String matchQuery;
+        /**
+         * The LIKE patterns of the terms that are not in the index.
+         */
+        private final List<String> likePatterns = new ArrayList<>();
+        /**
+         * The SQL fragment with every condition, each preceded by AND.
+         */
+        private final String sql;
+
+        /**
+         * The constructor.
+         * @param terms the terms, lowercase letters and digits only.
+         */
+        private Conditions(List<String> terms) {
+            StringBuilder query = new StringBuilder();
+            StringBuilder conditions = new StringBuilder();
+            for (String term : terms) {
+                if (term.length() >= minIndexedTermLength) {
+                    query.append(query.length() == 0 ? "" : " ").append('+').append(term).append('*');
+                } else {
+                    likePatterns.add("% " + term + "%");
+                    conditions.append(" AND ").append(likeSQL);
+                }
+            }
+            this.matchQuery = query.length() == 0 ? null : query.toString();
+            this.sql = (matchQuery == null ? "" : " AND " + matchSQL) + conditions;
+        }
+
+        /**
+         * Sets the parameters of the conditions, starting at an index.
+         * @param ps the prepared statement.
+         * @param index the index of the first parameter.
+         * @return the index after the last parameter.
+         * @throws SQLException if setting a parameter fails.
+         */
+        private int setParameters(PreparedStatement ps, int index) throws SQLException {
+            if (matchQuery != null) {
+                ps.setString(index++, matchQuery);
+            }
+            for (String pattern : likePatterns) {
+                ps.setString(index++, pattern);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Whether searches can use the FULLTEXT index, creating it the first time if it does not exist.
+     * @return whether the FULLTEXT index exists.
+     */
+    public static boolean isFullTextAvailable() {
+        Boolean isAvailable = isFullTextAvailable;
+        if (isAvailable != null) {
+            return isAvailable;
+        }
+        synchronized (DBAppointmentSearch.class) {
+            if (isFullTextAvailable == null) {
+                isFullTextAvailable = createFullTextIndexIfNotExists();
+            }
+            return isFullTextAvailable;
+        }
+    }
+
+    /**
+     * Creates the FULLTEXT index if it does not exist yet.
+     * @return whether the index exists afterwards.
+     */
+    private static boolean createFullTextIndexIfNotExists() {
+        for (int count = 0; count < maxRetries; ++count) {
+            try {
+                Connection connection = DBConnection.getConnection();
+                try (PreparedStatement ps = connection.prepareStatement(indexExistsSQL)) {
+                    ps.setString(1, schemaName);
+                    ps.setString(2, DBAppointment.appointmentTableName);
+                    ps.setString(3, fullTextIndexName);
+                    ResultSet rs = ps.executeQuery();
+                    if (rs.next() && rs.getInt(1) > 0) {
+                        return true;
+                    }
+                }
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(createFullTextIndexSQL);
+                }
+                return true;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            } catch (DBConnection.ConnectionNotOpen e) {
+                e.printStackTrace();
+                if (DBConnection.openConnection()) {
+                    continue;
+                }
+                count = maxRetries;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Grabs a page of the appointments that start within a time range and match every term, best matches first and
+     * then by starting time.
+     * @param terms the terms, lowercase letters and digits only, of which there is at least one.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @param offset the number of matching appointments before the page.
+     * @param limit the maximum number of appointments in the page.
+     * @return the appointments, or empty if there was an issue.
+     */
+    public static Optional<ObservableList<Appointment>> searchAppointments(List<String> terms, Instant from, Instant to, int offset, int limit) {
+        Conditions conditions = new Conditions(terms);
+        String sql = String.format(searchSQL, conditions.matchQuery == null ? "0" : matchSQL, conditions.sql);
+        for (int count = 0; count < maxRetries; ++count) {
+            try {
+                PreparedStatement ps = DBConnection.getConnection().prepareStatement(sql);
+                int index = 1;
+                if (conditions.matchQuery != null) {
+                    ps.setString(index++, conditions.matchQuery);
+                }
+                ps.setTimestamp(index++, Timestamp.from(from));
+                ps.setTimestamp(index++, Timestamp.from(to));
+                index = conditions.setParameters(ps, index);
+                ps.setInt(index++, limit);
+                ps.setInt(index, offset);
+                ResultSet rs = ps.executeQuery();
+
+                ObservableList<Appointment> appointments = FXCollections.observableArrayList();
+                while (rs.next()) {
+                    appointments.add(DBAppointment.buildAppointment(rs));
+                }
+                return Optional.of(appointments);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                count = maxRetries;
+            } catch (DBConnection.ConnectionNotOpen e) {
+                e.printStackTrace();
+                if (DBConnection.openConnection()) {
+                    continue;
+                }
+                count = maxRetries;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Counts the appointments that start within a time range and match every term.
+     * @param terms the terms, lowercase letters and digits only, of which there is at least one.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the number of appointments, or empty if there was an issue.
+     */
+    public static OptionalInt countAppointments(List<String> terms, Instant from, Instant to) {
+        Conditions conditions = new Conditions(terms);
+        String sql = String.format(countSQL, conditions.sql);
+        for (int count = 0; count < maxRetries; ++count) {
+            try {
+                PreparedStatement ps = DBConnection.getConnection().prepareStatement(sql);
+                ps.setTimestamp(1, Timestamp.from(from));
+                ps.setTimestamp(2, Timestamp.from(to));
+                conditions.setParameters(ps, 3);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) {
+                    return OptionalInt.of(rs.getInt(1));
+                }
+                count = maxRetries;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                count = maxRetries;
+            } catch (DBConnection.ConnectionNotOpen e) {
+                e.printStackTrace();
+                if (DBConnection.openConnection()) {
+                    continue;
+                }
+                count = maxRetries;
+            }
+        }
+        return OptionalInt.empty();
+    }
+}
@@ -0,0 +1,513 @@
+package helper.dbaccess.dao;
+
+import helper.dbaccess.DBConnection;
+import helper.scheduling.TimeSlot;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import model.Appointment;
+import model.AppointmentSeries;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The DAO object/class that is used to make queries and updates to the appointment_series table and its overrides table.
+ * A series is stored as its rule only, plus one override row per cancelled or rescheduled occurrence; occurrences
+ * are expanded in memory by the AppointmentSeries model for the time range that is needed.
+ * <br>
+ * This feature is not finished: nothing in the application creates a series or shows its occurrences yet, so the
+ * conflict checks of the booking guard, the appointment form, and the batch tools do not take series into account.
+ * Once series can be created and managed, every one of those checks has to include their occurrences.
+ * @see AppointmentSeries
+ */
+public abstract class DBAppointmentSeries {
+    /**
+     * The maximum number of times an operation can be retried before giving up.
+     */
+    private static final int maxRetries = 3;
+
+    /**
+     * How far after its first occurrence a series that does not end is checked for conflicts.
+     */
+    public static final Duration openEndedConflictCheckHorizon = Duration.ofDays(2 * 366);
+
+    /**
+     * The name of the schema in the database.
+     */
+    public static final String schemaName = DBAppointment.schemaName;
+    /**
+     * The name of the series table in the database.
+     */
+    public static final String seriesTableName = "appointment_series";
+    /**
+     * The name of the overrides table in the database.
+     */
+    public static final String overridesTableName = "appointment_series_overrides";
+    /**
+     * The name of the series id column in the database.
+     */
+    public static final String seriesIdColumnName = "Series_ID";
+    /**
+     * The name of the frequency column in the database.
+     */
+    public static final String seriesFrequencyColumnName = "Frequency";
+    /**
+     * The name of the interval column in the database.
+     */
+    public static final String seriesIntervalColumnName = "Recurrence_Interval";
+    /**
+     * The name of the until column in the database.
+     */
+    public static final String seriesUntilColumnName = "Until";
+    /**
+     * The name of the time zone column in the database.
+     */
+    public static final String seriesTimeZoneColumnName = "Time_Zone";
+    /**
+     * The name of the column in the database that holds the original starting time of an overridden occurrence.
+     */
+    public static final String overrideOriginalStartsAtColumnName = "Original_Start";
+
+    /**
+     * Whether the tables are known to exist.
+     */
+    private static volatile boolean tablesExist = false;
+
+    /**
+     * The SQL template for creating the series table.
+     */
+    private static final String createSeriesTableSQL = String.format("CREATE TABLE IF NOT EXISTS %s.%s (%s INT NOT NULL AUTO_INCREMENT PRIMARY KEY, %s VARCHAR(50), %s VARCHAR(50), %s VARCHAR(50), %s VARCHAR(50), %s DATETIME NOT NULL, %s DATETIME NOT NULL, %s VARCHAR(10) NOT NULL, %s INT NOT NULL, %s DATETIME NULL, %s VARCHAR(64) NOT NULL, %s INT NOT NULL, %s INT NOT NULL, %s INT NOT NULL, INDEX (%s), INDEX (%s), INDEX (%s));",
+            schemaName,
+            seriesTableName,
+            seriesIdColumnName,
+            DBAppointment.appointmentTitleColumnName,
+            DBAppointment.appointmentDescriptionColumnName,
+            DBAppointment.appointmentLocationColumnName,
+            DBAppointment.appointmentTypeColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.appointmentEndsAtColumnName,
+            seriesFrequencyColumnName,
+            seriesIntervalColumnName,
+            seriesUntilColumnName,
+            seriesTimeZoneColumnName,
+            DBAppointment.contactIdColumnName,
+            DBAppointment.customerIdColumnName,
+            DBAppointment.userIdColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.contactIdColumnName,
+            DBAppointment.customerIdColumnName);
+    /**
+     * The SQL template for creating the overrides table.
+     * An override with no starting and ending time is a cancelled occurrence.
+     */
+    private static final String createOverridesTableSQL = String.format("CREATE TABLE IF NOT EXISTS %s.%s (%s INT NOT NULL, %s DATETIME NOT NULL, %s DATETIME NULL, %s DATETIME NULL, PRIMARY KEY (%s, %s), INDEX (%s), FOREIGN KEY (%s) REFERENCES %s.%s (%s) ON DELETE CASCADE);",
+            schemaName,
+            overridesTableName,
+            seriesIdColumnName,
+            overrideOriginalStartsAtColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.appointmentEndsAtColumnName,
+            seriesIdColumnName,
+            overrideOriginalStartsAtColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            seriesIdColumnName,
+            schemaName,
+            seriesTableName,
+            seriesIdColumnName);
+    /**
+     * The SQL condition that selects the series that may have an occurrence overlapping with a given time range:
+     * the rule is active during the time range, or one of its occurrences was rescheduled into it.
+     */
+    private static final String seriesOverlappingWithTimeRangeCondition = String.format("(s.%s < ? AND (s.%s IS NULL OR s.%s + INTERVAL TIMESTAMPDIFF(SECOND, s.%s, s.%s) SECOND > ?) OR s.%s IN (SELECT o.%s FROM %s.%s o WHERE o.%s < ? AND o.%s > ?))",
+            DBAppointment.appointmentStartsAtColumnName,
+            seriesUntilColumnName,
+            seriesUntilColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.appointmentEndsAtColumnName,
+            seriesIdColumnName,
+            seriesIdColumnName,
+            schemaName,
+            overridesTableName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.appointmentEndsAtColumnName);
+    /**
+     * The SQL template for grabbing all series that may have an occurrence overlapping with a given time range.
+     */
+    private static final String selectSeriesOverlappingWithTimeRangeSQL = String.format("SELECT s.* FROM %s.%s s WHERE %s ORDER BY s.%s ASC;",
+            schemaName,
+            seriesTableName,
+            seriesOverlappingWithTimeRangeCondition,
+            seriesIdColumnName);
+    /**
+     * The SQL template for grabbing the overrides of all series that may have an occurrence overlapping with a given time range.
+     */
+    private static final String selectOverridesOfSeriesOverlappingWithTimeRangeSQL = String.format("SELECT ov.* FROM %s.%s ov INNER JOIN %s.%s s ON ov.%s = s.%s WHERE %s;",
+            schemaName,
+            overridesTableName,
+            schemaName,
+            seriesTableName,
+            seriesIdColumnName,
+            seriesIdColumnName,
+            seriesOverlappingWithTimeRangeCondition);
+    /**
+     * The SQL template for creating a single series.
+     */
+    private static final String createSeriesSQL = String.format("INSERT INTO %s.%s(%s, %s, %s, %s, %s, %s, %s, %s, %s, %s, %s, %s, %s) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);",
+            schemaName,
+            seriesTableName,
+            DBAppointment.contactIdColumnName,
+            DBAppointment.customerIdColumnName,
+            DBAppointment.userIdColumnName,
+            DBAppointment.appointmentTitleColumnName,
+            DBAppointment.appointmentDescriptionColumnName,
+            DBAppointment.appointmentLocationColumnName,
+            DBAppointment.appointmentTypeColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.appointmentEndsAtColumnName,
+            seriesFrequencyColumnName,
+            seriesIntervalColumnName,
+            seriesUntilColumnName,
+            seriesTimeZoneColumnName);
+    /**
+     * The SQL template for creating or replacing the override of a single occurrence.
+     */
+    private static final String upsertOverrideSQL = String.format("INSERT INTO %s.%s(%s, %s, %s, %s) VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE %s = VALUES(%s), %s = VALUES(%s);",
+            schemaName,
+            overridesTableName,
+            seriesIdColumnName,
+            overrideOriginalStartsAtColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.appointmentEndsAtColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.appointmentEndsAtColumnName,
+            DBAppointment.appointmentEndsAtColumnName);
+    /**
+     * The SQL template for deleting a single series (its overrides are deleted by the foreign key).
+     */
+    private static final String deleteSeriesSQL = String.format("DELETE FROM %s.%s WHERE %s = ?;",
+            schemaName,
+            seriesTableName,
+            seriesIdColumnName);
+
+    /**
+     * Creates the series and overrides tables if they do not exist yet. Only runs once per application run.
+     * @param connection the connection to use.
+     * @throws SQLException if the tables could not be created.
+     */
+    private static void createTablesIfNotExist(Connection connection) throws SQLException {
+        if (tablesExist) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(createSeriesTableSQL);
+            statement.execute(createOverridesTableSQL);
+        }
+        tablesExist = true;
+    }
+
+    /**
+     * Given a time range, grabs all series that may have an occurrence overlapping with it, with their overrides.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the series.
+     * @see AppointmentSeries#getOccurrencesWithin(Instant, Instant)
+     */
+    public static ObservableList<AppointmentSeries> getAllSeriesOverlappingWithTimeRange(Instant from, Instant to) {
+        Map<Integer, AppointmentSeries> seriesById = new LinkedHashMap<>();
+        Timestamp fromTimestamp = Timestamp.from(from);
+        Timestamp toTimestamp = Timestamp.from(to);
+
+        for (int count = 0; count < maxRetries; ++count) {
+            try {
+                Connection connection = DBConnection.getConnection();
+                createTablesIfNotExist(connection);
+                seriesById.clear();
+                PreparedStatement ps = connection.prepareStatement(selectSeriesOverlappingWithTimeRangeSQL);
+                setTimeRangeParameters(ps, fromTimestamp, toTimestamp);
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    AppointmentSeries series = buildSeries(rs);
+                    seriesById.put(series.getId(), series);
+                }
+
+                ps = connection.prepareStatement(selectOverridesOfSeriesOverlappingWithTimeRangeSQL);
+                setTimeRangeParameters(ps, fromTimestamp, toTimestamp);
+                rs = ps.executeQuery();
+                while (rs.next()) {
+                    AppointmentSeries series = seriesById.get(rs.getInt(seriesIdColumnName));
+                    if (series != null) {
+                        applyOverride(series, rs);
+                    }
+                }
+
+                count = maxRetries;
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } catch (DBConnection.ConnectionNotOpen e) {
+                e.printStackTrace();
+                if (DBConnection.openConnection()) {
+                    continue;
+                }
+                count = maxRetries;
+            }
+        }
+
+        return FXCollections.observableArrayList(seriesById.values());
+    }
+
+    /**
+     * Given a time range, expands the occurrences of every series that overlap with it into appointments that are not saved.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the occurrences, as appointments with an id of 0.
+     * @see AppointmentSeries#expandWithin(Instant, Instant)
+     */
+    public static ObservableList<Appointment> getAllOccurrencesOverlappingWithTimeRange(Instant from, Instant to) {
+        ObservableList<Appointment> occurrences = FXCollections.observableArrayList();
+        for (AppointmentSeries series : getAllSeriesOverlappingWithTimeRange(from, to)) {
+            occurrences.addAll(series.expandWithin(from, to));
+        }
+        return occurrences;
+    }
+
+    /**
+     * Given a series that is not saved yet, grabs the appointments of its contact or customer that conflict with any
+     * of its occurrences, and the occurrences of other series of its contact or customer that do.
+     * The appointments are checked against the rule with interval arithmetic, without expanding the series.
+     * A series that does not end is checked up to openEndedConflictCheckHorizon after its first occurrence.
+     * @param series the series.
+     * @return the conflicting appointments (occurrences of other series have an id of 0).
+     */
+    public static ObservableList<Appointment> getAllAppointmentsConflictingWithSeries(AppointmentSeries series) {
+        Instant from = series.getStartsAt();
+        Instant to = series.getUntil().map(until -> until.plus(series.getDuration()))
+                .orElse(from.plus(openEndedConflictCheckHorizon));
+        List<Appointment> appointments = DBAppointment.getAllAppointmentsForContactIdOrCustomerIdOverlappingWithTimeRange(series.getContactId(), series.getCustomerId(), from, to);
+        ObservableList<Appointment> conflicts = FXCollections.observableArrayList(series.findConflicts(appointments));
+
+        for (AppointmentSeries otherSeries : getAllSeriesOverlappingWithTimeRange(from, to)) {
+            if (otherSeries.getId() == series.getId()
+                    || (otherSeries.getContactId() != series.getContactId() && otherSeries.getCustomerId() != series.getCustomerId())) {
+                continue;
+            }
+            // series against series has no shortcut, so the other series is expanded over the checked time range only
+            conflicts.addAll(series.findConflicts(otherSeries.expandWithin(from, to)));
+        }
+        return conflicts;
+    }
+
+    /**
+     * Creates a series record and its override records in the database, in a single transaction.
+     * @param series the series with the fields populated.
+     * @return the series with its new id, or empty if there was an issue.
+     */
+    public static Optional<AppointmentSeries> createSeries(AppointmentSeries series) {
+        try (Connection connection = DBConnection.openDedicatedConnection()) {
+            createTablesIfNotExist(connection);
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = connection.prepareStatement(createSeriesSQL, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                    ps.setInt(1, series.getContactId());
+                    ps.setInt(2, series.getCustomerId());
+                    ps.setInt(3, series.getUserId());
+                    ps.setString(4, series.getTitle());
+                    ps.setString(5, series.getDescription());
+                    ps.setString(6, series.getLocation());
+                    ps.setString(7, series.getType());
+                    ps.setTimestamp(8, Timestamp.from(series.getStartsAt()));
+                    ps.setTimestamp(9, Timestamp.from(series.getEndsAt()));
+                    ps.setString(10, series.getFrequency().name());
+                    ps.setInt(11, series.getInterval());
+                    ps.setTimestamp(12, series.getUntil().map(Timestamp::from).orElse(null));
+                    ps.setString(13, series.getZoneId().getId());
+                    ps.executeUpdate();
+                    ResultSet rs = ps.getGeneratedKeys();
+                    if (!rs.next()) {
+                        connection.rollback();
+                        return Optional.empty();
+                    }
+                    series.setId(rs.getInt(1));
+                }
+
+                try (PreparedStatement ps = connection.prepareStatement(upsertOverrideSQL)) {
+                    for (Instant originalStartsAt : series.getCancelledOccurrences()) {
+                        setOverrideParameters(ps, series.getId(), originalStartsAt, null);
+                        ps.addBatch();
+                    }
+                    for (Map.Entry<Instant, TimeSlot> entry : series.getRescheduledOccurrences().entrySet()) {
+                        setOverrideParameters(ps, series.getId(), entry.getKey(), entry.getValue());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+
+                connection.commit();
+                return Optional.of(series);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Cancels a single occurrence of a series.
+     * @param seriesId the series id.
+     * @param originalStartsAt the original starting time of the occurrence.
+     * @return true if the occurrence was cancelled, false if there was an issue.
+     */
+    public static boolean cancelOccurrence(int seriesId, Instant originalStartsAt) {
+        return upsertOverride(seriesId, originalStartsAt, null);
+    }
+
+    /**
+     * Moves a single occurrence of a series to new times.
+     * @param seriesId the series id.
+     * @param originalStartsAt the original starting time of the occurrence.
+     * @param newTimes the new times of the occurrence.
+     * @return true if the occurrence was rescheduled, false if there was an issue.
+     */
+    public static boolean rescheduleOccurrence(int seriesId, Instant originalStartsAt, TimeSlot newTimes) {
+        return upsertOverride(seriesId, originalStartsAt, newTimes);
+    }
+
+    /**
+     * Deletes a series record and its override records from the database given a series id.
+     * @param seriesId the series id.
+     * @return true if the series was deleted, false if there was an issue.
+     */
+    public static boolean deleteSeriesFromId(int seriesId) {
+        for (int count = 0; count < maxRetries; ++count) {
+            try {
+                Connection connection = DBConnection.getConnection();
+                createTablesIfNotExist(connection);
+                PreparedStatement ps = connection.prepareStatement(deleteSeriesSQL);
+                ps.setInt(1, seriesId);
+                return ps.executeUpdate() == 1;
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } catch (DBConnection.ConnectionNotOpen e) {
+                e.printStackTrace();
+                if (DBConnection.openConnection()) {
+                    continue;
+                }
+                count = maxRetries;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates or replaces the override of a single occurrence of a series.
+     * @param seriesId the series id.
+     * @param originalStartsAt the original starting time of the occurrence.
+     * @param newTimes the new times of the occurrence, or null if it is cancelled.
+     * @return true if the override was saved, false if there was an issue.
+     */
+    private static boolean upsertOverride(int seriesId, Instant originalStartsAt, TimeSlot newTimes) {
+        for (int count = 0; count < maxRetries; ++count) {
+            try {
+                Connection connection = DBConnection.getConnection();
+                createTablesIfNotExist(connection);
+                PreparedStatement ps = connection.prepareStatement(upsertOverrideSQL);
+                setOverrideParameters(ps, seriesId, originalStartsAt, newTimes);
+                ps.executeUpdate();
+                return true;
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } catch (DBConnection.ConnectionNotOpen e) {
+                e.printStackTrace();
+                if (DBConnection.openConnection()) {
+                    continue;
+                }
+                count = maxRetries;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the parameters of the upsert override statement.
+     * @param ps the statement.
+     * @param seriesId the series id.
+     * @param originalStartsAt the original starting time of the occurrence.
+     * @param newTimes the new times of the occurrence, or null if it is cancelled.
+     * @throws SQLException if setting a parameter fails.
+     */
+    private static void setOverrideParameters(PreparedStatement ps, int seriesId, Instant originalStartsAt, TimeSlot newTimes) throws SQLException {
+        ps.setInt(1, seriesId);
+        ps.setTimestamp(2, Timestamp.from(originalStartsAt));
+        ps.setTimestamp(3, newTimes == null ? null : Timestamp.from(newTimes.getStartsAt()));
+        ps.setTimestamp(4, newTimes == null ? null : Timestamp.from(newTimes.getEndsAt()));
+    }
+
+    /**
+     * Sets the parameters of a statement that uses the series overlapping with time range condition.
+     * @param ps the statement.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @throws SQLException if setting a parameter fails.
+     */
+    private static void setTimeRangeParameters(PreparedStatement ps, Timestamp from, Timestamp to) throws SQLException {
+        ps.setTimestamp(1, to);
+        ps.setTimestamp(2, from);
+        ps.setTimestamp(3, to);
+        ps.setTimestamp(4, from);
+    }
+
+    /**
+     * Given a result set that is in the middle of being used, applies the override on the current row to its series.
+     * @param series the series.
+     * @param rs the ResultSet.
+     * @throws SQLException if extracting fields fails.
+     */
+    private static void applyOverride(AppointmentSeries series, ResultSet rs) throws SQLException {
+        Instant originalStartsAt = rs.getTimestamp(overrideOriginalStartsAtColumnName).toInstant();
+        Timestamp startsAt = rs.getTimestamp(DBAppointment.appointmentStartsAtColumnName);
+        Timestamp endsAt = rs.getTimestamp(DBAppointment.appointmentEndsAtColumnName);
+        if (startsAt == null || endsAt == null) {
+            series.cancelOccurrence(originalStartsAt);
+        } else {
+            series.rescheduleOccurrence(originalStartsAt, new TimeSlot(startsAt.toInstant(), endsAt.toInstant()));
+        }
+    }
+
+    /**
+     * Given a result set that is in the middle of being used, build a series with the current row (without its overrides).
+     * @param rs the ResultSet.
+     * @return the new AppointmentSeries model object.
+     * @throws SQLException if extracting fields fails.
+     */
+    private static AppointmentSeries buildSeries(ResultSet rs) throws SQLException {
+        Timestamp until = rs.getTimestamp(seriesUntilColumnName);
+        return new AppointmentSeries(rs.getInt(seriesIdColumnName),
+                rs.getInt(DBAppointment.contactIdColumnName),
+                rs.getInt(DBAppointment.customerIdColumnName),
+                rs.getInt(DBAppointment.userIdColumnName),
+                rs.getString(DBAppointment.appointmentTitleColumnName),
+                rs.getString(DBAppointment.appointmentDescriptionColumnName),
+                rs.getString(DBAppointment.appointmentLocationColumnName),
+                rs.getString(DBAppointment.appointmentTypeColumnName),
+                rs.getTimestamp(DBAppointment.appointmentStartsAtColumnName).toInstant(),
+                rs.getTimestamp(DBAppointment.appointmentEndsAtColumnName).toInstant(),
+                AppointmentSeries.Frequency.valueOf(rs.getString(seriesFrequencyColumnName)),
+                rs.getInt(seriesIntervalColumnName),
+                until == null ? null : until.toInstant(),
+                ZoneId.of(rs.getString(seriesTimeZoneColumnName)));
+    }
+}
@@ -0,0 +1,249 @@
+package helper.dbaccess.dao;
+
+import model.Appointment;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The DAO object/class that is used to make updates to the appointment_slots table, which holds one row for every
+ * fixed-size slot that an appointment keeps its contact busy during, with a unique key on the contact and the slot.
+ * <br>
+ * The slots are written in the same transaction as the appointment, so a booking that would double-book a contact
+ * fails on the unique key in the same round trip as the insert, instead of needing an overlap query beforehand.
+ * A slot is reserved when the appointment touches any part of it. Slots are one minute long, the precision of the
+ * appointment times, so two appointments of the same contact conflict on the unique key exactly when they overlap,
+ * e.g. 10:00-10:02 and 10:02-10:30 do not.
+ * <br>
+ * Slots are removed along with their appointment by the foreign key. They are written by the booking methods and
+ * by createAppointments; the plain create and update methods keep them in sync without enforcing them.
+ * @see DBAppointment#bookAppointment(Appointment)
+ */
+public abstract class DBAppointmentSlots {
+    /**
+     * The size of a slot.
+     */
+    public static final Duration slotGranularity = Duration.ofMinutes(1);
+
+    /**
+     * The name of the schema in the database.
+     */
+    public static final String schemaName = DBAppointment.schemaName;
+    /**
+     * The name of the slots table in the database.
+     */
+    public static final String slotsTableName = "appointment_minute_slots";
+    /**
+     * The name of the former slots table in the database, whose 5-minute slots made back-to-back appointments conflict.
+     */
+    private static final String legacySlotsTableName = "appointment_slots";
+    /**
+     * The name of the slot starting time column in the database.
+     */
+    public static final String slotStartsAtColumnName = "Slot_Start";
+
+    /**
+     * Whether the table is known to exist.
+     */
+    private static volatile boolean tableExists = false;
+
+    /**
+     * The SQL template for checking whether the table exists.
+     */
+    private static final String tableExistsSQL = "SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = ? AND table_name = ?;";
+    /**
+     * The SQL template for creating the slots table.
+     */
+    private static final String createSlotsTableSQL = String.format("CREATE TABLE IF NOT EXISTS %s.%s (%s INT NOT NULL, %s DATETIME NOT NULL, %s INT NOT NULL, PRIMARY KEY (%s, %s), INDEX (%s), FOREIGN KEY (%s) REFERENCES %s.%s (%s) ON DELETE CASCADE);",
+            schemaName,
+            slotsTableName,
+            DBAppointment.contactIdColumnName,
+            slotStartsAtColumnName,
+            DBAppointment.appointmentIdColumnName,
+            DBAppointment.contactIdColumnName,
+            slotStartsAtColumnName,
+            DBAppointment.appointmentIdColumnName,
+            DBAppointment.appointmentIdColumnName,
+            schemaName,
+            DBAppointment.appointmentTableName,
+            DBAppointment.appointmentIdColumnName);
+    /**
+     * The SQL template for dropping the former slots table, which is replaced by the slots table.
+     */
+    private static final String dropLegacySlotsTableSQL = String.format("DROP TABLE IF EXISTS %s.%s;",
+            schemaName,
+            legacySlotsTableName);
+    /**
+     * The SQL template for reserving a single slot, which fails if it is already reserved.
+     */
+    private static final String insertSlotSQL = String.format("INSERT INTO %s.%s (%s, %s, %s) VALUES (?, ?, ?);",
+            schemaName,
+            slotsTableName,
+            DBAppointment.contactIdColumnName,
+            slotStartsAtColumnName,
+            DBAppointment.appointmentIdColumnName);
+    /**
+     * The SQL template for reserving a single slot, which does nothing if it is already reserved.
+     */
+    private static final String insertSlotIgnoringDuplicatesSQL = String.format("INSERT IGNORE INTO %s.%s (%s, %s, %s) VALUES (?, ?, ?);",
+            schemaName,
+            slotsTableName,
+            DBAppointment.contactIdColumnName,
+            slotStartsAtColumnName,
+            DBAppointment.appointmentIdColumnName);
+    /**
+     * The SQL template for releasing all slots of an appointment.
+     */
+    private static final String deleteSlotsOfAppointmentSQL = String.format("DELETE FROM %s.%s WHERE %s = ?;",
+            schemaName,
+            slotsTableName,
+            DBAppointment.appointmentIdColumnName);
+    /**
+     * The SQL template for grabbing the contact and times of all appointments, to reserve their slots.
+     */
+    private static final String selectAllAppointmentTimesSQL = String.format("SELECT %s, %s, %s, %s FROM %s.%s;",
+            DBAppointment.appointmentIdColumnName,
+            DBAppointment.contactIdColumnName,
+            DBAppointment.appointmentStartsAtColumnName,
+            DBAppointment.appointmentEndsAtColumnName,
+            schemaName,
+            DBAppointment.appointmentTableName);
+
+    /**
+     * Creates the table if it does not exist yet, and then reserves the slots of every existing appointment.
+     * Existing appointments that already double-book a contact keep only the slots that were free.
+     * The former slots table is dropped at the same time.
+     * @param connection the connection.
+     * @throws SQLException if the table cannot be created.
+     */
+    static void createTableIfNotExists(Connection connection) throws SQLException {
+        if (tableExists) {
+            return;
+        }
+        synchronized (DBAppointmentSlots.class) {
+            if (tableExists) {
+                return;
+            }
+            boolean existed;
+            try (PreparedStatement ps = connection.prepareStatement(tableExistsSQL)) {
+                ps.setString(1, schemaName);
+                ps.setString(2, slotsTableName);
+                ResultSet rs = ps.executeQuery();
+                existed = rs.next() && rs.getInt(1) > 0;
+            }
+            if (!existed) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(dropLegacySlotsTableSQL);
+                    statement.execute(createSlotsTableSQL);
+                }
+                List<Appointment> appointments = new ArrayList<>();
+                try (PreparedStatement ps = connection.prepareStatement(selectAllAppointmentTimesSQL)) {
+                    ResultSet rs = ps.executeQuery();
+                    while (rs.next()) {
+                        Appointment appointment = new Appointment();
+                        appointment.setId(rs.getInt(DBAppointment.appointmentIdColumnName));
+                        appointment.setContactId(rs.getInt(DBAppointment.contactIdColumnName));
+                        appointment.setStartsAt(rs.getTimestamp(DBAppointment.appointmentStartsAtColumnName).toInstant());
+                        appointment.setEndsAt(rs.getTimestamp(DBAppointment.appointmentEndsAtColumnName).toInstant());
+                        appointments.add(appointment);
+                    }
+                }
+                try (PreparedStatement ps = connection.prepareStatement(insertSlotIgnoringDuplicatesSQL)) {
+                    for (Appointment appointment : appointments) {
+                        addSlots(ps, appointment);
+                    }
+                    ps.executeBatch();
+                }
+            }
+            tableExists = true;
+        }
+    }
+
+    /**
+     * Reserves the slots of appointments that were just written, within the caller's transaction.
+     * @param connection the connection of the transaction.
+     * @param appointments the appointments, with their ids.
+     * @throws java.sql.SQLIntegrityConstraintViolationException if a slot is already reserved for the contact.
+     * @throws SQLException if reserving fails for any other reason.
+     */
+    static void reserveSlots(Connection connection, List<Appointment> appointments) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(insertSlotSQL)) {
+            for (Appointment appointment : appointments) {
+                addSlots(ps, appointment);
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Reserves the slots of an appointment that were not reserved by another appointment yet, without enforcing them.
+     * Used by the plain create and update methods, which have no transaction to roll back.
+     * @param connection the connection.
+     * @param appointment the appointment, with its id.
+     * @throws SQLException if reserving fails.
+     */
+    static void reserveFreeSlots(Connection connection, Appointment appointment) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(insertSlotIgnoringDuplicatesSQL)) {
+            addSlots(ps, appointment);
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Releases all slots of an appointment, e.g. before it is moved.
+     * @param connection the connection.
+     * @param appointmentId the appointment id.
+     * @throws SQLException if releasing fails.
+     */
+    static void releaseSlots(Connection connection, int appointmentId) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(deleteSlotsOfAppointmentSQL)) {
+            ps.setInt(1, appointmentId);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Gets the starting time of the first slot that an appointment touches.
+     * @param startsAt the starting time of the appointment.
+     * @return the starting time of the slot.
+     */
+    public static Instant getFirstSlotStart(Instant startsAt) {
+        long slotSeconds = slotGranularity.getSeconds();
+        return Instant.ofEpochSecond(Math.floorDiv(startsAt.getEpochSecond(), slotSeconds) * slotSeconds);
+    }
+
+    /**
+     * Gets the ending time of the last slot that an appointment touches.
+     * @param endsAt the ending time of the appointment.
+     * @return the ending time of the slot.
+     */
+    public static Instant getLastSlotEnd(Instant endsAt) {
+        long slotSeconds = slotGranularity.getSeconds();
+        long endSecond = endsAt.getEpochSecond() + (endsAt.getNano() > 0 ? 1 : 0);
+        return Instant.ofEpochSecond(Math.floorDiv(endSecond + slotSeconds - 1, slotSeconds) * slotSeconds);
+    }
+
+    /**
+     * Adds one insert per slot of an appointment to the batch of a prepared statement.
+     * @param ps the prepared statement.
+     * @param appointment the appointment, with its id.
+     * @throws SQLException if setting a parameter fails.
+     */
+    private static void addSlots(PreparedStatement ps, Appointment appointment) throws SQLException {
+        Instant lastSlotEnd = getLastSlotEnd(appointment.getEndsAt());
+        for (Instant slotStart = getFirstSlotStart(appointment.getStartsAt()); slotStart.isBefore(lastSlotEnd); slotStart = slotStart.plus(slotGranularity)) {
+            ps.setInt(1, appointment.getContactId());
+            ps.setTimestamp(2, Timestamp.from(slotStart));
+            ps.setInt(3, appointment.getId());
+            ps.addBatch();
+        }
+    }
+}
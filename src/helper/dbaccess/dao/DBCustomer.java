@@ -5,23 +5,46 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import model.Customer;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * The DAO object/class that is used to perform all database operations pertaining to the Customer model.
  * @see Customer
  */
 public abstract class DBCustomer {
+    /**
+     * A listener that is notified after a customer has been created, updated, or deleted through this class.
+     * @see #addChangeListener(ChangeListener)
+     */
+    @FunctionalInterface
+    public interface ChangeListener {
+        /**
+         * Invoked after a customer has been changed.
+         * @param customerId the id of the customer.
+         * @param after the customer after the change, or null if it was deleted.
+         */
+        void onCustomerChanged(int customerId, Customer after);
+    }
+
     /**
      * The maximum number of times an operation can be retried before giving up.
      */
     private static final int maxRetries = 3;
 
+    /**
+     * The listeners that are notified when a customer is changed.
+     */
+    private static final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
     /**
      * The name of the schema in the database.
      */
@@ -29,11 +52,11 @@ public abstract class DBCustomer {
     /**
      * The name of the table in the database.
      */
-    private static final String customerTableName = "customers";
+    public static final String customerTableName = "customers";
     /**
      * The name of the id column in the database.
      */
-    private static final String customerIdColumnName = "Customer_ID";
+    public static final String customerIdColumnName = "Customer_ID";
     /**
      * The name of the division id column in the database.
      */
@@ -153,6 +176,30 @@ public abstract class DBCustomer {
         return allCustomers;
     }
 
+    /**
+     * Streams every customer to the consumer, one row at a time, without keeping them in memory.
+     * The rows are read on a dedicated connection, since a streaming result set blocks its connection until it has been
+     * read fully.
+     * @param consumer the consumer that is given each customer.
+     * @return true if every customer was streamed, false if there was an issue.
+     * @see DBConnection#openDedicatedConnection()
+     */
+    public static boolean streamAllCustomers(Consumer<Customer> consumer) {
+        try (Connection connection = DBConnection.openDedicatedConnection();
+             PreparedStatement ps = connection.prepareStatement(selectAllCustomersSQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE); // tells the MYSQL driver to stream rows rather than read them all at once
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(buildCustomer(rs));
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
     /**
      * Creates a customer record in the database given a customer model.
      * @param customer the customer with the fields populated.
@@ -170,7 +217,9 @@ public abstract class DBCustomer {
                 if (ps.executeUpdate() == 1) {
                     ResultSet rs = ps.getGeneratedKeys();
                     if (rs.next()) {
-                        return getCustomerFromId(rs.getInt(1));
+                        Optional<Customer> createdCustomer = getCustomerFromId(rs.getInt(1));
+                        createdCustomer.ifPresent(cust -> notifyChangeListeners(cust.getId(), cust));
+                        return createdCustomer;
                     }
                 }
                 count = maxRetries;
@@ -204,7 +253,11 @@ public abstract class DBCustomer {
                 ps.setTimestamp(6, Timestamp.from(customer.getCreatedAt() == null ? Instant.now() : customer.getCreatedAt()));
                 ps.setString(7, customer.getCreatedBy());
                 ps.setInt(8, customer.getId());
-                return ps.executeUpdate() == 1;
+                boolean wasUpdated = ps.executeUpdate() == 1;
+                if (wasUpdated) {
+                    notifyChangeListeners(customer.getId(), customer);
+                }
+                return wasUpdated;
             } catch (SQLException e) {
                 e.printStackTrace();
             } catch (DBConnection.ConnectionNotOpen e) {
@@ -224,12 +277,20 @@ public abstract class DBCustomer {
      * @return true if the customer was deleted, false if there was an issue.
      */
     public static boolean deleteCustomerFromId(int customerId) {
+        // the days of the customer's appointments can only be found before they are deleted along with it
+        DBAppointmentDailyRollup.markCustomerDaysDirty(customerId);
         for (int count = 0; count < maxRetries; ++count) {
             try {
                 PreparedStatement ps = DBConnection.getConnection().prepareStatement(deleteCustomerSQL);
                 ps.setInt(1, customerId);
 
-                return ps.executeUpdate() == 1;
+                boolean wasDeleted = ps.executeUpdate() == 1;
+                if (wasDeleted) {
+                    notifyChangeListeners(customerId, null);
+                    // the customer's appointments are deleted along with it
+                    DBAppointment.notifyChangeListeners(null, null);
+                }
+                return wasDeleted;
             } catch (SQLException e) {
                 e.printStackTrace();
             } catch (DBConnection.ConnectionNotOpen e) {
@@ -273,6 +334,41 @@ public abstract class DBCustomer {
         return Optional.empty();
     }
 
+    /**
+     * Registers a listener that is notified after every customer change made through this class.
+     * @param listener the listener.
+     * @see ChangeListener
+     */
+    public static void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener that was registered with addChangeListener.
+     * @param listener the listener.
+     * @see #addChangeListener(ChangeListener)
+     */
+    public static void removeChangeListener(ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Notifies all registered listeners of a customer change. A listener that throws does not prevent the others
+     * from being notified.
+     * @param customerId the id of the customer.
+     * @param after the customer after the change, or null if it was deleted.
+     * @see ChangeListener#onCustomerChanged(int, Customer)
+     */
+    private static void notifyChangeListeners(int customerId, Customer after) {
+        for (ChangeListener listener : changeListeners) {
+            try {
+                listener.onCustomerChanged(customerId, after);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     /**
      * Given a result set that is in the middle of being used, build a customer with the current row.
      * @param rs the ResultSet.
@@ -3,12 +3,17 @@ package helper.dbaccess.dao;
 import helper.dbaccess.DBConnection;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import model.Country;
 import model.Division;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -72,6 +77,18 @@ public abstract class DBDivision {
             schemaName,
             divisionTableName,
             divisionIdColumnName);
+    /**
+     * The SQL template for grabbing all divisions along with the names of their countries.
+     */
+    private static final String selectAllDivisionsWithCountriesSQL = String.format("SELECT d.*, c.%s FROM %s.%s d JOIN %s.%s c ON c.%s = d.%s ORDER BY d.%s;",
+            DBCountry.countryNameColumnName,
+            schemaName,
+            divisionTableName,
+            schemaName,
+            DBCountry.countryTableName,
+            DBCountry.countryIdColumnName,
+            countryIdColumnName,
+            divisionIdColumnName);
 
     /**
      * Grabs all divisions from the database given a country id.
@@ -136,6 +153,41 @@ public abstract class DBDivision {
         return Optional.empty();
     }
 
+    /**
+     * Grabs all divisions from the database in a single query, each with its country already set, and sharing the
+     * country objects between the divisions of the same country.
+     * Countries without any division are not included.
+     * @return the divisions, in order of id, or empty if there was an issue.
+     */
+    public static Optional<List<Division>> getAllDivisionsWithCountries() {
+        for (int count = 0; count < maxRetries; ++count) {
+            try {
+                PreparedStatement ps = DBConnection.getConnection().prepareStatement(selectAllDivisionsWithCountriesSQL);
+                ResultSet rs = ps.executeQuery();
+
+                List<Division> divisions = new ArrayList<>();
+                Map<Integer, Country> countriesById = new HashMap<>();
+                while (rs.next()) {
+                    Division division = buildDivision(rs);
+                    String countryName = rs.getString(DBCountry.countryNameColumnName);
+                    division.setCountry(countriesById.computeIfAbsent(division.getCountryId(), countryId -> new Country(countryId, countryName)));
+                    divisions.add(division);
+                }
+                return Optional.of(divisions);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                count = maxRetries;
+            } catch (DBConnection.ConnectionNotOpen e) {
+                e.printStackTrace();
+                if (DBConnection.openConnection()) {
+                    continue;
+                }
+                count = maxRetries;
+            }
+        }
+        return Optional.empty();
+    }
+
     /**
      * Given a result set that is in the middle of being used, build a division with the current row.
      * @param rs the ResultSet.
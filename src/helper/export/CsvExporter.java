@@ -0,0 +1,190 @@
+package helper.export;
+
+import helper.dbaccess.dao.DBAppointment;
+import helper.dbaccess.dao.DBCustomer;
+import helper.dbaccess.dao.DBDivision;
+import javafx.beans.property.StringProperty;
+import model.Appointment;
+import model.Division;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It exports appointments, customers, and the reports to CSV files.
+ * Appointments and customers are streamed from the database straight into the file, one row at a time, so exporting
+ * any number of rows uses a bounded amount of memory.
+ * @see CsvWriter
+ */
+public abstract class CsvExporter {
+    /**
+     * The header row of the appointment exports.
+     */
+    private static final String[] appointmentHeader = { "Appointment_ID", "Title", "Description", "Location", "Type", "Start", "End", "Contact_ID", "Customer_ID", "User_ID" };
+    /**
+     * The header row of the customer exports.
+     */
+    private static final String[] customerHeader = { "Customer_ID", "Customer_Name", "Address", "Postal_Code", "Phone", "Division_ID", "Division" };
+
+    /**
+     * Exports every appointment that starts within a time range.
+     * @param path the path of the CSV file.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @throws IOException if the file could not be written or the appointments could not be read.
+     */
+    public static void exportAppointments(Path path, Instant from, Instant to) throws IOException {
+        exportAppointments(path, consumer -> DBAppointment.streamAppointmentsStartingWithinTimeRange(from, to, consumer));
+    }
+
+    /**
+     * Exports every appointment.
+     * @param path the path of the CSV file.
+     * @throws IOException if the file could not be written or the appointments could not be read.
+     */
+    public static void exportAllAppointments(Path path) throws IOException {
+        exportAppointments(path, DBAppointment::streamAllAppointments);
+    }
+
+    /**
+     * Exports the schedule of a contact (its appointments that start within a time range).
+     * @param path the path of the CSV file.
+     * @param contactId the contact id.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @throws IOException if the file could not be written or the appointments could not be read.
+     */
+    public static void exportContactSchedule(Path path, int contactId, Instant from, Instant to) throws IOException {
+        exportAppointments(path, consumer -> DBAppointment.streamAppointmentsForContactId(contactId, from, to, consumer));
+    }
+
+    /**
+     * Exports every customer, including the name of its division.
+     * The division names are looked up once per division rather than once per customer.
+     * @param path the path of the CSV file.
+     * @throws IOException if the file could not be written or the customers could not be read.
+     */
+    public static void exportCustomers(Path path) throws IOException {
+        Map<Integer, String> divisionNamesById = new HashMap<>();
+        try (CsvWriter writer = new CsvWriter(path)) {
+            writer.row(customerHeader);
+            boolean wasStreamed = DBCustomer.streamAllCustomers(unchecked(customer -> {
+                String divisionName = divisionNamesById.computeIfAbsent(customer.getDivisionId(),
+                        divisionId -> DBDivision.getDivisionFromId(divisionId).map(Division::getName).orElse(""));
+                writer.field(customer.getId())
+                        .field(customer.getName())
+                        .field(customer.getAddress())
+                        .field(customer.getPostalCode())
+                        .field(customer.getPhoneNumber())
+                        .field(customer.getDivisionId())
+                        .field(divisionName)
+                        .endRow();
+            }));
+            if (!wasStreamed) {
+                throw new IOException("The customers could not be read from the database.");
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Exports the rows of a report, e.g. the count by month and type report.
+     * @param path the path of the CSV file.
+     * @param header the header row.
+     * @param report the report data.
+     * @throws IOException if the file could not be written.
+     * @see DBAppointment#getAppointmentsCountByMonthAndType(Instant, Instant)
+     * @see DBAppointment#getAppointmentsCountByWeekdayAndType(Instant, Instant)
+     */
+    public static void exportReport(Path path, String[] header, List<List<StringProperty>> report) throws IOException {
+        try (CsvWriter writer = new CsvWriter(path)) {
+            writer.row(header);
+            for (List<StringProperty> reportRow : report) {
+                for (StringProperty value : reportRow) {
+                    writer.field(value.get());
+                }
+                writer.endRow();
+            }
+        }
+    }
+
+    /**
+     * Exports the appointments given by a streaming DAO method.
+     * @param path the path of the CSV file.
+     * @param stream streams the appointments to the given consumer, and returns whether every appointment was streamed.
+     * @throws IOException if the file could not be written or the appointments could not be read.
+     */
+    private static void exportAppointments(Path path, AppointmentStream stream) throws IOException {
+        try (CsvWriter writer = new CsvWriter(path)) {
+            writer.row(appointmentHeader);
+            boolean wasStreamed = stream.streamTo(unchecked(appointment -> writer.field(appointment.getId())
+                    .field(appointment.getTitle())
+                    .field(appointment.getDescription())
+                    .field(appointment.getLocation())
+                    .field(appointment.getType())
+                    .field(appointment.getStartsAt())
+                    .field(appointment.getEndsAt())
+                    .field(appointment.getContactId())
+                    .field(appointment.getCustomerId())
+                    .field(appointment.getUserId())
+                    .endRow()));
+            if (!wasStreamed) {
+                throw new IOException("The appointments could not be read from the database.");
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A streaming DAO method for appointments.
+     */
+    @FunctionalInterface
+    private interface AppointmentStream {
+        /**
+         * Streams the appointments to the consumer.
+         * @param consumer the consumer.
+         * @return whether every appointment was streamed.
+         */
+        boolean streamTo(Consumer<Appointment> consumer);
+    }
+
+    /**
+     * A consumer that can throw an IOException.
+     * @param <T> the type of value consumed.
+     */
+    @FunctionalInterface
+    private interface IOConsumer<T> {
+        /**
+         * Consumes a value.
+         * @param value the value.
+         * @throws IOException if writing the value fails.
+         */
+        void accept(T value) throws IOException;
+    }
+
+    /**
+     * Wraps a consumer that can throw an IOException into one that throws an UncheckedIOException instead,
+     * so that it can be given to the streaming DAO methods. The UncheckedIOException stops the stream.
+     * @param consumer the consumer.
+     * @param <T> the type of value consumed.
+     * @return the wrapped consumer.
+     */
+    private static <T> Consumer<T> unchecked(IOConsumer<T> consumer) {
+        return value -> {
+            try {
+                consumer.accept(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
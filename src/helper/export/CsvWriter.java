@@ -0,0 +1,201 @@
+package helper.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes CSV (RFC 4180) rows to a file through a buffered FileChannel.
+ * Every row is formatted into the same reused StringBuilder and encoded into the same reused buffers, so writing a row
+ * allocates (almost) nothing, and memory use does not depend on the number of rows.
+ * <br>
+ * Fields are added with the field methods, and each row is finished with {@link #endRow()}.
+ */
+public class CsvWriter implements Closeable {
+    /**
+     * The size of the byte buffer that is written to the channel when full.
+     */
+    private static final int byteBufferSize = 64 * 1024;
+    /**
+     * The line separator required by RFC 4180.
+     */
+    private static final String lineSeparator = "\r\n";
+
+    /**
+     * The channel of the file being written.
+     */
+    private final FileChannel channel;
+    /**
+     * The encoder that converts the formatted rows to UTF-8.
+     */
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    /**
+     * The buffer of encoded bytes waiting to be written to the channel.
+     */
+    private final ByteBuffer byteBuffer = ByteBuffer.allocateDirect(byteBufferSize);
+    /**
+     * The row currently being formatted.
+     */
+    private final StringBuilder row = new StringBuilder(256);
+    /**
+     * The characters of the row being encoded, grown when a row does not fit.
+     */
+    private CharBuffer charBuffer = CharBuffer.allocate(256);
+    /**
+     * Whether the next field is the first of its row.
+     */
+    private boolean isFirstField = true;
+
+    /**
+     * Opens the file for writing, replacing it if it already exists.
+     * @param path the path of the file.
+     * @throws IOException if the file could not be opened.
+     */
+    public CsvWriter(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Adds a field separator unless the next field is the first of its row.
+     */
+    private void startField() {
+        if (isFirstField) {
+            isFirstField = false;
+        } else {
+            row.append(',');
+        }
+    }
+
+    /**
+     * Adds a text field, quoting it if it contains a comma, quote, or line break.
+     * @param value the text, or null for an empty field.
+     * @return this writer.
+     */
+    public CsvWriter field(String value) {
+        startField();
+        if (value == null) {
+            return this;
+        }
+
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; ++i) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!needsQuotes) {
+            row.append(value);
+            return this;
+        }
+
+        row.append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+        return this;
+    }
+
+    /**
+     * Adds an integer field.
+     * @param value the integer.
+     * @return this writer.
+     */
+    public CsvWriter field(long value) {
+        startField();
+        row.append(value);
+        return this;
+    }
+
+    /**
+     * Adds a time field, formatted as an ISO-8601 UTC time, e.g. 2021-11-20T14:00:00Z.
+     * @param value the time, or null for an empty field.
+     * @return this writer.
+     */
+    public CsvWriter field(Instant value) {
+        startField();
+        if (value != null) {
+            DateTimeFormatter.ISO_INSTANT.formatTo(value, row);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a row of text fields.
+     * @param values the texts.
+     * @throws IOException if the row could not be written.
+     */
+    public void row(String... values) throws IOException {
+        for (String value : values) {
+            field(value);
+        }
+        endRow();
+    }
+
+    /**
+     * Finishes the current row and encodes it into the byte buffer, writing the buffer to the file whenever it is full.
+     * @throws IOException if the row could not be written.
+     */
+    public void endRow() throws IOException {
+        row.append(lineSeparator);
+        if (charBuffer.capacity() < row.length()) {
+            charBuffer = CharBuffer.allocate(Math.max(row.length(), charBuffer.capacity() * 2));
+        }
+        charBuffer.clear();
+        row.getChars(0, row.length(), charBuffer.array(), 0);
+        charBuffer.limit(row.length());
+
+        CoderResult result = encoder.encode(charBuffer, byteBuffer, false);
+        while (result.isOverflow()) {
+            flushBuffer();
+            result = encoder.encode(charBuffer, byteBuffer, false);
+        }
+        if (result.isError()) {
+            result.throwException();
+        }
+
+        row.setLength(0);
+        isFirstField = true;
+    }
+
+    /**
+     * Writes the byte buffer to the file and empties it.
+     * @throws IOException if the buffer could not be written.
+     */
+    private void flushBuffer() throws IOException {
+        byteBuffer.flip();
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+        byteBuffer.clear();
+    }
+
+    /**
+     * Writes whatever is left in the byte buffer and closes the file.
+     * A row that was started but not finished is discarded.
+     * @throws IOException if the file could not be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            charBuffer.clear().limit(0);
+            encoder.encode(charBuffer, byteBuffer, true);
+            encoder.flush(byteBuffer);
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -1,14 +1,25 @@
 package helper.locale;
 
 import java.time.Instant;
-import java.time.OffsetDateTime;
+import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.chrono.IsoChronology;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
 import java.time.format.FormatStyle;
 import java.time.format.TextStyle;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An abstract class with only static methods and not meant to be instantiated.
@@ -27,6 +38,22 @@ public abstract class LocaleHelper {
      * The ZoneId.
      */
     private static ZoneId currentZoneId;
+    /**
+     * The SHORT date-time formatters, by locale.
+     */
+    private static final Map<Locale, DateTimeFormatter> formattersByLocale = new ConcurrentHashMap<>();
+    /**
+     * The offset lookup of the currentZoneId, or null if not built yet.
+     */
+    private static volatile OffsetLookup offsetLookup;
+    /**
+     * The StringBuilder that each thread reuses to format instants.
+     */
+    private static final ThreadLocal<StringBuilder> formatBuilder = ThreadLocal.withInitial(() -> new StringBuilder(32));
+    /**
+     * The version of the display settings, incremented whenever the locale or zone changes.
+     */
+    private static volatile int displayVersion = 0;
 
     /**
      * Gets the currentLocale. If null, first sets it.
@@ -41,6 +68,16 @@ public abstract class LocaleHelper {
         return currentLocale;
     }
 
+    /**
+     * Gets the version of the display settings, so that anything formatted for display can tell whether it is stale.
+     * The locale and zone are set first if they are not yet, so that setting them does not change the version afterwards.
+     * @return the version, which changes whenever the locale or zone changes.
+     */
+    public static int getDisplayVersion() {
+        getZoneId();
+        return displayVersion;
+    }
+
     /**
      * Gets the currentResourceBundle. If it or currentLocale null, first sets them.
      * @return the currentResourceBundle.
@@ -130,6 +167,7 @@ public abstract class LocaleHelper {
 //        currentLocale = new Locale("en", "US");
 //        currentLocale = new Locale("fr", "FR");
         currentLocale = Locale.getDefault();
+        ++displayVersion;
     }
 
     /**
@@ -137,16 +175,139 @@ public abstract class LocaleHelper {
      */
     private synchronized static void setCurrentZoneId() {
         currentZoneId = ZoneId.systemDefault();
+        ++displayVersion;
     }
 
     /**
      * Given an Instant, formats it into a nice, readable format.
+     * <br>
+     * The formatter of the current locale and the offsets of the current zone are cached, and the text is built in
+     * a StringBuilder that is reused by the calling thread, so a call only allocates the LocalDateTime and the result.
      * @param instant the instant to be formatted.
      * @return the instant formatted in the FormatStyle.SHORT format.
      * @see FormatStyle#SHORT
+     * @see #formatInstant(Instant, StringBuilder)
      */
     public static String formatInstant(Instant instant) {
-        OffsetDateTime offsetStartsAt = instant.atOffset(LocaleHelper.getZoneId().getRules().getOffset(instant));
-        return offsetStartsAt.format(DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT));
+        StringBuilder builder = formatBuilder.get();
+        builder.setLength(0);
+        formatInstant(instant, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Given an Instant, appends it to a StringBuilder in the FormatStyle.SHORT format, without creating a String.
+     * @param instant the instant to be formatted.
+     * @param builder the StringBuilder to append to.
+     * @see #formatInstant(Instant)
+     */
+    public static void formatInstant(Instant instant, StringBuilder builder) {
+        OffsetLookup lookup = getOffsetLookup();
+        LocalDateTime localDateTime = LocalDateTime.ofEpochSecond(instant.getEpochSecond(), instant.getNano(), lookup.getOffset(instant));
+        formattersByLocale.computeIfAbsent(getLocale(), LocaleHelper::buildShortFormatter).formatTo(localDateTime, builder);
+    }
+
+    /**
+     * Builds the SHORT date-time formatter of a locale from its resolved pattern, so that formatting does not look up
+     * the localized pattern again on every call as a localized formatter does.
+     * @param locale the locale.
+     * @return the formatter.
+     */
+    private static DateTimeFormatter buildShortFormatter(Locale locale) {
+        String pattern = DateTimeFormatterBuilder.getLocalizedDateTimePattern(FormatStyle.SHORT, FormatStyle.SHORT, IsoChronology.INSTANCE, locale);
+        return DateTimeFormatter.ofPattern(pattern, locale);
+    }
+
+    /**
+     * Gets the offset lookup of the currentZoneId, building it if the zone has changed.
+     * @return the offset lookup.
+     */
+    private static OffsetLookup getOffsetLookup() {
+        OffsetLookup lookup = offsetLookup;
+        ZoneId zoneId = getZoneId();
+        if (lookup == null || !lookup.zoneId.equals(zoneId)) {
+            lookup = new OffsetLookup(zoneId, Instant.now());
+            offsetLookup = lookup;
+        }
+        return lookup;
+    }
+
+    /**
+     * The offsets of a zone around a given time, precomputed as a sorted array of transition times, so that the offset
+     * of an instant is a binary search instead of a walk through the zone rules. Instants outside of the precomputed
+     * years fall back to the zone rules.
+     */
+    private static class OffsetLookup {
+        /**
+         * The number of years before and after the given time that the transitions are precomputed for.
+         */
+        private static final int paddingYears = 10;
+
+        /**
+         * The zone.
+         */
+        private final ZoneId zoneId;
+        /**
+         * The zone rules.
+         */
+        private final ZoneRules rules;
+        /**
+         * The first second that the transitions are precomputed for.
+         */
+        private final long fromEpochSecond;
+        /**
+         * The last second (exclusive) that the transitions are precomputed for.
+         */
+        private final long toEpochSecond;
+        /**
+         * The times of the transitions within the precomputed years, in ascending epoch seconds.
+         */
+        private final long[] transitionEpochSeconds;
+        /**
+         * The offset before the first transition, followed by the offset after each transition.
+         */
+        private final ZoneOffset[] offsets;
+
+        /**
+         * The constructor, which precomputes the transitions of the zone around a given time.
+         * @param zoneId the zone.
+         * @param around the time.
+         */
+        private OffsetLookup(ZoneId zoneId, Instant around) {
+            this.zoneId = zoneId;
+            this.rules = zoneId.getRules();
+            ZonedDateTime aroundDateTime = around.atZone(ZoneOffset.UTC);
+            this.fromEpochSecond = aroundDateTime.minusYears(paddingYears).toEpochSecond();
+            this.toEpochSecond = aroundDateTime.plusYears(paddingYears).toEpochSecond();
+
+            List<ZoneOffsetTransition> transitions = new ArrayList<>();
+            for (ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochSecond(fromEpochSecond));
+                 transition != null && transition.toEpochSecond() < toEpochSecond;
+                 transition = rules.nextTransition(transition.getInstant())) {
+                transitions.add(transition);
+            }
+            this.transitionEpochSeconds = new long[transitions.size()];
+            this.offsets = new ZoneOffset[transitions.size() + 1];
+            this.offsets[0] = rules.getOffset(Instant.ofEpochSecond(fromEpochSecond));
+            for (int i = 0; i < transitions.size(); ++i) {
+                transitionEpochSeconds[i] = transitions.get(i).toEpochSecond();
+                offsets[i + 1] = transitions.get(i).getOffsetAfter();
+            }
+        }
+
+        /**
+         * Gets the offset of the zone at an instant.
+         * @param instant the instant.
+         * @return the offset.
+         */
+        private ZoneOffset getOffset(Instant instant) {
+            long epochSecond = instant.getEpochSecond();
+            if (epochSecond < fromEpochSecond || epochSecond >= toEpochSecond) {
+                return rules.getOffset(instant);
+            }
+            int index = Arrays.binarySearch(transitionEpochSeconds, epochSecond);
+            // at a transition the offset after it applies; otherwise, the offset after the last transition before it
+            return offsets[index >= 0 ? index + 1 : -index - 1];
+        }
     }
 }
@@ -0,0 +1,127 @@
+package helper.officehours;
+
+import helper.scheduling.TimeSlot;
+import model.Appointment;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It answers office hours questions for any location, from a precomputed OfficeHoursCalendar per location.
+ * <br>
+ * Locations without their own rules use the default rules, which are the office hours defined on Appointment.
+ * Calendars are built for a few years around the requested dates and rebuilt to a wider range when a question
+ * falls outside of them.
+ * @see OfficeHoursCalendar
+ * @see Appointment#OFFICE_HOUR_ZONE_ID
+ */
+public abstract class OfficeHours {
+    /**
+     * The number of years before and after the requested dates that a calendar is built for.
+     */
+    private static final int calendarPaddingYears = 2;
+
+    /**
+     * The rules used for locations without their own rules.
+     */
+    private static OfficeHoursRules defaultRules = new OfficeHoursRules(Appointment.OFFICE_HOUR_ZONE_ID,
+            Appointment.OFFICE_HOUR_START_LOCAL_TIME,
+            Appointment.OFFICE_HOUR_END_LOCAL_TIME);
+    /**
+     * The rules by lower case location.
+     */
+    private static final Map<String, OfficeHoursRules> rulesByLocation = new HashMap<>();
+    /**
+     * The built calendars by lower case location, the default calendar having the null key.
+     */
+    private static final Map<String, OfficeHoursCalendar> calendarsByLocation = new HashMap<>();
+
+    /**
+     * Sets the rules used for locations without their own rules.
+     * @param rules the rules.
+     */
+    public synchronized static void setDefaultRules(OfficeHoursRules rules) {
+        defaultRules = rules;
+        calendarsByLocation.clear();
+    }
+
+    /**
+     * Sets the rules of a location, e.g. to give it its own holidays or time zone.
+     * @param location the location, compared case-insensitively.
+     * @param rules the rules, or null to use the default rules again.
+     */
+    public synchronized static void setRules(String location, OfficeHoursRules rules) {
+        String key = toKey(location);
+        if (rules == null) {
+            rulesByLocation.remove(key);
+        } else {
+            rulesByLocation.put(key, rules);
+        }
+        calendarsByLocation.remove(key);
+    }
+
+    /**
+     * Whether a time range lies entirely within the office hours of a location.
+     * @param location the location, or null for the default rules.
+     * @param from the starting time of the time range.
+     * @param to the ending time of the time range.
+     * @return whether the time range is within office hours.
+     * @see OfficeHoursCalendar#isWithinOfficeHours(Instant, Instant)
+     */
+    public static boolean isWithinOfficeHours(String location, Instant from, Instant to) {
+        return getCalendar(location, from, to).isWithinOfficeHours(from, to);
+    }
+
+    /**
+     * Gets the office hours windows of a location that overlap with a time range, clipped to it.
+     * @param location the location, or null for the default rules.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the windows, in order.
+     * @see OfficeHoursCalendar#getWindowsOverlapping(Instant, Instant)
+     */
+    public static List<TimeSlot> getWindowsOverlapping(String location, Instant from, Instant to) {
+        return getCalendar(location, from, to).getWindowsOverlapping(from, to);
+    }
+
+    /**
+     * Gets the calendar of a location that covers a time range, building a wider one if needed.
+     * @param location the location, or null for the default rules.
+     * @param from the starting time of the time range.
+     * @param to the ending time of the time range.
+     * @return the calendar.
+     */
+    private synchronized static OfficeHoursCalendar getCalendar(String location, Instant from, Instant to) {
+        String key = rulesByLocation.containsKey(toKey(location)) ? toKey(location) : null;
+        OfficeHoursCalendar calendar = calendarsByLocation.get(key);
+        if (calendar != null && calendar.covers(from, to)) {
+            return calendar;
+        }
+
+        // UTC dates are at most a day off the dates in the rules' time zone, which the padding more than makes up for
+        LocalDate firstDate = LocalDate.ofInstant(from, ZoneOffset.UTC).minusYears(calendarPaddingYears);
+        LocalDate lastDate = LocalDate.ofInstant(to, ZoneOffset.UTC).plusYears(calendarPaddingYears);
+        if (calendar != null) {
+            firstDate = calendar.getFirstDate().isBefore(firstDate) ? calendar.getFirstDate() : firstDate;
+            lastDate = calendar.getLastDate().isAfter(lastDate) ? calendar.getLastDate() : lastDate;
+        }
+        calendar = new OfficeHoursCalendar(key == null ? defaultRules : rulesByLocation.get(key), firstDate, lastDate);
+        calendarsByLocation.put(key, calendar);
+        return calendar;
+    }
+
+    /**
+     * Gets the key of a location in the maps.
+     * @param location the location, or null.
+     * @return the lower case location, or null.
+     */
+    private static String toKey(String location) {
+        return location == null ? null : location.strip().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,162 @@
+package helper.officehours;
+
+import helper.scheduling.TimeSlot;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The office hours of one location over a range of dates, precomputed from its rules as the UTC opening and closing
+ * time of every open day, in two sorted arrays of epoch seconds.
+ * <br>
+ * Every question is answered by a binary search on the actual dates involved, so the result is correct on any date,
+ * on both sides of DST changes, and for appointments that cross midnight into a window that continues on the next day.
+ * Each day's window is computed with the time zone rules of that day, so a DST change shortens or lengthens the
+ * windows that contain it. Windows that touch or overlap are merged into one.
+ * @see OfficeHoursRules
+ * @see OfficeHours
+ */
+public class OfficeHoursCalendar {
+    /**
+     * The first date of the calendar.
+     */
+    private final LocalDate firstDate;
+    /**
+     * The last date of the calendar.
+     */
+    private final LocalDate lastDate;
+    /**
+     * The time zone of the rules.
+     */
+    private final ZoneId zoneId;
+    /**
+     * The opening times of the windows in epoch seconds, in ascending order.
+     */
+    private final long[] opensAt;
+    /**
+     * The closing times of the windows in epoch seconds, in ascending order.
+     */
+    private final long[] closesAt;
+
+    /**
+     * The constructor, which precomputes the windows of every date from firstDate to lastDate.
+     * @param rules the rules.
+     * @param firstDate the first date (inclusive).
+     * @param lastDate the last date (inclusive).
+     */
+    public OfficeHoursCalendar(OfficeHoursRules rules, LocalDate firstDate, LocalDate lastDate) {
+        this.firstDate = firstDate;
+        this.lastDate = lastDate;
+        this.zoneId = rules.getZoneId();
+
+        int maxWindows = (int) (lastDate.toEpochDay() - firstDate.toEpochDay() + 1);
+        long[] opens = new long[Math.max(0, maxWindows)];
+        long[] closes = new long[opens.length];
+        int windowCount = 0;
+        for (LocalDate date = firstDate; !date.isAfter(lastDate); date = date.plusDays(1)) {
+            Optional<OfficeHoursRules.Hours> hours = rules.getHoursOn(date);
+            if (hours.isEmpty()) {
+                continue;
+            }
+            // atZone moves a time that falls in a DST gap forward, and uses the earlier offset in an overlap
+            long open = date.atTime(hours.get().getOpensAt()).atZone(zoneId).toEpochSecond();
+            LocalDate closingDate = hours.get().closesOnNextDay() ? date.plusDays(1) : date;
+            long close = closingDate.atTime(hours.get().getClosesAt()).atZone(zoneId).toEpochSecond();
+            if (windowCount > 0 && open <= closes[windowCount - 1]) {
+                closes[windowCount - 1] = Math.max(closes[windowCount - 1], close);
+            } else {
+                opens[windowCount] = open;
+                closes[windowCount] = close;
+                ++windowCount;
+            }
+        }
+        this.opensAt = Arrays.copyOf(opens, windowCount);
+        this.closesAt = Arrays.copyOf(closes, windowCount);
+    }
+
+    /**
+     * Whether the calendar has the windows of every date that a time range touches.
+     * A window that opens the day before the first date is not known, so the first date itself is not fully covered
+     * for overnight hours; the calendars built by OfficeHours always start well before the requested dates.
+     * @param from the starting time of the time range.
+     * @param to the ending time of the time range.
+     * @return whether the time range is covered.
+     */
+    public boolean covers(Instant from, Instant to) {
+        return !from.atZone(zoneId).toLocalDate().isBefore(firstDate) && !to.atZone(zoneId).toLocalDate().isAfter(lastDate);
+    }
+
+    /**
+     * Gets the first date of the calendar.
+     * @return the first date (inclusive).
+     */
+    public LocalDate getFirstDate() {
+        return firstDate;
+    }
+
+    /**
+     * Gets the last date of the calendar.
+     * @return the last date (inclusive).
+     */
+    public LocalDate getLastDate() {
+        return lastDate;
+    }
+
+    /**
+     * Whether a time range lies entirely within a single office hours window.
+     * Starting exactly at the opening time or ending exactly at the closing time is within office hours.
+     * @param from the starting time of the time range.
+     * @param to the ending time of the time range.
+     * @return whether the time range is within office hours.
+     */
+    public boolean isWithinOfficeHours(Instant from, Instant to) {
+        int index = indexOfLastWindowOpeningAtOrBefore(from.getEpochSecond());
+        return index >= 0 && !to.isBefore(from) && to.getEpochSecond() <= closesAt[index];
+    }
+
+    /**
+     * Gets the office hours windows that overlap with a time range, clipped to it.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the windows, in order.
+     */
+    public List<TimeSlot> getWindowsOverlapping(Instant from, Instant to) {
+        List<TimeSlot> windows = new ArrayList<>();
+        long fromSecond = from.getEpochSecond();
+        long toSecond = to.getEpochSecond();
+        int index = Math.max(0, indexOfLastWindowOpeningAtOrBefore(fromSecond));
+        for (; index < opensAt.length && opensAt[index] < toSecond; ++index) {
+            if (closesAt[index] <= fromSecond) {
+                continue;
+            }
+            Instant windowFrom = opensAt[index] < fromSecond ? from : Instant.ofEpochSecond(opensAt[index]);
+            Instant windowTo = closesAt[index] > toSecond ? to : Instant.ofEpochSecond(closesAt[index]);
+            windows.add(new TimeSlot(windowFrom, windowTo));
+        }
+        return windows;
+    }
+
+    /**
+     * Binary searches for the last window that opens at or before a given time.
+     * @param epochSecond the time in epoch seconds.
+     * @return the index of the window, or -1 if every window opens after the time.
+     */
+    private int indexOfLastWindowOpeningAtOrBefore(long epochSecond) {
+        int low = 0;
+        int high = opensAt.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (opensAt[middle] <= epochSecond) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+}
@@ -0,0 +1,162 @@
+package helper.officehours;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The rules that define the office hours of one location: the regular opening and closing times in a time zone,
+ * the days of the week the office is closed, holidays, and dates with special opening hours.
+ * A closing time that is not after the opening time means the office closes on the next day.
+ * <br>
+ * Rules are read once when an OfficeHoursCalendar is built from them, so they must be given to
+ * {@link OfficeHours#setRules(String, OfficeHoursRules)} again after being changed.
+ * @see OfficeHoursCalendar
+ */
+public class OfficeHoursRules {
+    /**
+     * The opening and closing times of a single day.
+     */
+    public static class Hours {
+        /**
+         * The opening time.
+         */
+        private final LocalTime opensAt;
+        /**
+         * The closing time, on the next day if it is not after the opening time.
+         */
+        private final LocalTime closesAt;
+
+        /**
+         * The constructor.
+         * @param opensAt the opening time.
+         * @param closesAt the closing time, on the next day if it is not after the opening time.
+         */
+        public Hours(LocalTime opensAt, LocalTime closesAt) {
+            this.opensAt = opensAt;
+            this.closesAt = closesAt;
+        }
+
+        /**
+         * Gets the opening time.
+         * @return the opening time.
+         */
+        public LocalTime getOpensAt() {
+            return opensAt;
+        }
+
+        /**
+         * Gets the closing time.
+         * @return the closing time, on the next day if it is not after the opening time.
+         */
+        public LocalTime getClosesAt() {
+            return closesAt;
+        }
+
+        /**
+         * Whether the office closes on the day after it opens.
+         * @return whether the closing time is on the next day.
+         */
+        public boolean closesOnNextDay() {
+            return !closesAt.isAfter(opensAt);
+        }
+    }
+
+    /**
+     * The time zone of the opening and closing times.
+     */
+    private final ZoneId zoneId;
+    /**
+     * The regular opening and closing times.
+     */
+    private final Hours regularHours;
+    /**
+     * The days of the week the office is closed.
+     */
+    private final Set<DayOfWeek> closedDaysOfWeek = EnumSet.noneOf(DayOfWeek.class);
+    /**
+     * The dates the office is closed.
+     */
+    private final Set<LocalDate> holidays = new HashSet<>();
+    /**
+     * The dates with special opening and closing times.
+     */
+    private final Map<LocalDate, Hours> specialHours = new HashMap<>();
+
+    /**
+     * The constructor.
+     * @param zoneId the time zone of the opening and closing times.
+     * @param opensAt the regular opening time.
+     * @param closesAt the regular closing time, on the next day if it is not after the opening time.
+     */
+    public OfficeHoursRules(ZoneId zoneId, LocalTime opensAt, LocalTime closesAt) {
+        this.zoneId = zoneId;
+        this.regularHours = new Hours(opensAt, closesAt);
+    }
+
+    /**
+     * Gets the time zone of the opening and closing times.
+     * @return the time zone.
+     */
+    public ZoneId getZoneId() {
+        return zoneId;
+    }
+
+    /**
+     * Gets the regular opening and closing times.
+     * @return the regular hours.
+     */
+    public Hours getRegularHours() {
+        return regularHours;
+    }
+
+    /**
+     * Closes the office on every given day of the week.
+     * @param dayOfWeek the day of the week.
+     */
+    public void addClosedDayOfWeek(DayOfWeek dayOfWeek) {
+        closedDaysOfWeek.add(dayOfWeek);
+    }
+
+    /**
+     * Closes the office on a date.
+     * @param date the date.
+     */
+    public void addHoliday(LocalDate date) {
+        holidays.add(date);
+        specialHours.remove(date);
+    }
+
+    /**
+     * Sets special opening and closing times on a date, which also opens the office if the date would be closed.
+     * @param date the date.
+     * @param hours the opening and closing times.
+     */
+    public void setSpecialHours(LocalDate date, Hours hours) {
+        holidays.remove(date);
+        specialHours.put(date, hours);
+    }
+
+    /**
+     * Gets the opening and closing times on a date.
+     * @param date the date.
+     * @return the hours, or empty if the office is closed on that date.
+     */
+    public Optional<Hours> getHoursOn(LocalDate date) {
+        Hours hours = specialHours.get(date);
+        if (hours != null) {
+            return Optional.of(hours);
+        }
+        if (holidays.contains(date) || closedDaysOfWeek.contains(date.getDayOfWeek())) {
+            return Optional.empty();
+        }
+        return Optional.of(regularHours);
+    }
+}
@@ -0,0 +1,148 @@
+package helper.refresh;
+
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.util.Duration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Refreshes views in the background, once per burst of changes instead of once per change.
+ * <br>
+ * A view is marked dirty whenever its data may have changed. The first mark starts a short window, and every mark
+ * within it is folded into the same refresh. When the window ends, the view prepares its query on the JavaFX
+ * application thread, reading whatever controls it depends on, and the query runs on a background thread. Its result
+ * is applied back on the JavaFX application thread, unless a newer refresh of the same view has been started
+ * meanwhile, in which case it is dropped, as is a query that is still waiting to run.
+ * <br>
+ * Every method must be called on the JavaFX application thread.
+ */
+public class RefreshScheduler {
+    /**
+     * A query of a view that runs on a background thread.
+     */
+    @FunctionalInterface
+    public interface Query {
+        /**
+         * Runs the query.
+         * @return the update that applies the result to the view, which runs on the JavaFX application thread.
+         * @throws Exception if the query fails, in which case the view is left as it is.
+         */
+        Runnable run() throws Exception;
+    }
+
+    /**
+     * A view that is refreshed by the scheduler.
+     */
+    public class View {
+        /**
+         * Prepares the query of the view, or null if there is nothing to refresh, on the JavaFX application thread.
+         */
+        private final Supplier<Query> preparer;
+        /**
+         * The timer of the window in which dirty marks are folded into the same refresh.
+         */
+        private final PauseTransition window;
+        /**
+         * The number of refreshes started, so that superseded ones can be told apart.
+         */
+        private volatile long generation = 0;
+
+        /**
+         * The constructor.
+         * @param preparer prepares the query of the view, or null if there is nothing to refresh, on the JavaFX
+         *                 application thread.
+         */
+        private View(Supplier<Query> preparer) {
+            this.preparer = preparer;
+            this.window = new PauseTransition(coalescingWindow);
+            this.window.setOnFinished(event -> refresh());
+        }
+
+        /**
+         * Marks the view as dirty, so that it is refreshed at the end of the current window, starting one if needed.
+         */
+        public void markDirty() {
+            if (window.getStatus() != Animation.Status.RUNNING) {
+                window.playFromStart();
+            }
+        }
+
+        /**
+         * Refreshes the view right away, dropping any refresh in progress, e.g. when the user is waiting for it.
+         */
+        public void refreshNow() {
+            window.stop();
+            refresh();
+        }
+
+        /**
+         * Prepares the query and runs it in the background, superseding any refresh in progress.
+         */
+        private void refresh() {
+            long currentGeneration = ++generation;
+            Query query;
+            try {
+                query = preparer.get();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                return;
+            }
+            if (query == null) {
+                return;
+            }
+            executor.execute(() -> {
+                if (currentGeneration != generation) {
+                    return;
+                }
+                Runnable update;
+                try {
+                    update = query.run();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    return;
+                }
+                Platform.runLater(() -> {
+                    if (currentGeneration == generation) {
+                        update.run();
+                    }
+                });
+            });
+        }
+    }
+
+    /**
+     * The executor that runs the queries of every scheduler, one at a time, since they share the database connection.
+     */
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "view-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * How long dirty marks are folded into the same refresh after the first one.
+     */
+    private final Duration coalescingWindow;
+
+    /**
+     * The constructor.
+     * @param coalescingWindow how long dirty marks are folded into the same refresh after the first one.
+     */
+    public RefreshScheduler(Duration coalescingWindow) {
+        this.coalescingWindow = coalescingWindow;
+    }
+
+    /**
+     * Adds a view to refresh.
+     * @param preparer prepares the query of the view, or null if there is nothing to refresh, on the JavaFX
+     *                 application thread.
+     * @return the view, to mark as dirty.
+     */
+    public View addView(Supplier<Query> preparer) {
+        return new View(preparer);
+    }
+}
@@ -0,0 +1,203 @@
+package helper.reminder;
+
+import helper.dbaccess.dao.DBAppointment;
+import model.Appointment;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It reminds the logged-in user of each of their appointments shortly before it starts, for as long as the application runs.
+ * <br>
+ * The appointments of the next few hours are loaded periodically, and a reminder for each one is scheduled on
+ * a TimingWheel, which is advanced once per second on a background thread. Appointment changes update the
+ * reminders without reloading. All state is only touched by the background thread.
+ * @see TimingWheel
+ * @see DBAppointment.ChangeListener
+ */
+public abstract class ReminderService {
+    /**
+     * How long before an appointment starts the reminder is given.
+     */
+    public static final Duration reminderLead = Duration.ofMinutes(15);
+    /**
+     * How far ahead the appointments are loaded.
+     */
+    private static final Duration loadHorizon = Duration.ofHours(4);
+    /**
+     * How often the appointments are loaded again, which must be shorter than the load horizon.
+     */
+    private static final Duration reloadInterval = Duration.ofHours(1);
+    /**
+     * The length of a tick of the wheel, in milliseconds.
+     */
+    private static final long tickMillis = 1000;
+
+    /**
+     * The listener that keeps the reminders up to date with appointment changes.
+     */
+    private static final DBAppointment.ChangeListener changeListener = ReminderService::onAppointmentChanged;
+
+    /**
+     * The executor that runs the ticks, loads, and updates, or null if the service is not running.
+     */
+    private static ScheduledExecutorService executor;
+    /**
+     * The id of the user whose appointments are reminded.
+     */
+    private static int userId;
+    /**
+     * Invoked with each appointment that is due for a reminder, on the background thread.
+     */
+    private static Consumer<Appointment> onReminder;
+    /**
+     * The wheel that holds a timer for every loaded appointment that has not been reminded yet.
+     */
+    private static TimingWheel<Appointment> wheel;
+    /**
+     * The timers by appointment id.
+     */
+    private static final Map<Integer, TimingWheel.Timer<Appointment>> timersByAppointmentId = new HashMap<>();
+    /**
+     * The end of the time range that appointments have been loaded for.
+     */
+    private static Instant loadedUntil;
+
+    /**
+     * Starts reminding a user of their appointments. Stops reminding any previous user first.
+     * @param userId the id of the user.
+     * @param onReminder invoked with each appointment that is due for a reminder, on a background thread.
+     */
+    public synchronized static void start(int userId, Consumer<Appointment> onReminder) {
+        stop();
+        ReminderService.userId = userId;
+        ReminderService.onReminder = onReminder;
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "appointment-reminders");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(() -> {
+            wheel = new TimingWheel<>(tickMillis, System.currentTimeMillis());
+            timersByAppointmentId.clear();
+        });
+        executor.scheduleWithFixedDelay(ReminderService::load, 0, reloadInterval.toMillis(), TimeUnit.MILLISECONDS);
+        executor.scheduleAtFixedRate(ReminderService::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        DBAppointment.addChangeListener(changeListener);
+    }
+
+    /**
+     * Stops reminding, e.g. when the user logs out or the application exits.
+     */
+    public synchronized static void stop() {
+        if (executor != null) {
+            DBAppointment.removeChangeListener(changeListener);
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Loads the appointments of the user for the next few hours, and schedules a reminder for each one not known yet
+     * whose reminder is not due yet.
+     * Any exception is caught so that it does not cancel the periodic loads.
+     */
+    private static void load() {
+        try {
+            Instant now = Instant.now();
+            Instant until = now.plus(loadHorizon);
+            for (Appointment appointment : DBAppointment.getAllAppointmentsStartingWithinTimeRangeForUserId(now, until, userId)) {
+                if (!timersByAppointmentId.containsKey(appointment.getId())) {
+                    schedule(appointment, false);
+                }
+            }
+            loadedUntil = until;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Advances the wheel to the current time and gives the reminders that are due.
+     */
+    private static void tick() {
+        try {
+            wheel.advanceTo(System.currentTimeMillis(), appointment -> {
+                timersByAppointmentId.remove(appointment.getId());
+                onReminder.accept(appointment);
+            });
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Schedules the reminder of an appointment, unless it already started. A reminder that is already due is given
+     * on the next tick, except for a loaded appointment: its reminder was either given already, since a given reminder
+     * is no longer known when the appointments are loaded again, or was due before the service started, when the user
+     * was just shown the appointments starting soon.
+     * @param appointment the appointment.
+     * @param isChanged whether the appointment was just created or updated, which is always reminded.
+     */
+    private static void schedule(Appointment appointment, boolean isChanged) {
+        Instant remindAt = appointment.getStartsAt().minus(reminderLead);
+        Instant now = Instant.now();
+        if (!appointment.getStartsAt().isAfter(now) || !isChanged && remindAt.isBefore(now)) {
+            return;
+        }
+        timersByAppointmentId.put(appointment.getId(), wheel.schedule(appointment, remindAt.toEpochMilli()));
+    }
+
+    /**
+     * Invoked when an appointment is changed, and moves its reminder on the background thread.
+     * @param before the appointment before the change, or null.
+     * @param after the appointment after the change, or null.
+     * @see DBAppointment.ChangeListener
+     */
+    private static void onAppointmentChanged(Appointment before, Appointment after) {
+        ScheduledExecutorService currentExecutor;
+        synchronized (ReminderService.class) {
+            currentExecutor = executor;
+        }
+        if (currentExecutor == null) {
+            return;
+        }
+        try {
+            currentExecutor.execute(() -> onAppointmentChangedInBackground(before, after));
+        } catch (RejectedExecutionException e) {
+            // the service was stopped meanwhile
+        }
+    }
+
+    /**
+     * Moves the reminder of a changed appointment, on the background thread.
+     * @param before the appointment before the change, or null.
+     * @param after the appointment after the change, or null.
+     */
+    private static void onAppointmentChangedInBackground(Appointment before, Appointment after) {
+        if (before == null && after == null) {
+            timersByAppointmentId.values().forEach(wheel::cancel);
+            timersByAppointmentId.clear();
+            load();
+            return;
+        }
+        if (before != null) {
+            TimingWheel.Timer<Appointment> timer = timersByAppointmentId.remove(before.getId());
+            if (timer != null) {
+                wheel.cancel(timer);
+            }
+        }
+        if (after != null && after.getUserId() == userId && loadedUntil != null && after.getStartsAt().isBefore(loadedUntil)) {
+            schedule(after, true);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package helper.reminder;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel, which keeps any number of timers and expires them with a constant amount of work per
+ * tick, no matter how many timers there are.
+ * <br>
+ * Level 0 has one bucket per tick for the current rotation, and every higher level has one bucket per whole rotation
+ * of the level below it. A timer is put in the lowest level whose current rotation contains its deadline. When a level
+ * completes a rotation, the next bucket of the level above is cascaded down, so every timer moves down at most once
+ * per level before it expires. Scheduling and cancelling a timer are constant time, since buckets are doubly-linked lists.
+ * <br>
+ * Not thread-safe: every method must be called from the same thread, or with external synchronization.
+ * @param <T> the type of the items the timers carry.
+ */
+public class TimingWheel<T> {
+    /**
+     * A scheduled timer, which can be cancelled.
+     * @param <T> the type of the item.
+     */
+    public static class Timer<T> {
+        /**
+         * The item.
+         */
+        private final T item;
+        /**
+         * The tick at which the timer expires.
+         */
+        private final long deadlineTick;
+        /**
+         * The bucket the timer is in, or null if it expired or was cancelled.
+         */
+        private Bucket<T> bucket;
+        /**
+         * The previous timer in the bucket.
+         */
+        private Timer<T> previous;
+        /**
+         * The next timer in the bucket.
+         */
+        private Timer<T> next;
+
+        /**
+         * The constructor.
+         * @param item the item.
+         * @param deadlineTick the tick at which the timer expires.
+         */
+        private Timer(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Gets the item.
+         * @return the item.
+         */
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * Whether the timer is still waiting to expire.
+         * @return whether the timer is scheduled.
+         */
+        public boolean isScheduled() {
+            return bucket != null;
+        }
+    }
+
+    /**
+     * A doubly-linked list of timers.
+     * @param <T> the type of the items.
+     */
+    private static class Bucket<T> {
+        /**
+         * The first timer, or null if the bucket is empty.
+         */
+        private Timer<T> head;
+
+        /**
+         * Adds a timer at the front of the bucket.
+         * @param timer the timer.
+         */
+        private void add(Timer<T> timer) {
+            timer.bucket = this;
+            timer.previous = null;
+            timer.next = head;
+            if (head != null) {
+                head.previous = timer;
+            }
+            head = timer;
+        }
+
+        /**
+         * Removes a timer from the bucket.
+         * @param timer the timer, which must be in this bucket.
+         */
+        private void remove(Timer<T> timer) {
+            if (timer.previous == null) {
+                head = timer.next;
+            } else {
+                timer.previous.next = timer.next;
+            }
+            if (timer.next != null) {
+                timer.next.previous = timer.previous;
+            }
+            timer.bucket = null;
+            timer.previous = null;
+            timer.next = null;
+        }
+
+        /**
+         * Removes every timer from the bucket.
+         * @return the first of the removed timers, still linked to the others through next.
+         */
+        private Timer<T> clear() {
+            Timer<T> first = head;
+            head = null;
+            return first;
+        }
+    }
+
+    /**
+     * The number of bits of the bucket index of a level.
+     */
+    private static final int bitsPerLevel = 6;
+    /**
+     * The number of buckets of a level.
+     */
+    private static final int bucketsPerLevel = 1 << bitsPerLevel;
+    /**
+     * The mask of the bucket index of a level.
+     */
+    private static final long bucketMask = bucketsPerLevel - 1;
+    /**
+     * The number of levels, which together cover 2^24 ticks.
+     */
+    private static final int levelCount = 4;
+
+    /**
+     * The length of a tick, in milliseconds.
+     */
+    private final long tickMillis;
+    /**
+     * The buckets, by level.
+     */
+    private final Bucket<T>[][] levels;
+    /**
+     * The timers that are beyond the range of the top level, rescheduled every time the top level completes a rotation.
+     */
+    private final Bucket<T> overflow = new Bucket<>();
+    /**
+     * The last tick that was processed.
+     */
+    private long currentTick;
+    /**
+     * The number of scheduled timers.
+     */
+    private int size = 0;
+
+    /**
+     * The constructor.
+     * @param tickMillis the length of a tick, in milliseconds.
+     * @param nowMillis the current time, in epoch milliseconds.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = Math.floorDiv(nowMillis, tickMillis);
+        this.levels = (Bucket<T>[][]) new Bucket<?>[levelCount][bucketsPerLevel];
+        for (Bucket<T>[] level : levels) {
+            for (int i = 0; i < bucketsPerLevel; ++i) {
+                level[i] = new Bucket<>();
+            }
+        }
+    }
+
+    /**
+     * Schedules a timer. A deadline that is not after the last processed tick expires on the next tick.
+     * @param item the item.
+     * @param deadlineMillis the time at which the timer expires, in epoch milliseconds.
+     * @return the timer, which can be cancelled.
+     */
+    public Timer<T> schedule(T item, long deadlineMillis) {
+        Timer<T> timer = new Timer<>(item, Math.max(currentTick + 1, Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis)));
+        insert(timer);
+        ++size;
+        return timer;
+    }
+
+    /**
+     * Cancels a timer, which does nothing if it already expired or was cancelled.
+     * @param timer the timer.
+     */
+    public void cancel(Timer<T> timer) {
+        if (timer.bucket != null) {
+            timer.bucket.remove(timer);
+            --size;
+        }
+    }
+
+    /**
+     * Gets the number of scheduled timers.
+     * @return the number of timers.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Processes every tick up to a given time, and expires the timers whose deadline has been reached, in order of tick.
+     * @param nowMillis the current time, in epoch milliseconds.
+     * @param onExpired invoked with the item of every expired timer.
+     */
+    public void advanceTo(long nowMillis, Consumer<T> onExpired) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        while (currentTick < targetTick) {
+            if (size == 0) {
+                // nothing can expire, so the ticks in between need no processing
+                currentTick = targetTick;
+                return;
+            }
+            ++currentTick;
+            cascade();
+            for (Timer<T> timer = levels[0][(int) (currentTick & bucketMask)].clear(); timer != null; ) {
+                Timer<T> next = timer.next;
+                timer.bucket = null;
+                timer.previous = null;
+                timer.next = null;
+                --size;
+                onExpired.accept(timer.item);
+                timer = next;
+            }
+        }
+    }
+
+    /**
+     * Moves the timers of the next bucket of every level above a level that just completed a rotation down to lower levels.
+     */
+    private void cascade() {
+        for (int level = 1; level < levelCount; ++level) {
+            if ((currentTick & ((1L << (bitsPerLevel * level)) - 1)) != 0) {
+                return;
+            }
+            reinsert(levels[level][(int) ((currentTick >>> (bitsPerLevel * level)) & bucketMask)].clear());
+        }
+        if ((currentTick & ((1L << (bitsPerLevel * levelCount)) - 1)) == 0) {
+            reinsert(overflow.clear());
+        }
+    }
+
+    /**
+     * Inserts again every timer of a list that was removed from a bucket.
+     * @param first the first timer of the list.
+     */
+    private void reinsert(Timer<T> first) {
+        for (Timer<T> timer = first; timer != null; ) {
+            Timer<T> next = timer.next;
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    /**
+     * Puts a timer in the lowest level whose current rotation contains its deadline.
+     * @param timer the timer, whose deadline is after the current tick.
+     */
+    private void insert(Timer<T> timer) {
+        for (int level = 0; level < levelCount; ++level) {
+            int shift = bitsPerLevel * (level + 1);
+            if ((timer.deadlineTick >>> shift) == (currentTick >>> shift)) {
+                levels[level][(int) ((timer.deadlineTick >>> (bitsPerLevel * level)) & bucketMask)].add(timer);
+                return;
+            }
+        }
+        overflow.add(timer);
+    }
+}
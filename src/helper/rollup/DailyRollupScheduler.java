@@ -0,0 +1,73 @@
+package helper.rollup;
+
+import helper.dbaccess.dao.DBAppointmentDailyRollup;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It runs the refresh of the appointment_daily_rollup table on a background thread, once at start-up and then periodically,
+ * so that the reports can read whole days from the rollup table instead of scanning every appointment.
+ * @see DBAppointmentDailyRollup#refreshTouchedDays()
+ */
+public abstract class DailyRollupScheduler {
+    /**
+     * The number of minutes between two refreshes.
+     */
+    private static final long refreshIntervalMinutes = 15;
+
+    /**
+     * The executor that runs the refreshes, or null if the scheduler is not running.
+     */
+    private static ScheduledExecutorService executor;
+
+    /**
+     * Starts refreshing the rollup table in the background, immediately and then every refreshIntervalMinutes minutes.
+     * Does nothing if the scheduler is already running.
+     */
+    public synchronized static void start() {
+        if (executor != null) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "daily-rollup-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(DailyRollupScheduler::refresh, 0, refreshIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Requests an extra refresh as soon as possible, e.g. after many appointments have been changed.
+     * Does nothing if the scheduler is not running.
+     */
+    public synchronized static void requestRefresh() {
+        if (executor != null) {
+            executor.execute(DailyRollupScheduler::refresh);
+        }
+    }
+
+    /**
+     * Stops refreshing the rollup table, interrupting a refresh that is in progress.
+     */
+    public synchronized static void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Runs a single refresh. Any exception is caught so that it does not cancel the periodic refreshes.
+     */
+    private static void refresh() {
+        try {
+            DBAppointmentDailyRollup.refreshTouchedDays();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,865 @@
+package helper.scheduling;
+
+import helper.dbaccess.dao.DBAppointment;
+import helper.officehours.OfficeHours;
+import model.Appointment;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It assigns a batch of meeting requests to contacts and times, without conflicts with each other or with the existing
+ * appointments of the contacts and customers, and within the office hours of each request's location.
+ * <br>
+ * Time is divided into slots of the slot granularity, and the busy slots of every contact and customer and the open
+ * slots of every location are kept as bit sets, so checking a placement and finding the next possible one are bit scans.
+ * <br>
+ * The requests are split into groups that share no contact and no customer, which are scheduled in parallel since
+ * they cannot conflict. Within a group, the requests with the fewest possible placements are placed first, each at the
+ * earliest free time in its most preferred window, on the least loaded contact. A local search then tries to place
+ * every request that is left by moving a single request that is in its way, and finally moves every request to an
+ * earlier or more preferred time that has become free.
+ * @see BusySchedule#slotGranularity
+ */
+public abstract class AutoScheduler {
+    /**
+     * The size of a slot.
+     */
+    private static final long slotSeconds = BusySchedule.slotGranularity.getSeconds();
+    /**
+     * The number of possible placements after which a request no longer counts as more constrained than another.
+     */
+    private static final int flexibilityCap = 32;
+    /**
+     * The maximum number of moves of another request that the local search tries for a single unplaced request.
+     */
+    private static final int maxEjectionAttempts = 64;
+
+    /**
+     * A request for a meeting with a customer, with any one of the allowed contacts, within one of the preferred windows.
+     */
+    public static class MeetingRequest {
+        /**
+         * The customer id.
+         */
+        private final int customerId;
+        /**
+         * The id of the user the appointment is created for.
+         */
+        private final int userId;
+        /**
+         * The title.
+         */
+        private final String title;
+        /**
+         * The description.
+         */
+        private final String description;
+        /**
+         * The location, whose office hours the meeting must be within.
+         */
+        private final String location;
+        /**
+         * The type.
+         */
+        private final String type;
+        /**
+         * The duration.
+         */
+        private final Duration duration;
+        /**
+         * The windows the meeting may take place in, most preferred first.
+         */
+        private final List<TimeSlot> preferredWindows;
+        /**
+         * The ids of the contacts that may hold the meeting.
+         */
+        private final List<Integer> allowedContactIds;
+
+        /**
+         * The constructor.
+         * @param customerId the customer id.
+         * @param userId the id of the user the appointment is created for.
+         * @param title the title.
+         * @param description the description.
+         * @param location the location, whose office hours the meeting must be within.
+         * @param type the type.
+         * @param duration the duration.
+         * @param preferredWindows the windows the meeting may take place in, most preferred first.
+         * @param allowedContactIds the ids of the contacts that may hold the meeting.
+         */
+        public MeetingRequest(int customerId, int userId, String title, String description, String location, String type,
+                              Duration duration, List<TimeSlot> preferredWindows, List<Integer> allowedContactIds) {
+            this.customerId = customerId;
+            this.userId = userId;
+            this.title = title;
+            this.description = description;
+            this.location = location;
+            this.type = type;
+            this.duration = duration;
+            this.preferredWindows = List.copyOf(preferredWindows);
+            this.allowedContactIds = List.copyOf(allowedContactIds);
+        }
+
+        /**
+         * Gets the customer id.
+         * @return the customer id.
+         */
+        public int getCustomerId() {
+            return customerId;
+        }
+
+        /**
+         * Gets the id of the user the appointment is created for.
+         * @return the user id.
+         */
+        public int getUserId() {
+            return userId;
+        }
+
+        /**
+         * Gets the title.
+         * @return the title.
+         */
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * Gets the description.
+         * @return the description.
+         */
+        public String getDescription() {
+            return description;
+        }
+
+        /**
+         * Gets the location.
+         * @return the location.
+         */
+        public String getLocation() {
+            return location;
+        }
+
+        /**
+         * Gets the type.
+         * @return the type.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Gets the duration.
+         * @return the duration.
+         */
+        public Duration getDuration() {
+            return duration;
+        }
+
+        /**
+         * Gets the windows the meeting may take place in.
+         * @return the windows, most preferred first.
+         */
+        public List<TimeSlot> getPreferredWindows() {
+            return preferredWindows;
+        }
+
+        /**
+         * Gets the ids of the contacts that may hold the meeting.
+         * @return the contact ids.
+         */
+        public List<Integer> getAllowedContactIds() {
+            return allowedContactIds;
+        }
+    }
+
+    /**
+     * A meeting request assigned to a contact and a time.
+     */
+    public static class Assignment {
+        /**
+         * The meeting request.
+         */
+        private final MeetingRequest request;
+        /**
+         * The contact id.
+         */
+        private final int contactId;
+        /**
+         * The time of the meeting.
+         */
+        private final TimeSlot timeSlot;
+
+        /**
+         * The constructor.
+         * @param request the meeting request.
+         * @param contactId the contact id.
+         * @param timeSlot the time of the meeting.
+         */
+        public Assignment(MeetingRequest request, int contactId, TimeSlot timeSlot) {
+            this.request = request;
+            this.contactId = contactId;
+            this.timeSlot = timeSlot;
+        }
+
+        /**
+         * Gets the meeting request.
+         * @return the meeting request.
+         */
+        public MeetingRequest getRequest() {
+            return request;
+        }
+
+        /**
+         * Gets the contact id.
+         * @return the contact id.
+         */
+        public int getContactId() {
+            return contactId;
+        }
+
+        /**
+         * Gets the time of the meeting.
+         * @return the time slot.
+         */
+        public TimeSlot getTimeSlot() {
+            return timeSlot;
+        }
+
+        /**
+         * Builds the appointment for the assignment, not yet persisted.
+         * @return the appointment.
+         */
+        public Appointment toAppointment() {
+            Appointment appointment = new Appointment();
+            appointment.setContactId(contactId);
+            appointment.setCustomerId(request.getCustomerId());
+            appointment.setUserId(request.getUserId());
+            appointment.setTitle(request.getTitle());
+            appointment.setDescription(request.getDescription());
+            appointment.setLocation(request.getLocation());
+            appointment.setType(request.getType());
+            appointment.setStartsAt(timeSlot.getStartsAt());
+            appointment.setEndsAt(timeSlot.getEndsAt());
+            return appointment;
+        }
+    }
+
+    /**
+     * The result of scheduling a batch: the assignments, and the requests that could not be placed.
+     */
+    public static class Plan {
+        /**
+         * The assignments, in order of starting time.
+         */
+        private final List<Assignment> assignments;
+        /**
+         * The requests that could not be placed, in the order they were given.
+         */
+        private final List<MeetingRequest> unassignedRequests;
+
+        /**
+         * The constructor.
+         * @param assignments the assignments, in order of starting time.
+         * @param unassignedRequests the requests that could not be placed.
+         */
+        public Plan(List<Assignment> assignments, List<MeetingRequest> unassignedRequests) {
+            this.assignments = assignments;
+            this.unassignedRequests = unassignedRequests;
+        }
+
+        /**
+         * Gets the assignments.
+         * @return the assignments, in order of starting time.
+         */
+        public List<Assignment> getAssignments() {
+            return assignments;
+        }
+
+        /**
+         * Gets the requests that could not be placed.
+         * @return the unassigned requests.
+         */
+        public List<MeetingRequest> getUnassignedRequests() {
+            return unassignedRequests;
+        }
+
+        /**
+         * Builds the appointments of every assignment, not yet persisted.
+         * @return the appointments, in order of starting time.
+         */
+        public List<Appointment> toAppointments() {
+            List<Appointment> appointments = new ArrayList<>(assignments.size());
+            for (Assignment assignment : assignments) {
+                appointments.add(assignment.toAppointment());
+            }
+            return appointments;
+        }
+
+        /**
+         * Creates the appointments of every assignment in the database, all or none.
+         * @return the created appointments with their ids, or an empty list if there was an issue.
+         * @see DBAppointment#createAppointments(List)
+         */
+        public List<Appointment> persist() {
+            List<Appointment> appointments = toAppointments();
+            return DBAppointment.createAppointments(appointments) ? appointments : new ArrayList<>();
+        }
+    }
+
+    /**
+     * Schedules a batch of meeting requests around the existing appointments in the database.
+     * Occurrences of recurring series are not taken into account, like in the booking guard, since series cannot be
+     * created or managed from the application yet.
+     * @param requests the meeting requests.
+     * @return the plan, which is not persisted yet.
+     * @see Plan#persist()
+     */
+    public static Plan plan(Collection<MeetingRequest> requests) {
+        Instant from = null;
+        Instant to = null;
+        for (MeetingRequest request : requests) {
+            for (TimeSlot window : request.getPreferredWindows()) {
+                from = from == null || window.getStartsAt().isBefore(from) ? window.getStartsAt() : from;
+                to = to == null || window.getEndsAt().isAfter(to) ? window.getEndsAt() : to;
+            }
+        }
+        List<Appointment> existingAppointments = new ArrayList<>();
+        if (from != null) {
+            existingAppointments.addAll(DBAppointment.getAllAppointmentsOverlappingWithTimeRange(from, to));
+        }
+        return plan(requests, existingAppointments);
+    }
+
+    /**
+     * Schedules a batch of meeting requests around the given existing appointments, without the database.
+     * @param requests the meeting requests.
+     * @param existingAppointments the existing appointments of the contacts and customers.
+     * @return the plan.
+     */
+    public static Plan plan(Collection<MeetingRequest> requests, Collection<Appointment> existingAppointments) {
+        MeetingRequest[] allRequests = requests.toArray(new MeetingRequest[0]);
+        Calendar calendar = new Calendar(allRequests, existingAppointments);
+
+        List<Group> groups = Group.split(calendar, allRequests);
+        groups.parallelStream().forEach(Group::schedule);
+
+        List<Assignment> assignments = new ArrayList<>();
+        List<MeetingRequest> unassignedRequests = new ArrayList<>();
+        for (int index = 0; index < allRequests.length; ++index) {
+            if (calendar.startSlots[index] < 0) {
+                unassignedRequests.add(allRequests[index]);
+            } else {
+                Instant startsAt = calendar.toInstant(calendar.startSlots[index]);
+                assignments.add(new Assignment(allRequests[index], calendar.contactIds[index],
+                        new TimeSlot(startsAt, startsAt.plus(allRequests[index].getDuration()))));
+            }
+        }
+        assignments.sort(Comparator.comparing((Assignment assignment) -> assignment.getTimeSlot().getStartsAt())
+                .thenComparingInt(Assignment::getContactId));
+        return new Plan(assignments, unassignedRequests);
+    }
+
+    /**
+     * The slot bit sets of every contact, customer, and location involved in a batch, and the placement of every request.
+     * The sets are all created before the groups are scheduled, and each one is then only changed by the group that
+     * owns its contact or customer.
+     */
+    private static class Calendar {
+        /**
+         * The starting time of slot 0 in epoch seconds.
+         */
+        private final long firstSecond;
+        /**
+         * The number of slots.
+         */
+        private final int slotCount;
+        /**
+         * The busy slots by contact id.
+         */
+        private final Map<Integer, BitSet> contactBusySlots = new HashMap<>();
+        /**
+         * The busy slots by customer id.
+         */
+        private final Map<Integer, BitSet> customerBusySlots = new HashMap<>();
+        /**
+         * The slots fully within office hours, by lower case location, the default office hours having the null key.
+         */
+        private final Map<String, BitSet> openSlotsByLocation = new HashMap<>();
+        /**
+         * The number of slots of each request, by request index.
+         */
+        private final int[] slotCounts;
+        /**
+         * The first and last slot (exclusive) of each preferred window, by request index.
+         */
+        private final int[][][] windowSlots;
+        /**
+         * The assigned contact id of each request, by request index.
+         */
+        private final int[] contactIds;
+        /**
+         * The assigned starting slot of each request, by request index, or -1 if it is not placed.
+         */
+        private final int[] startSlots;
+
+        /**
+         * The constructor, which marks the busy slots of the existing appointments and the open slots of every location.
+         * @param requests the meeting requests.
+         * @param existingAppointments the existing appointments.
+         */
+        private Calendar(MeetingRequest[] requests, Collection<Appointment> existingAppointments) {
+            long fromSecond = Long.MAX_VALUE;
+            long toSecond = Long.MIN_VALUE;
+            for (MeetingRequest request : requests) {
+                for (TimeSlot window : request.getPreferredWindows()) {
+                    fromSecond = Math.min(fromSecond, window.getStartsAt().getEpochSecond());
+                    toSecond = Math.max(toSecond, window.getEndsAt().getEpochSecond());
+                }
+            }
+            firstSecond = fromSecond == Long.MAX_VALUE ? 0 : Math.floorDiv(fromSecond, slotSeconds) * slotSeconds;
+            slotCount = fromSecond == Long.MAX_VALUE ? 0 : (int) ((toSecond - firstSecond + slotSeconds - 1) / slotSeconds);
+
+            slotCounts = new int[requests.length];
+            windowSlots = new int[requests.length][][];
+            contactIds = new int[requests.length];
+            startSlots = new int[requests.length];
+            for (int index = 0; index < requests.length; ++index) {
+                MeetingRequest request = requests[index];
+                slotCounts[index] = (int) Math.max(1, (request.getDuration().getSeconds() + slotSeconds - 1) / slotSeconds);
+                windowSlots[index] = new int[request.getPreferredWindows().size()][];
+                for (int window = 0; window < windowSlots[index].length; ++window) {
+                    TimeSlot timeSlot = request.getPreferredWindows().get(window);
+                    windowSlots[index][window] = new int[] { slotAtOrAfter(timeSlot.getStartsAt()), slotAtOrBefore(timeSlot.getEndsAt()) };
+                }
+                startSlots[index] = -1;
+
+                customerBusySlots.computeIfAbsent(request.getCustomerId(), id -> new BitSet(slotCount));
+                for (int contactId : request.getAllowedContactIds()) {
+                    contactBusySlots.computeIfAbsent(contactId, id -> new BitSet(slotCount));
+                }
+                String key = toLocationKey(request.getLocation());
+                if (!openSlotsByLocation.containsKey(key) && slotCount > 0) {
+                    BitSet openSlots = new BitSet(slotCount);
+                    for (TimeSlot window : OfficeHours.getWindowsOverlapping(request.getLocation(), toInstant(0), toInstant(slotCount))) {
+                        openSlots.set(slotAtOrAfter(window.getStartsAt()), Math.max(slotAtOrAfter(window.getStartsAt()), slotAtOrBefore(window.getEndsAt())));
+                    }
+                    openSlotsByLocation.put(key, openSlots);
+                }
+            }
+
+            for (Appointment appointment : existingAppointments) {
+                // every slot that the appointment touches is busy
+                int fromSlot = slotAtOrBefore(appointment.getStartsAt());
+                int toSlot = slotAtOrAfter(appointment.getEndsAt());
+                if (fromSlot >= toSlot) {
+                    continue;
+                }
+                BitSet contactBusy = contactBusySlots.get(appointment.getContactId());
+                if (contactBusy != null) {
+                    contactBusy.set(fromSlot, toSlot);
+                }
+                BitSet customerBusy = customerBusySlots.get(appointment.getCustomerId());
+                if (customerBusy != null) {
+                    customerBusy.set(fromSlot, toSlot);
+                }
+            }
+        }
+
+        /**
+         * Gets the starting time of a slot.
+         * @param slot the slot.
+         * @return the starting time.
+         */
+        private Instant toInstant(int slot) {
+            return Instant.ofEpochSecond(firstSecond + slot * slotSeconds);
+        }
+
+        /**
+         * Gets the first slot that starts at or after a time, within the calendar.
+         * @param time the time.
+         * @return the slot.
+         */
+        private int slotAtOrAfter(Instant time) {
+            return clamp(Math.floorDiv(time.getEpochSecond() - firstSecond + slotSeconds - 1, slotSeconds));
+        }
+
+        /**
+         * Gets the slot that contains a time, within the calendar.
+         * This is also the end (exclusive) of the slots that end at or before the time.
+         * @param time the time.
+         * @return the slot.
+         */
+        private int slotAtOrBefore(Instant time) {
+            return clamp(Math.floorDiv(time.getEpochSecond() - firstSecond, slotSeconds));
+        }
+
+        /**
+         * Clamps a slot to the calendar.
+         * @param slot the slot, which may be outside of the calendar.
+         * @return the slot, from 0 to the number of slots.
+         */
+        private int clamp(long slot) {
+            return (int) Math.max(0, Math.min(slotCount, slot));
+        }
+
+        /**
+         * Gets the key of a location in openSlotsByLocation.
+         * @param location the location, or null.
+         * @return the lower case location, or null.
+         */
+        private static String toLocationKey(String location) {
+            return location == null ? null : location.strip().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * A group of requests that shares no contact and no customer with any other group, scheduled on its own.
+     */
+    private static class Group {
+        /**
+         * The shared calendar.
+         */
+        private final Calendar calendar;
+        /**
+         * All meeting requests of the batch.
+         */
+        private final MeetingRequest[] requests;
+        /**
+         * The indices of the requests of the group.
+         */
+        private final List<Integer> requestIndices = new ArrayList<>();
+        /**
+         * The number of busy slots given to each contact by the group, used to spread the meetings evenly.
+         */
+        private final Map<Integer, Integer> loadByContactId = new HashMap<>();
+        /**
+         * The indices of the placed requests of the group, by contact id.
+         */
+        private final Map<Integer, List<Integer>> placedByContactId = new HashMap<>();
+
+        /**
+         * The constructor.
+         * @param calendar the shared calendar.
+         * @param requests all meeting requests of the batch.
+         */
+        private Group(Calendar calendar, MeetingRequest[] requests) {
+            this.calendar = calendar;
+            this.requests = requests;
+        }
+
+        /**
+         * Splits a batch into groups with a union-find over the contacts and customers of the requests.
+         * @param calendar the shared calendar.
+         * @param requests all meeting requests of the batch.
+         * @return the groups.
+         */
+        private static List<Group> split(Calendar calendar, MeetingRequest[] requests) {
+            int[] parents = new int[requests.length];
+            Map<Integer, Integer> firstRequestByContactId = new HashMap<>();
+            Map<Integer, Integer> firstRequestByCustomerId = new HashMap<>();
+            for (int index = 0; index < requests.length; ++index) {
+                parents[index] = index;
+                Integer first = firstRequestByCustomerId.putIfAbsent(requests[index].getCustomerId(), index);
+                if (first != null) {
+                    union(parents, index, first);
+                }
+                for (int contactId : requests[index].getAllowedContactIds()) {
+                    first = firstRequestByContactId.putIfAbsent(contactId, index);
+                    if (first != null) {
+                        union(parents, index, first);
+                    }
+                }
+            }
+
+            Map<Integer, Group> groupsByRoot = new HashMap<>();
+            for (int index = 0; index < requests.length; ++index) {
+                groupsByRoot.computeIfAbsent(find(parents, index), root -> new Group(calendar, requests)).requestIndices.add(index);
+            }
+            return new ArrayList<>(groupsByRoot.values());
+        }
+
+        /**
+         * Joins the sets of two requests.
+         * @param parents the parent of each request.
+         * @param a the first request index.
+         * @param b the second request index.
+         */
+        private static void union(int[] parents, int a, int b) {
+            int rootA = find(parents, a);
+            int rootB = find(parents, b);
+            if (rootA != rootB) {
+                parents[rootB] = rootA;
+            }
+        }
+
+        /**
+         * Finds the root of the set of a request, halving the path on the way.
+         * @param parents the parent of each request.
+         * @param index the request index.
+         * @return the root request index.
+         */
+        private static int find(int[] parents, int index) {
+            while (parents[index] != index) {
+                parents[index] = parents[parents[index]];
+                index = parents[index];
+            }
+            return index;
+        }
+
+        /**
+         * Schedules the requests of the group: greedy placement, most constrained first, then local search.
+         */
+        private void schedule() {
+            // only reads the calendar, so it is also parallel within a group
+            int[] flexibilities = new int[requests.length];
+            requestIndices.parallelStream().forEach(index -> flexibilities[index] = countPlacements(index, flexibilityCap));
+            requestIndices.sort(Comparator.comparingInt((Integer index) -> flexibilities[index])
+                    .thenComparingInt(index -> firstWindowSlot(index)));
+
+            for (int index : requestIndices) {
+                int[] placement = findBestPlacement(index);
+                if (placement != null) {
+                    place(index, placement[0], placement[1]);
+                }
+            }
+
+            for (int index : requestIndices) {
+                if (calendar.startSlots[index] < 0) {
+                    placeByMovingAnother(index);
+                }
+            }
+
+            for (int index : requestIndices) {
+                if (calendar.startSlots[index] >= 0) {
+                    int contactId = calendar.contactIds[index];
+                    int startSlot = calendar.startSlots[index];
+                    unplace(index);
+                    int[] placement = findBestPlacement(index);
+                    if (placement == null) {
+                        place(index, contactId, startSlot);
+                    } else {
+                        place(index, placement[0], placement[1]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Counts the possible placements of a request in the current calendar, up to a cap.
+         * @param index the request index.
+         * @param cap the count to stop at.
+         * @return the number of placements, at most cap.
+         */
+        private int countPlacements(int index, int cap) {
+            int count = 0;
+            for (int[] window : calendar.windowSlots[index]) {
+                for (int contactId : requests[index].getAllowedContactIds()) {
+                    for (int startSlot = earliestStart(index, contactId, window[0], window[1]); startSlot >= 0;
+                         startSlot = earliestStart(index, contactId, startSlot + 1, window[1])) {
+                        if (++count == cap) {
+                            return count;
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Finds the best placement of a request: the most preferred window with any placement, the earliest starting slot
+         * within it, and the least loaded contact at that slot.
+         * @param index the request index.
+         * @return the contact id and the starting slot, or null if the request cannot be placed.
+         */
+        private int[] findBestPlacement(int index) {
+            for (int[] window : calendar.windowSlots[index]) {
+                int[] best = null;
+                for (int contactId : requests[index].getAllowedContactIds()) {
+                    int startSlot = earliestStart(index, contactId, window[0], window[1]);
+                    if (startSlot >= 0 && (best == null || startSlot < best[1]
+                            || startSlot == best[1] && loadByContactId.getOrDefault(contactId, 0) < loadByContactId.getOrDefault(best[0], 0))) {
+                        best = new int[] { contactId, startSlot };
+                    }
+                }
+                if (best != null) {
+                    return best;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Tries to place a request by moving a single placed request that is the only one in its way.
+         * The moved request is placed at its own best remaining placement, or the move is undone.
+         * @param index the request index.
+         */
+        private void placeByMovingAnother(int index) {
+            int slotCount = calendar.slotCounts[index];
+            BitSet customerBusy = calendar.customerBusySlots.get(requests[index].getCustomerId());
+            BitSet openSlots = calendar.openSlotsByLocation.get(Calendar.toLocationKey(requests[index].getLocation()));
+            int attempts = 0;
+            for (int[] window : calendar.windowSlots[index]) {
+                for (int contactId : requests[index].getAllowedContactIds()) {
+                    for (int startSlot = window[0]; startSlot + slotCount <= window[1]; ++startSlot) {
+                        if (!hasOnly(openSlots, startSlot, slotCount, true) || !hasOnly(customerBusy, startSlot, slotCount, false)) {
+                            continue;
+                        }
+                        int blocker = findOnlyBlocker(contactId, startSlot, slotCount);
+                        if (blocker < 0) {
+                            continue;
+                        }
+                        int blockerContactId = calendar.contactIds[blocker];
+                        int blockerStartSlot = calendar.startSlots[blocker];
+                        unplace(blocker);
+                        if (earliestStart(index, contactId, startSlot, startSlot + slotCount) == startSlot) {
+                            place(index, contactId, startSlot);
+                            int[] placement = findBestPlacement(blocker);
+                            if (placement != null) {
+                                place(blocker, placement[0], placement[1]);
+                                return;
+                            }
+                            unplace(index);
+                        }
+                        place(blocker, blockerContactId, blockerStartSlot);
+                        if (++attempts == maxEjectionAttempts) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Finds the placed request of the group that is the only one keeping a contact busy during some slots, provided
+         * that nothing else (e.g. an existing appointment) keeps the contact busy during them.
+         * @param contactId the contact id.
+         * @param startSlot the first slot.
+         * @param slotCount the number of slots.
+         * @return the request index, or -1 if there is no such request.
+         */
+        private int findOnlyBlocker(int contactId, int startSlot, int slotCount) {
+            BitSet contactBusy = calendar.contactBusySlots.get(contactId);
+            if (hasOnly(contactBusy, startSlot, slotCount, false)) {
+                return -1;
+            }
+            int blocker = -1;
+            int blockedSlots = 0;
+            for (int placed : placedByContactId.getOrDefault(contactId, List.of())) {
+                int placedStart = calendar.startSlots[placed];
+                int placedEnd = placedStart + calendar.slotCounts[placed];
+                if (placedStart < startSlot + slotCount && placedEnd > startSlot) {
+                    if (blocker >= 0) {
+                        return -1;
+                    }
+                    blocker = placed;
+                    blockedSlots = Math.min(placedEnd, startSlot + slotCount) - Math.max(placedStart, startSlot);
+                }
+            }
+            int busySlots = contactBusy.get(startSlot, startSlot + slotCount).cardinality();
+            return blocker >= 0 && busySlots == blockedSlots ? blocker : -1;
+        }
+
+        /**
+         * Finds the earliest slot at which a request can start with a contact, within a range of slots.
+         * @param index the request index.
+         * @param contactId the contact id.
+         * @param fromSlot the earliest starting slot.
+         * @param toSlot the slot the meeting must end by (exclusive).
+         * @return the starting slot, or -1 if there is none.
+         */
+        private int earliestStart(int index, int contactId, int fromSlot, int toSlot) {
+            int slotCount = calendar.slotCounts[index];
+            BitSet contactBusy = calendar.contactBusySlots.get(contactId);
+            BitSet customerBusy = calendar.customerBusySlots.get(requests[index].getCustomerId());
+            BitSet openSlots = calendar.openSlotsByLocation.get(Calendar.toLocationKey(requests[index].getLocation()));
+            if (openSlots == null) {
+                return -1;
+            }
+            int startSlot = fromSlot;
+            while (startSlot >= 0 && startSlot + slotCount <= toSlot) {
+                int closedSlot = openSlots.nextClearBit(startSlot);
+                if (closedSlot < startSlot + slotCount) {
+                    startSlot = openSlots.nextSetBit(closedSlot);
+                    continue;
+                }
+                int busySlot = contactBusy.nextSetBit(startSlot);
+                if (busySlot >= 0 && busySlot < startSlot + slotCount) {
+                    startSlot = contactBusy.nextClearBit(busySlot);
+                    continue;
+                }
+                busySlot = customerBusy.nextSetBit(startSlot);
+                if (busySlot >= 0 && busySlot < startSlot + slotCount) {
+                    startSlot = customerBusy.nextClearBit(busySlot);
+                    continue;
+                }
+                return startSlot;
+            }
+            return -1;
+        }
+
+        /**
+         * Whether every slot in a range has a given value in a bit set.
+         * @param slots the bit set.
+         * @param startSlot the first slot.
+         * @param slotCount the number of slots.
+         * @param value the value.
+         * @return whether every slot has the value.
+         */
+        private static boolean hasOnly(BitSet slots, int startSlot, int slotCount, boolean value) {
+            int other = value ? slots.nextClearBit(startSlot) : slots.nextSetBit(startSlot);
+            return other < 0 || other >= startSlot + slotCount;
+        }
+
+        /**
+         * Gets the first slot of the most preferred window of a request.
+         * @param index the request index.
+         * @return the slot, or the number of slots if it has no window.
+         */
+        private int firstWindowSlot(int index) {
+            return calendar.windowSlots[index].length == 0 ? calendar.slotCount : calendar.windowSlots[index][0][0];
+        }
+
+        /**
+         * Places a request, marking its slots busy for the contact and the customer.
+         * @param index the request index.
+         * @param contactId the contact id.
+         * @param startSlot the starting slot.
+         */
+        private void place(int index, int contactId, int startSlot) {
+            int slotCount = calendar.slotCounts[index];
+            calendar.contactIds[index] = contactId;
+            calendar.startSlots[index] = startSlot;
+            calendar.contactBusySlots.get(contactId).set(startSlot, startSlot + slotCount);
+            calendar.customerBusySlots.get(requests[index].getCustomerId()).set(startSlot, startSlot + slotCount);
+            loadByContactId.merge(contactId, slotCount, Integer::sum);
+            placedByContactId.computeIfAbsent(contactId, id -> new ArrayList<>()).add(index);
+        }
+
+        /**
+         * Removes the placement of a request, marking its slots free again.
+         * Since placements never overlap anything busy, this frees only the slots the request itself made busy.
+         * @param index the request index.
+         */
+        private void unplace(int index) {
+            int slotCount = calendar.slotCounts[index];
+            int contactId = calendar.contactIds[index];
+            int startSlot = calendar.startSlots[index];
+            calendar.contactBusySlots.get(contactId).clear(startSlot, startSlot + slotCount);
+            calendar.customerBusySlots.get(requests[index].getCustomerId()).clear(startSlot, startSlot + slotCount);
+            calendar.startSlots[index] = -1;
+            loadByContactId.merge(contactId, -slotCount, Integer::sum);
+            placedByContactId.get(contactId).remove(Integer.valueOf(index));
+        }
+    }
+}
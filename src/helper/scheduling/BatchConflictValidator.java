@@ -0,0 +1,259 @@
+package helper.scheduling;
+
+import helper.dbaccess.dao.DBAppointment;
+import model.Appointment;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It validates a batch of proposed appointments (e.g. an import, or many appointments being rescheduled at once)
+ * and reports every conflict, both with the existing appointments and within the batch.
+ * <br>
+ * Instead of one overlap query per proposed appointment, the existing appointments of each contact and customer
+ * in the batch are loaded once, for the union of the time ranges proposed for it. The conflicts of each contact and
+ * customer are then found with a sort-and-sweep: all time ranges are sorted by starting time and swept while keeping
+ * the ones that have not ended yet, so the cost is O((n + m) log(n + m)) plus the number of conflicts.
+ */
+public abstract class BatchConflictValidator {
+    /**
+     * The kind of resource that two conflicting appointments share.
+     */
+    public enum Resource { CONTACT, CUSTOMER }
+
+    /**
+     * A conflict between a proposed appointment and either an existing appointment or another proposed appointment.
+     */
+    public static class Conflict {
+        /**
+         * The proposed appointment.
+         */
+        private final Appointment proposed;
+        /**
+         * The appointment that it conflicts with.
+         */
+        private final Appointment conflicting;
+        /**
+         * Whether the conflicting appointment is also in the batch.
+         */
+        private final boolean conflictingIsProposed;
+        /**
+         * The kind of resource that both appointments share.
+         */
+        private final Resource resource;
+
+        /**
+         * The constructor.
+         * @param proposed the proposed appointment.
+         * @param conflicting the appointment that it conflicts with.
+         * @param conflictingIsProposed whether the conflicting appointment is also in the batch.
+         * @param resource the kind of resource that both appointments share.
+         */
+        private Conflict(Appointment proposed, Appointment conflicting, boolean conflictingIsProposed, Resource resource) {
+            this.proposed = proposed;
+            this.conflicting = conflicting;
+            this.conflictingIsProposed = conflictingIsProposed;
+            this.resource = resource;
+        }
+
+        /**
+         * Gets the proposed appointment.
+         * @return the proposed appointment.
+         */
+        public Appointment getProposed() {
+            return proposed;
+        }
+
+        /**
+         * Gets the appointment that the proposed appointment conflicts with.
+         * @return the conflicting appointment.
+         */
+        public Appointment getConflicting() {
+            return conflicting;
+        }
+
+        /**
+         * Gets whether the conflicting appointment is also in the batch.
+         * @return whether it is proposed.
+         */
+        public boolean isConflictingProposed() {
+            return conflictingIsProposed;
+        }
+
+        /**
+         * Gets the kind of resource that both appointments share.
+         * @return the resource.
+         */
+        public Resource getResource() {
+            return resource;
+        }
+
+        /**
+         * Gets a pretty string of the conflict.
+         * @return the pretty string.
+         */
+        public String toPrettyString() {
+            return String.format("%s conflicts with %s (same %s)",
+                    proposed.toPrettyString(),
+                    conflicting.toPrettyString(),
+                    resource.name().toLowerCase());
+        }
+    }
+
+    /**
+     * A time range in the sweep: an appointment, and whether it is proposed.
+     */
+    private static class Interval {
+        /**
+         * The appointment.
+         */
+        private final Appointment appointment;
+        /**
+         * Whether the appointment is proposed.
+         */
+        private final boolean isProposed;
+
+        /**
+         * The constructor.
+         * @param appointment the appointment.
+         * @param isProposed whether the appointment is proposed.
+         */
+        private Interval(Appointment appointment, boolean isProposed) {
+            this.appointment = appointment;
+            this.isProposed = isProposed;
+        }
+    }
+
+    /**
+     * Finds every conflict of a batch of proposed appointments, by contact and by customer.
+     * A proposed appointment with the id of an existing appointment replaces it (i.e. it is being rescheduled),
+     * so it does not conflict with its own previous times. Occurrences of recurring series are not checked, like in the
+     * booking guard, since series cannot be created or managed from the application yet.
+     * @param proposedAppointments the proposed appointments.
+     * @return the conflicts; a conflict within the batch is reported once, with the later-starting appointment as the proposed one.
+     */
+    public static List<Conflict> findConflicts(Collection<Appointment> proposedAppointments) {
+        Set<Integer> replacedAppointmentIds = new HashSet<>();
+        for (Appointment proposed : proposedAppointments) {
+            if (proposed.getId() != 0) {
+                replacedAppointmentIds.add(proposed.getId());
+            }
+        }
+
+        List<Conflict> conflicts = new ArrayList<>();
+        if (proposedAppointments.isEmpty()) {
+            return conflicts;
+        }
+        findConflicts(proposedAppointments, Resource.CONTACT, Appointment::getContactId, replacedAppointmentIds, conflicts);
+        findConflicts(proposedAppointments, Resource.CUSTOMER, Appointment::getCustomerId, replacedAppointmentIds, conflicts);
+        return conflicts;
+    }
+
+    /**
+     * Finds the conflicts of a batch of proposed appointments for one kind of resource, and adds them to the given list.
+     * @param proposedAppointments the proposed appointments.
+     * @param resource the kind of resource.
+     * @param resourceId gets the id of the resource of an appointment.
+     * @param replacedAppointmentIds the ids of the existing appointments that are replaced by proposed ones.
+     * @param conflicts the list the conflicts are added to.
+     */
+    private static void findConflicts(Collection<Appointment> proposedAppointments, Resource resource, ToIntFunction<Appointment> resourceId, Set<Integer> replacedAppointmentIds, List<Conflict> conflicts) {
+        Map<Integer, List<Appointment>> proposedByResourceId = new HashMap<>();
+        for (Appointment proposed : proposedAppointments) {
+            proposedByResourceId.computeIfAbsent(resourceId.applyAsInt(proposed), id -> new ArrayList<>()).add(proposed);
+        }
+
+        for (Map.Entry<Integer, List<Appointment>> entry : proposedByResourceId.entrySet()) {
+            List<Appointment> proposedForResource = entry.getValue();
+            Instant from = proposedForResource.get(0).getStartsAt();
+            Instant to = proposedForResource.get(0).getEndsAt();
+            for (Appointment proposed : proposedForResource) {
+                from = proposed.getStartsAt().isBefore(from) ? proposed.getStartsAt() : from;
+                to = proposed.getEndsAt().isAfter(to) ? proposed.getEndsAt() : to;
+            }
+
+            List<Interval> intervals = new ArrayList<>();
+            for (Appointment proposed : proposedForResource) {
+                intervals.add(new Interval(proposed, true));
+            }
+            for (Appointment existing : loadExistingAppointments(resource, entry.getKey(), from, to)) {
+                if (!replacedAppointmentIds.contains(existing.getId())) {
+                    intervals.add(new Interval(existing, false));
+                }
+            }
+            sweep(intervals, resource, conflicts);
+        }
+    }
+
+    /**
+     * Loads the existing appointments of a resource that overlap with a time range.
+     * @param resource the kind of resource.
+     * @param id the id of the resource.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the existing appointments.
+     */
+    private static List<Appointment> loadExistingAppointments(Resource resource, int id, Instant from, Instant to) {
+        // ids start at 1, so 0 matches no row
+        return resource == Resource.CONTACT
+                ? DBAppointment.getAllAppointmentsForContactIdOrCustomerIdOverlappingWithTimeRange(id, 0, from, to)
+                : DBAppointment.getAllAppointmentsForContactIdOrCustomerIdOverlappingWithTimeRange(0, id, from, to);
+    }
+
+    /**
+     * Sweeps the time ranges of a single resource in order of starting time, keeping those that have not ended yet in
+     * queues ordered by ending time. Every time range still in a queue when another one starts overlaps with it.
+     * Proposed and existing time ranges are queued separately so that an existing appointment is only compared with
+     * the proposed ones, since overlaps between existing appointments are not reported.
+     * @param intervals the time ranges of the resource.
+     * @param resource the kind of resource.
+     * @param conflicts the list the conflicts are added to.
+     */
+    private static void sweep(List<Interval> intervals, Resource resource, List<Conflict> conflicts) {
+        intervals.sort(Comparator.comparing((Interval interval) -> interval.appointment.getStartsAt()));
+        Comparator<Interval> byEndsAt = Comparator.comparing((Interval interval) -> interval.appointment.getEndsAt());
+        PriorityQueue<Interval> activeProposed = new PriorityQueue<>(byEndsAt);
+        PriorityQueue<Interval> activeExisting = new PriorityQueue<>(byEndsAt);
+        for (Interval interval : intervals) {
+            Instant startsAt = interval.appointment.getStartsAt();
+            removeEnded(activeProposed, startsAt);
+            removeEnded(activeExisting, startsAt);
+            for (Interval other : activeProposed) {
+                if (interval.isProposed) {
+                    conflicts.add(new Conflict(interval.appointment, other.appointment, true, resource));
+                } else {
+                    conflicts.add(new Conflict(other.appointment, interval.appointment, false, resource));
+                }
+            }
+            if (interval.isProposed) {
+                for (Interval other : activeExisting) {
+                    conflicts.add(new Conflict(interval.appointment, other.appointment, false, resource));
+                }
+            }
+            if (startsAt.isBefore(interval.appointment.getEndsAt())) {
+                (interval.isProposed ? activeProposed : activeExisting).add(interval);
+            }
+        }
+    }
+
+    /**
+     * Removes the time ranges that have ended by a given time from a queue ordered by ending time.
+     * @param active the queue.
+     * @param time the time.
+     */
+    private static void removeEnded(PriorityQueue<Interval> active, Instant time) {
+        while (!active.isEmpty() && !active.peek().appointment.getEndsAt().isAfter(time)) {
+            active.poll();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package helper.scheduling;
+
+import helper.officehours.OfficeHours;
+import model.Appointment;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The busy times of one or more resources (e.g. a contact and a customer), kept as a sorted list of merged,
+ * non-overlapping time ranges in epoch milliseconds.
+ * <br>
+ * It is built once from the appointments of the resources and can then be queried any number of times without
+ * the database: whether a time range is free is a binary search, and finding the next free slots is a single sweep
+ * over the office hours and the busy time ranges together.
+ * @see FreeSlotFinder
+ */
+public class BusySchedule {
+    /**
+     * The granularity that the starting times of free slots are aligned to, e.g. :00, :15, :30, and :45.
+     */
+    public static final Duration slotGranularity = Duration.ofMinutes(15);
+
+    /**
+     * The starting times of the busy time ranges, in ascending order.
+     */
+    private final long[] busyStarts;
+    /**
+     * The ending times of the busy time ranges, in ascending order.
+     */
+    private final long[] busyEnds;
+
+    /**
+     * The constructor, which sorts and merges the time ranges of the given appointments.
+     * @param appointments the appointments of the resources, in any order.
+     */
+    public BusySchedule(Collection<Appointment> appointments) {
+        long[][] ranges = new long[appointments.size()][];
+        int rangeCount = 0;
+        for (Appointment appointment : appointments) {
+            long start = appointment.getStartsAt().toEpochMilli();
+            long end = appointment.getEndsAt().toEpochMilli();
+            if (start < end) {
+                ranges[rangeCount++] = new long[] { start, end };
+            }
+        }
+        Arrays.sort(ranges, 0, rangeCount, (a, b) -> Long.compare(a[0], b[0]));
+
+        long[] starts = new long[rangeCount];
+        long[] ends = new long[rangeCount];
+        int mergedCount = 0;
+        for (int i = 0; i < rangeCount; ++i) {
+            if (mergedCount > 0 && ranges[i][0] <= ends[mergedCount - 1]) {
+                ends[mergedCount - 1] = Math.max(ends[mergedCount - 1], ranges[i][1]);
+            } else {
+                starts[mergedCount] = ranges[i][0];
+                ends[mergedCount] = ranges[i][1];
+                ++mergedCount;
+            }
+        }
+        busyStarts = Arrays.copyOf(starts, mergedCount);
+        busyEnds = Arrays.copyOf(ends, mergedCount);
+    }
+
+    /**
+     * Whether no busy time range overlaps with a given time range.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return whether the time range is free.
+     */
+    public boolean isFree(Instant from, Instant to) {
+        int index = indexOfFirstBusyEndingAfter(from.toEpochMilli());
+        return index == busyStarts.length || busyStarts[index] >= to.toEpochMilli();
+    }
+
+    /**
+     * Gets the busy time ranges.
+     * @return the merged busy time ranges, in order.
+     */
+    public List<TimeSlot> getBusySlots() {
+        List<TimeSlot> busySlots = new ArrayList<>(busyStarts.length);
+        for (int i = 0; i < busyStarts.length; ++i) {
+            busySlots.add(new TimeSlot(Instant.ofEpochMilli(busyStarts[i]), Instant.ofEpochMilli(busyEnds[i])));
+        }
+        return busySlots;
+    }
+
+    /**
+     * Finds the next free slots of a given duration within a time range, in order, within the default office hours.
+     * @param duration the duration of each slot.
+     * @param from the earliest starting time of a slot (inclusive).
+     * @param to the latest ending time of a slot (inclusive).
+     * @param limit the maximum number of slots.
+     * @return the free slots, at most limit of them.
+     * @see #findFreeSlots(Duration, Instant, Instant, int, String)
+     */
+    public List<TimeSlot> findFreeSlots(Duration duration, Instant from, Instant to, int limit) {
+        return findFreeSlots(duration, from, to, limit, null);
+    }
+
+    /**
+     * Finds the next free slots of a given duration within a time range, in order.
+     * A free slot lies within a single office hours window of the location, does not overlap with any busy time range,
+     * starts on a multiple of the slot granularity, and does not overlap with the previous free slot.
+     * @param duration the duration of each slot.
+     * @param from the earliest starting time of a slot (inclusive).
+     * @param to the latest ending time of a slot (inclusive).
+     * @param limit the maximum number of slots.
+     * @param location the location whose office hours are used, or null for the default office hours.
+     * @return the free slots, at most limit of them.
+     * @see OfficeHours#getWindowsOverlapping(String, Instant, Instant)
+     */
+    public List<TimeSlot> findFreeSlots(Duration duration, Instant from, Instant to, int limit, String location) {
+        List<TimeSlot> freeSlots = new ArrayList<>(Math.max(0, Math.min(limit, 16)));
+        long durationMillis = duration.toMillis();
+        long granularityMillis = slotGranularity.toMillis();
+        if (durationMillis <= 0 || limit <= 0 || !from.isBefore(to)) {
+            return freeSlots;
+        }
+
+        // the index of the first busy time range that has not ended yet at the current candidate; it only moves forward
+        int busyIndex = indexOfFirstBusyEndingAfter(from.toEpochMilli());
+        for (TimeSlot window : OfficeHours.getWindowsOverlapping(location, from, to)) {
+            long windowStart = window.getStartsAt().toEpochMilli();
+            long windowEnd = window.getEndsAt().toEpochMilli();
+            long candidate = alignUp(windowStart, granularityMillis);
+
+            while (candidate + durationMillis <= windowEnd) {
+                while (busyIndex < busyStarts.length && busyEnds[busyIndex] <= candidate) {
+                    ++busyIndex;
+                }
+                if (busyIndex < busyStarts.length && busyStarts[busyIndex] < candidate + durationMillis) {
+                    candidate = alignUp(busyEnds[busyIndex], granularityMillis);
+                    continue;
+                }
+                freeSlots.add(new TimeSlot(Instant.ofEpochMilli(candidate), Instant.ofEpochMilli(candidate + durationMillis)));
+                if (freeSlots.size() == limit) {
+                    return freeSlots;
+                }
+                candidate = alignUp(candidate + durationMillis, granularityMillis);
+            }
+        }
+        return freeSlots;
+    }
+
+    /**
+     * Binary searches for the first busy time range that ends after a given time.
+     * @param millis the time in epoch milliseconds.
+     * @return the index of the busy time range, or the number of busy time ranges if there is none.
+     */
+    private int indexOfFirstBusyEndingAfter(long millis) {
+        int low = 0;
+        int high = busyEnds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (busyEnds[middle] <= millis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Rounds a time up to the next multiple of the granularity.
+     * Every time zone offset is a multiple of 15 minutes, so this aligns to the same wall-clock times in any time zone.
+     * @param millis the time in epoch milliseconds.
+     * @param granularity the granularity in milliseconds.
+     * @return the rounded time in epoch milliseconds.
+     */
+    private static long alignUp(long millis, long granularity) {
+        long remainder = Math.floorMod(millis, granularity);
+        return remainder == 0 ? millis : millis + granularity - remainder;
+    }
+}
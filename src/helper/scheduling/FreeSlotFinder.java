@@ -0,0 +1,68 @@
+package helper.scheduling;
+
+import helper.dbaccess.dao.DBAppointment;
+import model.Appointment;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It finds the free slots of a contact and/or a customer, i.e. the times within office hours when neither has an
+ * appointment, so that staff can pick a time that is known to be free instead of guessing one.
+ * <br>
+ * The appointments of both are read into a BusySchedule, which answers every further question in memory.
+ * Occurrences of recurring appointment series are not read, since the booking guard does not check them either.
+ * Callers that ask repeatedly, e.g. while the user is typing, should load the BusySchedule once and query it.
+ * @see BusySchedule
+ */
+public abstract class FreeSlotFinder {
+    /**
+     * Loads the busy schedule of a contact and/or a customer within a time range.
+     * @param contactId the contact id, if any.
+     * @param customerId the customer id, if any.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the busy schedule.
+     */
+    public static BusySchedule loadBusySchedule(OptionalInt contactId, OptionalInt customerId, Instant from, Instant to) {
+        return loadBusySchedule(contactId, customerId, from, to, OptionalInt.empty());
+    }
+
+    /**
+     * Loads the busy schedule of a contact and/or a customer within a time range, ignoring an appointment, e.g. the one
+     * that is being rescheduled.
+     * @param contactId the contact id, if any.
+     * @param customerId the customer id, if any.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @param ignoredAppointmentId the id of the appointment to ignore, if any.
+     * @return the busy schedule.
+     */
+    public static BusySchedule loadBusySchedule(OptionalInt contactId, OptionalInt customerId, Instant from, Instant to, OptionalInt ignoredAppointmentId) {
+        if (contactId.isEmpty() && customerId.isEmpty()) {
+            return new BusySchedule(List.of());
+        }
+        // ids start at 1, so 0 matches no row
+        List<Appointment> appointments = DBAppointment.getAllAppointmentsForContactIdOrCustomerIdOverlappingWithTimeRange(contactId.orElse(0), customerId.orElse(0), from, to);
+        ignoredAppointmentId.ifPresent(appointmentId -> appointments.removeIf(appointment -> appointment.getId() == appointmentId));
+        return new BusySchedule(appointments);
+    }
+
+    /**
+     * Finds the next free slots of a contact and/or a customer.
+     * @param contactId the contact id, if any.
+     * @param customerId the customer id, if any.
+     * @param duration the duration of each slot.
+     * @param from the earliest starting time of a slot (inclusive).
+     * @param to the latest ending time of a slot (inclusive).
+     * @param limit the maximum number of slots.
+     * @return the free slots, in order, at most limit of them.
+     * @see BusySchedule#findFreeSlots(Duration, Instant, Instant, int)
+     */
+    public static List<TimeSlot> findFreeSlots(OptionalInt contactId, OptionalInt customerId, Duration duration, Instant from, Instant to, int limit) {
+        return loadBusySchedule(contactId, customerId, from, to).findFreeSlots(duration, from, to, limit);
+    }
+}
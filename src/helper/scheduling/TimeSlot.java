@@ -0,0 +1,107 @@
+package helper.scheduling;
+
+import helper.locale.LocaleHelper;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * An immutable time range, e.g. a free slot in which an appointment can be scheduled.
+ */
+public class TimeSlot {
+    /**
+     * The starting time of the time slot (inclusive).
+     */
+    private final Instant startsAt;
+    /**
+     * The ending time of the time slot (exclusive).
+     */
+    private final Instant endsAt;
+
+    /**
+     * The constructor.
+     * @param startsAt the starting time of the time slot (inclusive).
+     * @param endsAt the ending time of the time slot (exclusive).
+     */
+    public TimeSlot(Instant startsAt, Instant endsAt) {
+        this.startsAt = startsAt;
+        this.endsAt = endsAt;
+    }
+
+    /**
+     * Gets the starting time.
+     * @return the starting time (inclusive).
+     */
+    public Instant getStartsAt() {
+        return startsAt;
+    }
+
+    /**
+     * Gets the ending time.
+     * @return the ending time (exclusive).
+     */
+    public Instant getEndsAt() {
+        return endsAt;
+    }
+
+    /**
+     * Gets the duration.
+     * @return the duration.
+     */
+    public Duration getDuration() {
+        return Duration.between(startsAt, endsAt);
+    }
+
+    /**
+     * Whether this time slot overlaps with another time range.
+     * @param from the starting time of the other time range (inclusive).
+     * @param to the ending time of the other time range (exclusive).
+     * @return whether they overlap.
+     */
+    public boolean overlaps(Instant from, Instant to) {
+        return startsAt.isBefore(to) && from.isBefore(endsAt);
+    }
+
+    /**
+     * Gets a pretty string of the time slot, formatted in the user's time zone.
+     * @return the pretty string.
+     */
+    public String toPrettyString() {
+        return String.format("%s - %s", LocaleHelper.formatInstant(startsAt), LocaleHelper.formatInstant(endsAt));
+    }
+
+    /**
+     * The string representation of the time slot.
+     * @return the string.
+     */
+    @Override
+    public String toString() {
+        return String.format("<TimeSlot : startsAt=[%s] endsAt=[%s]>", startsAt, endsAt);
+    }
+
+    /**
+     * Whether another object is a time slot with the same starting and ending times.
+     * @param o the other object.
+     * @return whether they are equal.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TimeSlot)) {
+            return false;
+        }
+        TimeSlot other = (TimeSlot) o;
+        return startsAt.equals(other.startsAt) && endsAt.equals(other.endsAt);
+    }
+
+    /**
+     * The hash code of the time slot.
+     * @return the hash code.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * startsAt.hashCode() + endsAt.hashCode();
+    }
+}
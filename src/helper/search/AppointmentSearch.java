@@ -0,0 +1,137 @@
+package helper.search;
+
+import helper.dbaccess.dao.DBAppointmentSearch;
+import javafx.collections.ObservableList;
+import model.Appointment;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It searches appointments by the text of their title, description, location, and type, ranked and a page at a time.
+ * <br>
+ * A query is split into lowercase terms of letters and digits, and every term has to match the start of a word.
+ * Searches go to the FULLTEXT index of the database when it is available, and otherwise, or if the database fails, to
+ * the in-process index.
+ * @see DBAppointmentSearch
+ * @see AppointmentTextIndex
+ */
+public abstract class AppointmentSearch {
+    /**
+     * A page of the appointments found by a search.
+     */
+    public static class Page {
+        /**
+         * The appointments in the page, best matches first.
+         */
+        private final List<Appointment> appointments;
+        /**
+         * The number of appointments found over all pages.
+         */
+        private final int totalCount;
+        /**
+         * The number of appointments found before the page.
+         */
+        private final int offset;
+        /**
+         * The maximum number of appointments in a page.
+         */
+        private final int pageSize;
+
+        /**
+         * The constructor.
+         * @param appointments the appointments in the page, best matches first.
+         * @param totalCount the number of appointments found over all pages.
+         * @param offset the number of appointments found before the page.
+         * @param pageSize the maximum number of appointments in a page.
+         */
+        public Page(List<Appointment> appointments, int totalCount, int offset, int pageSize) {
+            this.appointments = appointments;
+            this.totalCount = totalCount;
+            this.offset = offset;
+            this.pageSize = pageSize;
+        }
+
+        /**
+         * Get the appointments in the page.
+         * @return the appointments in the page, best matches first.
+         */
+        public List<Appointment> getAppointments() {
+            return appointments;
+        }
+
+        /**
+         * Get the number of appointments found over all pages.
+         * @return the number of appointments found over all pages.
+         */
+        public int getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * Get the index of the page.
+         * @return the index of the page, starting at 0.
+         */
+        public int getPageIndex() {
+            return offset / pageSize;
+        }
+
+        /**
+         * Get the number of pages.
+         * @return the number of pages, which is at least 1.
+         */
+        public int getPageCount() {
+            return Math.max(1, (totalCount + pageSize - 1) / pageSize);
+        }
+    }
+
+    /**
+     * Splits a query into terms.
+     * @param query the query.
+     * @return the lowercase runs of letters and digits of the query, in order.
+     */
+    public static List<String> getTerms(String query) {
+        List<String> terms = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= query.length(); ++i) {
+            if (i < query.length() && Character.isLetterOrDigit(query.charAt(i))) {
+                term.append(query.charAt(i));
+            } else if (term.length() > 0) {
+                terms.add(term.toString().toLowerCase(Locale.ROOT));
+                term.setLength(0);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Finds a page of the appointments that start within a time range and match a query, best matches first and
+     * then by starting time.
+     * @param query the query, which has at least one term.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @param pageIndex the index of the page, starting at 0.
+     * @param pageSize the maximum number of appointments in a page.
+     * @return the page.
+     * @see #getTerms(String)
+     */
+    public static Page search(String query, Instant from, Instant to, int pageIndex, int pageSize) {
+        List<String> terms = getTerms(query);
+        int offset = pageIndex * pageSize;
+        if (DBAppointmentSearch.isFullTextAvailable()) {
+            OptionalInt totalCount = DBAppointmentSearch.countAppointments(terms, from, to);
+            if (totalCount.isPresent()) {
+                Optional<ObservableList<Appointment>> appointments = DBAppointmentSearch.searchAppointments(terms, from, to, offset, pageSize);
+                if (appointments.isPresent()) {
+                    return new Page(appointments.get(), totalCount.getAsInt(), offset, pageSize);
+                }
+            }
+        }
+        return AppointmentTextIndex.search(terms, from, to, offset, pageSize);
+    }
+}
@@ -0,0 +1,194 @@
+package helper.search;
+
+import helper.dbaccess.dao.DBAppointment;
+import model.Appointment;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It keeps an in-process inverted index over the title, description, location, and type of every appointment, for
+ * searching appointments when the database has no FULLTEXT index.
+ * <br>
+ * Every word maps to the appointments that contain it, with a weight that counts its occurrences and favors the
+ * title over the type and location, and those over the description. The words are kept sorted, so a term matches
+ * every word it is the start of with a single range lookup. An appointment scores the sum over the terms of its best
+ * weight times the rarity of the word; every term has to match.
+ * <br>
+ * The index is loaded on first use, and kept up to date through the appointment change listener.
+ * @see AppointmentSearch
+ * @see DBAppointment.ChangeListener
+ */
+public abstract class AppointmentTextIndex {
+    /**
+     * The weight of a word in the title.
+     */
+    private static final float titleWeight = 3;
+    /**
+     * The weight of a word in the type or the location.
+     */
+    private static final float typeAndLocationWeight = 2;
+    /**
+     * The weight of a word in the description.
+     */
+    private static final float descriptionWeight = 1;
+
+    /**
+     * The indexed appointments, by id.
+     */
+    private static final Map<Integer, Appointment> appointmentsById = new HashMap<>();
+    /**
+     * The weights of the words of the indexed appointments, by id.
+     */
+    private static final Map<Integer, Map<String, Float>> weightsById = new HashMap<>();
+    /**
+     * The weight of every appointment that contains a word, by word, sorted.
+     */
+    private static final TreeMap<String, Map<Integer, Float>> postingsByWord = new TreeMap<>();
+    /**
+     * Whether the appointments have been loaded.
+     */
+    private static boolean isLoaded = false;
+
+    /**
+     * The listener that keeps the index up to date with appointment changes.
+     */
+    private static final DBAppointment.ChangeListener changeListener = AppointmentTextIndex::onAppointmentChanged;
+
+    /**
+     * Finds a page of the appointments that start within a time range and match every term, best matches first and
+     * then by starting time.
+     * @param terms the terms, lowercase letters and digits only, of which there is at least one.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @param offset the number of matching appointments before the page.
+     * @param limit the maximum number of appointments in the page.
+     * @return the page.
+     */
+    public synchronized static AppointmentSearch.Page search(List<String> terms, Instant from, Instant to, int offset, int limit) {
+        ensureLoaded();
+        Map<Integer, Float> scoresById = null;
+        for (String term : terms) {
+            Map<Integer, Float> termScoresById = new HashMap<>();
+            for (Map.Entry<String, Map<Integer, Float>> posting : postingsByWord.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+                float rarity = (float) Math.log(1 + (double) appointmentsById.size() / posting.getValue().size());
+                for (Map.Entry<Integer, Float> weight : posting.getValue().entrySet()) {
+                    if (scoresById == null || scoresById.containsKey(weight.getKey())) {
+                        termScoresById.merge(weight.getKey(), weight.getValue() * rarity, Math::max);
+                    }
+                }
+            }
+            if (scoresById != null) {
+                for (Map.Entry<Integer, Float> termScore : termScoresById.entrySet()) {
+                    termScore.setValue(termScore.getValue() + scoresById.get(termScore.getKey()));
+                }
+            }
+            scoresById = termScoresById;
+        }
+
+        List<Appointment> matches = new ArrayList<>();
+        for (int id : scoresById.keySet()) {
+            Appointment appointment = appointmentsById.get(id);
+            if (!appointment.getStartsAt().isBefore(from) && appointment.getStartsAt().isBefore(to)) {
+                matches.add(appointment);
+            }
+        }
+        Map<Integer, Float> scores = scoresById;
+        matches.sort(Comparator.<Appointment>comparingDouble(appointment -> -scores.get(appointment.getId())).thenComparing(Appointment::getStartsAt));
+        List<Appointment> page = new ArrayList<>(matches.subList(Math.min(offset, matches.size()), Math.min(offset + limit, matches.size())));
+        return new AppointmentSearch.Page(page, matches.size(), offset, limit);
+    }
+
+    /**
+     * Loads every appointment and starts listening for changes, unless already done.
+     */
+    private static void ensureLoaded() {
+        if (isLoaded) {
+            return;
+        }
+        isLoaded = true;
+        DBAppointment.addChangeListener(changeListener);
+        DBAppointment.streamAllAppointments(AppointmentTextIndex::put);
+    }
+
+    /**
+     * Invoked when an appointment is changed, and updates the index, or drops it if an unknown set of appointments
+     * has changed, to be loaded again by the next search.
+     * @param before the appointment before the change, or null.
+     * @param after the appointment after the change, or null.
+     * @see DBAppointment.ChangeListener
+     */
+    private synchronized static void onAppointmentChanged(Appointment before, Appointment after) {
+        if (before == null && after == null) {
+            DBAppointment.removeChangeListener(changeListener);
+            appointmentsById.clear();
+            weightsById.clear();
+            postingsByWord.clear();
+            isLoaded = false;
+            return;
+        }
+        if (before != null) {
+            remove(before.getId());
+        }
+        if (after != null) {
+            put(after);
+        }
+    }
+
+    /**
+     * Adds an appointment, or replaces it if it is already indexed.
+     * @param appointment the appointment.
+     */
+    private synchronized static void put(Appointment appointment) {
+        remove(appointment.getId());
+        Map<String, Float> weights = new HashMap<>();
+        addWords(weights, appointment.getTitle(), titleWeight);
+        addWords(weights, appointment.getType(), typeAndLocationWeight);
+        addWords(weights, appointment.getLocation(), typeAndLocationWeight);
+        addWords(weights, appointment.getDescription(), descriptionWeight);
+        appointmentsById.put(appointment.getId(), appointment);
+        weightsById.put(appointment.getId(), weights);
+        for (Map.Entry<String, Float> weight : weights.entrySet()) {
+            postingsByWord.computeIfAbsent(weight.getKey(), word -> new HashMap<>()).put(appointment.getId(), weight.getValue());
+        }
+    }
+
+    /**
+     * Removes an appointment, which does nothing if it is not indexed.
+     * @param appointmentId the id of the appointment.
+     */
+    private static void remove(int appointmentId) {
+        appointmentsById.remove(appointmentId);
+        Map<String, Float> weights = weightsById.remove(appointmentId);
+        if (weights == null) {
+            return;
+        }
+        for (String word : weights.keySet()) {
+            Map<Integer, Float> posting = postingsByWord.get(word);
+            posting.remove(appointmentId);
+            if (posting.isEmpty()) {
+                postingsByWord.remove(word);
+            }
+        }
+    }
+
+    /**
+     * Adds the weight of every word of a text to the weights of an appointment.
+     * @param weights the weights, by word.
+     * @param text the text, or null.
+     * @param weight the weight of a word in the text.
+     */
+    private static void addWords(Map<String, Float> weights, String text, float weight) {
+        if (text != null) {
+            for (String word : AppointmentSearch.getTerms(text)) {
+                weights.merge(word, weight, Float::sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package helper.search;
+
+import helper.dbaccess.dao.DBCustomer;
+import model.Customer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It keeps every customer in memory in an n-gram inverted index over their name, phone number, and postal code, so
+ * that a type-ahead search over any number of customers only looks at the customers that can match.
+ * <br>
+ * Every field is split into lowercase tokens of letters and digits; the phone number is a single token of its digits,
+ * so that it matches however it is punctuated. Every trigram of a token maps to the sorted list of the customers that
+ * contain it, as well as the first one and two characters of a token, marked as such. A term of three or more
+ * characters matches a token that contains it, and a shorter term matches a token that starts with it. The posting
+ * lists of the terms of a query are intersected, starting with the shortest, and the few candidates left are verified
+ * against their tokens, since having all trigrams of a term does not guarantee containing the term.
+ * <br>
+ * The index is loaded in the background, at start-up or on first use, and kept up to date through the customer change
+ * listener; the changes made while it is loading are applied once it is loaded. A search never waits for the load,
+ * and finds nothing until it is done. If the load fails, it is tried again on the next search. Deleted and updated
+ * customers leave gaps that are skipped, and the index is compacted once there are more gaps than customers.
+ * @see DBCustomer.ChangeListener
+ */
+public abstract class CustomerSearchIndex {
+    /**
+     * A customer found by a search.
+     */
+    public static class Match {
+        /**
+         * The id of the customer.
+         */
+        private final int customerId;
+        /**
+         * The name of the customer.
+         */
+        private final String name;
+        /**
+         * The phone number of the customer.
+         */
+        private final String phoneNumber;
+        /**
+         * The postal code of the customer.
+         */
+        private final String postalCode;
+        /**
+         * The words of the name of the customer, normalized and each preceded by a space, for ranking.
+         */
+        private final String normalizedNameWords;
+
+        /**
+         * The constructor.
+         * @param customerId the id of the customer.
+         * @param name the name of the customer.
+         * @param phoneNumber the phone number of the customer.
+         * @param postalCode the postal code of the customer.
+         */
+        private Match(int customerId, String name, String phoneNumber, String postalCode) {
+            this.customerId = customerId;
+            this.name = name;
+            this.phoneNumber = phoneNumber;
+            this.postalCode = postalCode;
+            StringBuilder words = new StringBuilder();
+            if (name != null) {
+                for (String word : name.trim().split("\\s+")) {
+                    words.append(' ').append(normalize(word));
+                }
+            }
+            this.normalizedNameWords = words.toString();
+        }
+
+        /**
+         * Gets the id of the customer.
+         * @return the id.
+         */
+        public int getCustomerId() {
+            return customerId;
+        }
+
+        /**
+         * Gets the name of the customer.
+         * @return the name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the phone number of the customer.
+         * @return the phone number.
+         */
+        public String getPhoneNumber() {
+            return phoneNumber;
+        }
+
+        /**
+         * Gets the postal code of the customer.
+         * @return the postal code.
+         */
+        public String getPostalCode() {
+            return postalCode;
+        }
+    }
+
+    /**
+     * A growable, sorted list of the slots that contain an n-gram.
+     */
+    private static class PostingList {
+        /**
+         * The slots, in ascending order, followed by unused room.
+         */
+        private int[] slots = new int[2];
+        /**
+         * The number of slots.
+         */
+        private int size = 0;
+
+        /**
+         * Adds a slot, which must not be below the last one. Adding the last one again does nothing.
+         * @param slot the slot.
+         */
+        private void add(int slot) {
+            if (size > 0 && slots[size - 1] == slot) {
+                return;
+            }
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        /**
+         * Whether the list contains a slot.
+         * @param slot the slot.
+         * @return whether the slot is contained.
+         */
+        private boolean contains(int slot) {
+            return Arrays.binarySearch(slots, 0, size, slot) >= 0;
+        }
+    }
+
+    /**
+     * The character that marks an n-gram as the start of a token.
+     */
+    private static final char tokenStartMark = 1;
+    /**
+     * The number of further candidates looked at once enough customers that rank lower have been found.
+     */
+    private static final int candidatesAfterOtherMatches = 2000;
+
+    /**
+     * The customers, by slot, or null where a customer was deleted or updated.
+     */
+    private static final List<Match> matchesBySlot = new ArrayList<>();
+    /**
+     * The tokens of the customers, by slot, or null where a customer was deleted or updated.
+     */
+    private static final List<String[]> tokensBySlot = new ArrayList<>();
+    /**
+     * The slots, by customer id.
+     */
+    private static final Map<Integer, Integer> slotsByCustomerId = new HashMap<>();
+    /**
+     * The posting lists, by packed n-gram.
+     */
+    private static final Map<Long, PostingList> postingLists = new HashMap<>();
+    /**
+     * Whether the customers have been loaded.
+     */
+    private static volatile boolean isLoaded = false;
+    /**
+     * Whether the customers are being loaded.
+     */
+    private static final AtomicBoolean isLoading = new AtomicBoolean(false);
+    /**
+     * Whether the index listens for customer changes.
+     */
+    private static boolean isListening = false;
+    /**
+     * The customers changed while the index is not loaded yet, by id, with null for a deleted customer.
+     */
+    private static final Map<Integer, Customer> pendingChanges = new LinkedHashMap<>();
+
+    /**
+     * Loads the index in the background, unless it is loaded or being loaded already.
+     */
+    public static void preload() {
+        if (isLoaded || !isLoading.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(CustomerSearchIndex::load, "customer-search-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Finds the customers that match every term of a query, those with a word of their name that starts with the first
+     * term first. Once enough other customers have been found, only a bounded number of further candidates are looked
+     * at in search of ones that rank higher, so that a common term does not go through every customer.
+     * @param query the query, with terms separated by whitespace.
+     * @param limit the maximum number of customers to find.
+     * @return the customers found, or none if the query has no terms or the index is not loaded yet.
+     */
+    public static List<Match> search(String query, int limit) {
+        if (!isLoaded) {
+            preload();
+            return new ArrayList<>();
+        }
+        return searchLoaded(query, limit);
+    }
+
+    /**
+     * Finds the customers that match every term of a query, once the index is loaded.
+     * @param query the query, with terms separated by whitespace.
+     * @param limit the maximum number of customers to find.
+     * @return the customers found, or none if the query has no terms.
+     * @see #search(String, int)
+     */
+    private synchronized static List<Match> searchLoaded(String query, int limit) {
+        List<String> terms = new ArrayList<>();
+        for (String rawTerm : query.split("\\s+")) {
+            String term = normalize(rawTerm);
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        List<Match> matches = new ArrayList<>();
+        if (terms.isEmpty() || limit <= 0) {
+            return matches;
+        }
+
+        List<PostingList> lists = new ArrayList<>();
+        for (String term : terms) {
+            for (long gram : termGrams(term)) {
+                PostingList list = postingLists.get(gram);
+                if (list == null) {
+                    return matches;
+                }
+                lists.add(list);
+            }
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+        List<Match> otherMatches = new ArrayList<>();
+        String firstTermAsWordStart = " " + terms.get(0);
+        PostingList shortest = lists.get(0);
+        int remainingCandidates = Integer.MAX_VALUE;
+        for (int i = 0; i < shortest.size && matches.size() < limit && remainingCandidates > 0; ++i) {
+            if (otherMatches.size() == limit) {
+                remainingCandidates = Math.min(remainingCandidates, candidatesAfterOtherMatches) - 1;
+            }
+            int slot = shortest.slots[i];
+            String[] tokens = tokensBySlot.get(slot);
+            if (tokens == null || !isInAll(lists, slot) || !matchesAll(tokens, terms)) {
+                continue;
+            }
+            Match match = matchesBySlot.get(slot);
+            if (match.normalizedNameWords.contains(firstTermAsWordStart)) {
+                matches.add(match);
+            } else if (otherMatches.size() < limit) {
+                otherMatches.add(match);
+            }
+        }
+        for (int i = 0; matches.size() < limit && i < otherMatches.size(); ++i) {
+            matches.add(otherMatches.get(i));
+        }
+        return matches;
+    }
+
+    /**
+     * Adds a customer, or replaces it if it is already indexed.
+     * @param customer the customer.
+     */
+    public synchronized static void put(Customer customer) {
+        if (!isLoaded) {
+            return;
+        }
+        remove(customer.getId());
+        add(customer);
+    }
+
+    /**
+     * Adds a customer that is not indexed yet.
+     * @param customer the customer.
+     */
+    private static void add(Customer customer) {
+        int slot = matchesBySlot.size();
+        String[] tokens = tokenize(customer);
+        matchesBySlot.add(new Match(customer.getId(), customer.getName(), customer.getPhoneNumber(), customer.getPostalCode()));
+        tokensBySlot.add(tokens);
+        slotsByCustomerId.put(customer.getId(), slot);
+        for (String token : tokens) {
+            addTokenGrams(token, slot);
+        }
+    }
+
+    /**
+     * Removes a customer, which does nothing if it is not indexed.
+     * @param customerId the id of the customer.
+     */
+    public synchronized static void remove(int customerId) {
+        Integer slot = slotsByCustomerId.remove(customerId);
+        if (slot == null) {
+            return;
+        }
+        matchesBySlot.set(slot, null);
+        tokensBySlot.set(slot, null);
+        if (matchesBySlot.size() > 1000 && matchesBySlot.size() > 2 * slotsByCustomerId.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Loads every customer, on the background thread, then applies the changes made meanwhile. If loading fails, the
+     * index is left empty and not loaded, so that the next search tries again.
+     */
+    private static void load() {
+        try {
+            synchronized (pendingChanges) {
+                // the changes made before the customers are streamed are already in the stream
+                pendingChanges.clear();
+                if (!isListening) {
+                    DBCustomer.addChangeListener(CustomerSearchIndex::onCustomerChanged);
+                    isListening = true;
+                }
+            }
+            synchronized (CustomerSearchIndex.class) {
+                if (DBCustomer.streamAllCustomers(CustomerSearchIndex::add)) {
+                    isLoaded = true;
+                } else {
+                    matchesBySlot.clear();
+                    tokensBySlot.clear();
+                    slotsByCustomerId.clear();
+                    postingLists.clear();
+                }
+            }
+            applyPendingChanges();
+        } finally {
+            isLoading.set(false);
+        }
+    }
+
+    /**
+     * Invoked when a customer is changed. The change is applied right away if the index is loaded, and else kept until
+     * it is, without waiting for the load.
+     * @param customerId the id of the customer.
+     * @param after the customer after the change, or null if it was deleted.
+     * @see DBCustomer.ChangeListener
+     */
+    private static void onCustomerChanged(int customerId, Customer after) {
+        synchronized (pendingChanges) {
+            pendingChanges.remove(customerId);
+            pendingChanges.put(customerId, after);
+        }
+        if (isLoaded) {
+            applyPendingChanges();
+        }
+    }
+
+    /**
+     * Applies the changes kept while the index was not loaded, if it is loaded by now.
+     */
+    private synchronized static void applyPendingChanges() {
+        if (!isLoaded) {
+            return;
+        }
+        Map<Integer, Customer> changes;
+        synchronized (pendingChanges) {
+            changes = new LinkedHashMap<>(pendingChanges);
+            pendingChanges.clear();
+        }
+        for (Map.Entry<Integer, Customer> change : changes.entrySet()) {
+            if (change.getValue() == null) {
+                remove(change.getKey());
+            } else {
+                put(change.getValue());
+            }
+        }
+    }
+
+    /**
+     * Indexes the customers again without the gaps left by deleted and updated customers.
+     */
+    private static void compact() {
+        List<Match> matches = new ArrayList<>();
+        List<String[]> tokens = new ArrayList<>();
+        for (int slot = 0; slot < matchesBySlot.size(); ++slot) {
+            if (matchesBySlot.get(slot) != null) {
+                matches.add(matchesBySlot.get(slot));
+                tokens.add(tokensBySlot.get(slot));
+            }
+        }
+        matchesBySlot.clear();
+        tokensBySlot.clear();
+        slotsByCustomerId.clear();
+        postingLists.clear();
+        for (int slot = 0; slot < matches.size(); ++slot) {
+            matchesBySlot.add(matches.get(slot));
+            tokensBySlot.add(tokens.get(slot));
+            slotsByCustomerId.put(matches.get(slot).getCustomerId(), slot);
+            for (String token : tokens.get(slot)) {
+                addTokenGrams(token, slot);
+            }
+        }
+    }
+
+    /**
+     * Adds a slot to the posting lists of every n-gram of a token.
+     * @param token the token.
+     * @param slot the slot.
+     */
+    private static void addTokenGrams(String token, int slot) {
+        postingLists.computeIfAbsent(pack(tokenStartMark, token.charAt(0), (char) 0), gram -> new PostingList()).add(slot);
+        if (token.length() >= 2) {
+            postingLists.computeIfAbsent(pack(tokenStartMark, token.charAt(0), token.charAt(1)), gram -> new PostingList()).add(slot);
+        }
+        for (int i = 0; i + 3 <= token.length(); ++i) {
+            postingLists.computeIfAbsent(pack(token.charAt(i), token.charAt(i + 1), token.charAt(i + 2)), gram -> new PostingList()).add(slot);
+        }
+    }
+
+    /**
+     * Gets the n-grams that a token must have to match a term.
+     * @param term the term, normalized.
+     * @return the packed n-grams.
+     */
+    private static long[] termGrams(String term) {
+        if (term.length() == 1) {
+            return new long[] { pack(tokenStartMark, term.charAt(0), (char) 0) };
+        }
+        if (term.length() == 2) {
+            return new long[] { pack(tokenStartMark, term.charAt(0), term.charAt(1)) };
+        }
+        long[] grams = new long[term.length() - 2];
+        for (int i = 0; i < grams.length; ++i) {
+            grams[i] = pack(term.charAt(i), term.charAt(i + 1), term.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    /**
+     * Whether every posting list contains a slot.
+     * @param lists the posting lists.
+     * @param slot the slot.
+     * @return whether all contain the slot.
+     */
+    private static boolean isInAll(List<PostingList> lists, int slot) {
+        for (int i = 1; i < lists.size(); ++i) {
+            if (!lists.get(i).contains(slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether every term matches one of the tokens: a term of three or more characters by being contained in the token,
+     * and a shorter one by being its start.
+     * @param tokens the tokens.
+     * @param terms the terms, normalized.
+     * @return whether all terms match.
+     */
+    private static boolean matchesAll(String[] tokens, List<String> terms) {
+        for (String term : terms) {
+            boolean isMatched = false;
+            for (String token : tokens) {
+                if (term.length() >= 3 ? token.contains(term) : token.startsWith(term)) {
+                    isMatched = true;
+                    break;
+                }
+            }
+            if (!isMatched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits the searchable fields of a customer into tokens.
+     * @param customer the customer.
+     * @return the tokens, normalized and not empty.
+     */
+    private static String[] tokenize(Customer customer) {
+        List<String> tokens = new ArrayList<>();
+        for (String field : new String[] { customer.getName(), customer.getPostalCode() }) {
+            if (field == null) {
+                continue;
+            }
+            for (String word : field.trim().split("\\s+")) {
+                String token = normalize(word);
+                if (token.isEmpty()) {
+                    continue;
+                }
+                tokens.add(token);
+                // the parts of a punctuated word are tokens too, e.g. "obrien" and "brien" for "O'Brien"
+                String[] parts = word.split("[^\\p{L}\\p{N}]+");
+                for (int i = 1; i < parts.length; ++i) {
+                    if (!parts[i].isEmpty()) {
+                        tokens.add(normalize(parts[i]));
+                    }
+                }
+            }
+        }
+        if (customer.getPhoneNumber() != null) {
+            String phoneToken = normalize(customer.getPhoneNumber());
+            if (!phoneToken.isEmpty()) {
+                tokens.add(phoneToken);
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * Lowercases a string and removes everything but letters and digits.
+     * @param raw the string.
+     * @return the normalized string.
+     */
+    private static String normalize(String raw) {
+        StringBuilder builder = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); ++i) {
+            char c = raw.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Packs three characters into one n-gram key.
+     * @param first the first character.
+     * @param second the second character.
+     * @param third the third character.
+     * @return the key.
+     */
+    private static long pack(char first, char second, char third) {
+        return ((long) first << 32) | ((long) second << 16) | third;
+    }
+}
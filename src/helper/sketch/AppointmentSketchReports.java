@@ -0,0 +1,256 @@
+package helper.sketch;
+
+import helper.dbaccess.dao.DBAppointment;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import model.Appointment;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It answers approximate report questions over long time ranges, alongside the exact reports of DBAppointment:
+ * distinct customers per contact, duration percentiles per type, and the most frequent types and locations.
+ * <br>
+ * Every whole month of a time range is answered from a cached per-month AppointmentSummary, built by streaming that
+ * month's appointments once, and the months are merged into one summary at query time. Only the partial months at
+ * either end of a time range and the months not cached yet are read from the database. A month's summary is discarded
+ * when one of its appointments changes.
+ * <br>
+ * A summary takes about 10 KB plus about 2 KB per type and 0.5 KB per contact, so the cache is bounded to 10 years of
+ * months, a few megabytes, instead of holding one summary per day.
+ * @see AppointmentSummary
+ * @see DBAppointment
+ */
+public abstract class AppointmentSketchReports {
+    /**
+     * The time zone in which the months of the per-month summaries start and end.
+     */
+    private static final ZoneOffset summaryZoneOffset = ZoneOffset.UTC;
+    /**
+     * The maximum number of per-month summaries that are cached (10 years).
+     */
+    private static final int maxCachedMonths = 120;
+
+    /**
+     * The cached per-month summaries, in least-recently-used order.
+     */
+    private static final LinkedHashMap<YearMonth, AppointmentSummary> monthlySummaries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<YearMonth, AppointmentSummary> eldest) {
+            return size() > maxCachedMonths;
+        }
+    };
+    /**
+     * The number of times any cached summary has been discarded, used to avoid caching summaries that were being built
+     * while their appointments changed.
+     */
+    private static long version = 0;
+
+    static {
+        DBAppointment.addChangeListener(AppointmentSketchReports::onAppointmentChanged);
+    }
+
+    /**
+     * Estimates the number of distinct customers each contact has appointments with, within a time range.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the report data, with the contact id and the estimated number of distinct customers on each row.
+     */
+    public static ObservableList<List<StringProperty>> getApproximateDistinctCustomersByContact(Instant from, Instant to) {
+        AppointmentSummary summary = getSummary(from, to);
+        ObservableList<List<StringProperty>> result = FXCollections.observableArrayList();
+        for (Map.Entry<Integer, HyperLogLog> entry : new TreeMap<>(summary.getDistinctCustomersByContactId()).entrySet()) {
+            List<StringProperty> row = new ArrayList<>(2);
+            row.add(new SimpleStringProperty(String.valueOf(entry.getKey())));
+            row.add(new SimpleStringProperty(String.valueOf(entry.getValue().estimate())));
+            result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * Estimates percentiles of the duration in minutes of each type of appointment, within a time range.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @param percentiles the percentiles to estimate, from 0 to 100, e.g. 50, 90, and 99.
+     * @return the report data, with the type, the number of appointments, then one estimated duration per percentile on each row.
+     */
+    public static ObservableList<List<StringProperty>> getApproximateDurationPercentilesByType(Instant from, Instant to, double... percentiles) {
+        AppointmentSummary summary = getSummary(from, to);
+        ObservableList<List<StringProperty>> result = FXCollections.observableArrayList();
+        for (Map.Entry<String, QuantileSketch> entry : new TreeMap<>(summary.getDurationsByType()).entrySet()) {
+            List<StringProperty> row = new ArrayList<>(2 + percentiles.length);
+            row.add(new SimpleStringProperty(entry.getKey()));
+            row.add(new SimpleStringProperty(String.valueOf(entry.getValue().getCount())));
+            for (double percentile : percentiles) {
+                row.add(new SimpleStringProperty(String.valueOf(Math.round(entry.getValue().getQuantile(percentile / 100)))));
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the most frequent types of appointment within a time range.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @param limit the maximum number of types.
+     * @return the report data, with the type and its estimated count on each row, most frequent first.
+     */
+    public static ObservableList<List<StringProperty>> getApproximateTopTypes(Instant from, Instant to, int limit) {
+        return buildTopReport(getSummary(from, to).getTypes(), limit);
+    }
+
+    /**
+     * Estimates the most frequent locations of appointments within a time range.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @param limit the maximum number of locations.
+     * @return the report data, with the location and its estimated count on each row, most frequent first.
+     */
+    public static ObservableList<List<StringProperty>> getApproximateTopLocations(Instant from, Instant to, int limit) {
+        return buildTopReport(getSummary(from, to).getLocations(), limit);
+    }
+
+    /**
+     * Builds the report data for the most frequent strings of a heavy hitter sketch.
+     * @param sketch the sketch.
+     * @param limit the maximum number of rows.
+     * @return the report data, with the string and its estimated count on each row.
+     */
+    private static ObservableList<List<StringProperty>> buildTopReport(HeavyHitterSketch sketch, int limit) {
+        ObservableList<List<StringProperty>> result = FXCollections.observableArrayList();
+        for (Map.Entry<String, Long> entry : sketch.getTop(limit)) {
+            List<StringProperty> row = new ArrayList<>(2);
+            row.add(new SimpleStringProperty(entry.getKey()));
+            row.add(new SimpleStringProperty(String.valueOf(entry.getValue())));
+            result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * Builds the merged summary of all appointments that start within a time range.
+     * Whole months come from the cache, the months not cached yet are built with a single stream over them,
+     * and the partial months at either end are streamed without being cached.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the merged summary.
+     */
+    public static AppointmentSummary getSummary(Instant from, Instant to) {
+        AppointmentSummary result = new AppointmentSummary();
+        if (!from.isBefore(to)) {
+            return result;
+        }
+
+        YearMonth firstWholeMonth = YearMonth.from(from.atOffset(summaryZoneOffset));
+        if (startOf(firstWholeMonth).isBefore(from)) {
+            firstWholeMonth = firstWholeMonth.plusMonths(1);
+        }
+        YearMonth endOfWholeMonths = YearMonth.from(to.atOffset(summaryZoneOffset));
+        if (!firstWholeMonth.isBefore(endOfWholeMonths)) {
+            DBAppointment.streamAppointmentsStartingWithinTimeRange(from, to, result::add);
+            return result;
+        }
+
+        DBAppointment.streamAppointmentsStartingWithinTimeRange(from, startOf(firstWholeMonth), result::add);
+        DBAppointment.streamAppointmentsStartingWithinTimeRange(startOf(endOfWholeMonths), to, result::add);
+
+        long versionBeforeBuild;
+        List<AppointmentSummary> cachedMonths = new ArrayList<>();
+        List<YearMonth> missingMonths = new ArrayList<>();
+        synchronized (AppointmentSketchReports.class) {
+            versionBeforeBuild = version;
+            for (YearMonth month = firstWholeMonth; month.isBefore(endOfWholeMonths); month = month.plusMonths(1)) {
+                AppointmentSummary monthSummary = monthlySummaries.get(month);
+                if (monthSummary == null) {
+                    missingMonths.add(month);
+                } else {
+                    cachedMonths.add(monthSummary);
+                }
+            }
+            // the cached summaries are never changed after being cached, so they can be merged outside the lock
+        }
+        for (AppointmentSummary monthSummary : cachedMonths) {
+            result.merge(monthSummary);
+        }
+
+        if (!missingMonths.isEmpty()) {
+            // one stream from the first to the last missing month; the cached months in between are skipped
+            YearMonth firstMissingMonth = missingMonths.get(0);
+            YearMonth lastMissingMonth = missingMonths.get(missingMonths.size() - 1);
+            Map<YearMonth, AppointmentSummary> builtMonths = new HashMap<>();
+            boolean wasStreamed = DBAppointment.streamAppointmentsStartingWithinTimeRange(startOf(firstMissingMonth), startOf(lastMissingMonth.plusMonths(1)), appointment ->
+                    builtMonths.computeIfAbsent(monthOf(appointment.getStartsAt()), month -> new AppointmentSummary()).add(appointment));
+
+            synchronized (AppointmentSketchReports.class) {
+                for (YearMonth month : missingMonths) {
+                    AppointmentSummary monthSummary = builtMonths.getOrDefault(month, new AppointmentSummary());
+                    result.merge(monthSummary);
+                    if (wasStreamed && version == versionBeforeBuild) {
+                        monthlySummaries.putIfAbsent(month, monthSummary);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the starting time of a month.
+     * @param month the month.
+     * @return the starting time of the month.
+     */
+    private static Instant startOf(YearMonth month) {
+        return month.atDay(1).atStartOfDay(summaryZoneOffset).toInstant();
+    }
+
+    /**
+     * Gets the month that a time is in.
+     * @param time the time.
+     * @return the month.
+     */
+    private static YearMonth monthOf(Instant time) {
+        return YearMonth.from(time.atOffset(summaryZoneOffset));
+    }
+
+    /**
+     * Discards every cached per-month summary.
+     */
+    public synchronized static void invalidateAll() {
+        monthlySummaries.clear();
+        ++version;
+    }
+
+    /**
+     * Invoked when an appointment is changed, and discards the summaries of the months it started in before and after.
+     * @param before the appointment before the change, or null.
+     * @param after the appointment after the change, or null.
+     * @see DBAppointment.ChangeListener
+     */
+    private synchronized static void onAppointmentChanged(Appointment before, Appointment after) {
+        if (before == null && after == null) {
+            invalidateAll();
+            return;
+        }
+        if (before != null) {
+            monthlySummaries.remove(monthOf(before.getStartsAt()));
+        }
+        if (after != null) {
+            monthlySummaries.remove(monthOf(after.getStartsAt()));
+        }
+        ++version;
+    }
+}
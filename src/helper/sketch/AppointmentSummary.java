@@ -0,0 +1,133 @@
+package helper.sketch;
+
+import model.Appointment;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A mergeable, approximate summary of a set of appointments, e.g. those starting within a time range, made of:
+ * <ul>
+ * <li>the distinct customers per contact, as HyperLogLog sketches;</li>
+ * <li>the durations in minutes per type, as quantile sketches; and</li>
+ * <li>the most frequent types and locations, as heavy hitter sketches.</li>
+ * </ul>
+ * Summaries of separate sets of appointments can be merged into one, and a summary uses about the same memory no
+ * matter how many appointments it summarizes.
+ * @see AppointmentSketchReports
+ */
+public class AppointmentSummary {
+    /**
+     * The precision of the distinct customer sketches (about 4.6% standard error).
+     */
+    private static final int distinctCustomersPrecision = 9;
+    /**
+     * The relative accuracy of the duration sketches.
+     */
+    private static final double durationRelativeAccuracy = 0.02;
+    /**
+     * The longest duration, in minutes, that is estimated accurately (1 week).
+     */
+    private static final double maxDurationMinutes = 7 * 24 * 60;
+    /**
+     * The number of hash functions of the heavy hitter sketches.
+     */
+    private static final int heavyHitterDepth = 4;
+    /**
+     * The number of counters per hash function of the heavy hitter sketches.
+     */
+    private static final int heavyHitterWidth = 128;
+    /**
+     * The number of candidate heavy hitters tracked by the heavy hitter sketches.
+     */
+    private static final int heavyHitterCandidates = 32;
+
+    /**
+     * The distinct customers sketch of each contact, by contact id.
+     */
+    private final Map<Integer, HyperLogLog> distinctCustomersByContactId = new HashMap<>();
+    /**
+     * The duration sketch of each type.
+     */
+    private final Map<String, QuantileSketch> durationsByType = new HashMap<>();
+    /**
+     * The heavy hitter sketch of the types.
+     */
+    private final HeavyHitterSketch types = new HeavyHitterSketch(heavyHitterDepth, heavyHitterWidth, heavyHitterCandidates);
+    /**
+     * The heavy hitter sketch of the locations.
+     */
+    private final HeavyHitterSketch locations = new HeavyHitterSketch(heavyHitterDepth, heavyHitterWidth, heavyHitterCandidates);
+
+    /**
+     * Adds an appointment to the summary.
+     * @param appointment the appointment.
+     */
+    public void add(Appointment appointment) {
+        distinctCustomersByContactId.computeIfAbsent(appointment.getContactId(), contactId -> new HyperLogLog(distinctCustomersPrecision))
+                .add(appointment.getCustomerId());
+        durationsByType.computeIfAbsent(appointment.getType(), type -> new QuantileSketch(durationRelativeAccuracy, maxDurationMinutes))
+                .add(Duration.between(appointment.getStartsAt(), appointment.getEndsAt()).toMinutes());
+        types.add(appointment.getType());
+        locations.add(appointment.getLocation());
+    }
+
+    /**
+     * Merges another summary into this one. The other summary is not changed.
+     * @param other the other summary.
+     */
+    public void merge(AppointmentSummary other) {
+        for (Map.Entry<Integer, HyperLogLog> entry : other.distinctCustomersByContactId.entrySet()) {
+            distinctCustomersByContactId.computeIfAbsent(entry.getKey(), contactId -> new HyperLogLog(distinctCustomersPrecision))
+                    .merge(entry.getValue());
+        }
+        for (Map.Entry<String, QuantileSketch> entry : other.durationsByType.entrySet()) {
+            durationsByType.computeIfAbsent(entry.getKey(), type -> new QuantileSketch(durationRelativeAccuracy, maxDurationMinutes))
+                    .merge(entry.getValue());
+        }
+        types.merge(other.types);
+        locations.merge(other.locations);
+    }
+
+    /**
+     * Gets the distinct customers sketch of each contact.
+     * @return the sketches by contact id.
+     */
+    public Map<Integer, HyperLogLog> getDistinctCustomersByContactId() {
+        return Collections.unmodifiableMap(distinctCustomersByContactId);
+    }
+
+    /**
+     * Gets the duration sketch of each type.
+     * @return the sketches by type.
+     */
+    public Map<String, QuantileSketch> getDurationsByType() {
+        return Collections.unmodifiableMap(durationsByType);
+    }
+
+    /**
+     * Gets the heavy hitter sketch of the types.
+     * @return the sketch.
+     */
+    public HeavyHitterSketch getTypes() {
+        return types;
+    }
+
+    /**
+     * Gets the heavy hitter sketch of the locations.
+     * @return the sketch.
+     */
+    public HeavyHitterSketch getLocations() {
+        return locations;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<AppointmentSummary : contacts=%d types=%d appointments=%d>",
+                distinctCustomersByContactId.size(),
+                durationsByType.size(),
+                types.getTotalCount());
+    }
+}
@@ -0,0 +1,33 @@
+package helper.sketch;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It holds the hash functions shared by the sketches.
+ */
+abstract class Hashing {
+    /**
+     * Mixes the bits of a value so that every input bit affects every output bit (the SplitMix64 finalizer).
+     * @param value the value.
+     * @return the mixed 64-bit hash.
+     */
+    static long mix64(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Hashes a string with a seed, so that different seeds give independent hash functions.
+     * @param value the string.
+     * @param seed the seed.
+     * @return the 64-bit hash.
+     */
+    static long hash(String value, long seed) {
+        long hash = seed;
+        for (int i = 0; i < value.length(); ++i) {
+            hash = mix64(hash ^ value.charAt(i));
+        }
+        return mix64(hash ^ value.length());
+    }
+}
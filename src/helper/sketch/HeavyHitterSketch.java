@@ -0,0 +1,167 @@
+package helper.sketch;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A sketch that finds the most frequent strings (the heavy hitters) added to it, using a count-min sketch to estimate
+ * the frequency of any string plus a small, fixed number of candidate strings with the highest estimates.
+ * The memory used does not depend on the number of distinct strings. Two sketches with the same configuration can be merged.
+ * <br>
+ * The estimated frequencies are never lower than the true ones, and are higher by at most about
+ * e / width of the total count with high probability.
+ */
+public class HeavyHitterSketch {
+    /**
+     * The seeds of the hash functions, one per row of the count-min sketch.
+     */
+    private static final long[] seeds = { 0x5DEECE66DL, 0x2545F4914F6CDD1DL, 0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L };
+
+    /**
+     * The counters of the count-min sketch, one row per hash function.
+     */
+    private final long[][] counters;
+    /**
+     * The maximum number of candidate heavy hitters that are tracked.
+     */
+    private final int candidateCapacity;
+    /**
+     * The candidate heavy hitters and their estimated frequencies.
+     */
+    private final Map<String, Long> candidates = new HashMap<>();
+    /**
+     * The total number of strings added.
+     */
+    private long totalCount;
+
+    /**
+     * The constructor.
+     * @param depth the number of hash functions, from 1 to 5. More reduces the chance of a large error.
+     * @param width the number of counters per hash function. More reduces the size of the error.
+     * @param candidateCapacity the maximum number of candidate heavy hitters that are tracked.
+     */
+    public HeavyHitterSketch(int depth, int width, int candidateCapacity) {
+        if (depth < 1 || depth > seeds.length) {
+            throw new IllegalArgumentException("depth must be between 1 and " + seeds.length);
+        }
+        this.counters = new long[depth][width];
+        this.candidateCapacity = candidateCapacity;
+    }
+
+    /**
+     * Gets the counter column of a string for a row.
+     * @param value the string.
+     * @param row the row.
+     * @return the column.
+     */
+    private int column(String value, int row) {
+        return (int) Long.remainderUnsigned(Hashing.hash(value, seeds[row]), counters[row].length);
+    }
+
+    /**
+     * Adds a string to the sketch.
+     * @param value the string.
+     */
+    public void add(String value) {
+        if (value == null) {
+            return;
+        }
+        ++totalCount;
+        for (int row = 0; row < counters.length; ++row) {
+            counters[row][column(value, row)]++;
+        }
+        offerCandidate(value, estimate(value));
+    }
+
+    /**
+     * Estimates how many times a string has been added.
+     * @param value the string.
+     * @return the estimated frequency, which is never lower than the true frequency.
+     */
+    public long estimate(String value) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counters.length; ++row) {
+            estimate = Math.min(estimate, counters[row][column(value, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Tracks a string as a candidate heavy hitter if there is room, or if it is estimated to be more frequent than the
+     * least frequent candidate, which it then replaces.
+     * @param value the string.
+     * @param estimate the estimated frequency of the string.
+     */
+    private void offerCandidate(String value, long estimate) {
+        if (candidates.containsKey(value) || candidates.size() < candidateCapacity) {
+            candidates.put(value, estimate);
+            return;
+        }
+
+        String leastFrequent = null;
+        long leastFrequency = Long.MAX_VALUE;
+        for (Map.Entry<String, Long> candidate : candidates.entrySet()) {
+            if (candidate.getValue() < leastFrequency) {
+                leastFrequent = candidate.getKey();
+                leastFrequency = candidate.getValue();
+            }
+        }
+        if (estimate > leastFrequency) {
+            candidates.remove(leastFrequent);
+            candidates.put(value, estimate);
+        }
+    }
+
+    /**
+     * Merges another sketch into this one, re-estimating the candidates of both with the merged counters.
+     * @param other the other sketch, which must have the same depth and width.
+     */
+    public void merge(HeavyHitterSketch other) {
+        if (other.counters.length != counters.length || other.counters[0].length != counters[0].length) {
+            throw new IllegalArgumentException("cannot merge sketches with different configurations");
+        }
+        for (int row = 0; row < counters.length; ++row) {
+            for (int col = 0; col < counters[row].length; ++col) {
+                counters[row][col] += other.counters[row][col];
+            }
+        }
+        totalCount += other.totalCount;
+
+        List<String> allCandidates = new ArrayList<>(candidates.keySet());
+        allCandidates.addAll(other.candidates.keySet());
+        candidates.clear();
+        for (String candidate : allCandidates) {
+            offerCandidate(candidate, estimate(candidate));
+        }
+    }
+
+    /**
+     * Gets the total number of strings added.
+     * @return the total count.
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Gets the most frequent strings, most frequent first.
+     * @param limit the maximum number of strings to return.
+     * @return the strings and their estimated frequencies.
+     */
+    public List<Map.Entry<String, Long>> getTop(int limit) {
+        List<Map.Entry<String, Long>> top = new ArrayList<>(candidates.size());
+        for (Map.Entry<String, Long> candidate : candidates.entrySet()) {
+            top.add(new AbstractMap.SimpleImmutableEntry<>(candidate));
+        }
+        top.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<HeavyHitterSketch : depth=%d width=%d totalCount=%d candidates=%s>", counters.length, counters[0].length, totalCount, candidates);
+    }
+}
@@ -0,0 +1,88 @@
+package helper.sketch;
+
+/**
+ * A HyperLogLog sketch that estimates the number of distinct values added to it, using a fixed amount of memory
+ * (one byte per register) no matter how many values are added. Two sketches with the same precision can be merged,
+ * and the merged sketch estimates the number of distinct values added to either.
+ */
+public class HyperLogLog {
+    /**
+     * The number of bits of the hash used to choose a register.
+     */
+    private final int precision;
+    /**
+     * The registers, each holding the highest rank seen for the values that hashed to it.
+     */
+    private final byte[] registers;
+
+    /**
+     * The constructor.
+     * @param precision the number of bits used to choose a register, from 4 to 16. The standard error of the estimate
+     *                  is about 1.04 / sqrt(2^precision).
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("precision must be between 4 and 16");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds a value to the sketch.
+     * @param value the value.
+     */
+    public void add(long value) {
+        long hash = Hashing.mix64(value);
+        int index = (int) (hash >>> (64 - precision));
+        long remainingBits = hash << precision;
+        int rank = Math.min(Long.numberOfLeadingZeros(remainingBits) + 1, 64 - precision + 1);
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Merges another sketch into this one.
+     * @param other the other sketch, which must have the same precision.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("cannot merge sketches with different precisions");
+        }
+        for (int i = 0; i < registers.length; ++i) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Estimates the number of distinct values added to the sketch.
+     * @return the estimated number of distinct values.
+     */
+    public long estimate() {
+        int registerCount = registers.length;
+        double sum = 0;
+        int emptyRegisters = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                ++emptyRegisters;
+            }
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / registerCount);
+        double estimate = alpha * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && emptyRegisters > 0) {
+            // linear counting is more accurate for small cardinalities
+            estimate = registerCount * Math.log((double) registerCount / emptyRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<HyperLogLog : precision=%d estimate=%d>", precision, estimate());
+    }
+}
@@ -0,0 +1,125 @@
+package helper.sketch;
+
+/**
+ * A sketch that estimates quantiles (e.g. the median or the 90th percentile) of positive values, using a fixed number
+ * of logarithmically-sized buckets, so that every estimate is within a relative error of the true value.
+ * Two sketches with the same configuration can be merged by adding their buckets.
+ * <br>
+ * Values below 1 are counted separately and reported as 0, and values above the maximum are counted in the last bucket.
+ */
+public class QuantileSketch {
+    /**
+     * The relative accuracy of the estimates, e.g. 0.02 for 2%.
+     */
+    private final double relativeAccuracy;
+    /**
+     * The ratio between the upper and lower bound of each bucket.
+     */
+    private final double gamma;
+    /**
+     * The natural logarithm of gamma, cached since it is used for every value.
+     */
+    private final double logGamma;
+    /**
+     * The number of values in each bucket, where bucket k holds values in (gamma^(k-1), gamma^k].
+     */
+    private final long[] bucketCounts;
+    /**
+     * The number of values below 1.
+     */
+    private long zeroCount;
+    /**
+     * The total number of values.
+     */
+    private long totalCount;
+
+    /**
+     * The constructor.
+     * @param relativeAccuracy the relative accuracy of the estimates, between 0 and 1 exclusive.
+     * @param maxValue the largest value that is estimated accurately.
+     */
+    public QuantileSketch(double relativeAccuracy, double maxValue) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relativeAccuracy must be between 0 and 1");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.bucketCounts = new long[bucketIndex(Math.max(maxValue, 1)) + 1];
+    }
+
+    /**
+     * Gets the bucket that a value of at least 1 belongs in.
+     * @param value the value.
+     * @return the bucket index.
+     */
+    private int bucketIndex(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * Adds a value to the sketch.
+     * @param value the value.
+     */
+    public void add(double value) {
+        ++totalCount;
+        if (value < 1) {
+            ++zeroCount;
+        } else {
+            bucketCounts[Math.min(bucketIndex(value), bucketCounts.length - 1)]++;
+        }
+    }
+
+    /**
+     * Merges another sketch into this one.
+     * @param other the other sketch, which must have the same relative accuracy and maximum value.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy || other.bucketCounts.length != bucketCounts.length) {
+            throw new IllegalArgumentException("cannot merge sketches with different configurations");
+        }
+        for (int i = 0; i < bucketCounts.length; ++i) {
+            bucketCounts[i] += other.bucketCounts[i];
+        }
+        zeroCount += other.zeroCount;
+        totalCount += other.totalCount;
+    }
+
+    /**
+     * Gets the total number of values added to the sketch.
+     * @return the number of values.
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * Estimates the value at a quantile.
+     * @param quantile the quantile, from 0 to 1, e.g. 0.5 for the median.
+     * @return the estimated value, or NaN if the sketch is empty.
+     */
+    public double getQuantile(double quantile) {
+        if (totalCount == 0) {
+            return Double.NaN;
+        }
+
+        long rank = (long) Math.floor(Math.max(0, Math.min(1, quantile)) * (totalCount - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < bucketCounts.length; ++i) {
+            seen += bucketCounts[i];
+            if (seen > rank) {
+                // the middle of the bucket, in the relative sense, so that the error is at most relativeAccuracy
+                return 2 * Math.pow(gamma, i) / (gamma + 1);
+            }
+        }
+        return 2 * Math.pow(gamma, bucketCounts.length - 1) / (gamma + 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<QuantileSketch : relativeAccuracy=%s count=%d>", relativeAccuracy, totalCount);
+    }
+}
@@ -0,0 +1,111 @@
+package helper.tableview;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.control.TableColumn;
+import javafx.util.Callback;
+
+/**
+ * An abstract class with only static methods and not meant to be instantiated.
+ * It builds cell value factories for table columns from plain getters, as a replacement for PropertyValueFactory.
+ * <br>
+ * PropertyValueFactory looks up the getter by name through reflection, and wraps every value in a new
+ * ReadOnlyObjectWrapper, which also creates its read-only property. The factories built here call the getter directly
+ * through a method reference, and wrap the value in a single small constant that keeps no listeners, since the models
+ * are not observable anyway and a row is refreshed by updating the items of the table.
+ * <br>
+ * That constant is the one allocation left per cell update, and it is kept on purpose: a TableCell holds on to the
+ * observable value it was given and listens to it, so one mutable value shared by every cell is not safe. Missing
+ * values share a single constant.
+ * @see TableColumn#setCellValueFactory(Callback)
+ */
+public abstract class CellValues {
+    /**
+     * A getter of a column value from a row, which may throw, e.g. if an associated model can not be found.
+     * @param <S> the type of the rows.
+     * @param <T> the type of the values.
+     */
+    @FunctionalInterface
+    public interface Getter<S, T> {
+        /**
+         * Gets the value of a row.
+         * @param row the row.
+         * @return the value.
+         * @throws Exception if the value can not be gotten.
+         */
+        T get(S row) throws Exception;
+    }
+
+    /**
+     * An observable value that never changes, so it ignores its listeners.
+     * @param <T> the type of the value.
+     */
+    private static class ConstantValue<T> implements ObservableValue<T> {
+        /**
+         * The value.
+         */
+        private final T value;
+
+        /**
+         * The constructor.
+         * @param value the value.
+         */
+        private ConstantValue(T value) {
+            this.value = value;
+        }
+
+        @Override
+        public T getValue() {
+            return value;
+        }
+
+        @Override
+        public void addListener(ChangeListener<? super T> listener) {}
+
+        @Override
+        public void removeListener(ChangeListener<? super T> listener) {}
+
+        @Override
+        public void addListener(InvalidationListener listener) {}
+
+        @Override
+        public void removeListener(InvalidationListener listener) {}
+    }
+
+    /**
+     * The constant shared by every cell without a value.
+     */
+    private static final ConstantValue<Object> nullValue = new ConstantValue<>(null);
+
+    /**
+     * Builds a cell value factory that calls a getter on the row of each cell.
+     * If the getter throws, the exception is printed and the cell is left empty, like PropertyValueFactory does.
+     * @param getter the getter, usually a method reference such as Appointment::getTitle.
+     * @param <S> the type of the rows.
+     * @param <T> the type of the values.
+     * @return the cell value factory.
+     */
+    public static <S, T> Callback<TableColumn.CellDataFeatures<S, T>, ObservableValue<T>> of(Getter<S, T> getter) {
+        return data -> {
+            try {
+                T value = getter.get(data.getValue());
+                return value == null ? nullValue() : new ConstantValue<>(value);
+            } catch (Exception e) {
+                e.printStackTrace();
+                return nullValue();
+            }
+        };
+    }
+
+    /**
+     * Gets the constant shared by every cell without a value, as the type of a column.
+     * @param <T> the type of the values.
+     * @return the constant.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> ObservableValue<T> nullValue() {
+        // a constant of null is a valid constant of any type
+        return (ObservableValue<T>) (ObservableValue<?>) nullValue;
+    }
+}
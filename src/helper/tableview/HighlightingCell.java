@@ -0,0 +1,114 @@
+package helper.tableview;
+
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
+import javafx.util.Callback;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A table cell that shows a text with the words that start with a search term in bold, so that it is visible why a
+ * row matched a search.
+ * @param <S> the type of the rows.
+ */
+public class HighlightingCell<S> extends TableCell<S, String> {
+    /**
+     * The supplier of the current search terms, which are lowercase.
+     */
+    private final Supplier<List<String>> termsSupplier;
+
+    /**
+     * The constructor.
+     * @param termsSupplier the supplier of the current search terms, which are lowercase.
+     */
+    public HighlightingCell(Supplier<List<String>> termsSupplier) {
+        this.termsSupplier = termsSupplier;
+    }
+
+    /**
+     * Builds a cell factory for a table column, with highlighting cells that share a supplier of the search terms.
+     * @param termsSupplier the supplier of the current search terms, which are lowercase.
+     * @param <S> the type of the rows.
+     * @return the cell factory.
+     * @see TableColumn#setCellFactory(Callback)
+     */
+    public static <S> Callback<TableColumn<S, String>, TableCell<S, String>> forTableColumn(Supplier<List<String>> termsSupplier) {
+        return column -> new HighlightingCell<>(termsSupplier);
+    }
+
+    /**
+     * Updates the cell, as plain text if no word of the text starts with a search term.
+     * @param item the text, or null.
+     * @param empty whether the cell is empty.
+     */
+    @Override
+    protected void updateItem(String item, boolean empty) {
+        super.updateItem(item, empty);
+        setGraphic(null);
+        setText(null);
+        setContentDisplay(ContentDisplay.TEXT_ONLY);
+        if (empty || item == null) {
+            return;
+        }
+        int[] highlightEnds = getHighlightEnds(item, termsSupplier.get());
+        if (highlightEnds == null) {
+            setText(item);
+            return;
+        }
+
+        Font boldFont = Font.font(getFont().getFamily(), FontWeight.BOLD, getFont().getSize());
+        TextFlow textFlow = new TextFlow();
+        int start = 0;
+        while (start < item.length()) {
+            boolean isHighlighted = highlightEnds[start] > start;
+            int end = isHighlighted ? highlightEnds[start] : start + 1;
+            while (!isHighlighted && end < item.length() && highlightEnds[end] <= end) {
+                ++end;
+            }
+            Text text = new Text(item.substring(start, end));
+            text.fillProperty().bind(textFillProperty());
+            text.setFont(isHighlighted ? boldFont : getFont());
+            textFlow.getChildren().add(text);
+            start = end;
+        }
+        setGraphic(textFlow);
+        setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+    }
+
+    /**
+     * Finds the parts of a text to highlight, which are the starts of words that match a search term.
+     * @param text the text.
+     * @param terms the search terms, which are lowercase.
+     * @return for every index of the text, the end of the highlight that starts there, or null if there is none.
+     */
+    private static int[] getHighlightEnds(String text, List<String> terms) {
+        if (terms.isEmpty()) {
+            return null;
+        }
+        int[] highlightEnds = null;
+        int highlightEnd = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            if (i < highlightEnd || !Character.isLetterOrDigit(text.charAt(i)) || (i > 0 && Character.isLetterOrDigit(text.charAt(i - 1)))) {
+                continue;
+            }
+            for (String term : terms) {
+                if (text.regionMatches(true, i, term, 0, term.length())) {
+                    highlightEnd = Math.max(highlightEnd, i + term.length());
+                }
+            }
+            if (highlightEnd > i) {
+                if (highlightEnds == null) {
+                    highlightEnds = new int[text.length()];
+                }
+                highlightEnds[i] = highlightEnd;
+            }
+        }
+        return highlightEnds;
+    }
+}
@@ -1,7 +1,10 @@
 package main;
 
 import controller.LoginController;
+import helper.cache.GeographyIndex;
 import helper.dbaccess.DBConnection;
+import helper.reminder.ReminderService;
+import helper.rollup.DailyRollupScheduler;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -18,13 +21,18 @@ import java.util.Objects;
 public class Main extends Application {
 
     /**
-     * Runs the JavaFX application by opening a connection to the database, launching the JavaFX application,
-     * then closing the connection to the database when the JavaFX application has ended.
+     * Runs the JavaFX application by opening a connection to the database, preloading the countries and divisions,
+     * starting the background refresh of the report rollup table, launching the JavaFX application, then stopping the reminders and the refresh and closing the connection to the database
+     * when the JavaFX application has ended.
      * @param args command line arguments.
      */
     public static void main(String[] args) {
         DBConnection.openConnection();
+        GeographyIndex.preload();
+        DailyRollupScheduler.start();
         launch(args);
+        ReminderService.stop();
+        DailyRollupScheduler.stop();
         DBConnection.closeConnection();
     }
 
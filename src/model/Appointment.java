@@ -4,10 +4,14 @@ import controller.MainController;
 import helper.dbaccess.dao.DBContact;
 import helper.dbaccess.dao.DBCustomer;
 import helper.dbaccess.dao.DBUser;
+import helper.officehours.OfficeHours;
 import helper.locale.LocaleHelper;
 
 import java.sql.Timestamp;
 import java.time.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -56,7 +60,10 @@ public class Appointment extends Model {
      * If it is exactly either, then it is within office hours.
      * @param offsetTime the time to compare that already has an offset applied that
      * @return whether the given time is outside the defined office hours.
+     * @deprecated only compares times of day with the current offset, ignoring the actual date;
+     * use {@link #isWithinOfficeHours(Instant, Instant, String)} instead.
      */
+    @Deprecated
     public static boolean isOutsideOfficeHours(OffsetTime offsetTime) {
         ZoneOffset currentZoneOffset = OFFICE_HOUR_ZONE_ID.getRules().getOffset(Instant.now());
 
@@ -66,6 +73,20 @@ public class Appointment extends Model {
         return offsetTime.isBefore(officeHourStart) || offsetTime.isAfter(officeHourEnd);
     }
 
+    /**
+     * A static method that returns whether an appointment's times lie within a single office hours window of its location,
+     * on the actual dates of the times (including DST changes, holidays, and per-location hours).
+     * If the appointment starts exactly at opening time or ends exactly at closing time, then it is within office hours.
+     * @param startsAt the starting time.
+     * @param endsAt the ending time.
+     * @param location the location, or null for the default office hours.
+     * @return whether the times are within office hours.
+     * @see OfficeHours
+     */
+    public static boolean isWithinOfficeHours(Instant startsAt, Instant endsAt, String location) {
+        return OfficeHours.isWithinOfficeHours(location, startsAt, endsAt);
+    }
+
     /**
      * The id of the appointment.
      */
@@ -136,6 +157,20 @@ public class Appointment extends Model {
      */
     User user;
 
+    /**
+     * The formatted starting time, or null if not formatted yet.
+     */
+    private String formattedStartsAt;
+    /**
+     * The formatted ending time, or null if not formatted yet.
+     */
+    private String formattedEndsAt;
+    /**
+     * The LocaleHelper display version that the formatted times were formatted for.
+     * @see LocaleHelper#getDisplayVersion()
+     */
+    private int formattedDisplayVersion;
+
     /**
      * The no-fields constructor used by the controller.
      */
@@ -204,6 +239,9 @@ public class Appointment extends Model {
      * @param contactId the contactId.
      */
     public void setContactId(int contactId) {
+        if (this.contactId != contactId) {
+            this.contact = null;
+        }
         this.contactId = contactId;
     }
 
@@ -220,6 +258,9 @@ public class Appointment extends Model {
      * @param customerId the customerId.
      */
     public void setCustomerId(int customerId) {
+        if (this.customerId != customerId) {
+            this.customer = null;
+        }
         this.customerId = customerId;
     }
 
@@ -236,6 +277,9 @@ public class Appointment extends Model {
      * @param userId the userId.
      */
     public void setUserId(int userId) {
+        if (this.userId != userId) {
+            this.user = null;
+        }
         this.userId = userId;
     }
 
@@ -317,6 +361,7 @@ public class Appointment extends Model {
      */
     public void setStartsAt(Instant startsAt) {
         this.startsAt = startsAt;
+        this.formattedStartsAt = null;
     }
 
     /**
@@ -333,6 +378,7 @@ public class Appointment extends Model {
      */
     public void setEndsAt(Instant endsAt) {
         this.endsAt = endsAt;
+        this.formattedEndsAt = null;
     }
 
     /**
@@ -401,20 +447,59 @@ public class Appointment extends Model {
 
     /**
      * Gets the starting time but formatted using LocaleHelper#formatInstant().
+     * It is formatted once and kept until the starting time, locale, or zone changes.
      * @return the formatted starting time.
      * @see LocaleHelper#formatInstant(Instant)
      */
     public String getFormattedStartsAt() {
-        return LocaleHelper.formatInstant(getStartsAt());
+        discardStaleFormattedTimes();
+        if (formattedStartsAt == null) {
+            formattedStartsAt = LocaleHelper.formatInstant(getStartsAt());
+        }
+        return formattedStartsAt;
     }
 
     /**
      * Gets the ending time but formatted using LocaleHelper#formatInstant().
+     * It is formatted once and kept until the ending time, locale, or zone changes.
      * @return the formatted ending time.
      * @see LocaleHelper#formatInstant(Instant)
      */
     public String getFormattedEndsAt() {
-        return LocaleHelper.formatInstant(getEndsAt());
+        discardStaleFormattedTimes();
+        if (formattedEndsAt == null) {
+            formattedEndsAt = LocaleHelper.formatInstant(getEndsAt());
+        }
+        return formattedEndsAt;
+    }
+
+    /**
+     * Discards the formatted times if they were formatted for another locale or zone.
+     */
+    private void discardStaleFormattedTimes() {
+        int displayVersion = LocaleHelper.getDisplayVersion();
+        if (formattedDisplayVersion != displayVersion) {
+            formattedStartsAt = null;
+            formattedEndsAt = null;
+            formattedDisplayVersion = displayVersion;
+        }
+    }
+
+    /**
+     * Resolves the associated Contacts of many appointments at once, looking up every distinct contact only once and
+     * sharing it between the appointments, so that showing the contact names afterwards needs no database access.
+     * Appointments whose Contact is already resolved, or does not exist, are left as they are.
+     * @param appointments the appointments.
+     * @see #getContactName()
+     */
+    public static void resolveContacts(Collection<Appointment> appointments) {
+        Map<Integer, Optional<Contact>> contactsById = new HashMap<>();
+        for (Appointment appointment : appointments) {
+            if (appointment.contact == null) {
+                contactsById.computeIfAbsent(appointment.getContactId(), DBContact::getContactFromId)
+                        .ifPresent(c -> appointment.contact = c);
+            }
+        }
     }
 
     /**
@@ -0,0 +1,499 @@
+package model;
+
+import helper.scheduling.TimeSlot;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * This Model represents a recurring appointment series: a rule (the first occurrence, a frequency, an interval, and an
+ * optional end) plus overrides for single occurrences that were cancelled or rescheduled.
+ * <br>
+ * Occurrences are never stored. The starting time of any occurrence is computed from its index, and the index of the
+ * first occurrence after a given time is computed from the number of days, weeks, or months in between, so expanding
+ * a window or checking a time range for conflicts only touches the occurrences within it.
+ * Occurrences keep the local wall-clock time of the first occurrence in the series' time zone, across DST changes.
+ * @see Model
+ * @see Appointment
+ */
+public class AppointmentSeries extends Model {
+    /**
+     * How often the appointments of a series recur.
+     * Monthly occurrences that would fall on a day the month does not have (e.g. the 31st) fall on its last day instead.
+     */
+    public enum Frequency {
+        DAILY(ChronoUnit.DAYS),
+        WEEKLY(ChronoUnit.WEEKS),
+        MONTHLY(ChronoUnit.MONTHS);
+
+        /**
+         * The unit of time between two occurrences with an interval of 1.
+         */
+        private final ChronoUnit unit;
+
+        /**
+         * The constructor.
+         * @param unit the unit of time between two occurrences with an interval of 1.
+         */
+        Frequency(ChronoUnit unit) {
+            this.unit = unit;
+        }
+
+        /**
+         * Gets the unit of time between two occurrences with an interval of 1.
+         * @return the unit.
+         */
+        public ChronoUnit getUnit() {
+            return unit;
+        }
+    }
+
+    /**
+     * The id of the series.
+     */
+    private int id;
+    /**
+     * The contactId of the series.
+     */
+    private final int contactId;
+    /**
+     * The customerId of the series.
+     */
+    private final int customerId;
+    /**
+     * The userId of the series.
+     */
+    private final int userId;
+    /**
+     * The title of the series.
+     */
+    private final String title;
+    /**
+     * The description of the series.
+     */
+    private final String description;
+    /**
+     * The location of the series.
+     */
+    private final String location;
+    /**
+     * The type of the series.
+     */
+    private final String type;
+    /**
+     * The starting time of the first occurrence.
+     */
+    private final Instant startsAt;
+    /**
+     * The duration of every occurrence.
+     */
+    private final Duration duration;
+    /**
+     * How often the occurrences recur.
+     */
+    private final Frequency frequency;
+    /**
+     * The number of frequency units between two occurrences, e.g. 2 for every other week.
+     */
+    private final int interval;
+    /**
+     * The time before which every occurrence starts (exclusive), or null if the series does not end.
+     */
+    private final Instant until;
+    /**
+     * The time zone whose wall-clock time the occurrences keep.
+     */
+    private final ZoneId zoneId;
+    /**
+     * The original starting times of the cancelled occurrences.
+     */
+    private final TreeSet<Instant> cancelledOccurrences = new TreeSet<>();
+    /**
+     * The new times of the rescheduled occurrences, by their original starting time.
+     */
+    private final TreeMap<Instant, TimeSlot> rescheduledOccurrences = new TreeMap<>();
+
+    /**
+     * The constructor that accepts all fields of the rule.
+     * @param id the id.
+     * @param contactId the contactId.
+     * @param customerId the customerId.
+     * @param userId the userId.
+     * @param title the title.
+     * @param description the description.
+     * @param location the location.
+     * @param type the type.
+     * @param startsAt the starting time of the first occurrence.
+     * @param endsAt the ending time of the first occurrence.
+     * @param frequency how often the occurrences recur.
+     * @param interval the number of frequency units between two occurrences, at least 1.
+     * @param until the time before which every occurrence starts (exclusive), or null if the series does not end.
+     * @param zoneId the time zone whose wall-clock time the occurrences keep.
+     */
+    public AppointmentSeries(int id, int contactId, int customerId, int userId, String title, String description, String location, String type, Instant startsAt, Instant endsAt, Frequency frequency, int interval, Instant until, ZoneId zoneId) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("The interval must be at least 1.");
+        }
+        if (!startsAt.isBefore(endsAt)) {
+            throw new IllegalArgumentException("The starting time must be before the ending time.");
+        }
+        this.id = id;
+        this.contactId = contactId;
+        this.customerId = customerId;
+        this.userId = userId;
+        this.title = title;
+        this.description = description;
+        this.location = location;
+        this.type = type;
+        this.startsAt = startsAt;
+        this.duration = Duration.between(startsAt, endsAt);
+        this.frequency = frequency;
+        this.interval = interval;
+        this.until = until;
+        this.zoneId = zoneId;
+    }
+
+    /**
+     * Get the id.
+     * @return the id.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Set the id.
+     * @param id the id.
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Get the contactId.
+     * @return the contactId.
+     */
+    public int getContactId() {
+        return contactId;
+    }
+
+    /**
+     * Get the customerId.
+     * @return the customerId.
+     */
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    /**
+     * Get the userId.
+     * @return the userId.
+     */
+    public int getUserId() {
+        return userId;
+    }
+
+    /**
+     * Get the title.
+     * @return the title.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Get the description.
+     * @return the description.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Get the location.
+     * @return the location.
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * Get the type.
+     * @return the type.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Get the starting time of the first occurrence.
+     * @return the starting time.
+     */
+    public Instant getStartsAt() {
+        return startsAt;
+    }
+
+    /**
+     * Get the ending time of the first occurrence.
+     * @return the ending time.
+     */
+    public Instant getEndsAt() {
+        return startsAt.plus(duration);
+    }
+
+    /**
+     * Get the duration of every occurrence.
+     * @return the duration.
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Get the frequency.
+     * @return the frequency.
+     */
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Get the interval.
+     * @return the number of frequency units between two occurrences.
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Get the time before which every occurrence starts.
+     * @return the time (exclusive), or empty if the series does not end.
+     */
+    public Optional<Instant> getUntil() {
+        return Optional.ofNullable(until);
+    }
+
+    /**
+     * Get the time zone whose wall-clock time the occurrences keep.
+     * @return the time zone.
+     */
+    public ZoneId getZoneId() {
+        return zoneId;
+    }
+
+    /**
+     * Get the original starting times of the cancelled occurrences.
+     * @return the unmodifiable set of starting times.
+     */
+    public Set<Instant> getCancelledOccurrences() {
+        return Collections.unmodifiableSet(cancelledOccurrences);
+    }
+
+    /**
+     * Get the new times of the rescheduled occurrences.
+     * @return the unmodifiable map of new times by original starting time.
+     */
+    public Map<Instant, TimeSlot> getRescheduledOccurrences() {
+        return Collections.unmodifiableMap(rescheduledOccurrences);
+    }
+
+    /**
+     * Cancels a single occurrence.
+     * @param originalStartsAt the original starting time of the occurrence.
+     */
+    public void cancelOccurrence(Instant originalStartsAt) {
+        rescheduledOccurrences.remove(originalStartsAt);
+        cancelledOccurrences.add(originalStartsAt);
+    }
+
+    /**
+     * Moves a single occurrence to new times.
+     * @param originalStartsAt the original starting time of the occurrence.
+     * @param newTimes the new times of the occurrence.
+     */
+    public void rescheduleOccurrence(Instant originalStartsAt, TimeSlot newTimes) {
+        cancelledOccurrences.remove(originalStartsAt);
+        rescheduledOccurrences.put(originalStartsAt, newTimes);
+    }
+
+    /**
+     * Computes the starting time of an occurrence of the rule, regardless of overrides and of the end of the series.
+     * @param index the index of the occurrence, 0 being the first.
+     * @return the starting time.
+     */
+    public Instant getOccurrenceStart(long index) {
+        return startsAt.atZone(zoneId).plus(index * interval, frequency.getUnit()).toInstant();
+    }
+
+    /**
+     * Computes the index of the first occurrence of the rule that starts after a given time.
+     * The index is estimated from the number of frequency units in between, then corrected by at most a step or two
+     * (e.g. around DST changes or short months).
+     * @param time the time.
+     * @return the index of the occurrence.
+     */
+    public long getIndexOfFirstOccurrenceStartingAfter(Instant time) {
+        if (time.isBefore(startsAt)) {
+            return 0;
+        }
+        ZonedDateTime firstStart = startsAt.atZone(zoneId);
+        long index = frequency.getUnit().between(firstStart, time.atZone(zoneId)) / interval;
+        while (index > 0 && getOccurrenceStart(index - 1).isAfter(time)) {
+            --index;
+        }
+        while (!getOccurrenceStart(index).isAfter(time)) {
+            ++index;
+        }
+        return index;
+    }
+
+    /**
+     * Whether an occurrence of the rule starting at the given time is neither cancelled nor rescheduled.
+     * @param occurrenceStart the starting time of the occurrence.
+     * @return whether the occurrence takes place at its original time.
+     */
+    private boolean takesPlaceAtOriginalTime(Instant occurrenceStart) {
+        return !cancelledOccurrences.contains(occurrenceStart) && !rescheduledOccurrences.containsKey(occurrenceStart);
+    }
+
+    /**
+     * Whether an occurrence of the rule starting at the given time starts before the end of the series.
+     * @param occurrenceStart the starting time of the occurrence.
+     * @return whether the occurrence is before the end.
+     */
+    private boolean isBeforeEnd(Instant occurrenceStart) {
+        return until == null || occurrenceStart.isBefore(until);
+    }
+
+    /**
+     * Expands the occurrences that overlap with a time range, including rescheduled ones and excluding cancelled ones.
+     * Only the occurrences within the time range are computed.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the times of the occurrences, in order of starting time.
+     */
+    public List<TimeSlot> getOccurrencesWithin(Instant from, Instant to) {
+        List<TimeSlot> occurrences = new ArrayList<>();
+        if (!from.isBefore(to)) {
+            return occurrences;
+        }
+        // an occurrence overlaps if it ends after from, i.e. it starts after from minus its duration
+        for (long index = getIndexOfFirstOccurrenceStartingAfter(from.minus(duration)); ; ++index) {
+            Instant occurrenceStart = getOccurrenceStart(index);
+            if (!occurrenceStart.isBefore(to) || !isBeforeEnd(occurrenceStart)) {
+                break;
+            }
+            if (takesPlaceAtOriginalTime(occurrenceStart)) {
+                occurrences.add(new TimeSlot(occurrenceStart, occurrenceStart.plus(duration)));
+            }
+        }
+        for (TimeSlot rescheduled : rescheduledOccurrences.values()) {
+            if (rescheduled.overlaps(from, to)) {
+                occurrences.add(rescheduled);
+            }
+        }
+        occurrences.sort(Comparator.comparing(TimeSlot::getStartsAt));
+        return occurrences;
+    }
+
+    /**
+     * Expands the occurrences that overlap with a time range into appointments that are not saved, e.g. for a view.
+     * The appointments have an id of 0.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return the appointments, in order of starting time.
+     * @see #getOccurrencesWithin(Instant, Instant)
+     */
+    public List<Appointment> expandWithin(Instant from, Instant to) {
+        List<Appointment> appointments = new ArrayList<>();
+        for (TimeSlot occurrence : getOccurrencesWithin(from, to)) {
+            appointments.add(new Appointment(0, contactId, customerId, userId, title, description, location, type,
+                    Timestamp.from(occurrence.getStartsAt()), Timestamp.from(occurrence.getEndsAt()),
+                    Timestamp.from(startsAt), Timestamp.from(startsAt), "desktop-app", "desktop-app"));
+        }
+        return appointments;
+    }
+
+    /**
+     * Whether any occurrence overlaps with a time range, without expanding the series.
+     * Only the occurrences starting within the time range (usually 0 or 1 of them) and the rescheduled ones are checked.
+     * @param from the starting time of the time range (inclusive).
+     * @param to the ending time of the time range (exclusive).
+     * @return whether there is a conflict.
+     */
+    public boolean conflictsWith(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            return false;
+        }
+        for (long index = getIndexOfFirstOccurrenceStartingAfter(from.minus(duration)); ; ++index) {
+            Instant occurrenceStart = getOccurrenceStart(index);
+            if (!occurrenceStart.isBefore(to) || !isBeforeEnd(occurrenceStart)) {
+                break;
+            }
+            if (takesPlaceAtOriginalTime(occurrenceStart)) {
+                return true;
+            }
+        }
+        for (TimeSlot rescheduled : rescheduledOccurrences.values()) {
+            if (rescheduled.overlaps(from, to)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the appointments that conflict with any occurrence of the series.
+     * Each appointment is checked with interval arithmetic, so the cost depends on the number of appointments and not
+     * on the number of occurrences.
+     * @param appointments the appointments to check.
+     * @return the conflicting appointments.
+     * @see #conflictsWith(Instant, Instant)
+     */
+    public List<Appointment> findConflicts(Collection<Appointment> appointments) {
+        List<Appointment> conflicts = new ArrayList<>();
+        for (Appointment appointment : appointments) {
+            if (conflictsWith(appointment.getStartsAt(), appointment.getEndsAt())) {
+                conflicts.add(appointment);
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * The string representation of the appointment series.
+     * @return the string.
+     */
+    @Override
+    public String toString() {
+        return String.format("<AppointmentSeries : id=%d contactId=%d customerId=%d userId=%d title=\"%s\" type=\"%s\" startsAt=[%s] duration=[%s] frequency=%s interval=%d until=[%s] zoneId=%s cancelled=%d rescheduled=%d>",
+                getId(),
+                getContactId(),
+                getCustomerId(),
+                getUserId(),
+                getTitle(),
+                getType(),
+                getStartsAt(),
+                getDuration(),
+                getFrequency(),
+                getInterval(),
+                until,
+                getZoneId(),
+                cancelledOccurrences.size(),
+                rescheduledOccurrences.size());
+    }
+}
@@ -1,9 +1,11 @@
 package model;
 
+import helper.cache.GeographyIndex;
 import helper.dbaccess.dao.DBDivision;
 
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.Optional;
 
 /**
@@ -123,6 +125,9 @@ public class Customer extends Model {
      * @param divisionId the divisionId.
      */
     public void setDivisionId(int divisionId) {
+        if (this.divisionId != divisionId) {
+            this.division = null;
+        }
         this.divisionId = divisionId;
     }
 
@@ -258,12 +263,16 @@ public class Customer extends Model {
      * Gets the division associated with the customer.
      * @return the division.
      * @throws DivisionNotFoundException if the division does not exist in the database.
+     * @see GeographyIndex
      */
     public Division getDivision() throws DivisionNotFoundException {
         // lazy-load division
 
         if (division == null) {
-            Optional<Division> newDivision = DBDivision.getDivisionFromId(getDivisionId());
+            Optional<Division> newDivision = GeographyIndex.get().getDivision(getDivisionId());
+            if (newDivision.isEmpty()) {
+                newDivision = DBDivision.getDivisionFromId(getDivisionId());
+            }
             if (newDivision.isEmpty()) {
                 throw new DivisionNotFoundException();
             } else {
@@ -284,6 +293,23 @@ public class Customer extends Model {
         return getDivision().getName();
     }
 
+    /**
+     * Resolves the divisions of many customers at once from the geography index, which shares every division between
+     * its customers, so that showing the division names afterwards needs no database access.
+     * Customers whose division is already resolved, or is not in the index, are left as they are.
+     * @param customers the customers.
+     * @see #getDivisionName()
+     * @see GeographyIndex
+     */
+    public static void resolveDivisions(Collection<Customer> customers) {
+        GeographyIndex geography = GeographyIndex.get();
+        for (Customer customer : customers) {
+            if (customer.division == null) {
+                geography.getDivision(customer.getDivisionId()).ifPresent(d -> customer.division = d);
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return String.format("<Customer : id=%d divisionId=%d name=\"%s\" address=\"%s\" postalCode=\"%s\" phoneNumber=\"%s\" createdAt=[%s] updatedAt=[%s] createdBy=\"%s\" updatedBy=\"%s\">",
@@ -1,5 +1,6 @@
 package model;
 
+import helper.cache.GeographyIndex;
 import helper.dbaccess.dao.DBCountry;
 
 import java.sql.Timestamp;
@@ -212,13 +213,17 @@ public class Division extends Model {
      * @return the country.
      * @throws CountryNotFoundException if the country does not exist in the database.
      * @see Country
+     * @see GeographyIndex
      * @see DBCountry
      */
     public Country getCountry() throws CountryNotFoundException {
         // lazy-load country
 
         if (country == null) {
-            Optional<Country> newCountry = DBCountry.getCountryFromId(getCountryId());
+            Optional<Country> newCountry = GeographyIndex.get().getCountry(getCountryId());
+            if (newCountry.isEmpty()) {
+                newCountry = DBCountry.getCountryFromId(getCountryId());
+            }
             if (newCountry.isEmpty()) {
                 throw new CountryNotFoundException();
             } else {
@@ -228,4 +233,12 @@ public class Division extends Model {
 
         return country;
     }
+
+    /**
+     * Sets the associated country, e.g. when it has been loaded along with the first-level division.
+     * @param country the country.
+     */
+    public void setCountry(Country country) {
+        this.country = country;
+    }
 }